@@ -0,0 +1,122 @@
+package atomjson;
+
+import atomjson.exceptions.JsonException;
+import java.util.Arrays;
+
+/**
+ * Decodes base64 text that arrives in pieces into a JsonByteSink, keeping at most a partial quantum
+ * between pieces and one buffer of decoded bytes. Both the standard and the URL safe alphabet are accepted,
+ * padding is optional, and line breaks are skipped since MIME encoders add them.
+ * @author Justin Bonner
+ */
+final class Base64Decoder {
+    
+    private static final int BUFFER_SIZE = 8190;
+    private static final int INVALID = -1;
+    private static final int LINE_BREAK = -2;
+    
+    /**
+     * The value of each ASCII char in base64.
+     */
+    private static final int[] VALUES = new int[0x80];
+    
+    static {
+        Arrays.fill(VALUES, INVALID);
+        String alphabet = "ABCDEFGHIJKLMNOPQRSTUVWXYZabcdefghijklmnopqrstuvwxyz0123456789+/";
+        for (int i = 0; i < alphabet.length(); i++) {
+            VALUES[alphabet.charAt(i)] = i;
+        }
+        VALUES['-'] = 62;
+        VALUES['_'] = 63;
+        VALUES['\r'] = LINE_BREAK;
+        VALUES['\n'] = LINE_BREAK;
+    }
+    
+    private final byte[] buffer;
+    private JsonByteSink sink;
+    private int count;
+    private long length;
+    /**
+     * The sextets of the current quantum, and how many there are.
+     */
+    private int bits;
+    private int sextets;
+    private int padding;
+    
+    Base64Decoder() {
+        this.buffer = new byte[BUFFER_SIZE];
+    }
+    
+    /**
+     * Begin decoding a value into a sink.
+     */
+    void start(JsonByteSink sink) {
+        this.sink = sink;
+        this.count = 0;
+        this.length = 0;
+        this.bits = 0;
+        this.sextets = 0;
+        this.padding = 0;
+    }
+    
+    /**
+     * Decode the next piece of the value.
+     * @throws JsonException if the text is not base64
+     */
+    void decode(CharSequence text) {
+        int end = text.length();
+        for (int i = 0; i < end; i++) {
+            char c = text.charAt(i);
+            int value = c < 0x80 ? VALUES[c] : INVALID;
+            if (value >= 0 && padding == 0) {
+                bits = (bits << 6) | value;
+                if (++sextets == 4) {
+                    if (count == buffer.length) {
+                        drain();
+                    }
+                    buffer[count++] = (byte)(bits >> 16);
+                    buffer[count++] = (byte)(bits >> 8);
+                    buffer[count++] = (byte)bits;
+                    bits = 0;
+                    sextets = 0;
+                }
+            } else if (c == '=' && sextets >= 2 && sextets + padding < 4) {
+                padding++;
+            } else if (value != LINE_BREAK) {
+                throw new JsonException("Invalid base64 character '" + c + "' in binary value.");
+            }
+        }
+    }
+    
+    /**
+     * Decode the final partial quantum and write what is left to the sink.
+     * @return the number of bytes the value decoded to
+     * @throws JsonException if the value ends in the middle of a quantum
+     */
+    long finish() {
+        if (sextets == 1 || (padding > 0 && sextets + padding != 4)) {
+            throw new JsonException("Incomplete base64 binary value.");
+        }
+        if (sextets > 0) {
+            if (count + 2 > buffer.length) {
+                drain();
+            }
+            buffer[count++] = (byte)(bits >> (sextets == 2 ? 4 : 10));
+            if (sextets == 3) {
+                buffer[count++] = (byte)(bits >> 2);
+            }
+        }
+        drain();
+        sink = null;
+        return length;
+    }
+    
+    private void drain() {
+        if (count > 0) {
+            sink.write(buffer, count);
+            length += count;
+            count = 0;
+        }
+    }
+    
+}
@@ -0,0 +1,148 @@
+package atomjson;
+
+import atomjson.exceptions.JsonException;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.ByteBuffer;
+import java.nio.channels.WritableByteChannel;
+
+/**
+ * A JsonOutput that encodes UTF-8 straight into a byte buffer for an OutputStream or a WritableByteChannel.
+ * Surrogates that are not part of a pair can not be encoded as UTF-8 so they are written as unicode escapes.
+ * @author Justin Bonner
+ */
+final class ByteOutput extends JsonOutput {
+    
+    /**
+     * The most bytes a single char or escape is written as.
+     */
+    private static final int MAX_CHAR_BYTES = 6;
+    
+    private final OutputStream stream;
+    private final WritableByteChannel channel;
+    private final byte[] buffer;
+    private final ByteBuffer wrapped;
+    private int count;
+    
+    private ByteOutput(OutputStream stream, WritableByteChannel channel) {
+        this.stream = stream;
+        this.channel = channel;
+        this.buffer = new byte[BUFFER_SIZE];
+        this.wrapped = ByteBuffer.wrap(buffer);
+        this.count = 0;
+    }
+    
+    static ByteOutput of(OutputStream stream) {
+        return new ByteOutput(stream, null);
+    }
+    
+    static ByteOutput of(WritableByteChannel channel) {
+        return new ByteOutput(null, channel);
+    }
+    
+    @Override
+    void write(char c) {
+        if (count == buffer.length) {
+            drain();
+        }
+        buffer[count++] = (byte)c;
+    }
+    
+    @Override
+    void writeAscii(CharSequence text) {
+        int length = text.length();
+        for (int i = 0; i < length; i++) {
+            write(text.charAt(i));
+        }
+    }
+    
+    @Override
+    void writeAscii(char[] chars, int start, int end) {
+        for (int i = start; i < end; i++) {
+            write(chars[i]);
+        }
+    }
+    
+    @Override
+    void writeString(CharSequence text) {
+        write('"');
+        int length = text.length();
+        for (int i = 0; i < length; i++) {
+            if (count > buffer.length - MAX_CHAR_BYTES) {
+                drain();
+            }
+            char c = text.charAt(i);
+            if (c < 0x80) {
+                char[] escape = ESCAPES[c];
+                if (escape == null) {
+                    buffer[count++] = (byte)c;
+                } else {
+                    for (char e : escape) {
+                        buffer[count++] = (byte)e;
+                    }
+                }
+            } else if (c < 0x800) {
+                buffer[count++] = (byte)(0xC0 | (c >>> 6));
+                buffer[count++] = (byte)(0x80 | (c & 0x3F));
+            } else if (!Character.isSurrogate(c)) {
+                buffer[count++] = (byte)(0xE0 | (c >>> 12));
+                buffer[count++] = (byte)(0x80 | ((c >>> 6) & 0x3F));
+                buffer[count++] = (byte)(0x80 | (c & 0x3F));
+            } else if (Character.isHighSurrogate(c) && i + 1 < length && Character.isLowSurrogate(text.charAt(i + 1))) {
+                int codePoint = Character.toCodePoint(c, text.charAt(++i));
+                buffer[count++] = (byte)(0xF0 | (codePoint >>> 18));
+                buffer[count++] = (byte)(0x80 | ((codePoint >>> 12) & 0x3F));
+                buffer[count++] = (byte)(0x80 | ((codePoint >>> 6) & 0x3F));
+                buffer[count++] = (byte)(0x80 | (codePoint & 0x3F));
+            } else {
+                for (char e : unicodeEscape(c)) {
+                    buffer[count++] = (byte)e;
+                }
+            }
+        }
+        write('"');
+    }
+    
+    private void drain() {
+        try {
+            if (stream != null) {
+                stream.write(buffer, 0, count);
+            } else {
+                wrapped.clear().limit(count);
+                while (wrapped.hasRemaining()) {
+                    channel.write(wrapped);
+                }
+            }
+        } catch (IOException e) {
+            throw new JsonException(e);
+        }
+        count = 0;
+    }
+    
+    @Override
+    void flush() {
+        drain();
+        if (stream != null) {
+            try {
+                stream.flush();
+            } catch (IOException e) {
+                throw new JsonException(e);
+            }
+        }
+    }
+    
+    @Override
+    void close() {
+        drain();
+        try {
+            if (stream != null) {
+                stream.close();
+            } else {
+                channel.close();
+            }
+        } catch (IOException e) {
+            throw new JsonException(e);
+        }
+    }
+    
+}
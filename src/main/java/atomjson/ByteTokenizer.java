@@ -0,0 +1,856 @@
+package atomjson;
+
+import atomjson.exceptions.JsonException;
+import atomjson.exceptions.JsonSyntaxException;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.charset.StandardCharsets;
+
+/**
+ * A JsonTokenizer that works directly on UTF-8 encoded bytes. Structural characters, numbers
+ * and literals are all ASCII so only the contents of strings ever need decoding, and string
+ * values are not decoded until they are asked for.
+ * @author Justin Bonner
+ */
+class ByteTokenizer extends JsonTokenizer {
+    
+    /**
+     * The high bit of every byte, set in a word that holds a non ASCII byte.
+     */
+    private static final long NON_ASCII_BITS = 0x8080808080808080L;
+    /**
+     * Decode buffers that grew past this many chars for a huge string are dropped on reset instead of kept.
+     */
+    private static final int MAX_RETAINED_CAPACITY = 1 << 16;
+    
+    /**
+     * The window of input being tokenized. Bytes in [pos, limit) have not been consumed yet.
+     */
+    private ByteBuffer source;
+    private int limit;
+    private int pos;
+    private JsonToken token;
+    private boolean tokenReady;
+    /**
+     * The bytes of the last STRING or NUMBER token are in [tokenStart, tokenEnd).
+     * For strings this excludes the surrounding quotes.
+     */
+    private int tokenStart;
+    private int tokenEnd;
+    private boolean tokenEscaped;
+    private boolean tokenAscii;
+    /**
+     * The text of the last BOOLEAN token.
+     */
+    private String tokenText;
+    /**
+     * True if the whitespace before the last token held a newline.
+     */
+    private boolean newlineBefore;
+    private char[] decodeBuffer;
+    /**
+     * The view chunks of long strings are decoded into, created the first time one is sent.
+     */
+    private TextView chunkView;
+    /**
+     * The structural index of the current window, null if whitespace is skipped a byte at a time.
+     */
+    private StructuralIndex index;
+    
+    /**
+     * Tokenize the remaining bytes of the source. The position of the source is not changed.
+     * @param source UTF-8 encoded JSON
+     */
+    ByteTokenizer(ByteBuffer source) {
+        this.source = source;
+        this.pos = source.position();
+        this.limit = source.limit();
+        this.tokenReady = false;
+        this.decodeBuffer = new char[64];
+    }
+    
+    /**
+     * Start tokenizing the remaining bytes of a new source, keeping the buffers.
+     * @param source UTF-8 encoded JSON
+     */
+    final void reset(ByteBuffer source) {
+        setWindow(source, source.position(), source.limit());
+        this.tokenReady = false;
+        this.tokenText = null;
+        if (decodeBuffer.length > MAX_RETAINED_CAPACITY) {
+            decodeBuffer = new char[64];
+        }
+    }
+    
+    /**
+     * Called when bytes past the limit of the current window are needed. Tokenizers with more input
+     * replace the window with one that starts at keepFrom in the current window.
+     * The whole input is in one window by default.
+     * @param keepFrom the index of the first byte in the current window that is still needed
+     * @return how far the kept bytes moved down, ie keepFrom minus their new index, or -1 if there is no more input
+     * @throws IOException if reading the input fails
+     */
+    int nextWindow(int keepFrom) throws IOException {
+        return -1;
+    }
+    
+    /**
+     * Replace the window being tokenized. Used by nextWindow.
+     */
+    final void setWindow(ByteBuffer window, int limit) {
+        this.source = window;
+        this.limit = limit;
+        this.index = null; //the positions of the old window no longer apply
+    }
+    
+    /**
+     * Replace the window being tokenized and move to a position in it. Only called between tokens, by a
+     * JsonFeedParser when it moves or grows its buffer.
+     */
+    final void setWindow(ByteBuffer window, int position, int limit) {
+        setWindow(window, limit);
+        this.pos = position;
+    }
+    
+    /**
+     * Get the index in the window of the first byte that has not been tokenized.
+     */
+    final int getPosition() {
+        return pos;
+    }
+    
+    /**
+     * Index the rest of the input so whitespace and skipped children are jumped over instead of read
+     * a byte at a time. Must be called between tokens. Only done when the rest of the input is in the current window.
+     * @return true if the input is now indexed
+     */
+    boolean useStructuralIndex() {
+        index = new StructuralIndex(source, pos, limit);
+        return true;
+    }
+    
+    final boolean isIndexed() {
+        return index != null;
+    }
+    
+    /**
+     * Move to new windows until count bytes starting at start are in the window or the input is done.
+     * @return how far the byte at start moved down
+     */
+    private int require(int start, int count) throws IOException {
+        int moved = 0;
+        while (start - moved + count > limit) {
+            int shift = nextWindow(start - moved);
+            if (shift < 0) {
+                break;
+            }
+            moved += shift;
+        }
+        return moved;
+    }
+    
+    final int getLimit() {
+        return limit;
+    }
+    
+    @Override
+    public JsonToken parseNextToken() throws IOException {
+        tokenReady = true;
+        tokenText = null;
+        token = calcNextToken();
+        return token;
+    }
+    
+    private JsonToken calcNextToken() throws IOException {
+        int b = skipWhitespace();
+        if (b == -1) {
+            return JsonToken.END;
+        }
+        pos++;
+        switch(b) {
+            case '{':
+                return JsonToken.BEGIN_OBJECT;
+            case '}':
+                return JsonToken.END_OBJECT;
+            case '[':
+                return JsonToken.BEGIN_ARRAY;
+            case ']':
+                return JsonToken.END_ARRAY;
+            case '"':
+                chunked = false;
+                scanString();
+                if (chunkSink != null && (chunked || tokenEnd - tokenStart >= chunkThreshold)) {
+                    chunked = true;
+                    sendChunks(tokenEnd);
+                }
+                return JsonToken.STRING;
+            case ',':
+                return JsonToken.COMMA;
+            case ':':
+                return JsonToken.COLON;
+            case 'n':
+                verify("null");
+                return JsonToken.NULL;
+            case 't':
+                verify("true");
+                tokenText = "true";
+                return JsonToken.BOOLEAN;
+            case 'f':
+                verify("false");
+                tokenText = "false";
+                return JsonToken.BOOLEAN;
+        }
+        if (b == '+' || b == '-' || (b >= '0' && b <= '9')) {
+            pos--;
+            scanNumber();
+            return JsonToken.NUMBER;
+        }
+        throw new JsonSyntaxException("Could not tokenize '" + (b < 0x80 ? String.valueOf((char)b) : "0x" + Integer.toHexString(b)) + "'.");
+    }
+    
+    @Override
+    void skipChildren(boolean object) throws IOException {
+        tokenReady = false;
+        if (index != null) {
+            skipIndexedChildren(object);
+            return;
+        }
+        int depth = 1;
+        boolean inString = false;
+        while (true) {
+            while (pos < limit) {
+                byte b = source.get(pos++);
+                if (inString) {
+                    if (b == '"') {
+                        inString = false;
+                    } else if (b == '\\') {
+                        pos -= require(pos, 1);
+                        pos++; //the escaped byte can not end the string
+                    }
+                } else if (b == '"') {
+                    inString = true;
+                } else if (b == '{' || b == '[') {
+                    depth++;
+                } else if ((b == '}' || b == ']') && --depth == 0) {
+                    checkSkippedEnd(object, b);
+                    return;
+                }
+            }
+            int shift = nextWindow(pos);
+            if (shift < 0) {
+                throw new JsonSyntaxException(inString ? "EOF in a string." : "Early EOF.");
+            }
+            pos -= shift;
+        }
+    }
+    
+    /**
+     * Skip children by walking the structural index, which has no positions inside strings.
+     */
+    private void skipIndexedChildren(boolean object) {
+        int depth = 1;
+        while (true) {
+            int next = index.next(pos);
+            if (next == -1) {
+                pos = limit;
+                throw new JsonSyntaxException("Early EOF.");
+            }
+            pos = next + 1;
+            byte b = source.get(next);
+            if (b == '{' || b == '[') {
+                depth++;
+            } else if ((b == '}' || b == ']') && --depth == 0) {
+                checkSkippedEnd(object, b);
+                return;
+            }
+        }
+    }
+    
+    @Override
+    void skipLine() throws IOException {
+        tokenReady = false;
+        while (true) {
+            while (pos < limit) {
+                if (source.get(pos++) == '\n') {
+                    return;
+                }
+            }
+            int shift = nextWindow(pos);
+            if (shift < 0) {
+                return;
+            }
+            pos -= shift;
+        }
+    }
+    
+    @Override
+    boolean newlineBeforeToken() {
+        return newlineBefore;
+    }
+    
+    /**
+     * Move pos to the next non whitespace byte.
+     * @return the byte at pos, -1 if the source is done
+     */
+    private int skipWhitespace() throws IOException {
+        newlineBefore = false;
+        if (index != null && pos < limit && !trackLines) {
+            if (isWhitespace(source.get(pos) & 0xFF)) {
+                //every byte between here and the next indexed position is whitespace
+                int next = index.next(pos);
+                pos = next != -1 ? next : limit;
+            }
+            if (pos < limit) {
+                int b = source.get(pos) & 0xFF;
+                if (!beginsUnicodeWhitespace(b)) {
+                    return b;
+                }
+            }
+        }
+        while (true) {
+            while (pos < limit) {
+                int b = source.get(pos) & 0xFF;
+                if (!isWhitespace(b)) {
+                    if (!beginsUnicodeWhitespace(b)) {
+                        return b;
+                    }
+                    pos -= require(pos, 3);
+                    if (!isUnicodeWhitespace(pos)) {
+                        return source.get(pos) & 0xFF;
+                    }
+                    pos += 3;
+                    continue;
+                }
+                if (b == '\n') {
+                    newlineBefore = true;
+                }
+                pos++;
+            }
+            int shift = nextWindow(pos);
+            if (shift < 0) {
+                return -1;
+            }
+            pos -= shift;
+        }
+    }
+    
+    /**
+     * Find the end of a string whose opening quote has been consumed. Escapes and control characters
+     * are validated but nothing is decoded. When chunking, what has been scanned of a long string is sent
+     * to the chunkSink before moving to the next window, so the window never has to hold the whole string.
+     */
+    private void scanString() throws IOException {
+        boolean escaped = false;
+        boolean ascii = true;
+        tokenStart = pos;
+        int p = pos;
+        while (true) {
+            if (p >= limit) {
+                flushScanned(p);
+                int shift = nextWindow(tokenStart);
+                if (shift < 0) {
+                    throw new JsonSyntaxException("EOF in a string.");
+                }
+                tokenStart -= shift;
+                p -= shift;
+                continue;
+            }
+            if (p + 8 <= limit) {
+                //look at 8 bytes at once for anything but plain text
+                long word = source.getLong(p);
+                long special = StructuralIndex.equal(word, '"') | StructuralIndex.equal(word, '\\')
+                    | StructuralIndex.less(word, 0x20) | (ascii ? word & NON_ASCII_BITS : 0);
+                if (special == 0) {
+                    p += 8;
+                    continue;
+                }
+                p += (source.order() == ByteOrder.BIG_ENDIAN ? Long.numberOfLeadingZeros(special) : Long.numberOfTrailingZeros(special)) >>> 3;
+            }
+            byte b = source.get(p);
+            if (b == '"') {
+                break;
+            }
+            if (b == '\\') {
+                int escapeLength = strictSurrogates ? 12 : 6;
+                if (p + escapeLength > limit) { //make sure a whole unicode escape or surrogate pair is in the window
+                    flushScanned(p);
+                    int shift = require(tokenStart, p + escapeLength - tokenStart);
+                    tokenStart -= shift;
+                    p -= shift;
+                }
+                escaped = true;
+                p = skipEscape(p + 1);
+                continue;
+            }
+            if (b >= 0 && b <= 31) {
+                throw new JsonException("Unescaped control character not allowed in string.");
+            }
+            if (b < 0) {
+                ascii = false;
+            }
+            p++;
+        }
+        tokenEnd = p;
+        tokenEscaped = escaped;
+        tokenAscii = ascii;
+        pos = p + 1;
+    }
+    
+    /**
+     * Send the part of a string scanned so far to the chunkSink if it is long enough, called by scanString before the window moves.
+     * @param scanned the index scanning has reached, which is never inside an escape
+     */
+    private void flushScanned(int scanned) {
+        if (chunkSink != null && scanned - tokenStart > chunkThreshold) {
+            chunked |= sendChunks(scanned);
+        }
+    }
+    
+    /**
+     * Decode the scanned bytes of a long string up to end and send all but the final chunk to the chunkSink,
+     * leaving the token starting at the final chunk. Chunks never split an escape, an escaped surrogate pair
+     * or the bytes of one char.
+     * @param end the end of the scanned bytes, not inside an escape
+     * @return true if a chunk was sent
+     */
+    private boolean sendChunks(int end) {
+        int start = tokenStart;
+        while (end - start > chunkThreshold) {
+            int split = start;
+            int target = start + chunkThreshold;
+            while (split < target) {
+                split = skipChunkChar(split, end);
+            }
+            while (split < end && (source.get(split) & 0xC0) == 0x80) {
+                split++;
+            }
+            if (split >= end) {
+                break;
+            }
+            if (chunkView == null) {
+                chunkView = new TextView();
+            }
+            chunkView.setLength(decode(source, start, split, chunkView.reserve(split - start)));
+            chunkSink.chunk(chunkView);
+            start = split;
+        }
+        boolean sent = start != tokenStart;
+        tokenStart = start;
+        return sent;
+    }
+    
+    /**
+     * Step over one char, escape, or escaped surrogate pair of a scanned string when splitting it into chunks.
+     * @param end the end of the scanned bytes
+     * @return the index after it
+     */
+    private int skipChunkChar(int p, int end) {
+        if (source.get(p) != '\\') {
+            return p + 1;
+        }
+        if (source.get(p + 1) != 'u') {
+            return p + 2;
+        }
+        //both halves of an escaped pair go in the same chunk
+        if (p + 6 < end && Character.isHighSurrogate(unicodeEscape(p + 2)) && source.get(p + 6) == '\\'
+                && source.get(p + 7) == 'u' && Character.isLowSurrogate(unicodeEscape(p + 8))) {
+            return p + 12;
+        }
+        return p + 6;
+    }
+    
+    /**
+     * Validate the escape after a backslash.
+     * @param p the index after the backslash
+     * @return the index after the escape
+     */
+    private int skipEscape(int p) {
+        if (p >= limit) {
+            throw new JsonSyntaxException("EOF in a string.");
+        }
+        byte b = source.get(p);
+        switch(b) {
+            case '\\':
+            case '"':
+            case '/':
+            case 'b':
+            case 'f':
+            case 'n':
+            case 'r':
+            case 't':
+                return p + 1;
+            case 'u':
+                if (p + 4 >= limit) {
+                    throw new JsonSyntaxException("Early EOF.");
+                }
+                char value = unicodeEscape(p + 1);
+                if (strictSurrogates && Character.isSurrogate(value)) {
+                    if (Character.isLowSurrogate(value) || p + 10 >= limit || source.get(p + 5) != '\\' || source.get(p + 6) != 'u'
+                            || !Character.isLowSurrogate(unicodeEscape(p + 7))) {
+                        throw new JsonSyntaxException("Unpaired surrogate '\\u" + asciiString(source, p + 1, p + 5) + "' in a string.");
+                    }
+                    return p + 11;
+                }
+                return p + 5;
+            default:
+                throw new JsonSyntaxException("Invalid escape '\\" + (char)(b & 0xFF) + "'.");
+        }
+    }
+    
+    /**
+     * Scan and validate a number starting at pos in a single pass, recording its NumberInfo.
+     * The number must be followed by whitespace, a comma, a closing bracket or the end of the input.
+     */
+    private void scanNumber() throws IOException {
+        tokenStart = pos;
+        int flags = 0;
+        int c = peekNumberByte();
+        if (c == '-') {
+            flags |= NumberInfo.NEGATIVE;
+            pos++;
+            c = peekNumberByte();
+        }
+        int digits = 0;
+        while (NumberInfo.isDigit(c)) {
+            digits++;
+            pos++;
+            c = peekNumberByte();
+        }
+        if (digits == 0) {
+            throw notANumber(c);
+        }
+        if (c == '.') {
+            pos++;
+            c = peekNumberByte();
+            int fractionDigits = 0;
+            while (NumberInfo.isDigit(c)) {
+                fractionDigits++;
+                pos++;
+                c = peekNumberByte();
+            }
+            if (fractionDigits == 0) {
+                throw notANumber(c);
+            }
+            digits += fractionDigits;
+            flags |= NumberInfo.FRACTION;
+        }
+        if (c == 'e' || c == 'E') {
+            flags |= NumberInfo.EXPONENT;
+            pos++;
+            c = peekNumberByte();
+            if (c == '+' || c == '-') {
+                if (c == '-') {
+                    flags |= NumberInfo.NEGATIVE_EXPONENT;
+                }
+                pos++;
+                c = peekNumberByte();
+            }
+            int exponentDigits = 0;
+            while (NumberInfo.isDigit(c)) {
+                exponentDigits++;
+                pos++;
+                c = peekNumberByte();
+            }
+            if (exponentDigits == 0) {
+                throw notANumber(c);
+            }
+        }
+        if (beginsUnicodeWhitespace(c) && pos + 3 > limit) {
+            int shift = require(tokenStart, pos + 3 - tokenStart);
+            tokenStart -= shift;
+            pos -= shift;
+        }
+        if (c != -1 && c != ',' && c != '}' && c != ']' && !isWhitespace(c) && !isUnicodeWhitespace(pos)) {
+            throw notANumber(c);
+        }
+        tokenEnd = pos;
+        numberInfo = NumberInfo.create(flags, digits);
+    }
+    
+    /**
+     * Get the byte at pos while scanning a number, moving to the next window if needed.
+     * @return the byte at pos, -1 if the input is done
+     */
+    private int peekNumberByte() throws IOException {
+        if (pos >= limit) {
+            int shift = nextWindow(tokenStart);
+            if (shift < 0) {
+                return -1;
+            }
+            tokenStart -= shift;
+            pos -= shift;
+        }
+        return source.get(pos) & 0xFF;
+    }
+    
+    private JsonSyntaxException notANumber(int c) {
+        String found = asciiString(source, tokenStart, pos);
+        if (c != -1) {
+            found += c < 0x80 ? String.valueOf((char)c) : "0x" + Integer.toHexString(c);
+        }
+        return new JsonSyntaxException("'" + found + "' was not a number as expected.");
+    }
+    
+    private void verify(String expected) throws IOException {
+        int start = pos - 1;
+        if (start + expected.length() > limit) {
+            int shift = require(start, expected.length());
+            start -= shift;
+            pos -= shift;
+        }
+        for (int i = 1; i < expected.length(); i++) {
+            if (pos >= limit) {
+                throw new JsonSyntaxException("Early EOF.");
+            }
+            if (source.get(pos++) != expected.charAt(i)) {
+                throw new JsonSyntaxException("Expected to read '" + expected + "' but read '" + asciiString(source, start, pos) + "'.");
+            }
+        }
+    }
+    
+    @Override
+    public String readToken() {
+        if (!tokenReady) {
+            throw new IllegalStateException("Tried to read a token when not ready.");
+        }
+        tokenReady = false;
+        if (token == JsonToken.NUMBER || (token == JsonToken.STRING && !tokenEscaped && tokenAscii)) {
+            return asciiString(source, tokenStart, tokenEnd);
+        }
+        if (token == JsonToken.STRING) {
+            int length = tokenEnd - tokenStart;
+            if (decodeBuffer.length < length) {
+                decodeBuffer = new char[Math.max(length, decodeBuffer.length * 2)];
+            }
+            return new String(decodeBuffer, 0, decode(source, tokenStart, tokenEnd, decodeBuffer));
+        }
+        return tokenText;
+    }
+    
+    @Override
+    String readKey() {
+        if (keyTable == null) {
+            return readToken();
+        }
+        if (!tokenReady) {
+            throw new IllegalStateException("Tried to read a token when not ready.");
+        }
+        tokenReady = false;
+        if (!tokenEscaped && tokenAscii) {
+            return keyTable.get(source, tokenStart, tokenEnd);
+        }
+        int length = tokenEnd - tokenStart;
+        if (decodeBuffer.length < length) {
+            decodeBuffer = new char[Math.max(length, decodeBuffer.length * 2)];
+        }
+        return keyTable.get(decodeBuffer, decode(source, tokenStart, tokenEnd, decodeBuffer));
+    }
+    
+    @Override
+    void readToken(TextView dest) {
+        if (!tokenReady) {
+            throw new IllegalStateException("Tried to read a token when not ready.");
+        }
+        tokenReady = false;
+        if (token == JsonToken.BOOLEAN) {
+            dest.set(tokenText);
+        } else if (token == JsonToken.NUMBER || (!tokenEscaped && tokenAscii)) {
+            char[] chars = dest.reserve(tokenEnd - tokenStart);
+            for (int i = tokenStart; i < tokenEnd; i++) {
+                chars[i - tokenStart] = (char)source.get(i);
+            }
+            dest.setLength(tokenEnd - tokenStart);
+        } else {
+            dest.setLength(decode(source, tokenStart, tokenEnd, dest.reserve(tokenEnd - tokenStart)));
+        }
+    }
+    
+    /**
+     * The index of the first byte of the last STRING or NUMBER token, after the opening quote for strings.
+     */
+    final int getTokenStart() {
+        return tokenStart;
+    }
+    
+    /**
+     * The index after the last byte of the last STRING or NUMBER token, the closing quote for strings.
+     */
+    final int getTokenEnd() {
+        return tokenEnd;
+    }
+    
+    final boolean isTokenEscaped() {
+        return tokenEscaped;
+    }
+    
+    final boolean isTokenAscii() {
+        return tokenAscii;
+    }
+    
+    final ByteBuffer getSource() {
+        return source;
+    }
+    
+    @Override
+    JsonPrimitive readPrimitive(JsonPrimitiveType type) {
+        if (type == JsonPrimitiveType.STRING) {
+            if (!tokenReady) {
+                throw new IllegalStateException("Tried to read a token when not ready.");
+            }
+            tokenReady = false;
+            return new JsonPrimitive(type, new Utf8String(source, tokenStart, tokenEnd, tokenEscaped, tokenAscii));
+        }
+        return super.readPrimitive(type);
+    }
+    
+    static boolean isWhitespace(int b) {
+        return b == ' ' || (b >= '\t' && b <= '\r') || (b >= 0x1C && b <= 0x1F);
+    }
+    
+    /**
+     * Determine if a byte can begin a whitespace char past ASCII. Like ReaderTokenizer, every char that
+     * Character.isWhitespace accepts is whitespace, and past ASCII those are all 3 bytes long in UTF-8.
+     */
+    static boolean beginsUnicodeWhitespace(int b) {
+        return b >= 0xE1 && b <= 0xE3;
+    }
+    
+    /**
+     * Determine if 3 bytes are the UTF-8 encoding of a whitespace char past ASCII, see beginsUnicodeWhitespace.
+     */
+    static boolean isUnicodeWhitespace(int b0, int b1, int b2) {
+        if (!beginsUnicodeWhitespace(b0) || (b1 & 0xC0) != 0x80 || (b2 & 0xC0) != 0x80) {
+            return false;
+        }
+        return Character.isWhitespace((char)(((b0 & 0x0F) << 12) | ((b1 & 0x3F) << 6) | (b2 & 0x3F)));
+    }
+    
+    private boolean isUnicodeWhitespace(int p) {
+        return p + 3 <= limit && isUnicodeWhitespace(source.get(p) & 0xFF, source.get(p + 1) & 0xFF, source.get(p + 2) & 0xFF);
+    }
+    
+    /**
+     * Validate and decode the 4 hex digits of a unicode escape.
+     * @param p the index of the first digit
+     */
+    private char unicodeEscape(int p) {
+        int value = 0;
+        for (int i = p; i < p + 4; i++) {
+            int digit = hexValue(source.get(i));
+            if (digit == -1) {
+                throw new JsonException("Invalid Unicode escape '" + asciiString(source, p, p + 4) + "'.");
+            }
+            value = value << 4 | digit;
+        }
+        return (char)value;
+    }
+    
+    private static int hexValue(byte b) {
+        if (b >= '0' && b <= '9') {
+            return b - '0';
+        } else if (b >= 'a' && b <= 'f') {
+            return b - 'a' + 10;
+        } else if (b >= 'A' && b <= 'F') {
+            return b - 'A' + 10;
+        }
+        return -1;
+    }
+    
+    /**
+     * Create a String from bytes that are known to be ASCII.
+     */
+    static String asciiString(ByteBuffer source, int start, int end) {
+        if (source.hasArray()) {
+            return new String(source.array(), source.arrayOffset() + start, end - start, StandardCharsets.ISO_8859_1);
+        }
+        byte[] bytes = new byte[end - start];
+        for (int i = 0; i < bytes.length; i++) {
+            bytes[i] = source.get(start + i);
+        }
+        return new String(bytes, StandardCharsets.ISO_8859_1);
+    }
+    
+    /**
+     * Decode the UTF-8 contents of a string that has already been validated by scanString, processing escapes.
+     * Malformed UTF-8 sequences are replaced with U+FFFD.
+     * @param dest where to place the chars, must be at least end - start long
+     * @return the number of chars placed in dest
+     */
+    static int decode(ByteBuffer source, int start, int end, char[] dest) {
+        int d = 0;
+        int i = start;
+        while (i < end) {
+            int b = source.get(i);
+            if (b >= 0) {
+                if (b != '\\') {
+                    dest[d++] = (char)b;
+                    i++;
+                    continue;
+                }
+                byte escape = source.get(i + 1);
+                i += 2;
+                switch(escape) {
+                    case 'b':
+                        dest[d++] = '\b';
+                        break;
+                    case 'f':
+                        dest[d++] = '\f';
+                        break;
+                    case 'n':
+                        dest[d++] = '\n';
+                        break;
+                    case 'r':
+                        dest[d++] = '\r';
+                        break;
+                    case 't':
+                        dest[d++] = '\t';
+                        break;
+                    case 'u':
+                        dest[d++] = (char)((hexValue(source.get(i)) << 12) | (hexValue(source.get(i + 1)) << 8)
+                            | (hexValue(source.get(i + 2)) << 4) | hexValue(source.get(i + 3)));
+                        i += 4;
+                        break;
+                    default:
+                        dest[d++] = (char)escape;
+                        break;
+                }
+                continue;
+            }
+            if ((b & 0xE0) == 0xC0 && i + 1 < end) {
+                int b1 = source.get(i + 1);
+                int cp = ((b & 0x1F) << 6) | (b1 & 0x3F);
+                if ((b1 & 0xC0) == 0x80 && cp >= 0x80) {
+                    dest[d++] = (char)cp;
+                    i += 2;
+                    continue;
+                }
+            } else if ((b & 0xF0) == 0xE0 && i + 2 < end) {
+                int b1 = source.get(i + 1);
+                int b2 = source.get(i + 2);
+                int cp = ((b & 0x0F) << 12) | ((b1 & 0x3F) << 6) | (b2 & 0x3F);
+                if ((b1 & 0xC0) == 0x80 && (b2 & 0xC0) == 0x80 && cp >= 0x800 && !Character.isSurrogate((char)cp)) {
+                    dest[d++] = (char)cp;
+                    i += 3;
+                    continue;
+                }
+            } else if ((b & 0xF8) == 0xF0 && i + 3 < end) {
+                int b1 = source.get(i + 1);
+                int b2 = source.get(i + 2);
+                int b3 = source.get(i + 3);
+                int cp = ((b & 0x07) << 18) | ((b1 & 0x3F) << 12) | ((b2 & 0x3F) << 6) | (b3 & 0x3F);
+                if ((b1 & 0xC0) == 0x80 && (b2 & 0xC0) == 0x80 && (b3 & 0xC0) == 0x80
+                        && cp >= Character.MIN_SUPPLEMENTARY_CODE_POINT && cp <= Character.MAX_CODE_POINT) {
+                    dest[d++] = Character.highSurrogate(cp);
+                    dest[d++] = Character.lowSurrogate(cp);
+                    i += 4;
+                    continue;
+                }
+            }
+            dest[d++] = '\uFFFD';
+            i++;
+        }
+        return d;
+    }
+    
+}
@@ -0,0 +1,26 @@
+package atomjson;
+
+/**
+ * A JsonHandler that can have base64 string values decoded straight into a JsonByteSink while they are parsed,
+ * see JsonParser.parse(JsonBinaryHandler). A decoded value is given as a call to handleBinary in place of a
+ * READ_PRIMITIVE event.
+ * @author Justin Bonner
+ */
+public interface JsonBinaryHandler extends JsonHandler {
+    
+    /**
+     * Called when a string value begins, before any of it is decoded.
+     * @param fieldName the fieldName of the string. This is null for array entries
+     * @return the sink to decode the value into, null to be given the value as a usual READ_PRIMITIVE event
+     */
+    public JsonByteSink getBinarySink(String fieldName);
+    
+    /**
+     * Called once a string value has been decoded into the sink returned for it.
+     * @param fieldName the fieldName of the string. This is null for array entries
+     * @param length the number of bytes written to the sink
+     * @return should parsing continue, true if parsing should continue, false for an early stop
+     */
+    public boolean handleBinary(String fieldName, long length);
+    
+}
@@ -0,0 +1,140 @@
+package atomjson;
+
+import atomjson.exceptions.JsonException;
+import java.util.Arrays;
+
+/**
+ * Reads JSON objects into instances of a class and writes them back out, without a handler written by hand.
+ * Every non static, non transient, non final field of the class and its superclasses is bound to the JSON
+ * field of the same name. Fields may be primitives, boxed primitives, Strings, BigIntegers, BigDecimals, enums,
+ * other bound classes, or Collections and Maps with String keys of any of these. Bound classes need a
+ * constructor without parameters, which may be private.
+ * <p>
+ * The fields of a class are found once and kept for every binder of that class: field names are looked
+ * up in a table by their hash without creating Strings for the keys, and fields are set through method handles,
+ * with int, long, double, float and boolean fields set without boxing. Fields missing from the JSON keep the value
+ * the constructor gave them, and JSON fields the class does not have are skipped without being parsed.
+ * A JsonBinder is immutable and can be shared between threads.
+ * @param <T> the bound class
+ * @author Justin Bonner
+ */
+public final class JsonBinder<T> {
+    
+    private final Class<T> type;
+    private final TypeBinding.ContainerBinding binding;
+    
+    private JsonBinder(Class<T> type, TypeBinding.ContainerBinding binding) {
+        this.type = type;
+        this.binding = binding;
+    }
+    
+    /**
+     * Get a binder for a class.
+     * @param <T> the class
+     * @param type the class
+     * @return the binder
+     * @throws JsonException if the class or the type of one of its fields can not be bound
+     */
+    public static <T> JsonBinder<T> of(Class<T> type) {
+        TypeBinding binding = TypeBinding.of(type);
+        if (binding.beginState() != JsonParsingState.BEGIN_OBJECT) {
+            throw new JsonException("Can not bind " + type.getName() + " to a JSON object.");
+        }
+        binding.prepare();
+        return new JsonBinder<>(type, (TypeBinding.ContainerBinding)binding);
+    }
+    
+    /**
+     * Parse a JSON object into a new instance of the bound class.
+     * @param parser the parser to read the JSON from
+     * @return the instance
+     * @throws JsonException if a parsing error occurs or a value does not fit the field it is bound to
+     */
+    public T read(JsonParser parser) {
+        Binder binder = new Binder(parser, binding);
+        parser.parseViews(binder);
+        return type.cast(binder.result);
+    }
+    
+    /**
+     * Write an instance of the bound class as a JSON object.
+     * @param writer the writer
+     * @param value the instance, null to write null
+     */
+    public void write(JsonWriter writer, T value) {
+        binding.write(writer, null, value);
+    }
+    
+    /**
+     * Fills objects from parsing events, keeping a reused Frame for each open object or array.
+     */
+    private static final class Binder implements JsonViewHandler {
+        
+        private final JsonParser parser;
+        private final TypeBinding.ContainerBinding root;
+        private TypeBinding.Frame[] frames;
+        private int depth;
+        private boolean skipping;
+        private Object result;
+        
+        private Binder(JsonParser parser, TypeBinding.ContainerBinding root) {
+            this.parser = parser;
+            this.root = root;
+            this.frames = new TypeBinding.Frame[8];
+            this.depth = 0;
+            this.skipping = false;
+        }
+        
+        @Override
+        public boolean handleJson(JsonParsingState parsingState, CharSequence fieldName, JsonPrimitive value) {
+            switch (parsingState) {
+                case BEGIN_OBJECT:
+                case BEGIN_ARRAY:
+                    TypeBinding binding = depth == 0 ? root : frames[depth - 1].binding.child(frames[depth - 1], fieldName);
+                    if (binding == null) {
+                        parser.skipChildren();
+                        skipping = true;
+                        return true;
+                    }
+                    if (binding.beginState() != parsingState) {
+                        throw new JsonException("Can not read " + (parsingState == JsonParsingState.BEGIN_OBJECT ? "an object" : "an array")
+                            + " as " + binding.type.getTypeName() + ".");
+                    }
+                    if (depth == frames.length) {
+                        frames = Arrays.copyOf(frames, depth * 2);
+                    }
+                    TypeBinding.Frame frame = frames[depth];
+                    if (frame == null) {
+                        frame = frames[depth] = new TypeBinding.Frame();
+                    }
+                    //only objects, collections and maps begin with an object or array
+                    frame.binding = (TypeBinding.ContainerBinding)binding;
+                    frame.container = frame.binding.create();
+                    depth++;
+                    break;
+                case END_OBJECT:
+                case END_ARRAY:
+                    if (skipping) {
+                        skipping = false;
+                        break;
+                    }
+                    frame = frames[--depth];
+                    Object finished = frame.container;
+                    frame.container = null;
+                    frame.slot = null;
+                    if (depth == 0) {
+                        result = finished;
+                    } else {
+                        frames[depth - 1].binding.store(frames[depth - 1], finished);
+                    }
+                    break;
+                case READ_PRIMITIVE:
+                    frames[depth - 1].binding.accept(frames[depth - 1], fieldName, value);
+                    break;
+            }
+            return true;
+        }
+        
+    }
+    
+}
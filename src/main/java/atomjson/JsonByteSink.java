@@ -0,0 +1,81 @@
+package atomjson;
+
+import atomjson.exceptions.JsonException;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.ByteBuffer;
+import java.nio.channels.WritableByteChannel;
+
+/**
+ * Where the decoded bytes of a base64 string value are written, see JsonBinaryHandler.
+ * The sink is not flushed or closed by the parser.
+ * @author Justin Bonner
+ */
+public final class JsonByteSink {
+    
+    private final OutputStream stream;
+    private final ByteBuffer buffer;
+    private final WritableByteChannel channel;
+    private ByteBuffer wrapped;
+    
+    private JsonByteSink(OutputStream stream, ByteBuffer buffer, WritableByteChannel channel) {
+        this.stream = stream;
+        this.buffer = buffer;
+        this.channel = channel;
+    }
+    
+    /**
+     * Create a sink that writes to an OutputStream.
+     * @param stream the stream
+     * @return the sink
+     */
+    public static JsonByteSink of(OutputStream stream) {
+        return new JsonByteSink(stream, null, null);
+    }
+    
+    /**
+     * Create a sink that puts the bytes into a ByteBuffer from its position. Parsing fails with a
+     * JsonException if the bytes do not fit in the remaining space.
+     * @param buffer the buffer
+     * @return the sink
+     */
+    public static JsonByteSink of(ByteBuffer buffer) {
+        return new JsonByteSink(null, buffer, null);
+    }
+    
+    /**
+     * Create a sink that writes to a WritableByteChannel.
+     * @param channel the channel
+     * @return the sink
+     */
+    public static JsonByteSink of(WritableByteChannel channel) {
+        return new JsonByteSink(null, null, channel);
+    }
+    
+    /**
+     * Write bytes to the sink. IOExceptions from the sink are thrown as JsonExceptions.
+     */
+    void write(byte[] bytes, int length) {
+        try {
+            if (stream != null) {
+                stream.write(bytes, 0, length);
+            } else if (buffer != null) {
+                if (buffer.remaining() < length) {
+                    throw new JsonException("Binary value does not fit in the ByteBuffer.");
+                }
+                buffer.put(bytes, 0, length);
+            } else {
+                if (wrapped == null || wrapped.array() != bytes) {
+                    wrapped = ByteBuffer.wrap(bytes);
+                }
+                wrapped.clear().limit(length);
+                while (wrapped.hasRemaining()) {
+                    channel.write(wrapped);
+                }
+            }
+        } catch (IOException e) {
+            throw new JsonException(e);
+        }
+    }
+    
+}
@@ -0,0 +1,440 @@
+package atomjson;
+
+import atomjson.exceptions.JsonException;
+import atomjson.exceptions.JsonSyntaxException;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+
+/**
+ * A JSON document that can be navigated like a tree without building one. A single validating pass
+ * records every value of the document in a flat index of ints that points back into the original
+ * bytes. Field names, strings and numbers are only decoded when they are touched, and each one is
+ * decoded at most once.
+ * <p>
+ * Every value costs 12 bytes of index, and every field of an object 12 more for its name, on top of
+ * the source bytes. Objects and arrays remember where they end, so walking past a nested value
+ * never looks inside it. Looking up a field or an element walks the members before it, except that
+ * the last element found in a few recently used containers is remembered, so going through the elements
+ * of an array in order costs the same for each even while the elements are being looked into.
+ * <p>
+ * The source must not be modified while the document is in use.
+ * @author Justin Bonner
+ */
+public final class JsonDocument {
+    
+    static final int OBJECT = 0;
+    static final int ARRAY = 1;
+    static final int KEY = 2;
+    static final int STRING = 3;
+    static final int NUMBER = 4;
+    static final int TRUE = 5;
+    static final int FALSE = 6;
+    static final int NULL = 7;
+    
+    private static final int KIND_MASK = 0xF;
+    private static final int ESCAPED = 0x10;
+    private static final int ASCII = 0x20;
+    /**
+     * The ints per node: the kind and flags, then the start and end of the text for keys and
+     * primitives, or the number of members and the node after the last descendant for objects and arrays.
+     */
+    private static final int STRIDE = 3;
+    /**
+     * The number of containers whose last found element is remembered.
+     */
+    private static final int ELEMENT_CACHE_SIZE = 8;
+    
+    private final ByteBuffer source;
+    private int[] nodes;
+    private int nodeCount;
+    /**
+     * An open addressing table from the nodes that have been touched, plus one, to their decoded key
+     * String or JsonPrimitive. It only grows with what is touched.
+     */
+    private int[] decodedNodes;
+    private Object[] decoded;
+    private int decodedCount;
+    /**
+     * The last element found in each of the most recently used containers: the container, the index of
+     * the element, the node of its key or, in an array, of the element, and when it was used.
+     */
+    private final int[] lastContainers;
+    private final int[] lastIndices;
+    private final int[] lastMembers;
+    private final int[] lastUses;
+    private int uses;
+    
+    private JsonDocument(ByteBuffer source) {
+        this.source = source;
+        this.nodes = new int[STRIDE * 64];
+        this.lastContainers = new int[ELEMENT_CACHE_SIZE];
+        this.lastIndices = new int[ELEMENT_CACHE_SIZE];
+        this.lastMembers = new int[ELEMENT_CACHE_SIZE];
+        this.lastUses = new int[ELEMENT_CACHE_SIZE];
+        Arrays.fill(lastContainers, -1);
+    }
+    
+    /**
+     * Index the given 'UTF-8' bytes. The array is not copied.
+     * @param json the JSON
+     * @return the document
+     * @throws JsonException if the JSON is not valid
+     */
+    public static JsonDocument parse(byte[] json) {
+        return parse(ByteBuffer.wrap(json));
+    }
+    
+    /**
+     * Index the remaining 'UTF-8' bytes of the given buffer. The bytes are not copied and the
+     * position of the buffer is not changed.
+     * @param json the JSON
+     * @return the document
+     * @throws JsonException if the JSON is not valid
+     */
+    public static JsonDocument parse(ByteBuffer json) {
+        if (json == null) {
+            throw new NullPointerException("ByteBuffer cannot be null.");
+        }
+        JsonDocument document = new JsonDocument(json);
+        ByteTokenizer tokenizer = new ByteTokenizer(json);
+        tokenizer.useStructuralIndex();
+        try {
+            document.build(tokenizer);
+        } catch (IOException e) {
+            throw new JsonException(e);
+        }
+        document.nodes = Arrays.copyOf(document.nodes, document.nodeCount * STRIDE);
+        return document;
+    }
+    
+    /**
+     * Index the given JSON. The String is encoded to 'UTF-8' once and indexed like bytes.
+     * @param json the JSON
+     * @return the document
+     * @throws JsonException if the JSON is not valid
+     */
+    public static JsonDocument parse(String json) {
+        return parse(json.getBytes(StandardCharsets.UTF_8));
+    }
+    
+    /**
+     * Get the root object or array.
+     * @return the root
+     */
+    public JsonValue getRoot() {
+        return new JsonValue(this, 0);
+    }
+    
+    /**
+     * Get the number of values in the document, not counting field names.
+     * @return the value count
+     */
+    public int getValueCount() {
+        int count = 0;
+        for (int node = 0; node < nodeCount; node++) {
+            if (kind(node) != KEY) {
+                count++;
+            }
+        }
+        return count;
+    }
+    
+    private void build(ByteTokenizer tokenizer) throws IOException {
+        int[] open = new int[16];
+        int depth = 0;
+        JsonToken token = tokenizer.parseNextToken();
+        if (token != JsonToken.BEGIN_OBJECT && token != JsonToken.BEGIN_ARRAY) {
+            throw new JsonSyntaxException("Expected Object or Array. Found " + token.name() + ".");
+        }
+        boolean expectValue = true;
+        while (true) {
+            if (expectValue) {
+                int node = addValue(tokenizer, token);
+                if (depth > 0) {
+                    nodes[STRIDE * open[depth - 1] + 1]++;
+                }
+                if (token == JsonToken.BEGIN_OBJECT || token == JsonToken.BEGIN_ARRAY) {
+                    if (depth == open.length) {
+                        open = Arrays.copyOf(open, depth * 2);
+                    }
+                    open[depth++] = node;
+                    token = tokenizer.parseNextToken();
+                    if (token == (kind(node) == OBJECT ? JsonToken.END_OBJECT : JsonToken.END_ARRAY)) {
+                        nodes[STRIDE * node + 2] = nodeCount;
+                        depth--;
+                        expectValue = false;
+                    } else if (kind(node) == OBJECT) {
+                        readKey(tokenizer, token);
+                        token = tokenizer.parseNextToken();
+                    }
+                    continue;
+                }
+                expectValue = false;
+            }
+            if (depth == 0) {
+                token = tokenizer.parseNextToken();
+                if (token != JsonToken.END) {
+                    throw new JsonSyntaxException("Finished parsing json but source is not done. Found " + token.name() + ".");
+                }
+                return;
+            }
+            int container = open[depth - 1];
+            boolean inObject = kind(container) == OBJECT;
+            token = tokenizer.parseNextToken();
+            if (token == JsonToken.COMMA) {
+                token = tokenizer.parseNextToken();
+                if (inObject) {
+                    readKey(tokenizer, token);
+                    token = tokenizer.parseNextToken();
+                }
+                expectValue = true;
+            } else if (token == (inObject ? JsonToken.END_OBJECT : JsonToken.END_ARRAY)) {
+                nodes[STRIDE * container + 2] = nodeCount;
+                depth--;
+            } else {
+                throw new JsonSyntaxException("Expected comma or end " + (inObject ? "object" : "array") + ". Found " + token.name() + ".");
+            }
+        }
+    }
+    
+    /**
+     * Add the key node of a field and consume the colon after it.
+     */
+    private void readKey(ByteTokenizer tokenizer, JsonToken token) throws IOException {
+        if (token != JsonToken.STRING) {
+            throw new JsonSyntaxException("Expected key name in json object. Found " + token.name() + ".");
+        }
+        addNode(KEY | flags(tokenizer), tokenizer.getTokenStart(), tokenizer.getTokenEnd());
+        token = tokenizer.parseNextToken();
+        if (token != JsonToken.COLON) {
+            throw new JsonSyntaxException("Did not find colon after key name. Found " + token.name() + ".");
+        }
+    }
+    
+    /**
+     * Add the node of a value token.
+     * @return the new node
+     */
+    private int addValue(ByteTokenizer tokenizer, JsonToken token) {
+        switch(token) {
+            case BEGIN_OBJECT:
+                return addNode(OBJECT, 0, 0);
+            case BEGIN_ARRAY:
+                return addNode(ARRAY, 0, 0);
+            case STRING:
+                return addNode(STRING | flags(tokenizer), tokenizer.getTokenStart(), tokenizer.getTokenEnd());
+            case NUMBER:
+                return addNode(NUMBER | ASCII, tokenizer.getTokenStart(), tokenizer.getTokenEnd());
+            case BOOLEAN:
+                return addNode("true".equals(tokenizer.readToken()) ? TRUE : FALSE, 0, 0);
+            case NULL:
+                return addNode(NULL, 0, 0);
+            default:
+                throw new JsonSyntaxException("Did not find value token. Found " + token.name() + ".");
+        }
+    }
+    
+    private static int flags(ByteTokenizer tokenizer) {
+        return (tokenizer.isTokenEscaped() ? ESCAPED : 0) | (tokenizer.isTokenAscii() ? ASCII : 0);
+    }
+    
+    private int addNode(int header, int a, int b) {
+        if (STRIDE * (nodeCount + 1) > nodes.length) {
+            nodes = Arrays.copyOf(nodes, nodes.length * 2);
+        }
+        int i = STRIDE * nodeCount;
+        nodes[i] = header;
+        nodes[i + 1] = a;
+        nodes[i + 2] = b;
+        return nodeCount++;
+    }
+    
+    int kind(int node) {
+        return nodes[STRIDE * node] & KIND_MASK;
+    }
+    
+    /**
+     * Get the number of members of an object or array.
+     */
+    int size(int node) {
+        return nodes[STRIDE * node + 1];
+    }
+    
+    /**
+     * Get the node after a value and all of its descendants.
+     */
+    int next(int node) {
+        int kind = kind(node);
+        return kind == OBJECT || kind == ARRAY ? nodes[STRIDE * node + 2] : node + 1;
+    }
+    
+    /**
+     * Find the value of a field of an object.
+     * @return the value node, -1 if the object has no such field
+     */
+    int field(int object, String name) {
+        int end = nodes[STRIDE * object + 2];
+        int node = object + 1;
+        while (node < end) {
+            if (keyEquals(node, name)) {
+                return node + 1;
+            }
+            node = next(node + 1);
+        }
+        return -1;
+    }
+    
+    /**
+     * Find an element of an array or the value of the field at an index of an object.
+     * @return the value node
+     */
+    int element(int container, int index) {
+        if (index < 0 || index >= size(container)) {
+            throw new IndexOutOfBoundsException("index " + index + ", size " + size(container));
+        }
+        boolean object = kind(container) == OBJECT;
+        //use the container's entry, or replace the least recently used one
+        int slot = 0;
+        for (int s = 0; s < ELEMENT_CACHE_SIZE; s++) {
+            if (lastContainers[s] == container) {
+                slot = s;
+                break;
+            }
+            if (lastUses[s] < lastUses[slot]) {
+                slot = s;
+            }
+        }
+        int node = container + 1;
+        int i = 0;
+        if (lastContainers[slot] == container && lastIndices[slot] <= index) {
+            node = lastMembers[slot];
+            i = lastIndices[slot];
+        }
+        for (; i < index; i++) {
+            node = next(object ? node + 1 : node);
+        }
+        lastContainers[slot] = container;
+        lastIndices[slot] = index;
+        lastMembers[slot] = node;
+        lastUses[slot] = ++uses;
+        return object ? node + 1 : node;
+    }
+    
+    /**
+     * Get the field name of the member at an index of an object.
+     */
+    String fieldName(int object, int index) {
+        return key(element(object, index) - 1);
+    }
+    
+    private boolean keyEquals(int key, String name) {
+        int i = STRIDE * key;
+        int start = nodes[i + 1];
+        int end = nodes[i + 2];
+        if ((nodes[i] & (ESCAPED | ASCII)) == ASCII) {
+            if (end - start != name.length()) {
+                return false;
+            }
+            for (int b = start; b < end; b++) {
+                if (source.get(b) != name.charAt(b - start)) {
+                    return false;
+                }
+            }
+            return true;
+        }
+        return key(key).equals(name);
+    }
+    
+    /**
+     * Decode a key node, once.
+     */
+    private String key(int key) {
+        Object cached = cached(key);
+        if (cached == null) {
+            int i = STRIDE * key;
+            cached = new Utf8String(source, nodes[i + 1], nodes[i + 2], (nodes[i] & ESCAPED) != 0, (nodes[i] & ASCII) != 0).toString();
+            cache(key, cached);
+        }
+        return (String)cached;
+    }
+    
+    /**
+     * Get the value of a primitive node, created the first time it is asked for.
+     */
+    JsonPrimitive primitive(int node) {
+        Object cached = cached(node);
+        if (cached == null) {
+            int i = STRIDE * node;
+            switch(kind(node)) {
+                case STRING:
+                    cached = new JsonPrimitive(JsonPrimitiveType.STRING,
+                        new Utf8String(source, nodes[i + 1], nodes[i + 2], (nodes[i] & ESCAPED) != 0, (nodes[i] & ASCII) != 0));
+                    break;
+                case NUMBER:
+                    cached = new JsonPrimitive(JsonPrimitiveType.NUMBER, ByteTokenizer.asciiString(source, nodes[i + 1], nodes[i + 2]));
+                    break;
+                case TRUE:
+                    cached = new JsonPrimitive(JsonPrimitiveType.BOOLEAN, "true");
+                    break;
+                case FALSE:
+                    cached = new JsonPrimitive(JsonPrimitiveType.BOOLEAN, "false");
+                    break;
+                case NULL:
+                    cached = new JsonPrimitive(JsonPrimitiveType.NULL, "null");
+                    break;
+                default:
+                    throw new JsonException("Tried to read an " + (kind(node) == OBJECT ? "object" : "array") + " as a primitive.");
+            }
+            cache(node, cached);
+        }
+        return (JsonPrimitive)cached;
+    }
+    
+    private Object cached(int node) {
+        if (decodedNodes == null) {
+            return null;
+        }
+        int mask = decodedNodes.length - 1;
+        for (int slot = slot(node); decodedNodes[slot] != 0; slot = (slot + 1) & mask) {
+            if (decodedNodes[slot] == node + 1) {
+                return decoded[slot];
+            }
+        }
+        return null;
+    }
+    
+    private void cache(int node, Object value) {
+        if (decodedNodes == null || 2 * (decodedCount + 1) > decodedNodes.length) {
+            int[] oldNodes = decodedNodes;
+            Object[] oldDecoded = decoded;
+            decodedNodes = new int[oldNodes == null ? 16 : oldNodes.length * 2];
+            decoded = new Object[decodedNodes.length];
+            decodedCount = 0;
+            if (oldNodes != null) {
+                for (int i = 0; i < oldNodes.length; i++) {
+                    if (oldNodes[i] != 0) {
+                        cache(oldNodes[i] - 1, oldDecoded[i]);
+                    }
+                }
+            }
+        }
+        int mask = decodedNodes.length - 1;
+        int slot = slot(node);
+        while (decodedNodes[slot] != 0) {
+            slot = (slot + 1) & mask;
+        }
+        decodedNodes[slot] = node + 1;
+        decoded[slot] = value;
+        decodedCount++;
+    }
+    
+    /**
+     * The first slot to look for a node in, from the top bits of its hash so that every bit of the table is used.
+     */
+    private int slot(int node) {
+        return (node * 0x9E3779B9) >>> Integer.numberOfLeadingZeros(decodedNodes.length - 1);
+    }
+    
+}
@@ -0,0 +1,42 @@
+package atomjson;
+
+import atomjson.exceptions.JsonException;
+
+/**
+ * The handler for parsing a source holding a sequence of JSON documents, such as newline delimited JSON
+ * or whitespace separated JSON values. Besides the parsing events of every document, the handler is told
+ * where each document begins and ends.
+ * @author Justin Bonner
+ */
+public interface JsonDocumentHandler extends JsonHandler {
+    
+    /**
+     * Called before the first parsing event of each document.
+     * @param documentIndex the index of the document in the source, starting at 0
+     * @return should parsing continue, true if parsing should continue, false for an early stop
+     */
+    public boolean beginDocument(long documentIndex);
+    
+    /**
+     * Called after the last parsing event of each document that was parsed successfully.
+     * @param documentIndex the index of the document in the source, starting at 0
+     * @return should parsing continue, true if parsing should continue, false for an early stop
+     */
+    public boolean endDocument(long documentIndex);
+    
+    /**
+     * Called instead of endDocument when a document is malformed. The handler may have already been given
+     * some of the parsing events of the document. Parsing fails with the error by default.
+     * If the malformed document should be skipped, return true and parsing continues with
+     * the document after the next newline, so this is best suited to newline delimited JSON.
+     * A JsonException thrown by the handler itself is not a malformed document, it fails parsing.
+     * @param documentIndex the index of the document in the source, starting at 0
+     * @param error what was wrong with the document
+     * @return true to skip the document and continue parsing, false to stop parsing
+     * @throws JsonException to fail parsing
+     */
+    public default boolean malformedDocument(long documentIndex, JsonException error) throws JsonException {
+        throw error;
+    }
+    
+}
@@ -0,0 +1,338 @@
+package atomjson;
+
+import atomjson.exceptions.JsonException;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+
+/**
+ * Parse UTF-8 encoded JSON that arrives in chunks, without blocking for the rest of it. Each chunk
+ * is given to feed, which gives the handler every event that the bytes so far complete and then returns,
+ * and endOfInput is called after the last chunk. A chunk may end anywhere, even in the middle of a string,
+ * number or unicode escape, the unfinished token is kept and continued by the next chunk.
+ * <p>
+ * Only the bytes of events that have not been given to the handler yet are kept, so one thread can
+ * have many documents in flight at once, ie one for each connection of a non blocking server.
+ * skipChildren is not supported when feeding.
+ * @author Justin Bonner
+ */
+public final class JsonFeedParser {
+    
+    private static final int INITIAL_BUFFER_SIZE = 8192;
+    private static final int DEFAULT_MAX_DEPTH = Integer.MAX_VALUE;
+    
+    /**
+     * What the scan of the buffered bytes is in the middle of.
+     */
+    private static final int BETWEEN_TOKENS = 0;
+    private static final int IN_STRING = 1;
+    private static final int IN_ESCAPE = 2;
+    private static final int IN_LITERAL = 3;
+    
+    private final JsonHandler handler;
+    private final ByteTokenizer tokenizer;
+    private final NestingStack parserStack;
+    private final JsonStateMachine stateMachine;
+    private byte[] buffer;
+    private ByteBuffer window;
+    private int count;
+    /**
+     * The scan finds where complete events end, so the state machine only ever reads complete tokens.
+     */
+    private int scanPosition;
+    private int scanState;
+    /**
+     * The end of the last string that was scanned when it is not known yet if it is a key or a value, otherwise -1.
+     */
+    private int stringEnd;
+    /**
+     * The end of the last complete event that was scanned, and the number of scanned events not given to the handler yet.
+     */
+    private int readyLimit;
+    private int readyEvents;
+    private boolean stopped;
+    private boolean ended;
+    private boolean failed;
+    
+    private JsonFeedParser(JsonHandler handler) {
+        this.handler = handler;
+        this.buffer = new byte[INITIAL_BUFFER_SIZE];
+        this.window = ByteBuffer.wrap(buffer);
+        this.tokenizer = new ByteTokenizer(window);
+        this.tokenizer.keyTable = new KeyTable(KeyTable.DEFAULT_SIZE);
+        this.tokenizer.setWindow(window, 0, 0);
+        this.parserStack = new NestingStack(DEFAULT_MAX_DEPTH);
+        this.stateMachine = new JsonStateMachine(tokenizer, parserStack);
+        this.stateMachine.start(false);
+        this.stringEnd = -1;
+    }
+    
+    /**
+     * Create a JsonFeedParser that gives the events of the JSON fed to it to a handler.
+     * @param handler the JsonHandler to be called on parsing events
+     * @return the JsonFeedParser
+     */
+    public static JsonFeedParser getInstance(JsonHandler handler) {
+        return new JsonFeedParser(handler);
+    }
+    
+    /**
+     * Set the deepest nesting of objects and arrays this parser will accept. Parsing fails
+     * with a JsonException as soon as the JSON nests deeper than this.
+     * There is no limit by default.
+     * @param maxDepth the max depth, the root object or array is depth 1
+     */
+    public void setMaxDepth(int maxDepth) {
+        if (maxDepth < 1) {
+            throw new IllegalArgumentException("Max depth must be at least 1.");
+        }
+        parserStack.setMaxDepth(maxDepth);
+    }
+    
+    /**
+     * Get the deepest nesting of objects and arrays this parser will accept.
+     * @return the max depth
+     */
+    public int getMaxDepth() {
+        return parserStack.getMaxDepth();
+    }
+    
+    /**
+     * Parse the next chunk of the JSON.
+     * @param chunk the bytes
+     * @return false if the handler stopped parsing early, in which case the rest of the JSON is not needed
+     * @throws JsonException if the JSON so far is not valid
+     */
+    public boolean feed(byte[] chunk) throws JsonException {
+        return feed(chunk, 0, chunk.length);
+    }
+    
+    /**
+     * Parse the next chunk of the JSON.
+     * @param chunk an array holding the bytes
+     * @param offset the index of the first byte
+     * @param length the number of bytes
+     * @return false if the handler stopped parsing early, in which case the rest of the JSON is not needed
+     * @throws JsonException if the JSON so far is not valid
+     */
+    public boolean feed(byte[] chunk, int offset, int length) throws JsonException {
+        checkOpen();
+        if (stopped) {
+            return false;
+        }
+        reserve(length);
+        System.arraycopy(chunk, offset, buffer, count, length);
+        count += length;
+        scan();
+        return parseReady();
+    }
+    
+    /**
+     * Parse the next chunk of the JSON, the remaining bytes of the buffer. The position of the buffer is moved to its limit.
+     * @param chunk the bytes
+     * @return false if the handler stopped parsing early, in which case the rest of the JSON is not needed
+     * @throws JsonException if the JSON so far is not valid
+     */
+    public boolean feed(ByteBuffer chunk) throws JsonException {
+        checkOpen();
+        if (stopped) {
+            chunk.position(chunk.limit());
+            return false;
+        }
+        int length = chunk.remaining();
+        reserve(length);
+        chunk.get(buffer, count, length);
+        count += length;
+        scan();
+        return parseReady();
+    }
+    
+    /**
+     * Finish parsing once every chunk has been fed.
+     * @throws JsonException if the JSON is not valid or is incomplete
+     */
+    public void endOfInput() throws JsonException {
+        checkOpen();
+        ended = true;
+        if (stopped) {
+            return;
+        }
+        scan();
+        //everything left is complete now, parse until the source is done
+        readyLimit = count;
+        readyEvents = Integer.MAX_VALUE;
+        parseReady();
+    }
+    
+    /**
+     * Determine if parsing is over, either because endOfInput was called or because the handler stopped parsing early.
+     * @return true if parsing is over
+     */
+    public boolean isDone() {
+        return ended || stopped;
+    }
+    
+    private void checkOpen() {
+        if (ended) {
+            throw new IllegalStateException("endOfInput was already called.");
+        }
+        if (failed) {
+            throw new IllegalStateException("Parsing already failed.");
+        }
+    }
+    
+    /**
+     * Make room for more bytes, dropping the bytes of events the handler has been given. The kept bytes
+     * are always moved to a new array since strings given to the handler are decoded from the old one when they are read.
+     */
+    private void reserve(int length) {
+        if (count + length <= buffer.length) {
+            return;
+        }
+        int consumed = tokenizer.getPosition();
+        count -= consumed;
+        scanPosition -= consumed;
+        readyLimit -= consumed;
+        if (stringEnd != -1) {
+            stringEnd -= consumed;
+        }
+        byte[] kept = new byte[Math.max(INITIAL_BUFFER_SIZE, 2 * (count + length))];
+        System.arraycopy(buffer, consumed, kept, 0, count);
+        buffer = kept;
+        window = ByteBuffer.wrap(buffer);
+        tokenizer.setWindow(window, 0, readyLimit);
+    }
+    
+    /**
+     * Find the ends of the events in the bytes that have not been scanned. An event ends with a bracket, a number or literal
+     * once the byte after it is seen, or a string once the next token shows it is not a key.
+     * Nothing is validated here, the state machine does that when it reads the events.
+     */
+    private void scan() {
+        byte[] bytes = buffer;
+        int p = scanPosition;
+        int end = count;
+        while (p < end) {
+            switch (scanState) {
+                case IN_STRING:
+                    while (p < end && bytes[p] != '"' && bytes[p] != '\\') {
+                        p++;
+                    }
+                    if (p < end) {
+                        if (bytes[p] == '\\') {
+                            scanState = IN_ESCAPE;
+                        } else {
+                            scanState = BETWEEN_TOKENS;
+                            stringEnd = p + 1;
+                        }
+                        p++;
+                    }
+                    break;
+                case IN_ESCAPE:
+                    //the hex digits of a unicode escape are scanned as string bytes
+                    scanState = IN_STRING;
+                    p++;
+                    break;
+                case IN_LITERAL:
+                    while (p < end && !endsLiteral(bytes[p])) {
+                        p++;
+                    }
+                    if (p < end) {
+                        scanState = BETWEEN_TOKENS;
+                        ready(p);
+                    }
+                    break;
+                default:
+                    byte b = bytes[p];
+                    if (ByteTokenizer.isWhitespace(b)) {
+                        p++;
+                        break;
+                    }
+                    if (ByteTokenizer.beginsUnicodeWhitespace(b & 0xFF)) {
+                        if (p + 3 > end) {
+                            //wait for the rest of the char
+                            scanPosition = p;
+                            return;
+                        }
+                        if (ByteTokenizer.isUnicodeWhitespace(b & 0xFF, bytes[p + 1] & 0xFF, bytes[p + 2] & 0xFF)) {
+                            p += 3;
+                            break;
+                        }
+                    }
+                    if (stringEnd != -1) {
+                        if (b != ':') {
+                            ready(stringEnd);
+                        }
+                        stringEnd = -1;
+                    }
+                    p++;
+                    switch (b) {
+                        case '"':
+                            scanState = IN_STRING;
+                            break;
+                        case '{':
+                        case '}':
+                        case '[':
+                        case ']':
+                            ready(p);
+                            break;
+                        case ',':
+                        case ':':
+                            break;
+                        default:
+                            scanState = IN_LITERAL;
+                    }
+            }
+        }
+        scanPosition = p;
+    }
+    
+    private static boolean endsLiteral(byte b) {
+        switch (b) {
+            case ',':
+            case ':':
+            case '{':
+            case '}':
+            case '[':
+            case ']':
+            case '"':
+                return true;
+            default:
+                return ByteTokenizer.isWhitespace(b);
+        }
+    }
+    
+    private void ready(int eventEnd) {
+        readyLimit = eventEnd;
+        readyEvents++;
+    }
+    
+    /**
+     * Give the handler the events that have been scanned.
+     * @return false if the handler stopped parsing early
+     */
+    private boolean parseReady() {
+        tokenizer.setWindow(window, readyLimit);
+        try {
+            while (readyEvents > 0) {
+                readyEvents--;
+                JsonParsingState state = stateMachine.next();
+                if (state == null) {
+                    readyEvents = 0;
+                    break;
+                }
+                if (!handler.handleJson(state, (String)stateMachine.getName(), stateMachine.getValue())) {
+                    stopped = true;
+                    return false;
+                }
+            }
+            return true;
+        } catch (IOException e) {
+            failed = true;
+            throw new JsonException(e);
+        } catch (RuntimeException e) {
+            failed = true;
+            throw e;
+        }
+    }
+    
+}
@@ -0,0 +1,91 @@
+package atomjson;
+
+/**
+ * Where a JsonWriter puts its text. Output is gathered in a reusable buffer and only handed to the
+ * sink when the buffer is full or on flush. IOExceptions from the sink are thrown as JsonExceptions.
+ * @author Justin Bonner
+ */
+abstract class JsonOutput {
+    
+    static final int BUFFER_SIZE = 8192;
+    
+    /**
+     * The escape for each ASCII char that can not appear as itself in a JSON string, null for the rest.
+     */
+    static final char[][] ESCAPES = new char[0x80][];
+    private static final char[] HEX_DIGITS = "0123456789ABCDEF".toCharArray();
+    
+    static {
+        for (int c = 0; c < 0x20; c++) {
+            ESCAPES[c] = unicodeEscape((char)c);
+        }
+        ESCAPES['"'] = "\\\"".toCharArray();
+        ESCAPES['\\'] = "\\\\".toCharArray();
+        ESCAPES['\b'] = "\\b".toCharArray();
+        ESCAPES['\f'] = "\\f".toCharArray();
+        ESCAPES['\n'] = "\\n".toCharArray();
+        ESCAPES['\r'] = "\\r".toCharArray();
+        ESCAPES['\t'] = "\\t".toCharArray();
+    }
+    
+    /**
+     * Digits of a long being written, filled from the end.
+     */
+    private final char[] digits = new char[20];
+    
+    /**
+     * Write a char that is known to be ASCII, ie a bracket, comma or colon.
+     */
+    abstract void write(char c);
+    
+    /**
+     * Write text that is known to be ASCII, ie a number or a literal.
+     */
+    abstract void writeAscii(CharSequence text);
+    
+    abstract void writeAscii(char[] chars, int start, int end);
+    
+    /**
+     * Write text as a quoted JSON string, escaping whatever has to be escaped.
+     */
+    abstract void writeString(CharSequence text);
+    
+    /**
+     * Hand everything buffered to the sink and flush the sink.
+     */
+    abstract void flush();
+    
+    /**
+     * Flush and close the sink.
+     */
+    abstract void close();
+    
+    /**
+     * Write the decimal digits of a long without creating a String.
+     */
+    final void writeLong(long value) {
+        if (value == Long.MIN_VALUE) {
+            writeAscii("-9223372036854775808");
+            return;
+        }
+        boolean negative = value < 0;
+        long remaining = negative ? -value : value;
+        int start = digits.length;
+        do {
+            digits[--start] = (char)('0' + remaining % 10);
+            remaining /= 10;
+        } while (remaining != 0);
+        if (negative) {
+            digits[--start] = '-';
+        }
+        writeAscii(digits, start, digits.length);
+    }
+    
+    /**
+     * Create the six char unicode escape of c.
+     */
+    static char[] unicodeEscape(char c) {
+        return new char[]{'\\', 'u', HEX_DIGITS[c >>> 12], HEX_DIGITS[(c >>> 8) & 0xF], HEX_DIGITS[(c >>> 4) & 0xF], HEX_DIGITS[c & 0xF]};
+    }
+    
+}
@@ -0,0 +1,635 @@
+package atomjson;
+
+import atomjson.exceptions.JsonException;
+import atomjson.exceptions.JsonSyntaxException;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.Arrays;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveAction;
+import java.util.function.Consumer;
+import java.util.function.Supplier;
+
+/**
+ * Parse large 'UTF-8' sources on several threads at once. The source is cut into chunks of roughly
+ * the chunk size at newlines, and the chunks are parsed on a ForkJoinPool with a new handler for each
+ * chunk, so handlers are never shared between threads.
+ * @author Justin Bonner
+ */
+public final class JsonParallelParser {
+    
+    private static final int DEFAULT_CHUNK_SIZE = 16 * 1024 * 1024;
+    /**
+     * How many bytes to read at once from a file while looking for the end of a chunk.
+     */
+    private static final int SCAN_BLOCK_SIZE = 64 * 1024;
+    
+    /**
+     * The source when it is in memory, null for files.
+     */
+    private final ByteBuffer buffer;
+    /**
+     * The source when it is a file, null for buffers.
+     */
+    private final Path file;
+    private int chunkSize;
+    private ForkJoinPool pool;
+    
+    private JsonParallelParser(ByteBuffer buffer, Path file) {
+        this.buffer = buffer;
+        this.file = file;
+        this.chunkSize = DEFAULT_CHUNK_SIZE;
+        this.pool = ForkJoinPool.commonPool();
+    }
+    
+    /**
+     * Create a JsonParallelParser that reads from the given 'UTF-8' byte array.
+     * The array should not be modified until parsing is done.
+     * @param jsonByteArray the JSON encoded in a byte array
+     * @return the JsonParallelParser
+     */
+    public static JsonParallelParser getInstance(byte[] jsonByteArray) {
+        return getInstance(ByteBuffer.wrap(jsonByteArray));
+    }
+    
+    /**
+     * Create a JsonParallelParser that reads the remaining bytes of the given 'UTF-8' buffer.
+     * The position of the buffer is not changed. The buffer should not be modified until parsing is done.
+     * @param jsonBuffer the JSON encoded in a byte buffer
+     * @return the JsonParallelParser
+     */
+    public static JsonParallelParser getInstance(ByteBuffer jsonBuffer) {
+        if (jsonBuffer == null) {
+            throw new NullPointerException("ByteBuffer cannot be null.");
+        }
+        return new JsonParallelParser(jsonBuffer.duplicate(), null);
+    }
+    
+    /**
+     * Create a JsonParallelParser that reads the given 'UTF-8' file through memory mappings of each chunk.
+     * The file is opened when parsing begins and should not be modified while it is being parsed.
+     * @param jsonFile the file to parse
+     * @return the JsonParallelParser
+     */
+    public static JsonParallelParser getInstance(Path jsonFile) {
+        if (jsonFile == null) {
+            throw new NullPointerException("Path cannot be null.");
+        }
+        return new JsonParallelParser(null, jsonFile);
+    }
+    
+    /**
+     * Set roughly how many bytes each chunk should hold. Each chunk is extended to the end of the line
+     * it would otherwise end in. The default is 16 MiB.
+     * @param chunkSize the size of a chunk in bytes
+     */
+    public void setChunkSize(int chunkSize) {
+        if (chunkSize < 1) {
+            throw new IllegalArgumentException("Chunk size must be positive.");
+        }
+        this.chunkSize = chunkSize;
+    }
+    
+    /**
+     * Set the pool to parse chunks on. The common pool is used by default.
+     * @param pool the pool
+     */
+    public void setPool(ForkJoinPool pool) {
+        if (pool == null) {
+            throw new NullPointerException("ForkJoinPool cannot be null.");
+        }
+        this.pool = pool;
+    }
+    
+    /**
+     * Parse a sequence of newline delimited JSON documents. Each chunk of lines is parsed with
+     * JsonParser.parseDocuments by a handler created for it, so document indices given to a handler
+     * start at 0 for each chunk, and a handler returning false only stops its own chunk.
+     * Once a chunk is done its handler is given to the merger. When ordered is true the merger is given
+     * the handlers in the order their chunks appear in the source, otherwise as soon as each chunk is done.
+     * The merger is never called by two threads at once, but it may be called from any thread.
+     * @param <H> the type of handler
+     * @param handlerFactory creates the handler for each chunk, called from the threads of the pool
+     * @param merger given each handler once its chunk has been parsed
+     * @param ordered true to give the merger handlers in source order
+     * @throws JsonException if a parsing error occurs in any chunk that its handler does not skip
+     */
+    public <H extends JsonDocumentHandler> void parseDocuments(Supplier<? extends H> handlerFactory, Consumer<? super H> merger,
+            boolean ordered) throws JsonException {
+        try {
+            if (buffer != null) {
+                parseDocuments(new ChunkSource(buffer, null), handlerFactory, merger, ordered);
+            } else {
+                try (FileChannel channel = FileChannel.open(file, StandardOpenOption.READ)) {
+                    parseDocuments(ChunkSource.of(channel), handlerFactory, merger, ordered);
+                }
+            }
+        } catch (IOException e) {
+            throw new JsonException(e);
+        }
+    }
+    
+    private <H extends JsonDocumentHandler> void parseDocuments(ChunkSource source, Supplier<? extends H> handlerFactory,
+            Consumer<? super H> merger, boolean ordered) throws IOException {
+        long[] bounds = source.lineChunks(chunkSize);
+        Merger<H> chunkMerger = new Merger<>(bounds.length - 1, merger, ordered);
+        if (bounds.length > 1) {
+            long[] starts = Arrays.copyOf(bounds, bounds.length - 1);
+            long[] ends = Arrays.copyOfRange(bounds, 1, bounds.length);
+            pool.invoke(new ChunkTask<>(source, starts, ends, null, 0, starts.length, handlerFactory, chunkMerger));
+        }
+    }
+    
+    /**
+     * Parse a source holding one top level array, giving each element of the array to a handler as a document
+     * whose index is the index of the element in the array. The array's own BEGIN_ARRAY and END_ARRAY events are
+     * not given to any handler. The elements are cut into ranges of about the chunk size which are parsed
+     * concurrently, each by a handler created for it. A handler returning false only stops its own range.
+     * <p>
+     * The ranges are found by scanning every chunk in parallel for brackets, quotes, escapes and commas,
+     * once assuming the chunk starts outside a string and once assuming it starts inside one. The chunks
+     * are then walked in order to pick the assumption that holds for each, which gives the depth at the start
+     * of each chunk and so the first comma in it that separates two elements of the array.
+     * Handlers are given to the merger in the same way as parseDocuments.
+     * @param <H> the type of handler
+     * @param handlerFactory creates the handler for each range of elements, called from the threads of the pool
+     * @param merger given each handler once its range has been parsed
+     * @param ordered true to give the merger handlers in source order
+     * @throws JsonException if the source is not a single array or a parsing error occurs
+     */
+    public <H extends JsonDocumentHandler> void parseArray(Supplier<? extends H> handlerFactory, Consumer<? super H> merger,
+            boolean ordered) throws JsonException {
+        try {
+            if (buffer != null) {
+                parseArray(new ChunkSource(buffer, null), handlerFactory, merger, ordered);
+            } else {
+                try (FileChannel channel = FileChannel.open(file, StandardOpenOption.READ)) {
+                    parseArray(ChunkSource.of(channel), handlerFactory, merger, ordered);
+                }
+            }
+        } catch (IOException e) {
+            throw new JsonException(e);
+        }
+    }
+    
+    private <H extends JsonDocumentHandler> void parseArray(ChunkSource source, Supplier<? extends H> handlerFactory,
+            Consumer<? super H> merger, boolean ordered) throws IOException {
+        long open = source.skipWhitespace(source.start);
+        if (open == -1 || source.get(open) != '[') {
+            throw new JsonSyntaxException("Expected the source to hold a top level array.");
+        }
+        long[] bounds = source.fixedChunks(open + 1, chunkSize);
+        int chunks = bounds.length - 1;
+        BracketScan[][] scans = new BracketScan[chunks][2];
+        pool.invoke(new ScanTask(source, bounds, scans, 0, chunks));
+        //every chunk can start at most one range after the first
+        long[] starts = new long[chunks + 1];
+        long[] ends = new long[chunks + 1];
+        long[] firstElements = new long[chunks + 1];
+        int ranges = 0;
+        starts[0] = open + 1;
+        //the state at the start of each chunk, the first chunk starts just inside the array
+        long depth = 1;
+        boolean inString = false;
+        boolean escaped = false;
+        long commas = 0;
+        long close = -1;
+        for (int i = 0; i < chunks && close == -1; i++) {
+            BracketScan scan = escaped ? source.scan(bounds[i], bounds[i + 1], true, true) : scans[i][inString ? 1 : 0];
+            close = scan.firstEnd(-depth);
+            long split = scan.firstComma(1 - depth);
+            if (split != -1 && (close == -1 || split < close)) {
+                ends[ranges++] = split;
+                starts[ranges] = split + 1;
+                firstElements[ranges] = commas + 1;
+            }
+            commas += scan.commaCount(1 - depth);
+            depth += scan.depthChange;
+            inString = scan.endsInString;
+            escaped = scan.endsEscaped;
+        }
+        if (close == -1) {
+            throw new JsonSyntaxException("Early EOF in the top level array.");
+        }
+        if (source.skipWhitespace(close + 1) != -1) {
+            throw new JsonSyntaxException("Finished parsing json but source is not done.");
+        }
+        ends[ranges++] = close;
+        Merger<H> chunkMerger = new Merger<>(ranges, merger, ordered);
+        pool.invoke(new ChunkTask<>(source, Arrays.copyOf(starts, ranges), Arrays.copyOf(ends, ranges),
+                Arrays.copyOf(firstElements, ranges), 0, ranges, handlerFactory, chunkMerger));
+    }
+    
+    /**
+     * The bytes being parsed, either a buffer or a file channel.
+     */
+    private static final class ChunkSource {
+        
+        private final ByteBuffer buffer;
+        private final FileChannel channel;
+        private final long start;
+        private final long end;
+        
+        /**
+         * Files that fit in one mapping are mapped once and then read like a buffer,
+         * larger files have a mapping for each window.
+         */
+        private static ChunkSource of(FileChannel channel) throws IOException {
+            long size = channel.size();
+            if (size <= Integer.MAX_VALUE) {
+                return new ChunkSource(channel.map(FileChannel.MapMode.READ_ONLY, 0, size), null);
+            }
+            return new ChunkSource(null, channel);
+        }
+        
+        private ChunkSource(ByteBuffer buffer, FileChannel channel) throws IOException {
+            this.buffer = buffer;
+            this.channel = channel;
+            this.start = buffer != null ? buffer.position() : 0;
+            this.end = buffer != null ? buffer.limit() : channel.size();
+        }
+        
+        /**
+         * Cut the source into chunks that end just after a newline or at the end of the source.
+         * @return the positions chunk i spans from bounds[i] to bounds[i + 1]
+         */
+        private long[] lineChunks(int chunkSize) throws IOException {
+            long[] bounds = new long[16];
+            int count = 0;
+            long position = start;
+            bounds[count++] = position;
+            while (position < end) {
+                position = lineEnd(Math.min(end, position + chunkSize));
+                if (count == bounds.length) {
+                    bounds = Arrays.copyOf(bounds, count * 2);
+                }
+                bounds[count++] = position;
+            }
+            return Arrays.copyOf(bounds, count);
+        }
+        
+        /**
+         * Find the end of the line that holds the byte before the given position.
+         * @return the position after the newline ending the line, or the end of the source if there is none
+         */
+        private long lineEnd(long position) throws IOException {
+            if (position >= end) {
+                return end;
+            }
+            if (buffer != null) {
+                for (int i = (int)position - 1; i < end; i++) {
+                    if (buffer.get(i) == '\n') {
+                        return i + 1;
+                    }
+                }
+                return end;
+            }
+            ByteBuffer block = ByteBuffer.allocate(SCAN_BLOCK_SIZE);
+            long blockStart = position - 1;
+            while (blockStart < end) {
+                block.clear();
+                int read = channel.read(block, blockStart);
+                if (read <= 0) {
+                    break;
+                }
+                for (int i = 0; i < read; i++) {
+                    if (block.get(i) == '\n') {
+                        return blockStart + i + 1;
+                    }
+                }
+                blockStart += read;
+            }
+            return end;
+        }
+        
+        /**
+         * Cut the source from the given position into chunks of exactly the chunk size, apart from the last.
+         * @return the positions chunk i spans from bounds[i] to bounds[i + 1]
+         */
+        private long[] fixedChunks(long from, int chunkSize) {
+            int count = (int)Math.max(1, (end - from + chunkSize - 1) / chunkSize);
+            long[] bounds = new long[count + 1];
+            for (int i = 0; i < count; i++) {
+                bounds[i] = from + (long)i * chunkSize;
+            }
+            bounds[count] = end;
+            return bounds;
+        }
+        
+        private BracketScan scan(long from, long to, boolean inString, boolean escaped) throws IOException {
+            ByteBuffer window = window(from, to);
+            return new BracketScan(window, from - window.position(), inString, escaped);
+        }
+        
+        /**
+         * Find the first byte at or after the given position that is not whitespace.
+         * @return the position of the byte, -1 if there is none
+         */
+        private long skipWhitespace(long from) throws IOException {
+            for (long blockStart = from; blockStart < end; blockStart += SCAN_BLOCK_SIZE) {
+                ByteBuffer block = window(blockStart, Math.min(end, blockStart + SCAN_BLOCK_SIZE));
+                for (int i = block.position(); i < block.limit(); i++) {
+                    int b = block.get(i) & 0xFF;
+                    if (!ByteTokenizer.isWhitespace(b)) {
+                        long position = blockStart + i - block.position();
+                        if (ByteTokenizer.beginsUnicodeWhitespace(b) && position + 3 <= end
+                                && ByteTokenizer.isUnicodeWhitespace(b, get(position + 1) & 0xFF, get(position + 2) & 0xFF)) {
+                            return skipWhitespace(position + 3);
+                        }
+                        return position;
+                    }
+                }
+            }
+            return -1;
+        }
+        
+        /**
+         * Get the byte at the given position.
+         */
+        private byte get(long position) throws IOException {
+            ByteBuffer window = window(position, position + 1);
+            return window.get(window.position());
+        }
+        
+        /**
+         * Get the bytes between the given positions of the source as a buffer whose remaining bytes are exactly those.
+         */
+        private ByteBuffer window(long from, long to) throws IOException {
+            if (to - from > Integer.MAX_VALUE) {
+                throw new JsonException("A chunk of " + (to - from) + " bytes is too large to parse, a line or array element is longer than 2 GiB.");
+            }
+            if (buffer != null) {
+                ByteBuffer window = buffer.duplicate();
+                window.limit((int)to);
+                window.position((int)from);
+                return window;
+            }
+            return channel.map(FileChannel.MapMode.READ_ONLY, from, to - from);
+        }
+        
+    }
+    
+    /**
+     * Parses a range of chunks, splitting the range in half until it holds a single chunk.
+     */
+    private static final class ChunkTask<H extends JsonDocumentHandler> extends RecursiveAction {
+        
+        private static final long serialVersionUID = 1L;
+        
+        private final ChunkSource source;
+        /**
+         * Chunk i spans from starts[i] to ends[i].
+         */
+        private final long[] starts;
+        private final long[] ends;
+        /**
+         * The index in the array of the first element of each chunk, null if the chunks hold lines of documents.
+         */
+        private final long[] firstElements;
+        private final int fromChunk;
+        private final int toChunk;
+        private final Supplier<? extends H> handlerFactory;
+        private final Merger<H> merger;
+        
+        private ChunkTask(ChunkSource source, long[] starts, long[] ends, long[] firstElements, int fromChunk, int toChunk,
+                Supplier<? extends H> handlerFactory, Merger<H> merger) {
+            this.source = source;
+            this.starts = starts;
+            this.ends = ends;
+            this.firstElements = firstElements;
+            this.fromChunk = fromChunk;
+            this.toChunk = toChunk;
+            this.handlerFactory = handlerFactory;
+            this.merger = merger;
+        }
+        
+        @Override
+        protected void compute() {
+            if (toChunk - fromChunk > 1) {
+                int middle = (fromChunk + toChunk) >>> 1;
+                invokeAll(new ChunkTask<>(source, starts, ends, firstElements, fromChunk, middle, handlerFactory, merger),
+                        new ChunkTask<>(source, starts, ends, firstElements, middle, toChunk, handlerFactory, merger));
+                return;
+            }
+            H handler = handlerFactory.get();
+            try {
+                JsonParser parser = JsonParser.getInstance(source.window(starts[fromChunk], ends[fromChunk]));
+                if (firstElements == null) {
+                    parser.parseDocuments(handler);
+                } else {
+                    parser.parseElements(handler, firstElements[fromChunk], starts.length > 1);
+                }
+            } catch (IOException e) {
+                throw new JsonException(e);
+            }
+            merger.chunkDone(fromChunk, handler);
+        }
+        
+    }
+    
+    /**
+     * Scans a range of chunks for brackets under both assumptions about whether each chunk starts in a string,
+     * splitting the range in half until it holds a single chunk.
+     */
+    private static final class ScanTask extends RecursiveAction {
+        
+        private static final long serialVersionUID = 1L;
+        
+        private final ChunkSource source;
+        private final long[] bounds;
+        private final BracketScan[][] scans;
+        private final int fromChunk;
+        private final int toChunk;
+        
+        private ScanTask(ChunkSource source, long[] bounds, BracketScan[][] scans, int fromChunk, int toChunk) {
+            this.source = source;
+            this.bounds = bounds;
+            this.scans = scans;
+            this.fromChunk = fromChunk;
+            this.toChunk = toChunk;
+        }
+        
+        @Override
+        protected void compute() {
+            if (toChunk - fromChunk > 1) {
+                int middle = (fromChunk + toChunk) >>> 1;
+                invokeAll(new ScanTask(source, bounds, scans, fromChunk, middle), new ScanTask(source, bounds, scans, middle, toChunk));
+                return;
+            }
+            try {
+                scans[fromChunk][0] = source.scan(bounds[fromChunk], bounds[toChunk], false, false);
+                scans[fromChunk][1] = source.scan(bounds[fromChunk], bounds[toChunk], true, false);
+            } catch (IOException e) {
+                throw new JsonException(e);
+            }
+        }
+        
+    }
+    
+    /**
+     * What a chunk holds, found by looking only at brackets, quotes, escapes and commas. Depths are relative
+     * to the depth at the start of the chunk, which is not known while chunks are scanned in parallel.
+     */
+    private static final class BracketScan {
+        
+        private boolean endsInString;
+        private boolean endsEscaped;
+        private int depthChange;
+        private int minDepth;
+        private int maxDepth;
+        /**
+         * The position of the first comma and the number of commas at each depth of 0 or more.
+         */
+        private long[] firstComma;
+        private long[] commaCount;
+        /**
+         * The position of the first comma and the number of commas at each depth d below 0, at index -d - 1.
+         */
+        private long[] firstCommaBelow;
+        private long[] commaCountBelow;
+        /**
+         * The position of the bracket that first brings the depth down to d below 0, at index -d - 1.
+         */
+        private long[] firstEndBelow;
+        
+        /**
+         * Scan the bytes of window from its position to its limit.
+         * @param offset the position in the source of index 0 of the window
+         */
+        private BracketScan(ByteBuffer window, long offset, boolean inString, boolean escaped) {
+            this.firstComma = new long[4];
+            this.commaCount = new long[4];
+            this.firstCommaBelow = new long[4];
+            this.commaCountBelow = new long[4];
+            this.firstEndBelow = new long[4];
+            Arrays.fill(firstComma, -1);
+            Arrays.fill(firstCommaBelow, -1);
+            int depth = 0;
+            int limit = window.limit();
+            for (int i = window.position(); i < limit; i++) {
+                byte b = window.get(i);
+                if (inString) {
+                    if (escaped) {
+                        escaped = false;
+                    } else if (b == '\\') {
+                        escaped = true;
+                    } else if (b == '"') {
+                        inString = false;
+                    }
+                } else if (b == '"') {
+                    inString = true;
+                } else if (b == '{' || b == '[') {
+                    depth++;
+                    if (depth > maxDepth) {
+                        maxDepth = depth;
+                        if (depth == firstComma.length) {
+                            firstComma = grow(firstComma);
+                            commaCount = Arrays.copyOf(commaCount, commaCount.length * 2);
+                        }
+                    }
+                } else if (b == '}' || b == ']') {
+                    depth--;
+                    if (depth < minDepth) {
+                        minDepth = depth;
+                        if (-depth > firstEndBelow.length) {
+                            firstEndBelow = Arrays.copyOf(firstEndBelow, firstEndBelow.length * 2);
+                            firstCommaBelow = grow(firstCommaBelow);
+                            commaCountBelow = Arrays.copyOf(commaCountBelow, commaCountBelow.length * 2);
+                        }
+                        firstEndBelow[-depth - 1] = offset + i;
+                    }
+                } else if (b == ',') {
+                    if (depth >= 0) {
+                        if (firstComma[depth] == -1) {
+                            firstComma[depth] = offset + i;
+                        }
+                        commaCount[depth]++;
+                    } else {
+                        if (firstCommaBelow[-depth - 1] == -1) {
+                            firstCommaBelow[-depth - 1] = offset + i;
+                        }
+                        commaCountBelow[-depth - 1]++;
+                    }
+                }
+            }
+            this.endsInString = inString;
+            this.endsEscaped = escaped;
+            this.depthChange = depth;
+        }
+        
+        private static long[] grow(long[] positions) {
+            long[] grown = Arrays.copyOf(positions, positions.length * 2);
+            Arrays.fill(grown, positions.length, grown.length, -1);
+            return grown;
+        }
+        
+        /**
+         * @return the position of the first comma at the given depth, -1 if there is none
+         */
+        private long firstComma(long depth) {
+            if (depth < minDepth || depth > maxDepth) {
+                return -1;
+            }
+            return depth >= 0 ? firstComma[(int)depth] : firstCommaBelow[(int)-depth - 1];
+        }
+        
+        private long commaCount(long depth) {
+            if (depth < minDepth || depth > maxDepth) {
+                return 0;
+            }
+            return depth >= 0 ? commaCount[(int)depth] : commaCountBelow[(int)-depth - 1];
+        }
+        
+        /**
+         * @return the position of the bracket that first brings the depth down to the given depth below 0, -1 if it is never reached
+         */
+        private long firstEnd(long depth) {
+            if (depth < minDepth) {
+                return -1;
+            }
+            return firstEndBelow[(int)-depth - 1];
+        }
+        
+    }
+    
+    /**
+     * Gives the handlers of finished chunks to the merger, holding them back until every earlier chunk
+     * is done when the order matters.
+     */
+    private static final class Merger<H> {
+        
+        private final Consumer<? super H> merger;
+        private final boolean ordered;
+        /**
+         * The finished handlers that are waiting for an earlier chunk, null when not ordered.
+         */
+        private final Object[] waiting;
+        private int nextChunk;
+        
+        private Merger(int chunks, Consumer<? super H> merger, boolean ordered) {
+            this.merger = merger;
+            this.ordered = ordered;
+            this.waiting = ordered ? new Object[chunks] : null;
+            this.nextChunk = 0;
+        }
+        
+        @SuppressWarnings("unchecked")
+        private synchronized void chunkDone(int chunk, H handler) {
+            if (!ordered) {
+                merger.accept(handler);
+                return;
+            }
+            waiting[chunk] = handler;
+            while (nextChunk < waiting.length && waiting[nextChunk] != null) {
+                H next = (H)waiting[nextChunk];
+                waiting[nextChunk++] = null;
+                merger.accept(next);
+            }
+        }
+        
+    }
+    
+}
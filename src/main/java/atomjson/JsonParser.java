@@ -5,11 +5,14 @@ import atomjson.exceptions.JsonException;
 import atomjson.exceptions.JsonSyntaxException;
 import java.io.ByteArrayInputStream;
 import java.io.IOException;
+import java.io.InputStream;
 import java.io.InputStreamReader;
 import java.io.Reader;
 import java.io.StringReader;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
 import java.nio.charset.Charset;
-import java.util.Stack;
+import java.nio.file.Path;
 
 /**
  * Parse a JSON string as described here: https://www.json.org/json-en.html
@@ -18,18 +21,35 @@ import java.util.Stack;
 public class JsonParser {
     
     private static final Charset DEFAULT_CHARSET = Charset.forName("UTF-8");
+    private static final int DEFAULT_SEGMENT_SIZE = Integer.MAX_VALUE;
+    private static final int DEFAULT_MAX_DEPTH = Integer.MAX_VALUE;
+    private static final int MAX_KEY_CACHE_SIZE = 1 << 20;
+    private static final ByteBuffer EMPTY_BUFFER = ByteBuffer.allocate(0);
+    /**
+     * The length at which a binary value is decoded in pieces as it is read instead of from the whole string.
+     */
+    private static final int BINARY_CHUNK_SIZE = 8192;
     
-    private final Reader jsonSource;
-    //could make the parser stack only store bits instead of pointers to enum objects, would only benefit deeply nested jsons
-    private final Stack<ParserState> parserStack;
+    private JsonTokenizer tokenizer;
+    private final NestingStack parserStack;
+    private JsonStateMachine stateMachine;
+    /**
+     * The event being given to the handler, null when the handler is not being called.
+     */
+    private JsonParsingState handlerState;
+    private boolean skipRequested;
+    /**
+     * Sends long string values to the handler in chunks or decodes them, null unless parsing with a
+     * JsonStringChunkHandler or a JsonBinaryHandler.
+     */
+    private ChunkedValues chunkedValues;
     
     
-    private JsonParser(Reader jsonSource) {
-        if (jsonSource == null) {
-            throw new NullPointerException("Reader cannot be null.");
-        }
-        this.jsonSource = jsonSource;
-        this.parserStack = new Stack<>();
+    private JsonParser(JsonTokenizer tokenizer) {
+        this.tokenizer = tokenizer;
+        this.tokenizer.keyTable = new KeyTable(KeyTable.DEFAULT_SIZE);
+        this.parserStack = new NestingStack(DEFAULT_MAX_DEPTH);
+        this.stateMachine = new JsonStateMachine(tokenizer, parserStack);
     }
     
     /**
@@ -38,7 +58,10 @@ public class JsonParser {
      * @return the JsonParser
      */
     public static JsonParser getInstance(Reader jsonSource) {
-        return new JsonParser(jsonSource);
+        if (jsonSource == null) {
+            throw new NullPointerException("Reader cannot be null.");
+        }
+        return new JsonParser(new ReaderTokenizer(jsonSource));
     }
     
     /**
@@ -48,443 +71,680 @@ public class JsonParser {
      */
     public static JsonParser getInstance(String jsonString) {
         Reader jsonSource = new StringReader(jsonString);
-        return new JsonParser(jsonSource);
+        return getInstance(jsonSource);
     }
     
     /**
      * Create a JsonParser that reads from the given byte array.
+     * UTF-8 byte arrays are tokenized directly without decoding them to chars first.
      * @param jsonByteArray the JSON encoded in a byte array
      * @param charset the Charset of the String in the byte array
      * @return the JsonParser
      */
     public static JsonParser getInstance(byte[] jsonByteArray, Charset charset) {
+        if (DEFAULT_CHARSET.equals(charset)) {
+            return getInstance(jsonByteArray);
+        }
         Reader jsonSource = new InputStreamReader(new ByteArrayInputStream(jsonByteArray), charset);
-        return new JsonParser(jsonSource);
+        return getInstance(jsonSource);
     }
     
     /**
      * Create a JsonParser that reads from the given byte array.
      * Assume the byte array is a 'UTF-8' string.
+     * The bytes are tokenized directly and the contents of string values are only decoded
+     * when they are read from the JsonPrimitive. The array should not be modified until parsing
+     * is done and any JsonPrimitives kept from it have been read.
      * @param jsonByteArray the JSON encoded in a byte array
      * @return the JsonParser
      */
     public static JsonParser getInstance(byte[] jsonByteArray) {
-        Reader jsonSource = new InputStreamReader(new ByteArrayInputStream(jsonByteArray), DEFAULT_CHARSET);
-        return new JsonParser(jsonSource);
+        return getInstance(ByteBuffer.wrap(jsonByteArray));
     }
     
     /**
-     * Parse the JSON.
+     * Create a JsonParser that reads the remaining bytes of the given buffer.
+     * Assume the bytes are a 'UTF-8' string. Heap and direct buffers are both supported.
+     * The bytes are tokenized directly and the contents of string values are only decoded
+     * when they are read from the JsonPrimitive. The position of the buffer is not changed.
+     * The buffer should not be modified until parsing is done and any JsonPrimitives kept
+     * from it have been read.
+     * @param jsonBuffer the JSON encoded in a byte buffer
+     * @return the JsonParser
+     */
+    public static JsonParser getInstance(ByteBuffer jsonBuffer) {
+        if (jsonBuffer == null) {
+            throw new NullPointerException("ByteBuffer cannot be null.");
+        }
+        return new JsonParser(new ByteTokenizer(jsonBuffer));
+    }
+    
+    /**
+     * Create a JsonParser that reads 'UTF-8' JSON from a stream that may be gzip or zlib compressed.
+     * The stream is read and decompressed ahead of the parser by another thread, which hands the parser
+     * blocks of bytes, so reading, decompressing and parsing overlap. Compression is detected from the first bytes.
+     * The stream is closed once it has been read to the end, reading it fails, or parsing is done.
+     * @param jsonStream the stream of the JSON
+     * @return the JsonParser
+     */
+    public static JsonParser getInstance(InputStream jsonStream) {
+        return getInstance(jsonStream, PipelinedTokenizer.DEFAULT_BLOCK_SIZE);
+    }
+    
+    /**
+     * Create a JsonParser that reads 'UTF-8' JSON from a stream that may be gzip or zlib compressed,
+     * handing the parser at most blockSize bytes at a time.
+     * @param jsonStream the stream of the JSON
+     * @param blockSize the most bytes read ahead in one block
+     * @return the JsonParser
+     * @see #getInstance(java.io.InputStream)
+     */
+    public static JsonParser getInstance(InputStream jsonStream, int blockSize) {
+        if (jsonStream == null) {
+            throw new NullPointerException("InputStream cannot be null.");
+        }
+        if (blockSize <= 0) {
+            throw new IllegalArgumentException("Block size must be positive.");
+        }
+        return new JsonParser(PipelinedTokenizer.open(jsonStream, blockSize));
+    }
+    
+    /**
+     * Create a JsonParser that reads the given 'UTF-8' file through a memory mapping.
+     * The file is tokenized straight from the page cache without copying it onto the heap.
+     * Files larger than Integer.MAX_VALUE bytes are mapped in windowed segments.
+     * The file should not be modified while it is being parsed.
+     * @param jsonFile the file to parse
+     * @return the JsonParser
+     * @throws IOException if the file could not be opened or mapped
+     */
+    public static JsonParser getInstance(Path jsonFile) throws IOException {
+        return getInstance(jsonFile, DEFAULT_SEGMENT_SIZE);
+    }
+    
+    /**
+     * Create a JsonParser that reads the given 'UTF-8' file through a memory mapping,
+     * never mapping more than segmentSize bytes of the file at once.
+     * Tokens longer than a segment are still parsed by mapping a larger window for them.
+     * @param jsonFile the file to parse
+     * @param segmentSize the most bytes to map at once
+     * @return the JsonParser
+     * @throws IOException if the file could not be opened or mapped
+     */
+    public static JsonParser getInstance(Path jsonFile, int segmentSize) throws IOException {
+        if (jsonFile == null) {
+            throw new NullPointerException("Path cannot be null.");
+        }
+        if (segmentSize <= 0) {
+            throw new IllegalArgumentException("Segment size must be positive.");
+        }
+        return new JsonParser(MappedFileTokenizer.open(jsonFile, segmentSize));
+    }
+    
+    /**
+     * Create a JsonParser that reads the given 'UTF-8' file channel through a memory mapping.
+     * The channel is read from position 0 to its size when this is called and is not closed by the parser.
+     * Channels larger than Integer.MAX_VALUE bytes are mapped in windowed segments.
+     * @param jsonChannel the channel to parse
+     * @return the JsonParser
+     * @throws IOException if the channel could not be mapped
+     */
+    public static JsonParser getInstance(FileChannel jsonChannel) throws IOException {
+        if (jsonChannel == null) {
+            throw new NullPointerException("FileChannel cannot be null.");
+        }
+        return new JsonParser(MappedFileTokenizer.open(jsonChannel, DEFAULT_SEGMENT_SIZE));
+    }
+    
+    /**
+     * Point this parser at a new source so it can parse again without creating a new parser. The buffers,
+     * nesting stack and key cache are kept when the last source was also a Reader or String, buffers that a huge
+     * document made grow are shrunk. Settings such as the max depth are kept.
+     * @param jsonSource the source of the JSON
+     */
+    public void reset(Reader jsonSource) {
+        if (jsonSource == null) {
+            throw new NullPointerException("Reader cannot be null.");
+        }
+        if (tokenizer.getClass() == ReaderTokenizer.class) {
+            ((ReaderTokenizer)tokenizer).reset(jsonSource);
+            parserStack.shrink();
+        } else {
+            replaceTokenizer(new ReaderTokenizer(jsonSource));
+        }
+    }
+    
+    /**
+     * Point this parser at a new String.
+     * @param jsonString the JSON string to parse
+     * @see #reset(java.io.Reader)
+     */
+    public void reset(String jsonString) {
+        reset(new StringReader(jsonString));
+    }
+    
+    /**
+     * Point this parser at a new 'UTF-8' byte array.
+     * @param jsonByteArray the JSON encoded in a byte array
+     * @see #reset(java.nio.ByteBuffer)
+     */
+    public void reset(byte[] jsonByteArray) {
+        reset(ByteBuffer.wrap(jsonByteArray));
+    }
+    
+    /**
+     * Point this parser at the remaining bytes of a new 'UTF-8' buffer so it can parse again without creating
+     * a new parser. The buffers, nesting stack and key cache are kept when the last source was also a byte array
+     * or ByteBuffer, buffers that a huge document made grow are shrunk. Settings such as the max depth are kept.
+     * @param jsonBuffer the JSON encoded in a byte buffer
+     */
+    public void reset(ByteBuffer jsonBuffer) {
+        if (jsonBuffer == null) {
+            throw new NullPointerException("ByteBuffer cannot be null.");
+        }
+        if (tokenizer.getClass() == ByteTokenizer.class) {
+            ((ByteTokenizer)tokenizer).reset(jsonBuffer);
+            parserStack.shrink();
+        } else {
+            replaceTokenizer(new ByteTokenizer(jsonBuffer));
+        }
+    }
+    
+    /**
+     * Switch to a tokenizer for a different kind of source, keeping the key cache and settings.
+     */
+    private void replaceTokenizer(JsonTokenizer replacement) {
+        tokenizer.release();
+        replacement.keyTable = tokenizer.keyTable;
+        replacement.strictSurrogates = tokenizer.strictSurrogates;
+        tokenizer = replacement;
+        stateMachine = new JsonStateMachine(replacement, parserStack);
+        parserStack.shrink();
+    }
+    
+    /**
+     * Let go of the source and restore the default settings, keeping the buffers and key cache.
+     * Used when a parser is returned to a JsonParserPool.
+     */
+    void detach() {
+        if (tokenizer.getClass() == ReaderTokenizer.class) {
+            ((ReaderTokenizer)tokenizer).reset(null);
+        } else if (tokenizer.getClass() == ByteTokenizer.class) {
+            ((ByteTokenizer)tokenizer).reset(EMPTY_BUFFER);
+        } else {
+            replaceTokenizer(new ByteTokenizer(EMPTY_BUFFER));
+        }
+        parserStack.shrink();
+        parserStack.setMaxDepth(DEFAULT_MAX_DEPTH);
+        tokenizer.strictSurrogates = false;
+        if (getKeyCacheSize() != KeyTable.DEFAULT_SIZE) {
+            tokenizer.keyTable = new KeyTable(KeyTable.DEFAULT_SIZE);
+        }
+    }
+    
+    /**
+     * Set the deepest nesting of objects and arrays this parser will accept. Parsing fails
+     * with a JsonException as soon as the JSON nests deeper than this.
+     * There is no limit by default.
+     * @param maxDepth the max depth, the root object or array is depth 1
+     */
+    public void setMaxDepth(int maxDepth) {
+        if (maxDepth < 1) {
+            throw new IllegalArgumentException("Max depth must be at least 1.");
+        }
+        parserStack.setMaxDepth(maxDepth);
+    }
+    
+    /**
+     * Get the deepest nesting of objects and arrays this parser will accept.
+     * @return the max depth
+     */
+    public int getMaxDepth() {
+        return parserStack.getMaxDepth();
+    }
+    
+    /**
+     * Set how many distinct field names this parser remembers. Field names that are remembered
+     * are given to the JsonHandler as the same String every time they are repeated, so they
+     * are not allocated again and can be compared by reference. When the cache is full the
+     * least recently used field names are forgotten.
+     * The default size is 1024, the size is rounded up to a power of two.
+     * @param size the number of field names to remember, 0 to create a new String for every field name
+     */
+    public void setKeyCacheSize(int size) {
+        if (size < 0 || size > MAX_KEY_CACHE_SIZE) {
+            throw new IllegalArgumentException("Key cache size must be between 0 and " + MAX_KEY_CACHE_SIZE + ".");
+        }
+        tokenizer.keyTable = size == 0 ? null : new KeyTable(size);
+    }
+    
+    /**
+     * Get the number of field name slots in the key cache.
+     * @return the number of field names that can be remembered, 0 if the cache is disabled
+     */
+    public int getKeyCacheSize() {
+        return tokenizer.keyTable == null ? 0 : tokenizer.keyTable.size();
+    }
+    
+    /**
+     * Get the number of field names that were found in the key cache since it was created.
+     * @return the number of cache hits
+     */
+    public long getKeyCacheHits() {
+        return tokenizer.keyTable == null ? 0 : tokenizer.keyTable.getHits();
+    }
+    
+    /**
+     * Get the number of field names that were not found in the key cache since it was created.
+     * @return the number of cache misses
+     */
+    public long getKeyCacheMisses() {
+        return tokenizer.keyTable == null ? 0 : tokenizer.keyTable.getMisses();
+    }
+    
+    /**
+     * Build an index of where every token starts in the rest of the input, 64 bytes at a time, and use it to
+     * jump over whitespace and over the children skipped by skipChildren. The index is built in small batches
+     * as parsing reaches them. Only byte arrays, ByteBuffers and files that fit in one mapping can be indexed.
+     * Call this before parsing or between events.
+     * @return true if the input is indexed, false if this source can not be indexed
+     */
+    public boolean useStructuralIndex() {
+        return tokenizer instanceof ByteTokenizer && ((ByteTokenizer)tokenizer).useStructuralIndex();
+    }
+    
+    /**
+     * Set whether unicode escapes of surrogates must come in pairs. When strict, an escaped high surrogate must be
+     * followed directly by an escaped low surrogate, like "\\uD83D\\uDE00", and a lone escaped surrogate is a syntax error.
+     * By default lone surrogates are passed through as they are, which JSON allows.
+     * @param strict true to reject unpaired surrogate escapes
+     */
+    public void setStrictSurrogates(boolean strict) {
+        tokenizer.strictSurrogates = strict;
+    }
+    
+    /**
+     * @return true if unpaired surrogate escapes are rejected
+     */
+    public boolean isStrictSurrogates() {
+        return tokenizer.strictSurrogates;
+    }
+    
+    /**
+     * Parse the JSON. Parsing stops early without reading the rest of the source
+     * as soon as the handler returns false.
      * @param handler the JsonHandler to be called on parsing events
      * @throws JsonException if a parsing error occurs
      */
     public void parse(JsonHandler handler) throws JsonException {
-        JsonTokenizer tokenizer = new JsonTokenizer(new JsonReader(jsonSource));
         try {
-            parse(handler, tokenizer);
+            parse((parsingState, fieldName, value) -> handler.handleJson(parsingState, (String)fieldName, value), false);
         } catch (IOException e) {
             throw new JsonException(e);
         }
     }
     
-    private void parse(JsonHandler handler, JsonTokenizer tokenizer) throws JsonException, IOException {
-        JsonToken token = tokenizer.parseNextToken();
-        if (token == JsonToken.BEGIN_OBJECT) {
-            parserStack.push(ParserState.JSON_OBJECT);
-            handler.handleJson(JsonParsingState.BEGIN_OBJECT, null, null);
-        } else if (token == JsonToken.BEGIN_ARRAY) {
-            parserStack.push(ParserState.JSON_ARRAY);
-            handler.handleJson(JsonParsingState.BEGIN_ARRAY, null, null);
-        } else {
-            throw new JsonSyntaxException("Expected Object or Array. Found " + token.name() + ".");
-        }
-        boolean keepParsing = true;
-        boolean justEntered = true;
-        while(!parserStack.isEmpty() && keepParsing) {
-            ParserState currState = parserStack.peek();
-            if (currState == ParserState.JSON_OBJECT) {
-                token = tokenizer.parseNextToken();
-                if (token == JsonToken.END_OBJECT) {
-                    parserStack.pop();
-                    handler.handleJson(JsonParsingState.END_OBJECT, null, null);
-                    justEntered = false;
-                    continue;
-                } else if (!justEntered && token == JsonToken.COMMA) {
-                    token = tokenizer.parseNextToken();
-                } else if (!justEntered && token != JsonToken.COMMA) {
-                    throw new JsonSyntaxException("Expected comma or end object. Found " + token.name() + ".");
-                }
-                justEntered = false;
-                if (token != JsonToken.STRING) {
-                    throw new JsonSyntaxException("Expected key name in json object. Found " + token.name() + ".");
-                }
-                String name = tokenizer.readToken();
-                token = tokenizer.parseNextToken();
-                if (token != JsonToken.COLON) {
-                    throw new JsonSyntaxException("Did not find colon after key name. Found " + token.name() + ".");
-                }
-                token = tokenizer.parseNextToken();
-                JsonPrimitive value = null;
-                JsonParsingState handlerState;
-                switch(token) {
-                    case STRING:
-                        value = new JsonPrimitive(JsonPrimitiveType.STRING, tokenizer.readToken());
-                        handlerState = JsonParsingState.READ_PRIMITIVE;
-                        break;
-                    case NUMBER:
-                        value = new JsonPrimitive(JsonPrimitiveType.NUMBER, tokenizer.readToken());
-                        handlerState = JsonParsingState.READ_PRIMITIVE;
-                        break;
-                    case BOOLEAN:
-                        value = new JsonPrimitive(JsonPrimitiveType.BOOLEAN, tokenizer.readToken());
-                        handlerState = JsonParsingState.READ_PRIMITIVE;
-                        break;
-                    case NULL:
-                        value = new JsonPrimitive(JsonPrimitiveType.NULL, "null");
-                        handlerState = JsonParsingState.READ_PRIMITIVE;
-                        break;
-                    case BEGIN_OBJECT:
-                        handlerState = JsonParsingState.BEGIN_OBJECT;
-                        parserStack.push(ParserState.JSON_OBJECT);
-                        justEntered = true;
-                        break;
-                    case BEGIN_ARRAY:
-                        handlerState = JsonParsingState.BEGIN_ARRAY;
-                        parserStack.push(ParserState.JSON_ARRAY);
-                        justEntered = true;
-                        break;
-                    default:
-                        throw new JsonSyntaxException("Did not find value token after key. Found " + token.name() + ".");
-                }
-                keepParsing = handler.handleJson(handlerState, name, value);
-            } else if (currState == ParserState.JSON_ARRAY) {
-                token = tokenizer.parseNextToken();
-                if (token == JsonToken.END_ARRAY) {
-                    parserStack.pop();
-                    handler.handleJson(JsonParsingState.END_ARRAY, null, null);
-                    justEntered = false;
-                    continue;
-                } else if (!justEntered && token == JsonToken.COMMA) {
-                    token = tokenizer.parseNextToken();
-                } else if (!justEntered && token != JsonToken.COMMA) {
-                    throw new JsonSyntaxException("Expected comma or end array. Found " + token.name() + ".");
-                }
-                justEntered = false;
-                JsonPrimitive value = null;
-                JsonParsingState handlerState;
-                switch(token) {
-                    case STRING:
-                        value = new JsonPrimitive(JsonPrimitiveType.STRING, tokenizer.readToken());
-                        handlerState = JsonParsingState.READ_PRIMITIVE;
-                        break;
-                    case NUMBER:
-                        value = new JsonPrimitive(JsonPrimitiveType.NUMBER, tokenizer.readToken());
-                        handlerState = JsonParsingState.READ_PRIMITIVE;
-                        break;
-                    case BOOLEAN:
-                        value = new JsonPrimitive(JsonPrimitiveType.BOOLEAN, tokenizer.readToken());
-                        handlerState = JsonParsingState.READ_PRIMITIVE;
-                        break;
-                    case NULL:
-                        value = new JsonPrimitive(JsonPrimitiveType.NULL, "null");
-                        handlerState = JsonParsingState.READ_PRIMITIVE;
-                        break;
-                    case BEGIN_OBJECT:
-                        handlerState = JsonParsingState.BEGIN_OBJECT;
-                        parserStack.push(ParserState.JSON_OBJECT);
-                        justEntered = true;
-                        break;
-                    case BEGIN_ARRAY:
-                        handlerState = JsonParsingState.BEGIN_ARRAY;
-                        parserStack.push(ParserState.JSON_ARRAY);
-                        justEntered = true;
-                        break;
-                    default:
-                        throw new JsonSyntaxException("Did not find value token in array. Found " + token.name());
+    /**
+     * Parse the JSON, giving string values of at least chunkThreshold chars to the handler in chunks instead of
+     * as one READ_PRIMITIVE event, so a huge value is never held in memory whole. Such a value is given as a call to
+     * beginString, calls to handleStringChunk with chunks of about chunkThreshold chars, and a call to endString.
+     * Chunks are views that are only valid during the call. For byte sources the threshold is compared to the
+     * UTF-8 length of the value. Field names and shorter values are given as usual.
+     * @param handler the JsonStringChunkHandler to be called on parsing events and string chunks
+     * @param chunkThreshold the length at which a string value is given in chunks
+     * @throws JsonException if a parsing error occurs
+     */
+    public void parse(JsonStringChunkHandler handler, int chunkThreshold) throws JsonException {
+        if (chunkThreshold < 1) {
+            throw new IllegalArgumentException("Chunk threshold must be positive.");
+        }
+        parseChunked(handler, new ChunkedStrings(handler), chunkThreshold);
+    }
+    
+    /**
+     * Parse the JSON, letting the handler have any string value base64 decoded straight into a JsonByteSink instead
+     * of being given it as a String. The handler is asked for a sink when each string value begins, and a value that
+     * is given a sink is reported with a call to handleBinary in place of a READ_PRIMITIVE event. Long values are
+     * decoded in pieces while they are read, so neither the string nor the whole decoded value is ever held in memory.
+     * @param handler the JsonBinaryHandler to be called on parsing events and binary values
+     * @throws JsonException if a parsing error occurs, a value given a sink is not valid base64, or the sink fails
+     */
+    public void parse(JsonBinaryHandler handler) throws JsonException {
+        parseChunked(handler, new BinaryValues(handler), BINARY_CHUNK_SIZE);
+    }
+    
+    private void parseChunked(JsonHandler handler, ChunkedValues values, int chunkThreshold) throws JsonException {
+        chunkedValues = values;
+        stateMachine.setStringChunks(values, chunkThreshold);
+        try {
+            parse((parsingState, fieldName, value) -> handler.handleJson(parsingState, (String)fieldName, value), false);
+        } catch (IOException e) {
+            throw new JsonException(e);
+        } finally {
+            stateMachine.setStringChunks(null, 0);
+            chunkedValues = null;
+        }
+    }
+    
+    /**
+     * Parse the JSON, delivering keys and values through views that the parser reuses for every event.
+     * No Strings or JsonPrimitives are created for keys and values unless the handler asks for them,
+     * so the handler must copy anything it keeps after it returns.
+     * @param handler the JsonViewHandler to be called on parsing events
+     * @throws JsonException if a parsing error occurs
+     */
+    public void parseViews(JsonViewHandler handler) throws JsonException {
+        try {
+            parse(handler, true);
+        } catch (IOException e) {
+            throw new JsonException(e);
+        }
+    }
+    
+    /**
+     * Parse a source holding a sequence of JSON documents, such as newline delimited JSON or JSON values
+     * separated by whitespace. Unlike parse, any JSON value may be a document and the source may hold
+     * any number of them. The handler is given the events of every document in order, surrounded by
+     * calls to beginDocument and endDocument, and the parser's buffers are reused for all of them.
+     * Parsing stops early without reading the rest of the source as soon as the handler returns false.
+     * @param handler the JsonDocumentHandler to be called on parsing events
+     * @throws JsonException if a parsing error occurs that the handler does not skip
+     */
+    public void parseDocuments(JsonDocumentHandler handler) throws JsonException {
+        stateMachine.start(false);
+        try {
+            parseSequence(handler, 0, true, false);
+        } finally {
+            tokenizer.release();
+        }
+    }
+    
+    /**
+     * Parse the comma separated elements of an array, without the brackets around them, giving each
+     * element to the handler as a document. Used to parse part of an array.
+     * @param handler the JsonDocumentHandler to be called on parsing events
+     * @param firstElementIndex the index in the array of the first element
+     * @param requireElement true if there must be at least one element, as there is between two commas
+     * @throws JsonException if a parsing error occurs
+     */
+    void parseElements(JsonDocumentHandler handler, long firstElementIndex, boolean requireElement) throws JsonException {
+        stateMachine.startElements(false);
+        parseSequence(handler, firstElementIndex, false, requireElement);
+    }
+    
+    /**
+     * @param recover true to let the handler skip malformed documents
+     * @param requireDocument true to fail if there are no documents
+     */
+    private void parseSequence(JsonDocumentHandler handler, long firstIndex, boolean recover, boolean requireDocument) throws JsonException {
+        JsonViewHandler events = (parsingState, fieldName, value) -> {
+            try {
+                return handler.handleJson(parsingState, (String)fieldName, value);
+            } catch (JsonException e) {
+                throw new HandlerFailure(e);
+            }
+        };
+        try {
+            long documentIndex = firstIndex;
+            while (true) {
+                stateMachine.nextDocument();
+                JsonParsingState state;
+                try {
+                    state = stateMachine.next();
+                    if (state == null) {
+                        if (requireDocument && documentIndex == firstIndex) {
+                            throw new JsonSyntaxException("Did not find value token in array. Found " + JsonToken.END.name() + ".");
+                        }
+                        return;
+                    }
+                    if (!beginDocument(handler, documentIndex)) {
+                        return;
+                    }
+                    if (!parseEvents(events, state) || !endDocument(handler, documentIndex)) {
+                        return;
+                    }
+                } catch (JsonException e) {
+                    if (!recover) {
+                        throw e;
+                    }
+                    if (!handler.malformedDocument(documentIndex, e)) {
+                        return;
+                    }
+                    stateMachine.recover();
                 }
-                keepParsing = handler.handleJson(handlerState, null, value);
-            } else {
-                throw new RuntimeException("Invalid parser state: " + currState);
+                documentIndex++;
             }
+        } catch (HandlerFailure e) {
+            throw e.error;
+        } catch (IOException e) {
+            throw new JsonException(e);
+        }
+    }
+    
+    private static boolean beginDocument(JsonDocumentHandler handler, long documentIndex) {
+        try {
+            return handler.beginDocument(documentIndex);
+        } catch (JsonException e) {
+            throw new HandlerFailure(e);
         }
-        token = tokenizer.parseNextToken();
-        if (token != JsonToken.END) {
-            throw new JsonSyntaxException("Finished parsing json but source is not done. Found " + token.name() + ".");
+    }
+    
+    private static boolean endDocument(JsonDocumentHandler handler, long documentIndex) {
+        try {
+            return handler.endDocument(documentIndex);
+        } catch (JsonException e) {
+            throw new HandlerFailure(e);
         }
     }
     
-    private static class JsonTokenizer {
+    /**
+     * Carries a JsonException thrown by the handler of a document sequence past the recovery from malformed
+     * documents, which is only for errors in the source.
+     */
+    private static final class HandlerFailure extends RuntimeException {
         
-        private final JsonReader reader;
-        private final StringBuilder buffer;
-        private boolean tokenReady;
+        private static final long serialVersionUID = 1L;
         
+        private final JsonException error;
         
-        JsonTokenizer(JsonReader reader) {
-            this.reader = reader;
-            this.buffer = new StringBuilder();
-            this.tokenReady = false;
+        private HandlerFailure(JsonException error) {
+            super(error);
+            this.error = error;
         }
         
-        public JsonToken calcNextToken() throws IOException {
-            clearBuffer();
-            tokenReady = true;
-            int val = reader.read();
-            if (val == -1) {
-                return JsonToken.END;
-            }
-            char currChar = (char)val;
-            switch(currChar) {
-                case '{':
-                    return JsonToken.BEGIN_OBJECT;
-                case '}':
-                    return JsonToken.END_OBJECT;
-                case '[':
-                    return JsonToken.BEGIN_ARRAY;
-                case ']':
-                    return JsonToken.END_ARRAY;
-                case '"':
-                    reader.finishString(buffer);
-                    return JsonToken.STRING;
-                case ',':
-                    return JsonToken.COMMA;
-                case ':':
-                    return JsonToken.COLON;
-                case 'n':
-                    verify('n', "null");
-                    return JsonToken.NULL;
-                case 't':
-                    verify('t', "true");
-                    return JsonToken.BOOLEAN;
-                case 'f':
-                    verify('f', "false");
-                    return JsonToken.BOOLEAN;
-            }
-            if (currChar == '+' || currChar == '-' || Character.isDigit(currChar)) { //number
-                buffer.append(currChar);
-                reader.primitiveRead(buffer);
-                String num = buffer.toString();
-                if(!JsonPrimitiveType.NUMBER.idRegex.matcher(num).matches()) { //TODO maybe do something better than a toString and a regex match
-                    throw new JsonSyntaxException("'" + num + "' was not a number as expected.");
-                }
-                return JsonToken.NUMBER;
-            }
-            throw new JsonSyntaxException("Could not tokenize '" + currChar + "'.");
+    }
+    
+    /**
+     * Skip everything in the object or array that the handler is being told began. This may only be called
+     * by a handler during a BEGIN_OBJECT or BEGIN_ARRAY event. Once the handler returns, the object or array
+     * is skipped with a raw scan that only looks at quotes, escapes and brackets, so no events are given
+     * to the handler for it, nothing is created for it, and it is not validated. The handler is then given
+     * the matching END_OBJECT or END_ARRAY event as usual.
+     * @throws IllegalStateException if the handler is not being called for a BEGIN_OBJECT or BEGIN_ARRAY event
+     */
+    public void skipChildren() {
+        if (handlerState != JsonParsingState.BEGIN_OBJECT && handlerState != JsonParsingState.BEGIN_ARRAY) {
+            throw new IllegalStateException("Can only skip children during a BEGIN_OBJECT or BEGIN_ARRAY event.");
         }
-        
-        public JsonToken parseNextToken() throws IOException {
-            JsonToken token = calcNextToken();
-            //System.out.println(token.name());
-            return token;
+        skipRequested = true;
+    }
+    
+    /**
+     * Read the JSON by pulling one event at a time from a JsonPullParser instead of having events pushed
+     * to a handler. The pull parser shares this parser's source and settings, this parser should not
+     * be used to parse again afterwards. Close the pull parser if it is not read to the end.
+     * @return a JsonPullParser positioned before the first event
+     */
+    public JsonPullParser pull() {
+        stateMachine.start(false);
+        return new JsonPullParser(stateMachine, tokenizer);
+    }
+    
+    /**
+     * @param views true to reuse the views for keys and values, false to create a String and JsonPrimitive
+     * for each, in which case the handler is given Strings as field names
+     */
+    private void parse(JsonViewHandler handler, boolean views) throws JsonException, IOException {
+        stateMachine.start(views);
+        try {
+            parseEvents(handler, stateMachine.next());
+        } finally {
+            tokenizer.release();
         }
-        
-        private void verify(char start, String expected) throws IOException {
-            buffer.append(start);
-            for (int i = 1; i < expected.length(); i++) {
-                char exp = expected.charAt(i);
-                char found = reader.reqRead();
-                buffer.append(found);
-                if (exp != found) {
-                    throw new JsonSyntaxException("Expected to read '" + expected + "' but read '" + buffer.toString() + "'.");
+    }
+    
+    /**
+     * Give the handler events until the root value ends or the handler stops parsing.
+     * @param state the first event
+     * @return false if the handler stopped parsing early
+     */
+    private boolean parseEvents(JsonViewHandler handler, JsonParsingState state) throws JsonException, IOException {
+        try {
+            while (state != null) {
+                if (chunkedValues != null && state == JsonParsingState.READ_PRIMITIVE && chunkedValues.handled(stateMachine.getValue())) {
+                    //a chunked or decoded string, which the handler has already been given
+                    if (chunkedValues.stopped) {
+                        return false;
+                    }
+                    state = stateMachine.next();
+                    continue;
                 }
+                handlerState = state;
+                skipRequested = false;
+                if (!handler.handleJson(state, stateMachine.getName(), stateMachine.getValue())) {
+                    return false;
+                }
+                handlerState = null;
+                state = skipRequested ? stateMachine.skipChildren() : stateMachine.next();
             }
+            return true;
+        } finally {
+            handlerState = null;
         }
+    }
+    
+    /**
+     * Takes the chunks of long string values. Once the handler stops parsing the rest of the chunks
+     * of the string are dropped and parsing stops after it.
+     */
+    private abstract static class ChunkedValues implements JsonStateMachine.StringChunks {
         
-        public String readToken() {
-            if (!tokenReady) {
-                throw new IllegalStateException("Tried to read a token when not ready.");
-            }
-            String token = buffer.toString();
-            clearBuffer();
-            tokenReady = false;
-            return token;
-        }
-        
-        public void skipToken() {
-            if (!tokenReady) {
-                throw new IllegalStateException("Tried to read a token when not ready.");
-            }
-            clearBuffer();
-            tokenReady = false;
-        }
+        boolean stopped;
         
-        private void clearBuffer() {
-            if (buffer.length() != 0) {
-                buffer.setLength(0);
-                //possibly buffer = new StringBuilder() if the capacity has gotten super large
-            }
+        /**
+         * Determine if a READ_PRIMITIVE event has already been given to the handler, ie a string that was chunked.
+         * @param value the value of the event, null for a chunked string
+         */
+        boolean handled(JsonPrimitive value) {
+            return value == null;
         }
         
     }
     
-    private static class JsonReader {
+    /**
+     * Gives the chunks of long string values to a JsonStringChunkHandler.
+     */
+    private final class ChunkedStrings extends ChunkedValues {
         
-        private final Reader reader;
-        private boolean inString;
-        private boolean isEscaped;
-        private boolean skipWhitespace;
-        private boolean hasBufferedChar;
-        private char bufferedChar;
+        private final JsonStringChunkHandler handler;
+        private boolean begun;
         
-        private JsonReader(Reader source) {
-            this.reader = source;
-            this.inString = false;
-            this.isEscaped = false;
-            this.skipWhitespace = true;
-            this.hasBufferedChar = false;
-            this.bufferedChar = 0;
+        private ChunkedStrings(JsonStringChunkHandler handler) {
+            this.handler = handler;
         }
         
-        public void finishString(StringBuilder dest) throws IOException {
-            if (!inString) {
-                throw new IllegalStateException("JsonReader is not reading a string.");
+        @Override
+        public void chunk(CharSequence text) {
+            if (!begun) {
+                begun = true;
+                stopped = !handler.beginString((String)stateMachine.getName());
             }
-            while(inString) {
-                dest.append(reqRead());
+            if (!stopped) {
+                stopped = !handler.handleStringChunk(text);
             }
-            dest.deleteCharAt(dest.length() - 1); //remove trailing '"'
         }
         
-        public void primitiveRead(StringBuilder dest) throws IOException {
-            if (inString) {
-                throw new IllegalStateException("JsonReader is reading a string during a whitespace terminated read.");
+        @Override
+        public void end(CharSequence text) {
+            if (text.length() > 0 || !begun) {
+                chunk(text);
             }
-            this.skipWhitespace = false;
-            char c;
-            while(!Character.isWhitespace((c = reqRead())) && c != ',' && c != '}' && c != ']') {
-                dest.append(c);
+            begun = false;
+            if (!stopped) {
+                stopped = !handler.endString();
             }
-            if (!Character.isWhitespace(c)) {
-                this.bufferedChar = c; //put back commas or closing brakets
-                this.hasBufferedChar = true;
-            }
-            this.skipWhitespace = true;
         }
         
-        private boolean skipWhitespace() {
-            return !inString && skipWhitespace;
-        }
+    }
+    
+    /**
+     * Decodes the string values a JsonBinaryHandler gives a sink for. Long values are decoded chunk by chunk,
+     * shorter ones from their READ_PRIMITIVE event. Long values without a sink are put back together.
+     */
+    private final class BinaryValues extends ChunkedValues {
         
-        public int read() throws IOException {
-            if (hasBufferedChar) {
-                char value = bufferedChar;
-                this.hasBufferedChar = false;
-                return value;
-            }
-            if (isEscaped && !inString) {
-                throw new IllegalStateException("Json Reader is escaped while not in a string.");
-            }
-            int nextResult = reader.read();
-            if (skipWhitespace()) {
-                while(Character.isWhitespace((char)nextResult)) {
-                    nextResult = reader.read();
-                    if (nextResult == -1) {
-                        return -1;
-                    }
-                }
-            }
-            if (nextResult == -1) {
-                if (inString) {
-                    throw new JsonSyntaxException("EOF in a string.");
-                } else {
-                    return -1;
-                }
-            }
-            char currChar = (char)nextResult;
-            if (inString && (currChar <= 31 )) {
-                //this case would be handled fine by the parser but is not valid json
-                throw new JsonException("Unescaped control character not allowed in string.");
-            }
-            if (isEscaped) {
-                isEscaped = false;
-                switch(currChar) {
-                    case '\\':
-                    case '"':
-                    case '/':
-                        return currChar;
-                    case 'b':
-                        return '\b';
-                    case 'f':
-                        return '\f';
-                    case 'n':
-                        return '\n';
-                    case 'r':
-                        return '\r';
-                    case 't':
-                        return '\t';
-                    case 'u':
-                        //parse next 4 hex chars as unicode, uncommon code path string allocation fine
-                        return parseUnicodeHex(new String(new char[]{rawReqRead(), rawReqRead(), rawReqRead(), rawReqRead()}));
-                }
-            }
-            if (inString && currChar == '\\') {
-                isEscaped = true;
-                return read();
-            }
-            if (currChar == '"') {
-                inString = !inString;
-            }
-            return currChar;
+        private final JsonBinaryHandler handler;
+        private final Base64Decoder decoder;
+        private final StringBuilder text;
+        private boolean begun;
+        private boolean binary;
+        
+        private BinaryValues(JsonBinaryHandler handler) {
+            this.handler = handler;
+            this.decoder = new Base64Decoder();
+            this.text = new StringBuilder();
         }
         
-        private char parseUnicodeHex(String hex) {
-            if (hex.length() != 4) {
-                throw new RuntimeException("parseUnicodeHex() called improperly.");
+        @Override
+        boolean handled(JsonPrimitive value) {
+            if (value == null) {
+                return true;
             }
-            for (int i = 0; i < hex.length(); i++) {
-                char c = hex.charAt(i);
-                if (!((c >= '0' && c <= '9') || (c >= 'a' && c <= 'f') || (c >= 'A' && c <= 'F'))) {
-                    throw new JsonException("Invalid Unicode escape '" + hex + "'.");
-                }
+            if (value.getType() != JsonPrimitiveType.STRING) {
+                return false;
             }
-            int value = Integer.parseInt(hex, 16);
-            if (!Character.isValidCodePoint(value)) {
-                throw new JsonException("Invalid unicode character 'u" + hex + "'.");
+            String fieldName = (String)stateMachine.getName();
+            JsonByteSink sink = handler.getBinarySink(fieldName);
+            if (sink == null) {
+                return false;
             }
-            return (char)value;
+            decoder.start(sink);
+            decoder.decode(value.getUnderlyingText());
+            stopped = !handler.handleBinary(fieldName, decoder.finish());
+            return true;
         }
         
-        private char rawReqRead() throws IOException {
-            if (hasBufferedChar) {
-                char value = bufferedChar;
-                this.hasBufferedChar = false;
-                return value;
+        @Override
+        public void chunk(CharSequence chunk) {
+            if (!begun) {
+                begun = true;
+                JsonByteSink sink = handler.getBinarySink((String)stateMachine.getName());
+                binary = sink != null;
+                if (binary) {
+                    decoder.start(sink);
+                }
             }
-            int value = reader.read();
-            if (value == -1) {
-                throw new JsonSyntaxException("Early EOF.");
+            if (binary) {
+                decoder.decode(chunk);
+            } else {
+                text.append(chunk);
             }
-            return (char)value;
         }
         
-        private char reqRead() throws IOException {
-            int value = read();
-            if (value == -1) {
-                throw new JsonSyntaxException();
+        @Override
+        public void end(CharSequence chunk) {
+            chunk(chunk);
+            begun = false;
+            String fieldName = (String)stateMachine.getName();
+            if (binary) {
+                stopped = !handler.handleBinary(fieldName, decoder.finish());
+            } else {
+                JsonPrimitive value = new JsonPrimitive(JsonPrimitiveType.STRING, text.toString());
+                text.setLength(0);
+                stopped = !handler.handleJson(JsonParsingState.READ_PRIMITIVE, fieldName, value);
             }
-            return (char)value;
         }
         
     }
     
-    private static enum JsonToken {
-        BEGIN_OBJECT,
-        END_OBJECT,
-        BEGIN_ARRAY,
-        END_ARRAY,
-        STRING,
-        COLON,
-        COMMA,
-        NUMBER,
-        BOOLEAN,
-        NULL,
-        END
-    }
-    
-    private static enum ParserState {
-        JSON_OBJECT,
-        JSON_ARRAY,
-        
-    }
-    
 }
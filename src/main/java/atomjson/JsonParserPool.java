@@ -0,0 +1,101 @@
+package atomjson;
+
+import java.io.Reader;
+import java.nio.ByteBuffer;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+
+/**
+ * A bounded pool of idle JsonParsers so that code parsing many small documents, ie a request handler,
+ * reuses warm parsers instead of creating a new one with new buffers for every document. acquire takes an
+ * idle parser and resets it to the new source, or creates one if none are idle, and release gives it back.
+ * Released parsers let go of their source and get the default settings back but keep their buffers and key cache.
+ * At most maxIdle parsers are kept, any more that are released are left to the garbage collector.
+ * A JsonParserPool can be shared between threads, a parser must only be used by one thread until it is released.
+ * @author Justin Bonner
+ */
+public final class JsonParserPool {
+    
+    private final BlockingQueue<JsonParser> idle;
+    
+    /**
+     * Create a pool.
+     * @param maxIdle the most idle parsers to keep
+     */
+    public JsonParserPool(int maxIdle) {
+        if (maxIdle < 1) {
+            throw new IllegalArgumentException("Max idle parsers must be at least 1.");
+        }
+        this.idle = new ArrayBlockingQueue<>(maxIdle);
+    }
+    
+    /**
+     * Get a parser that reads from the given Reader.
+     * @param jsonSource the source of the JSON
+     * @return the JsonParser
+     */
+    public JsonParser acquire(Reader jsonSource) {
+        JsonParser parser = idle.poll();
+        if (parser == null) {
+            return JsonParser.getInstance(jsonSource);
+        }
+        parser.reset(jsonSource);
+        return parser;
+    }
+    
+    /**
+     * Get a parser that reads from the given String.
+     * @param jsonString the JSON string to parse
+     * @return the JsonParser
+     */
+    public JsonParser acquire(String jsonString) {
+        JsonParser parser = idle.poll();
+        if (parser == null) {
+            return JsonParser.getInstance(jsonString);
+        }
+        parser.reset(jsonString);
+        return parser;
+    }
+    
+    /**
+     * Get a parser that reads from the given 'UTF-8' byte array.
+     * @param jsonByteArray the JSON encoded in a byte array
+     * @return the JsonParser
+     */
+    public JsonParser acquire(byte[] jsonByteArray) {
+        return acquire(ByteBuffer.wrap(jsonByteArray));
+    }
+    
+    /**
+     * Get a parser that reads the remaining bytes of the given 'UTF-8' buffer.
+     * @param jsonBuffer the JSON encoded in a byte buffer
+     * @return the JsonParser
+     */
+    public JsonParser acquire(ByteBuffer jsonBuffer) {
+        JsonParser parser = idle.poll();
+        if (parser == null) {
+            return JsonParser.getInstance(jsonBuffer);
+        }
+        parser.reset(jsonBuffer);
+        return parser;
+    }
+    
+    /**
+     * Give a parser back to the pool once it is done. The parser and anything it handed out as a view must
+     * not be used afterwards, JsonPrimitives and Strings that were handed to a JsonHandler may still be used.
+     * @param parser the parser
+     */
+    public void release(JsonParser parser) {
+        parser.detach();
+        idle.offer(parser);
+    }
+    
+    /**
+     * Get the number of idle parsers in the pool.
+     * @return the number of idle parsers
+     */
+    public int getIdleCount() {
+        return idle.size();
+    }
+    
+}
@@ -0,0 +1,22 @@
+package atomjson;
+
+/**
+ * The handler for values matched by a JsonPathQuery. A primitive that matches a path is delivered as one
+ * READ_PRIMITIVE event. An object or array that matches a path is delivered as every event from its
+ * BEGIN_OBJECT or BEGIN_ARRAY to its END_OBJECT or END_ARRAY.
+ * @author Justin Bonner
+ */
+public interface JsonPathHandler {
+    
+    /**
+     * Called for each parsing event that is part of a value matching one of the paths of the query.
+     * An event that is part of values matching several paths is delivered once for each of them.
+     * @param pathIndex the index of the matched path in the order the paths were given to JsonPathQuery.compile
+     * @param parsingState a representation of what is currently being parsed
+     * @param fieldName the fieldName of the parsed field. This is null for array entries, and null on END_OBJECT and END_ARRAY parsing states.
+     * @param value the primitive value being read. This is only non-null when parsingState is READ_PRIMITIVE
+     * @return should parsing continue, true if parsing should continue, false for an early stop
+     */
+    public boolean handleMatch(int pathIndex, JsonParsingState parsingState, String fieldName, JsonPrimitive value);
+    
+}
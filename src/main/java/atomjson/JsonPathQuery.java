@@ -0,0 +1,361 @@
+package atomjson;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * A set of paths compiled into a state machine that pulls the matching values out of JSON.
+ * Paths are a subset of JSONPath: '$' for the root followed by any number of
+ * '.name', '['name']', '[index]', '.*' or '[*]' steps, for example '$.a.b[*].c' or '$.items[0].id'.
+ * <p>
+ * Objects and arrays that can not contain a match are skipped with a raw scan without
+ * creating anything for them, so extracting a few fields from a large document is much
+ * faster than a full parse. A compiled query is immutable and can be shared between threads.
+ * @author Justin Bonner
+ */
+public final class JsonPathQuery {
+    
+    private final String[] paths;
+    private final PathState initialState;
+    
+    private JsonPathQuery(String[] paths, PathState initialState) {
+        this.paths = paths;
+        this.initialState = initialState;
+    }
+    
+    /**
+     * Compile the given paths into a query.
+     * @param paths the paths to match
+     * @return the query
+     * @throws IllegalArgumentException if a path is not valid
+     */
+    public static JsonPathQuery compile(String... paths) {
+        if (paths.length == 0) {
+            throw new IllegalArgumentException("At least one path is required.");
+        }
+        PathNode root = new PathNode();
+        List<PathNode> nodes = new ArrayList<>();
+        nodes.add(root);
+        for (int i = 0; i < paths.length; i++) {
+            addPath(root, paths[i], i, nodes);
+        }
+        Map<List<PathNode>, PathState> states = new HashMap<>();
+        return new JsonPathQuery(paths.clone(), PathState.of(Collections.singletonList(root), states));
+    }
+    
+    /**
+     * Get the number of paths in this query.
+     * @return the number of paths
+     */
+    public int getPathCount() {
+        return paths.length;
+    }
+    
+    /**
+     * Get a path of this query.
+     * @param pathIndex the index of the path in the order the paths were compiled
+     * @return the path
+     */
+    public String getPath(int pathIndex) {
+        return paths[pathIndex];
+    }
+    
+    /**
+     * Parse the JSON, giving the handler only the values that match the paths of this query.
+     * @param parser the parser to read the JSON from
+     * @param handler the handler to give matched values to
+     */
+    public void extract(JsonParser parser, JsonPathHandler handler) {
+        parser.parse(new PathMatcher(parser, initialState, handler));
+    }
+    
+    private static void addPath(PathNode root, String path, int pathIndex, List<PathNode> nodes) {
+        if (path == null || !path.startsWith("$")) {
+            throw new IllegalArgumentException("Path must start with '$': '" + path + "'.");
+        }
+        PathNode node = root;
+        int i = 1;
+        while (i < path.length()) {
+            char c = path.charAt(i);
+            if (c == '.') {
+                int start = ++i;
+                while (i < path.length() && path.charAt(i) != '.' && path.charAt(i) != '[') {
+                    i++;
+                }
+                String name = path.substring(start, i);
+                if (name.isEmpty()) {
+                    throw new IllegalArgumentException("Empty name in path '" + path + "'.");
+                }
+                node = name.equals("*") ? node.anyChild(nodes) : node.nameChild(name, nodes);
+            } else if (c == '[') {
+                int end = path.indexOf(']', i);
+                if (end == -1) {
+                    throw new IllegalArgumentException("Unclosed '[' in path '" + path + "'.");
+                }
+                char first = i + 1 < path.length() ? path.charAt(i + 1) : ']';
+                if (first == '\'' || first == '"') {
+                    end = path.indexOf(first, i + 2);
+                    if (end == -1 || end + 1 >= path.length() || path.charAt(end + 1) != ']') {
+                        throw new IllegalArgumentException("Unclosed quoted name in path '" + path + "'.");
+                    }
+                    node = node.nameChild(path.substring(i + 2, end), nodes);
+                    end++;
+                } else {
+                    String step = path.substring(i + 1, end);
+                    if (step.equals("*")) {
+                        node = node.anyChild(nodes);
+                    } else {
+                        node = node.indexChild(parseIndex(step, path), nodes);
+                    }
+                }
+                i = end + 1;
+            } else {
+                throw new IllegalArgumentException("Unexpected '" + c + "' in path '" + path + "'.");
+            }
+        }
+        node.matches.add(pathIndex);
+    }
+    
+    private static int parseIndex(String step, String path) {
+        if (step.isEmpty() || step.length() > 9) {
+            throw new IllegalArgumentException("Invalid index '" + step + "' in path '" + path + "'.");
+        }
+        for (int i = 0; i < step.length(); i++) {
+            if (!NumberInfo.isDigit(step.charAt(i))) {
+                throw new IllegalArgumentException("Invalid index '" + step + "' in path '" + path + "'.");
+            }
+        }
+        return Integer.parseInt(step);
+    }
+    
+    /**
+     * A step of the paths. The children of a node are the steps that can follow it.
+     */
+    private static final class PathNode {
+        
+        private final Map<String, PathNode> names = new HashMap<>();
+        private final Map<Integer, PathNode> indices = new HashMap<>();
+        private PathNode any;
+        /**
+         * The indices of the paths that end at this node.
+         */
+        private final Set<Integer> matches = new LinkedHashSet<>();
+        private int id;
+        
+        private PathNode nameChild(String name, List<PathNode> nodes) {
+            PathNode child = names.get(name);
+            if (child == null) {
+                child = create(nodes);
+                names.put(name, child);
+            }
+            return child;
+        }
+        
+        private PathNode indexChild(int index, List<PathNode> nodes) {
+            PathNode child = indices.get(index);
+            if (child == null) {
+                child = create(nodes);
+                indices.put(index, child);
+            }
+            return child;
+        }
+        
+        private PathNode anyChild(List<PathNode> nodes) {
+            if (any == null) {
+                any = create(nodes);
+            }
+            return any;
+        }
+        
+        private static PathNode create(List<PathNode> nodes) {
+            PathNode node = new PathNode();
+            node.id = nodes.size();
+            nodes.add(node);
+            return node;
+        }
+        
+    }
+    
+    /**
+     * A state of the compiled machine, which is the set of path nodes reached by the field names and
+     * indices leading to a value. Every transition is computed when the query is compiled.
+     */
+    private static final class PathState {
+        
+        private final int[] matches;
+        private final boolean dead;
+        private final Map<String, PathState> byName;
+        private final Map<Integer, PathState> byIndex;
+        /**
+         * The state for field names and indices that are not in byName or byIndex.
+         */
+        private PathState other;
+        
+        private PathState(List<PathNode> nodes) {
+            Set<Integer> matched = new LinkedHashSet<>();
+            for (PathNode node : nodes) {
+                matched.addAll(node.matches);
+            }
+            this.matches = new int[matched.size()];
+            int i = 0;
+            for (int match : matched) {
+                matches[i++] = match;
+            }
+            Arrays.sort(matches);
+            this.dead = nodes.isEmpty();
+            this.byName = new HashMap<>();
+            this.byIndex = new HashMap<>();
+        }
+        
+        private static PathState of(List<PathNode> nodes, Map<List<PathNode>, PathState> states) {
+            List<PathNode> key = new ArrayList<>(nodes);
+            key.sort((a, b) -> Integer.compare(a.id, b.id));
+            PathState state = states.get(key);
+            if (state != null) {
+                return state;
+            }
+            state = new PathState(key);
+            states.put(key, state);
+            List<PathNode> anyChildren = new ArrayList<>();
+            for (PathNode node : key) {
+                if (node.any != null) {
+                    anyChildren.add(node.any);
+                }
+            }
+            for (PathNode node : key) {
+                for (String name : node.names.keySet()) {
+                    if (!state.byName.containsKey(name)) {
+                        List<PathNode> children = new ArrayList<>(anyChildren);
+                        for (PathNode other : key) {
+                            PathNode child = other.names.get(name);
+                            if (child != null && !children.contains(child)) {
+                                children.add(child);
+                            }
+                        }
+                        state.byName.put(name, of(children, states));
+                    }
+                }
+                for (Integer index : node.indices.keySet()) {
+                    if (!state.byIndex.containsKey(index)) {
+                        List<PathNode> children = new ArrayList<>(anyChildren);
+                        for (PathNode other : key) {
+                            PathNode child = other.indices.get(index);
+                            if (child != null && !children.contains(child)) {
+                                children.add(child);
+                            }
+                        }
+                        state.byIndex.put(index, of(children, states));
+                    }
+                }
+            }
+            state.other = state.dead ? state : of(anyChildren, states);
+            return state;
+        }
+        
+        private PathState name(String name) {
+            PathState state = byName.get(name);
+            return state == null ? other : state;
+        }
+        
+        private PathState index(int index) {
+            PathState state = byIndex.get(index);
+            return state == null ? other : state;
+        }
+        
+    }
+    
+    /**
+     * Runs the compiled machine over the parsing events, using the traversal stack of JsonHandlerPlus
+     * to find the field name or array index of each value.
+     */
+    private static final class PathMatcher extends JsonHandlerPlus {
+        
+        private final JsonParser parser;
+        private final PathState initialState;
+        private final JsonPathHandler handler;
+        /**
+         * The state of each open object or array, indexed by depth.
+         */
+        private PathState[] states;
+        /**
+         * The objects and arrays matched by a path that are still open, outermost first.
+         */
+        private int[] capturePaths;
+        private int[] captureDepths;
+        private int captureCount;
+        
+        private PathMatcher(JsonParser parser, PathState initialState, JsonPathHandler handler) {
+            this.parser = parser;
+            this.initialState = initialState;
+            this.handler = handler;
+            this.states = new PathState[16];
+            this.capturePaths = new int[4];
+            this.captureDepths = new int[4];
+            this.captureCount = 0;
+        }
+        
+        @Override
+        public boolean handleJsonPlus(JsonParsingState parsingState, String fieldName, JsonPrimitive value) {
+            int depth = jsonTraversalView.size();
+            for (int i = 0; i < captureCount; i++) {
+                if (!handler.handleMatch(capturePaths[i], parsingState, fieldName, value)) {
+                    return false;
+                }
+            }
+            if (parsingState == JsonParsingState.END_OBJECT || parsingState == JsonParsingState.END_ARRAY) {
+                while (captureCount > 0 && captureDepths[captureCount - 1] == depth) {
+                    captureCount--;
+                }
+                return true;
+            }
+            PathState state;
+            if (depth == 0) {
+                state = initialState;
+            } else {
+                JsonBranch parent = jsonTraversalView.peek();
+                if (parent.getBranchType() == JsonBranchType.JSON_ARRAY) {
+                    state = states[depth].index(((BranchArray)parent).getCurrentIndex());
+                } else {
+                    state = states[depth].name(fieldName);
+                }
+            }
+            boolean begin = parsingState != JsonParsingState.READ_PRIMITIVE;
+            for (int match : state.matches) {
+                if (!handler.handleMatch(match, parsingState, fieldName, value)) {
+                    return false;
+                }
+                if (begin) {
+                    capture(match, depth + 1);
+                }
+            }
+            if (begin) {
+                if (depth + 1 >= states.length) {
+                    states = Arrays.copyOf(states, states.length * 2);
+                }
+                states[depth + 1] = state;
+                if (state.dead && captureCount == 0) {
+                    parser.skipChildren();
+                }
+            }
+            return true;
+        }
+        
+        private void capture(int path, int depth) {
+            if (captureCount == capturePaths.length) {
+                capturePaths = Arrays.copyOf(capturePaths, captureCount * 2);
+                captureDepths = Arrays.copyOf(captureDepths, captureCount * 2);
+            }
+            capturePaths[captureCount] = path;
+            captureDepths[captureCount] = depth;
+            captureCount++;
+        }
+        
+    }
+    
+}
@@ -2,6 +2,8 @@
 package atomjson;
 
 import atomjson.exceptions.JsonException;
+import java.math.BigDecimal;
+import java.math.BigInteger;
 
 /**
  * Represent a JSON primitive value. ie a boolean, string, number or null.
@@ -9,6 +11,15 @@ import atomjson.exceptions.JsonException;
  */
 public class JsonPrimitive {
     
+    private static final byte NOT_PARSED = 0;
+    private static final byte PARSED_LONG = 1;
+    private static final byte PARSED_DOUBLE = 2;
+    /**
+     * The largest exponent getAsBigInteger accepts, so a short number like '1e999999999' can not
+     * make it build an integer with a billion digits.
+     */
+    private static final int MAX_BIG_INTEGER_EXPONENT = 100000;
+    
     /**
      * The underlying string of this Json primitive.
      * ex:
@@ -17,21 +28,97 @@ public class JsonPrimitive {
      * "null" for null
      * ""A String"", or ""The full text of 'Moby Dick'"" for a string.
      * In the case of strings the primitiveStr starts and ends with a '"' character.
+     * This is null until primitiveText is first needed as a String.
+     */
+    private String primitiveStr;
+    
+    /**
+     * The text the primitiveStr is created from. This may not have been decoded yet.
      */
-    private final String primitiveStr;
+    private CharSequence primitiveText;
     
     /**
      * The Type of this JsonPrimitive.
      */
-    private final JsonPrimitiveType type;
+    private JsonPrimitiveType type;
+    
+    /**
+     * The NumberInfo for number primitives. Recorded by the tokenizer while scanning the number,
+     * or NumberInfo.UNKNOWN until it is first needed.
+     */
+    private int numberInfo;
+    
+    /**
+     * Whether the value of a number is already known, either NOT_PARSED, PARSED_LONG or PARSED_DOUBLE.
+     */
+    private byte parsed;
+    /**
+     * The value of a number that was parsed ahead of time, the long itself or the bits of the double.
+     */
+    private long parsedBits;
     
     /**
      * 
      * @param primitiveStr the underlying string of this Json primitive
      */
     JsonPrimitive(JsonPrimitiveType type, String primitiveStr) {
+        this(type, primitiveStr, NumberInfo.UNKNOWN);
+    }
+    
+    /**
+     * 
+     * @param primitiveStr the underlying string of this Json primitive
+     * @param numberInfo the NumberInfo if this is a number that has already been scanned
+     */
+    JsonPrimitive(JsonPrimitiveType type, String primitiveStr, int numberInfo) {
         this.primitiveStr = primitiveStr;
+        this.primitiveText = primitiveStr;
+        this.type = type;
+        this.numberInfo = numberInfo;
+    }
+    
+    /**
+     * 
+     * @param primitiveText the underlying text of this Json primitive, only turned into a String when needed
+     */
+    JsonPrimitive(JsonPrimitiveType type, CharSequence primitiveText) {
+        this.primitiveStr = null;
+        this.primitiveText = primitiveText;
+        this.type = type;
+        this.numberInfo = NumberInfo.UNKNOWN;
+    }
+    
+    /**
+     * Point this JsonPrimitive at a new value. Only used on the views the parser reuses for a JsonViewHandler.
+     * @param type the type of the new value
+     * @param primitiveText the underlying text of the new value
+     * @param numberInfo the NumberInfo if the new value is a number that has already been scanned
+     */
+    void reset(JsonPrimitiveType type, CharSequence primitiveText, int numberInfo) {
         this.type = type;
+        this.primitiveText = primitiveText;
+        this.primitiveStr = primitiveText instanceof String ? (String)primitiveText : null;
+        this.numberInfo = numberInfo;
+        this.parsed = NOT_PARSED;
+    }
+    
+    /**
+     * Give a number its value so it is not parsed from the text again.
+     * @param isLong true if value is a long, false if it is the bits of a double
+     * @param value the long or the bits of the double
+     */
+    void setParsedNumber(boolean isLong, long value) {
+        this.parsed = isLong ? PARSED_LONG : PARSED_DOUBLE;
+        this.parsedBits = value;
+    }
+    
+    /**
+     * Create a JsonPrimitive with the same value that does not depend on the parser.
+     * Values given to a JsonViewHandler must be copied if they are kept after the handler returns.
+     * @return a copy of this JsonPrimitive
+     */
+    public JsonPrimitive copy() {
+        return new JsonPrimitive(type, getUnderlyingString(), numberInfo);
     }
     
     /**
@@ -49,9 +136,23 @@ public class JsonPrimitive {
      * @return 
      */
     public String getUnderlyingString() {
+        if (this.primitiveStr == null) {
+            this.primitiveStr = this.primitiveText.toString();
+        }
         return this.primitiveStr;
     }
     
+    /**
+     * Get the text for this primitive value as it appears in the raw JSON
+     * without creating a String. For Strings this has escapes processed and
+     * is not surrounded by quotes. For values given to a JsonViewHandler this
+     * is only valid until the handler returns.
+     * @return the text of this primitive
+     */
+    public CharSequence getUnderlyingText() {
+        return this.primitiveText;
+    }
+    
     /**
      * Determine if this JsonPrimitive is null.
      * @return true if this is null
@@ -69,9 +170,9 @@ public class JsonPrimitive {
         if (getType() != JsonPrimitiveType.BOOLEAN) {
             throw new JsonException("Tried to read " + getType().name() + " as a boolean.");
         }
-        if (primitiveStr.equals("true")) {
+        if (getUnderlyingString().equals("true")) {
             return true;
-        } else if (primitiveStr.equals("false")) {
+        } else if (getUnderlyingString().equals("false")) {
             return false;
         } else {
             throw new JsonException("Could not parse boolean.");
@@ -87,7 +188,7 @@ public class JsonPrimitive {
         if (getType() != JsonPrimitiveType.STRING) {
             throw new JsonException("Tried to read " + getType().name() + " as a String.");
         }
-        return primitiveStr;
+        return getUnderlyingString();
     }
     
     /**
@@ -101,53 +202,150 @@ public class JsonPrimitive {
      */
     public boolean isInteger() {
         return getType() == JsonPrimitiveType.NUMBER 
-            && !primitiveStr.contains(".")
-            && !primitiveStr.contains("e-")
-            && !primitiveStr.contains("E-");
+            && (getNumberInfo() & (NumberInfo.FRACTION | NumberInfo.NEGATIVE_EXPONENT)) == 0;
+    }
+    
+    /**
+     * Determine if this JsonPrimitive is a number with a decimal point.
+     * @return true if this is a number with a fraction part
+     */
+    public boolean hasFraction() {
+        return getType() == JsonPrimitiveType.NUMBER && (getNumberInfo() & NumberInfo.FRACTION) != 0;
+    }
+    
+    /**
+     * Determine if this JsonPrimitive is a number with an exponent, ie '1e4' or '2.5E-3'.
+     * @return true if this is a number with an exponent
+     */
+    public boolean hasExponent() {
+        return getType() == JsonPrimitiveType.NUMBER && (getNumberInfo() & NumberInfo.EXPONENT) != 0;
+    }
+    
+    /**
+     * Determine if this JsonPrimitive is a number with a negative exponent, ie '2.5E-3'.
+     * @return true if this is a number with a negative exponent
+     */
+    public boolean hasNegativeExponent() {
+        return getType() == JsonPrimitiveType.NUMBER && (getNumberInfo() & NumberInfo.NEGATIVE_EXPONENT) != 0;
+    }
+    
+    /**
+     * Get the count of digits in the integer and fraction parts of this number, not counting
+     * the exponent. This should only be called on JsonPrimitives that are numbers.
+     * @return the digit count
+     */
+    public int getDigitCount() {
+        if (getType() != JsonPrimitiveType.NUMBER) {
+            throw new JsonException("Tried to read the digits of " + getType().name() + ".");
+        }
+        return NumberInfo.digitCount(getNumberInfo());
+    }
+    
+    private int getNumberInfo() {
+        if (numberInfo == NumberInfo.UNKNOWN) {
+            numberInfo = NumberInfo.scan(getUnderlyingText());
+            if (numberInfo == NumberInfo.UNKNOWN) {
+                throw new JsonException("'" + getUnderlyingString() + "' is not a number.");
+            }
+        }
+        return numberInfo;
     }
     
     /**
      * Get this JsonPrimitive as a long. This method should only
      * be called on JsonPrimitives that are integers.
      * @return a long
+     * @throws JsonException if this is not an integer or does not fit in a long
      */
     public long getAsLong() {
         if (getType() != JsonPrimitiveType.NUMBER) {
             throw new JsonException("Tried to read " + getType().name() + " as a Long.");
         }
+        if (parsed == PARSED_LONG) {
+            return parsedBits;
+        }
         if (!isInteger()) {
             throw new JsonException("Tried to read a non integer as a Long.");
         }
-        //primitiveStr will contain at most one e or E
-        String expoChar = null;
-        if (primitiveStr.contains("e")) {
-            expoChar = "e";
-        } else if (primitiveStr.contains("E")) {
-            expoChar = "E";
-        }
-        if (expoChar != null) {
-            String[] expoSplit = primitiveStr.split(expoChar);
-            long base = Long.parseLong(expoSplit[0]);
-            int exponent = Integer.parseInt(expoSplit[1]);
-            if (exponent < 0) {
-                throw new JsonException("Tried to parse an integer out of a number with a negative exponent.");
-            }
-            long multiplier = (long) Math.pow(10, exponent);
-            return base * multiplier;
+        return NumberParser.parseLong(primitiveText);
+    }
+    
+    /**
+     * Get this JsonPrimitive as an int. This method should only
+     * be called on JsonPrimitives that are integers.
+     * @return an int
+     * @throws JsonException if this is not an integer or does not fit in an int
+     */
+    public int getAsInt() {
+        if (getType() != JsonPrimitiveType.NUMBER) {
+            throw new JsonException("Tried to read " + getType().name() + " as an Integer.");
+        }
+        long value = getAsLong();
+        if (value < Integer.MIN_VALUE || value > Integer.MAX_VALUE) {
+            throw new JsonException("'" + getUnderlyingString() + "' does not fit in an int.");
         }
-        return Long.parseLong(primitiveStr);
+        return (int)value;
     }
     
     /**
      * Get this JsonPrimitive as a double. This should
      * only be called on JsonPrimitives that are numbers.
+     * The result is the double nearest to the number.
      * @return a double
      */
     public double getAsDouble() {
         if (getType() != JsonPrimitiveType.NUMBER) {
             throw new JsonException("Tried to read " + getType().name() + " as a Double.");
         }
-        return Double.parseDouble(primitiveStr);
+        if (parsed == PARSED_LONG) {
+            return parsedBits;
+        } else if (parsed == PARSED_DOUBLE) {
+            return Double.longBitsToDouble(parsedBits);
+        }
+        return NumberParser.parseDouble(primitiveText);
+    }
+    
+    /**
+     * Get this JsonPrimitive as a BigInteger. This method should only
+     * be called on JsonPrimitives that are integers.
+     * @return a BigInteger
+     * @throws JsonException if this is not an integer or its exponent is above 100000
+     */
+    public BigInteger getAsBigInteger() {
+        if (getType() != JsonPrimitiveType.NUMBER) {
+            throw new JsonException("Tried to read " + getType().name() + " as a BigInteger.");
+        }
+        if (!isInteger()) {
+            throw new JsonException("Tried to read a non integer as a BigInteger.");
+        }
+        if (hasExponent()) {
+            BigDecimal decimal;
+            try {
+                decimal = new BigDecimal(getUnderlyingString());
+            } catch (NumberFormatException e) {
+                throw new JsonException("The exponent of '" + getUnderlyingString() + "' is too large.");
+            }
+            if (decimal.signum() == 0) {
+                return BigInteger.ZERO;
+            }
+            if (-(long)decimal.scale() > MAX_BIG_INTEGER_EXPONENT) {
+                throw new JsonException("The exponent of '" + getUnderlyingString() + "' is too large for a BigInteger.");
+            }
+            return decimal.toBigIntegerExact();
+        }
+        return new BigInteger(getUnderlyingString());
+    }
+    
+    /**
+     * Get this JsonPrimitive as a BigDecimal with exactly the value
+     * written in the JSON. This should only be called on JsonPrimitives that are numbers.
+     * @return a BigDecimal
+     */
+    public BigDecimal getAsBigDecimal() {
+        if (getType() != JsonPrimitiveType.NUMBER) {
+            throw new JsonException("Tried to read " + getType().name() + " as a BigDecimal.");
+        }
+        return new BigDecimal(getUnderlyingString());
     }
     
 }
@@ -0,0 +1,132 @@
+package atomjson;
+
+import atomjson.exceptions.JsonException;
+import java.io.IOException;
+
+/**
+ * Reads JSON one event at a time at the request of the caller. This gives the same events
+ * as a JsonHandler is given by JsonParser.parse, but lets the caller decide when to read each
+ * one, which suits recursive descent decoders and reading from several documents at once.
+ * Get one from JsonParser.pull(). Whatever the parser holds to read ahead of the caller, like the thread
+ * reading an InputStream source, is released once the last event has been read or a parsing error occurs,
+ * close releases it when the caller stops reading before then.
+ * @author Justin Bonner
+ */
+public final class JsonPullParser implements AutoCloseable {
+    
+    private final JsonStateMachine stateMachine;
+    private final JsonTokenizer tokenizer;
+    private JsonParsingState currentEvent;
+    private boolean released;
+    private boolean closed;
+    
+    JsonPullParser(JsonStateMachine stateMachine, JsonTokenizer tokenizer) {
+        this.stateMachine = stateMachine;
+        this.tokenizer = tokenizer;
+        this.currentEvent = null;
+    }
+    
+    /**
+     * Read the next event.
+     * @return the next event, or null once the root object or array has ended and the rest of the source
+     * was found to be empty
+     * @throws JsonException if a parsing error occurs
+     * @throws IllegalStateException if the pull parser has been closed
+     */
+    public JsonParsingState nextEvent() throws JsonException {
+        checkOpen();
+        try {
+            currentEvent = stateMachine.next();
+        } catch (IOException e) {
+            release();
+            throw new JsonException(e);
+        } catch (RuntimeException e) {
+            release();
+            throw e;
+        }
+        if (currentEvent == null) {
+            release();
+        }
+        return currentEvent;
+    }
+    
+    /**
+     * Get the last event read by nextEvent.
+     * @return the current event, null before the first event and after the last
+     */
+    public JsonParsingState currentEvent() {
+        return currentEvent;
+    }
+    
+    /**
+     * Get the field name of the current event.
+     * @return the field name, null for the root object, array entries, and on END_OBJECT and END_ARRAY events
+     */
+    public String currentName() {
+        return (String)stateMachine.getName();
+    }
+    
+    /**
+     * Get the value of the current event.
+     * @return the primitive value, only non-null when the current event is READ_PRIMITIVE
+     */
+    public JsonPrimitive currentPrimitive() {
+        return stateMachine.getValue();
+    }
+    
+    /**
+     * Get the number of objects and arrays that are open. The root object or array is depth 1.
+     * @return the current depth
+     */
+    public int getDepth() {
+        return stateMachine.depth();
+    }
+    
+    /**
+     * If the current event is BEGIN_OBJECT or BEGIN_ARRAY, skip everything in the object or array.
+     * The matching END_OBJECT or END_ARRAY becomes the current event. Does nothing on other events.
+     * The skipped JSON is only scanned for quotes, escapes and brackets so nothing is created for it,
+     * and it is not validated.
+     * @throws JsonException if a parsing error occurs
+     * @throws IllegalStateException if the pull parser has been closed
+     */
+    public void skipChildren() throws JsonException {
+        checkOpen();
+        if (currentEvent != JsonParsingState.BEGIN_OBJECT && currentEvent != JsonParsingState.BEGIN_ARRAY) {
+            return;
+        }
+        try {
+            currentEvent = stateMachine.skipChildren();
+        } catch (IOException e) {
+            release();
+            throw new JsonException(e);
+        } catch (RuntimeException e) {
+            release();
+            throw e;
+        }
+    }
+    
+    /**
+     * Stop reading. An InputStream source is closed and its reading thread stops. Nothing more can be read
+     * afterwards, closing again does nothing.
+     */
+    @Override
+    public void close() {
+        closed = true;
+        release();
+    }
+    
+    private void release() {
+        if (!released) {
+            released = true;
+            tokenizer.release();
+        }
+    }
+    
+    private void checkOpen() {
+        if (closed) {
+            throw new IllegalStateException("The pull parser is closed.");
+        }
+    }
+    
+}
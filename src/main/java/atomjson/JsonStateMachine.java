@@ -0,0 +1,337 @@
+package atomjson;
+
+import atomjson.exceptions.JsonException;
+import atomjson.exceptions.JsonSyntaxException;
+import java.io.IOException;
+
+/**
+ * Turns the tokens of a JSON source into parsing events one at a time. Both the JsonParser,
+ * which pushes events to a handler, and the JsonPullParser, which hands them out on request,
+ * are driven by this.
+ * @author Justin Bonner
+ */
+final class JsonStateMachine {
+    
+    private final JsonTokenizer tokenizer;
+    private final NestingStack stack;
+    /**
+     * The views reused for every key and value when parsing with views.
+     */
+    private final TextView keyView;
+    private final TextView primitiveViewText;
+    private final JsonPrimitive primitiveView;
+    private boolean views;
+    /**
+     * True when reading a sequence of documents, in which case any value may be a root and the
+     * source does not have to end after it.
+     */
+    private boolean documents;
+    /**
+     * True when the documents are the elements of an array, which are separated by commas.
+     */
+    private boolean commaSeparated;
+    private boolean firstDocument;
+    private boolean started;
+    private boolean done;
+    /**
+     * True if the last event began an object or array, so no comma is expected before the next entry.
+     */
+    private boolean justEntered;
+    private CharSequence name;
+    private JsonPrimitive value;
+    /**
+     * Where long string values are sent in chunks, null unless chunking was asked for.
+     */
+    private StringChunks chunks;
+    /**
+     * The last token read, null if reading it failed.
+     */
+    private JsonToken lastToken;
+    /**
+     * A token that began a new line after a malformed document, which is the first token of the next document.
+     */
+    private JsonToken pendingToken;
+    /**
+     * True while the last token is a pendingToken that has been taken, so it is not taken again if it fails.
+     */
+    private boolean resumed;
+    
+    JsonStateMachine(JsonTokenizer tokenizer, NestingStack stack) {
+        this.tokenizer = tokenizer;
+        this.stack = stack;
+        this.keyView = new TextView();
+        this.primitiveViewText = new TextView();
+        this.primitiveView = new JsonPrimitive(JsonPrimitiveType.NULL, "null");
+    }
+    
+    /**
+     * Get ready to read a document from the start.
+     * @param views true to reuse the views for keys and values, false to create a String and JsonPrimitive
+     * for each, in which case field names are Strings
+     */
+    void start(boolean views) {
+        this.views = views;
+        this.documents = false;
+        this.commaSeparated = false;
+        this.started = false;
+        this.done = false;
+        this.name = null;
+        this.value = null;
+        this.pendingToken = null;
+        tokenizer.trackLines = false;
+        stack.clear();
+    }
+    
+    /**
+     * Send string values of at least threshold chars to chunks instead of reading them whole. Such a value
+     * is reported as READ_PRIMITIVE with a null value once its last chunk has been sent.
+     * @param chunks where to send the chunks, null to stop chunking
+     * @param threshold the length at which a value is chunked
+     */
+    void setStringChunks(StringChunks chunks, int threshold) {
+        this.chunks = chunks;
+        tokenizer.chunkThreshold = threshold;
+    }
+    
+    /**
+     * Get ready to read the comma separated elements of an array, without the brackets around them,
+     * as a sequence of documents.
+     * @param views true to reuse the views for keys and values
+     */
+    void startElements(boolean views) {
+        start(views);
+        this.commaSeparated = true;
+        this.firstDocument = true;
+    }
+    
+    /**
+     * Get ready to read the next document of a sequence of documents. Once the root value of the document
+     * has been read next returns null, next also returns null straight away if there are no more documents.
+     */
+    void nextDocument() {
+        this.documents = true;
+        tokenizer.trackLines = true;
+        this.started = false;
+        this.done = false;
+        this.name = null;
+        this.value = null;
+        stack.clear();
+    }
+    
+    /**
+     * Get past a malformed document so that the next document can be read. If the token the document failed on
+     * began a new line, ie the document was cut short, the next document starts with that token, otherwise
+     * the rest of the line is consumed.
+     * @throws IOException if reading the source fails
+     */
+    void recover() throws IOException {
+        stack.clear();
+        done = true;
+        if (lastToken != null && !resumed && tokenizer.newlineBeforeToken()) {
+            pendingToken = lastToken;
+        } else {
+            tokenizer.skipLine();
+        }
+    }
+    
+    /**
+     * The field name of the last event, null unless the last event was a value in an object.
+     */
+    CharSequence getName() {
+        return name;
+    }
+    
+    /**
+     * The value of the last event, null unless the last event was READ_PRIMITIVE.
+     */
+    JsonPrimitive getValue() {
+        return value;
+    }
+    
+    /**
+     * The number of objects and arrays that are open.
+     */
+    int depth() {
+        return stack.depth();
+    }
+    
+    /**
+     * Read the next event.
+     * @return the next event, or null once the root value has ended. When reading a single document the
+     * source must then be done, when reading a sequence of documents null is also returned if there are no more
+     * @throws JsonException if a parsing error occurs
+     * @throws IOException if reading the source fails
+     */
+    JsonParsingState next() throws JsonException, IOException {
+        name = null;
+        value = null;
+        if (done || (documents && started && stack.isEmpty())) {
+            done = true;
+            return null;
+        }
+        JsonToken token;
+        if (pendingToken != null) {
+            token = pendingToken;
+            pendingToken = null;
+            resumed = true;
+        } else {
+            token = nextToken(started && !stack.isEmpty() && !stack.peekObject());
+        }
+        if (!started) {
+            started = true;
+            justEntered = true;
+            if (commaSeparated && !firstDocument && token != JsonToken.END) {
+                if (token != JsonToken.COMMA) {
+                    throw new JsonSyntaxException("Expected comma or end array. Found " + token.name() + ".");
+                }
+                token = nextToken(false);
+                if (token == JsonToken.END) {
+                    throw new JsonSyntaxException("Did not find value token in array. Found " + token.name() + ".");
+                }
+            }
+            firstDocument = false;
+            if (token == JsonToken.BEGIN_OBJECT) {
+                stack.pushObject();
+                return JsonParsingState.BEGIN_OBJECT;
+            } else if (token == JsonToken.BEGIN_ARRAY) {
+                stack.pushArray();
+                return JsonParsingState.BEGIN_ARRAY;
+            } else if (documents && token == JsonToken.END) {
+                done = true;
+                return null;
+            } else if (documents && (token == JsonToken.STRING || token == JsonToken.NUMBER
+                    || token == JsonToken.BOOLEAN || token == JsonToken.NULL)) {
+                justEntered = false;
+                return readValue(token, false);
+            }
+            throw new JsonSyntaxException("Expected Object or Array. Found " + token.name() + ".");
+        }
+        if (stack.isEmpty()) {
+            if (token != JsonToken.END) {
+                throw new JsonSyntaxException("Finished parsing json but source is not done. Found " + token.name() + ".");
+            }
+            done = true;
+            return null;
+        }
+        boolean inObject = stack.peekObject();
+        if (token == (inObject ? JsonToken.END_OBJECT : JsonToken.END_ARRAY)) {
+            stack.pop();
+            justEntered = false;
+            return inObject ? JsonParsingState.END_OBJECT : JsonParsingState.END_ARRAY;
+        }
+        if (!justEntered) {
+            if (token != JsonToken.COMMA) {
+                throw new JsonSyntaxException("Expected comma or end " + (inObject ? "object" : "array") + ". Found " + token.name() + ".");
+            }
+            token = nextToken(!inObject);
+        }
+        justEntered = false;
+        if (inObject) {
+            if (token != JsonToken.STRING) {
+                throw new JsonSyntaxException("Expected key name in json object. Found " + token.name() + ".");
+            }
+            if (views) {
+                tokenizer.readToken(keyView);
+                name = keyView;
+            } else {
+                name = tokenizer.readKey();
+            }
+            token = nextToken(false);
+            if (token != JsonToken.COLON) {
+                throw new JsonSyntaxException("Did not find colon after key name. Found " + token.name() + ".");
+            }
+            token = nextToken(true);
+        }
+        return readValue(token, inObject);
+    }
+    
+    /**
+     * Consume the next token.
+     * @param valuePosition true if the token can only be a value or the end of an array, so a string is a value
+     */
+    private JsonToken nextToken(boolean valuePosition) throws IOException {
+        tokenizer.chunkSink = valuePosition ? chunks : null;
+        tokenizer.chunked = false;
+        resumed = false;
+        lastToken = null;
+        lastToken = tokenizer.parseNextToken();
+        return lastToken;
+    }
+    
+    /**
+     * Read the value that begins with the given token.
+     */
+    private JsonParsingState readValue(JsonToken token, boolean inObject) {
+        switch(token) {
+            case STRING:
+                if (tokenizer.chunked) {
+                    tokenizer.readToken(primitiveViewText);
+                    chunks.end(primitiveViewText);
+                    return JsonParsingState.READ_PRIMITIVE;
+                }
+                value = readPrimitive(JsonPrimitiveType.STRING);
+                return JsonParsingState.READ_PRIMITIVE;
+            case NUMBER:
+                value = readPrimitive(JsonPrimitiveType.NUMBER);
+                return JsonParsingState.READ_PRIMITIVE;
+            case BOOLEAN:
+                value = readPrimitive(JsonPrimitiveType.BOOLEAN);
+                return JsonParsingState.READ_PRIMITIVE;
+            case NULL:
+                value = readPrimitive(JsonPrimitiveType.NULL);
+                return JsonParsingState.READ_PRIMITIVE;
+            case BEGIN_OBJECT:
+                stack.pushObject();
+                justEntered = true;
+                return JsonParsingState.BEGIN_OBJECT;
+            case BEGIN_ARRAY:
+                stack.pushArray();
+                justEntered = true;
+                return JsonParsingState.BEGIN_ARRAY;
+            default:
+                if (inObject) {
+                    throw new JsonSyntaxException("Did not find value token after key. Found " + token.name() + ".");
+                }
+                throw new JsonSyntaxException("Did not find value token in array. Found " + token.name() + ".");
+        }
+    }
+    
+    /**
+     * Skip everything in the object or array the last event began without reading any events for it.
+     * Only quotes, escapes and brackets are looked at, so the skipped JSON is not validated.
+     * @return the END_OBJECT or END_ARRAY event that matches the last event
+     * @throws IOException if reading the source fails
+     */
+    JsonParsingState skipChildren() throws IOException {
+        if (!started || done || !justEntered) {
+            throw new IllegalStateException("Can only skip the children of an object or array that was just begun.");
+        }
+        name = null;
+        value = null;
+        justEntered = false;
+        boolean object = stack.pop();
+        tokenizer.skipChildren(object);
+        return object ? JsonParsingState.END_OBJECT : JsonParsingState.END_ARRAY;
+    }
+    
+    /**
+     * Sends the chunks of long string values on to a handler.
+     */
+    interface StringChunks extends JsonTokenizer.ChunkSink {
+        
+        /**
+         * Take the final chunk of a string and end it.
+         * @param text the final chunk, only valid during the call, may be empty
+         */
+        void end(CharSequence text);
+        
+    }
+    
+    private JsonPrimitive readPrimitive(JsonPrimitiveType type) {
+        if (views) {
+            return tokenizer.readPrimitive(type, primitiveView, primitiveViewText);
+        }
+        return tokenizer.readPrimitive(type);
+    }
+    
+}
@@ -0,0 +1,31 @@
+package atomjson;
+
+/**
+ * A JsonHandler that is given long string values in chunks instead of whole, see
+ * JsonParser.parse(JsonStringChunkHandler, int). A chunked value is given as a call to beginString,
+ * any number of calls to handleStringChunk and a call to endString, in place of a READ_PRIMITIVE event.
+ * @author Justin Bonner
+ */
+public interface JsonStringChunkHandler extends JsonHandler {
+    
+    /**
+     * Called when a long string value begins.
+     * @param fieldName the fieldName of the string. This is null for array entries
+     * @return should parsing continue, true if parsing should continue, false for an early stop
+     */
+    public boolean beginString(String fieldName);
+    
+    /**
+     * Called with each chunk of a long string value in order.
+     * @param chunk a view of the next chunk, only valid during this call
+     * @return should parsing continue, true if parsing should continue, false for an early stop
+     */
+    public boolean handleStringChunk(CharSequence chunk);
+    
+    /**
+     * Called after the last chunk of a long string value.
+     * @return should parsing continue, true if parsing should continue, false for an early stop
+     */
+    public boolean endString();
+    
+}
@@ -0,0 +1,372 @@
+package atomjson;
+
+import atomjson.exceptions.JsonException;
+import java.nio.CharBuffer;
+import java.util.Arrays;
+
+/**
+ * A recording of the events of a parsed document that can be replayed to any number of handlers
+ * without tokenizing the JSON again.
+ * <p>
+ * The events are kept on a tape of longs, one long per event. The top 4 bits of each long are the
+ * event and the rest is either the offset and length of its text or the index of a field name. A
+ * field name is one long of its own before the event it belongs to, and every number is followed
+ * by one more long holding its value, already parsed as a long or the bits of a double. The decoded
+ * text of strings and numbers is kept end to end in one char array, and each distinct field name is
+ * kept once no matter how often it repeats.
+ * <p>
+ * So a document costs 8 bytes per object, array, string, boolean, null and field name, 16 bytes per
+ * number and 2 bytes per char of string and number text, plus each distinct field name once.
+ * getFootprint() gives the exact size. A tree of objects costs a header and a pointer for every node
+ * and field on top of the same text, so the tape is usually several times smaller than one.
+ * @author Justin Bonner
+ */
+public final class JsonTape {
+    
+    private static final int OP_SHIFT = 60;
+    private static final int OFFSET_SHIFT = 28;
+    private static final long LENGTH_MASK = (1L << OFFSET_SHIFT) - 1;
+    /**
+     * The longest string or number text that fits in a tape entry.
+     */
+    private static final int MAX_TEXT_LENGTH = (int)LENGTH_MASK;
+    
+    private static final int BEGIN_OBJECT = 0;
+    private static final int END_OBJECT = 1;
+    private static final int BEGIN_ARRAY = 2;
+    private static final int END_ARRAY = 3;
+    private static final int NAME = 4;
+    private static final int STRING = 5;
+    private static final int LONG = 6;
+    private static final int DOUBLE = 7;
+    private static final int TRUE = 8;
+    private static final int FALSE = 9;
+    private static final int NULL = 10;
+    
+    private long[] tape;
+    private int tapeLength;
+    private char[] text;
+    private int textLength;
+    private String[] names;
+    private int nameCount;
+    /**
+     * An open addressing table of the indices of names plus one, 0 for an empty slot.
+     * Only used while recording.
+     */
+    private int[] nameSlots;
+    private int events;
+    
+    private JsonTape() {
+        this.tape = new long[64];
+        this.text = new char[256];
+        this.names = new String[16];
+        this.nameSlots = new int[32];
+    }
+    
+    /**
+     * Parse a document and record its events.
+     * @param parser the parser to record, it is parsed to the end
+     * @return the recording
+     * @throws JsonException if a parsing error occurs or a string is longer than 2^28 - 1 chars
+     */
+    public static JsonTape record(JsonParser parser) {
+        JsonTape tape = new JsonTape();
+        parser.parseViews(tape::record);
+        tape.trim();
+        return tape;
+    }
+    
+    /**
+     * Give every recorded event to a handler, in order. Each String and JsonPrimitive passed is new
+     * apart from field names, which are the same String every time they repeat.
+     * Replay stops early as soon as the handler returns false.
+     * @param handler the handler
+     */
+    public void replay(JsonHandler handler) {
+        int i = 0;
+        while (i < tapeLength) {
+            long entry = tape[i++];
+            String name = null;
+            if (op(entry) == NAME) {
+                name = names[(int)(entry & ~(-1L << OP_SHIFT))];
+                entry = tape[i++];
+            }
+            int op = op(entry);
+            boolean keepGoing;
+            switch(op) {
+                case BEGIN_OBJECT:
+                    keepGoing = handler.handleJson(JsonParsingState.BEGIN_OBJECT, name, null);
+                    break;
+                case END_OBJECT:
+                    keepGoing = handler.handleJson(JsonParsingState.END_OBJECT, null, null);
+                    break;
+                case BEGIN_ARRAY:
+                    keepGoing = handler.handleJson(JsonParsingState.BEGIN_ARRAY, name, null);
+                    break;
+                case END_ARRAY:
+                    keepGoing = handler.handleJson(JsonParsingState.END_ARRAY, null, null);
+                    break;
+                default:
+                    JsonPrimitive value;
+                    if (op == STRING || op == LONG || op == DOUBLE) {
+                        String string = new String(text, offset(entry), length(entry));
+                        if (op == STRING) {
+                            value = new JsonPrimitive(JsonPrimitiveType.STRING, string);
+                        } else {
+                            value = new JsonPrimitive(JsonPrimitiveType.NUMBER, string);
+                            value.setParsedNumber(op == LONG, tape[i++]);
+                        }
+                    } else {
+                        value = literal(op);
+                    }
+                    keepGoing = handler.handleJson(JsonParsingState.READ_PRIMITIVE, name, value);
+                    break;
+            }
+            if (!keepGoing) {
+                return;
+            }
+        }
+    }
+    
+    /**
+     * Give every recorded event to a handler, in order, through views that are reused for every event
+     * so nothing is created. Replay stops early as soon as the handler returns false.
+     * @param handler the handler
+     */
+    public void replayViews(JsonViewHandler handler) {
+        CharBuffer window = CharBuffer.wrap(text, 0, textLength);
+        JsonPrimitive view = new JsonPrimitive(JsonPrimitiveType.NULL, "null");
+        int i = 0;
+        while (i < tapeLength) {
+            long entry = tape[i++];
+            String name = null;
+            if (op(entry) == NAME) {
+                name = names[(int)(entry & ~(-1L << OP_SHIFT))];
+                entry = tape[i++];
+            }
+            int op = op(entry);
+            boolean keepGoing;
+            switch(op) {
+                case BEGIN_OBJECT:
+                    keepGoing = handler.handleJson(JsonParsingState.BEGIN_OBJECT, name, null);
+                    break;
+                case END_OBJECT:
+                    keepGoing = handler.handleJson(JsonParsingState.END_OBJECT, null, null);
+                    break;
+                case BEGIN_ARRAY:
+                    keepGoing = handler.handleJson(JsonParsingState.BEGIN_ARRAY, name, null);
+                    break;
+                case END_ARRAY:
+                    keepGoing = handler.handleJson(JsonParsingState.END_ARRAY, null, null);
+                    break;
+                default:
+                    if (op == STRING || op == LONG || op == DOUBLE) {
+                        int offset = offset(entry);
+                        window.limit(offset + length(entry)).position(offset);
+                        if (op == STRING) {
+                            view.reset(JsonPrimitiveType.STRING, window, NumberInfo.UNKNOWN);
+                        } else {
+                            view.reset(JsonPrimitiveType.NUMBER, window, NumberInfo.UNKNOWN);
+                            view.setParsedNumber(op == LONG, tape[i++]);
+                        }
+                    } else if (op == NULL) {
+                        view.reset(JsonPrimitiveType.NULL, "null", NumberInfo.UNKNOWN);
+                    } else {
+                        view.reset(JsonPrimitiveType.BOOLEAN, op == TRUE ? "true" : "false", NumberInfo.UNKNOWN);
+                    }
+                    keepGoing = handler.handleJson(JsonParsingState.READ_PRIMITIVE, name, view);
+                    break;
+            }
+            if (!keepGoing) {
+                return;
+            }
+        }
+    }
+    
+    /**
+     * Get the number of events recorded.
+     * @return the event count
+     */
+    public int getEventCount() {
+        return events;
+    }
+    
+    /**
+     * Get the number of bytes the recording holds in its tape, text and field names, not counting object headers.
+     * @return the footprint in bytes
+     */
+    public long getFootprint() {
+        long nameChars = 0;
+        for (int i = 0; i < nameCount; i++) {
+            nameChars += names[i].length();
+        }
+        return 8L * tapeLength + 2L * (textLength + nameChars);
+    }
+    
+    private boolean record(JsonParsingState parsingState, CharSequence fieldName, JsonPrimitive value) {
+        events++;
+        if (fieldName != null) {
+            append((long)NAME << OP_SHIFT | nameIndex(fieldName));
+        }
+        switch(parsingState) {
+            case BEGIN_OBJECT:
+                append((long)BEGIN_OBJECT << OP_SHIFT);
+                break;
+            case END_OBJECT:
+                append((long)END_OBJECT << OP_SHIFT);
+                break;
+            case BEGIN_ARRAY:
+                append((long)BEGIN_ARRAY << OP_SHIFT);
+                break;
+            case END_ARRAY:
+                append((long)END_ARRAY << OP_SHIFT);
+                break;
+            default:
+                recordValue(value);
+                break;
+        }
+        return true;
+    }
+    
+    private void recordValue(JsonPrimitive value) {
+        switch(value.getType()) {
+            case STRING:
+                append((long)STRING << OP_SHIFT | appendText(value.getUnderlyingText()));
+                break;
+            case NUMBER:
+                long range = appendText(value.getUnderlyingText());
+                if (fitsLong(value)) {
+                    append((long)LONG << OP_SHIFT | range);
+                    append(value.getAsLong());
+                } else {
+                    append((long)DOUBLE << OP_SHIFT | range);
+                    append(Double.doubleToRawLongBits(value.getAsDouble()));
+                }
+                break;
+            case BOOLEAN:
+                append((long)(value.getAsBoolean() ? TRUE : FALSE) << OP_SHIFT);
+                break;
+            default:
+                append((long)NULL << OP_SHIFT);
+                break;
+        }
+    }
+    
+    /**
+     * Determine if a number is an integer that a long holds exactly. -0 is left to the double so its sign is kept.
+     */
+    private static boolean fitsLong(JsonPrimitive value) {
+        if (!value.isInteger()) {
+            return false;
+        }
+        long parsed;
+        try {
+            parsed = value.getAsLong();
+        } catch (JsonException e) { //too big for a long
+            return false;
+        }
+        return parsed != 0 || value.getUnderlyingText().charAt(0) != '-';
+    }
+    
+    private void append(long entry) {
+        if (tapeLength == tape.length) {
+            tape = Arrays.copyOf(tape, tape.length * 2);
+        }
+        tape[tapeLength++] = entry;
+    }
+    
+    /**
+     * Copy chars onto the end of the text.
+     * @return the offset and length of the copy, packed for a tape entry
+     */
+    private long appendText(CharSequence chars) {
+        int length = chars.length();
+        if (length > MAX_TEXT_LENGTH) {
+            throw new JsonException("Strings longer than " + MAX_TEXT_LENGTH + " chars can not be recorded.");
+        }
+        if (text.length - textLength < length) {
+            long capacity = Math.max((long)textLength + length, 2L * text.length);
+            if (capacity > Integer.MAX_VALUE - 8) {
+                throw new JsonException("Recorded text does not fit in a char array.");
+            }
+            text = Arrays.copyOf(text, (int)capacity);
+        }
+        int offset = textLength;
+        for (int i = 0; i < length; i++) {
+            text[offset + i] = chars.charAt(i);
+        }
+        textLength += length;
+        return (long)offset << OFFSET_SHIFT | length;
+    }
+    
+    /**
+     * Find the index of a field name, adding it if it is new.
+     */
+    private int nameIndex(CharSequence name) {
+        int hash = 0;
+        for (int i = 0; i < name.length(); i++) {
+            hash = 31 * hash + name.charAt(i);
+        }
+        int mask = nameSlots.length - 1;
+        int slot = (hash ^ (hash >>> 16)) & mask;
+        while (nameSlots[slot] != 0) {
+            String candidate = names[nameSlots[slot] - 1];
+            if (candidate.contentEquals(name)) {
+                return nameSlots[slot] - 1;
+            }
+            slot = (slot + 1) & mask;
+        }
+        if (nameCount == names.length) {
+            names = Arrays.copyOf(names, names.length * 2);
+        }
+        names[nameCount] = name.toString();
+        nameSlots[slot] = ++nameCount;
+        if (2 * nameCount > nameSlots.length) {
+            rehashNames();
+        }
+        return nameCount - 1;
+    }
+    
+    private void rehashNames() {
+        nameSlots = new int[nameSlots.length * 2];
+        int mask = nameSlots.length - 1;
+        for (int i = 0; i < nameCount; i++) {
+            int hash = names[i].hashCode();
+            int slot = (hash ^ (hash >>> 16)) & mask;
+            while (nameSlots[slot] != 0) {
+                slot = (slot + 1) & mask;
+            }
+            nameSlots[slot] = i + 1;
+        }
+    }
+    
+    /**
+     * Drop the spare capacity and the name table once recording is done.
+     */
+    private void trim() {
+        tape = Arrays.copyOf(tape, tapeLength);
+        text = Arrays.copyOf(text, textLength);
+        names = Arrays.copyOf(names, nameCount);
+        nameSlots = null;
+    }
+    
+    private static int op(long entry) {
+        return (int)(entry >>> OP_SHIFT);
+    }
+    
+    private static int offset(long entry) {
+        return (int)((entry >>> OFFSET_SHIFT) & 0xFFFFFFFFL);
+    }
+    
+    private static int length(long entry) {
+        return (int)(entry & LENGTH_MASK);
+    }
+    
+    private static JsonPrimitive literal(int op) {
+        if (op == NULL) {
+            return new JsonPrimitive(JsonPrimitiveType.NULL, "null");
+        }
+        return new JsonPrimitive(JsonPrimitiveType.BOOLEAN, op == TRUE ? "true" : "false");
+    }
+    
+}
@@ -0,0 +1,19 @@
+package atomjson;
+
+/**
+ * The tokens a JsonTokenizer splits JSON into.
+ * @author Justin Bonner
+ */
+enum JsonToken {
+    BEGIN_OBJECT,
+    END_OBJECT,
+    BEGIN_ARRAY,
+    END_ARRAY,
+    STRING,
+    COLON,
+    COMMA,
+    NUMBER,
+    BOOLEAN,
+    NULL,
+    END
+}
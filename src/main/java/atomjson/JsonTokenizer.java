@@ -0,0 +1,156 @@
+package atomjson;
+
+import atomjson.exceptions.JsonSyntaxException;
+import java.io.IOException;
+
+/**
+ * Splits a JSON source into the tokens consumed by the JsonParser.
+ * @author Justin Bonner
+ */
+abstract class JsonTokenizer {
+    
+    /**
+     * The NumberInfo of the last NUMBER token, recorded while it was scanned.
+     */
+    int numberInfo;
+    /**
+     * Canonicalizes the Strings returned by readKey, null to create a new String for every key.
+     */
+    KeyTable keyTable;
+    /**
+     * True to reject unicode escapes of surrogates that are not part of an escaped high and low surrogate pair.
+     */
+    boolean strictSurrogates;
+    /**
+     * Where long string values are sent in chunks, set only while the next token is a value
+     * and chunking was asked for, otherwise null.
+     */
+    ChunkSink chunkSink;
+    /**
+     * The length at which a string value is sent to the chunkSink instead of being kept whole.
+     */
+    int chunkThreshold;
+    /**
+     * True if the last STRING token was sent to the chunkSink. Its text is then only the final chunk.
+     */
+    boolean chunked;
+    /**
+     * True while reading a sequence of documents, so that newlineBeforeToken is kept up to date.
+     */
+    boolean trackLines;
+    
+    /**
+     * Consume the next token from the source.
+     * @return the next token, END once the source is done
+     * @throws IOException if reading the source fails
+     */
+    abstract JsonToken parseNextToken() throws IOException;
+    
+    /**
+     * Consume everything up to and including the end of the object or array whose BEGIN_OBJECT or
+     * BEGIN_ARRAY token was just consumed. Only quotes, escapes and brackets are looked at, so nothing
+     * is created for the skipped tokens and they are not validated.
+     * @param object true if an object was begun, false for an array
+     * @throws IOException if reading the source fails
+     */
+    abstract void skipChildren(boolean object) throws IOException;
+    
+    /**
+     * Consume everything up to and including the next newline. Used to continue with the next document
+     * after a malformed one.
+     * @throws IOException if reading the source fails
+     */
+    abstract void skipLine() throws IOException;
+    
+    /**
+     * Determine if a newline came between the last token and the one before it. Only known while trackLines is set.
+     * @return true if the last token began a new line
+     */
+    abstract boolean newlineBeforeToken();
+    
+    /**
+     * Called once parsing is done so a tokenizer can stop reading ahead and close what it opened.
+     * Nothing is done by default.
+     */
+    void release() {
+    }
+    
+    /**
+     * Make sure the bracket that ended a skipped object or array matches the one that began it.
+     */
+    static void checkSkippedEnd(boolean object, int end) {
+        if (end != (object ? '}' : ']')) {
+            throw new JsonSyntaxException("Expected end " + (object ? "object" : "array") + ". Found '" + (char)end + "'.");
+        }
+    }
+    
+    /**
+     * Get the text of the last STRING, NUMBER or BOOLEAN token. Strings have their
+     * escapes processed and are not surrounded by quotes.
+     * @return the text of the token
+     */
+    abstract String readToken();
+    
+    /**
+     * Get the text of the last STRING token as a field name. When there is a KeyTable
+     * a repeated field name is returned as the same String.
+     * @return the text of the token
+     */
+    String readKey() {
+        String key = readToken();
+        return keyTable == null ? key : keyTable.get(key);
+    }
+    
+    /**
+     * Place the text of the last STRING, NUMBER or BOOLEAN token into dest without creating a String.
+     * Strings have their escapes processed and are not surrounded by quotes.
+     * @param dest where to place the text of the token
+     */
+    abstract void readToken(TextView dest);
+    
+    /**
+     * Receives the chunks of a long string value while it is being tokenized.
+     */
+    interface ChunkSink {
+        
+        /**
+         * Take the next chunk of the string.
+         * @param text the chunk, only valid during the call
+         */
+        void chunk(CharSequence text);
+        
+    }
+    
+    /**
+     * Point a reused JsonPrimitive view at the last STRING, NUMBER, BOOLEAN or NULL token.
+     * @param type the type of primitive the token is
+     * @param view the JsonPrimitive to reuse
+     * @param text the TextView owned by the view
+     * @return the view
+     */
+    JsonPrimitive readPrimitive(JsonPrimitiveType type, JsonPrimitive view, TextView text) {
+        if (type == JsonPrimitiveType.NULL) {
+            view.reset(type, "null", NumberInfo.UNKNOWN);
+        } else {
+            readToken(text);
+            view.reset(type, text, type == JsonPrimitiveType.NUMBER ? numberInfo : NumberInfo.UNKNOWN);
+        }
+        return view;
+    }
+    
+    /**
+     * Create a JsonPrimitive for the last STRING, NUMBER, BOOLEAN or NULL token.
+     * @param type the type of primitive the token is
+     * @return the JsonPrimitive
+     */
+    JsonPrimitive readPrimitive(JsonPrimitiveType type) {
+        if (type == JsonPrimitiveType.NULL) {
+            return new JsonPrimitive(type, "null");
+        }
+        if (type == JsonPrimitiveType.NUMBER) {
+            return new JsonPrimitive(type, readToken(), numberInfo);
+        }
+        return new JsonPrimitive(type, readToken());
+    }
+    
+}
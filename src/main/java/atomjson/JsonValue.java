@@ -0,0 +1,207 @@
+package atomjson;
+
+import atomjson.exceptions.JsonException;
+import java.math.BigDecimal;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * A value in a JsonDocument: an object, an array or a primitive. A JsonValue is only a position
+ * in the document's index, nothing is decoded until a primitive is read or a field name is compared.
+ * @author Justin Bonner
+ */
+public final class JsonValue {
+    
+    private final JsonDocument document;
+    private final int node;
+    
+    JsonValue(JsonDocument document, int node) {
+        this.document = document;
+        this.node = node;
+    }
+    
+    /**
+     * Determine if this is an object.
+     * @return true for an object
+     */
+    public boolean isObject() {
+        return document.kind(node) == JsonDocument.OBJECT;
+    }
+    
+    /**
+     * Determine if this is an array.
+     * @return true for an array
+     */
+    public boolean isArray() {
+        return document.kind(node) == JsonDocument.ARRAY;
+    }
+    
+    /**
+     * Determine if this is a string, number, boolean or null.
+     * @return true for a primitive
+     */
+    public boolean isPrimitive() {
+        return !isObject() && !isArray();
+    }
+    
+    /**
+     * Determine if this is null.
+     * @return true for null
+     */
+    public boolean isNull() {
+        return document.kind(node) == JsonDocument.NULL;
+    }
+    
+    /**
+     * Get the number of fields of an object or elements of an array.
+     * @return the size
+     * @throws JsonException if this is a primitive
+     */
+    public int size() {
+        checkContainer();
+        return document.size(node);
+    }
+    
+    /**
+     * Get the value of a field of this object. When a field appears more than once the first is found.
+     * @param fieldName the field name
+     * @return the value, null if this object has no such field
+     * @throws JsonException if this is not an object
+     */
+    public JsonValue get(String fieldName) {
+        checkObject();
+        int value = document.field(node, fieldName);
+        return value == -1 ? null : new JsonValue(document, value);
+    }
+    
+    /**
+     * Determine if this object has a field.
+     * @param fieldName the field name
+     * @return true if the field exists
+     * @throws JsonException if this is not an object
+     */
+    public boolean has(String fieldName) {
+        checkObject();
+        return document.field(node, fieldName) != -1;
+    }
+    
+    /**
+     * Get an element of this array, or the value of the field at an index of this object.
+     * @param index the index
+     * @return the value
+     * @throws JsonException if this is a primitive
+     * @throws IndexOutOfBoundsException if index is not less than the size
+     */
+    public JsonValue get(int index) {
+        checkContainer();
+        return new JsonValue(document, document.element(node, index));
+    }
+    
+    /**
+     * Get the field names of this object in order.
+     * @return the field names
+     * @throws JsonException if this is not an object
+     */
+    public List<String> getFieldNames() {
+        checkObject();
+        int size = document.size(node);
+        List<String> names = new ArrayList<>(size);
+        for (int i = 0; i < size; i++) {
+            names.add(document.fieldName(node, i));
+        }
+        return names;
+    }
+    
+    /**
+     * Get the elements of this array, or the values of this object, in order.
+     * @return the values
+     * @throws JsonException if this is a primitive
+     */
+    public List<JsonValue> getValues() {
+        checkContainer();
+        int size = document.size(node);
+        List<JsonValue> values = new ArrayList<>(size);
+        boolean object = isObject();
+        int child = node + 1;
+        for (int i = 0; i < size; i++) {
+            int value = object ? child + 1 : child;
+            values.add(new JsonValue(document, value));
+            child = document.next(value);
+        }
+        return values;
+    }
+    
+    /**
+     * Get this primitive, decoding it the first time.
+     * @return the primitive
+     * @throws JsonException if this is an object or array
+     */
+    public JsonPrimitive getAsPrimitive() {
+        return document.primitive(node);
+    }
+    
+    /**
+     * Get this primitive as a String, see JsonPrimitive.getAsString().
+     * @return the value
+     */
+    public String getAsString() {
+        return getAsPrimitive().getAsString();
+    }
+    
+    /**
+     * Get this primitive as a long, see JsonPrimitive.getAsLong().
+     * @return the value
+     */
+    public long getAsLong() {
+        return getAsPrimitive().getAsLong();
+    }
+    
+    /**
+     * Get this primitive as an int, see JsonPrimitive.getAsInt().
+     * @return the value
+     */
+    public int getAsInt() {
+        return getAsPrimitive().getAsInt();
+    }
+    
+    /**
+     * Get this primitive as a double, see JsonPrimitive.getAsDouble().
+     * @return the value
+     */
+    public double getAsDouble() {
+        return getAsPrimitive().getAsDouble();
+    }
+    
+    /**
+     * Get this primitive as a BigDecimal, see JsonPrimitive.getAsBigDecimal().
+     * @return the value
+     */
+    public BigDecimal getAsBigDecimal() {
+        return getAsPrimitive().getAsBigDecimal();
+    }
+    
+    /**
+     * Get this primitive as a boolean, see JsonPrimitive.getAsBoolean().
+     * @return the value
+     */
+    public boolean getAsBoolean() {
+        return getAsPrimitive().getAsBoolean();
+    }
+    
+    private void checkObject() {
+        if (!isObject()) {
+            throw new JsonException("Tried to read fields of " + describe() + ".");
+        }
+    }
+    
+    private void checkContainer() {
+        if (isPrimitive()) {
+            throw new JsonException("Tried to read members of " + describe() + ".");
+        }
+    }
+    
+    private String describe() {
+        return isObject() ? "an object" : isArray() ? "an array" : "a primitive";
+    }
+    
+}
@@ -0,0 +1,22 @@
+package atomjson;
+
+/**
+ * A handler for JSON parsing that receives reused views of keys and values instead of new objects.
+ * The fieldName and value passed to handleJson belong to the parser and are overwritten by the next
+ * parsing event, so they must not be kept after the call returns. Copy anything that is needed later,
+ * ie with fieldName.toString(), value.getAsString() or value.copy().
+ * @author Justin Bonner
+ */
+public interface JsonViewHandler {
+    
+    /**
+     * The handler for JSON parsing. This method gets called on every array or object beginning and ending and for each JSON primitive that
+     * is parsed.
+     * @param parsingState a representation of what is currently being parsed
+     * @param fieldName a view of the fieldName of the parsed field, only valid during this call. This is null for the root object, any array entries, and null on END_OBJECT and END_ARRAY parsing states.
+     * @param value a view of the primitive value being read, only valid during this call. This is only non-null when parsingState is READ_PRIMITIVE
+     * @return should parsing continue, true if parsing should continue, false for an early stop
+     */
+    public boolean handleJson(JsonParsingState parsingState, CharSequence fieldName, JsonPrimitive value);
+    
+}
@@ -0,0 +1,327 @@
+package atomjson;
+
+import atomjson.exceptions.JsonException;
+import java.io.Closeable;
+import java.io.Flushable;
+import java.io.OutputStream;
+import java.io.Writer;
+import java.nio.channels.WritableByteChannel;
+
+/**
+ * Write JSON from the same events a JsonHandler receives. Output is escaped into a reusable buffer and
+ * handed to the sink as the buffer fills, so any amount of JSON is written in constant memory.
+ * The open objects and arrays are kept one bit per level.
+ * <p>
+ * Field names follow the JsonHandler convention: values and nested objects and arrays inside an object
+ * have a field name, everything else has a null field name. Several root values may be written,
+ * they are separated by newlines. The events given to asHandler() or asViewHandler() by a JsonParser
+ * are written as they are parsed, so a parser can be piped into a writer in one pass.
+ * Write errors are thrown as JsonExceptions and misplaced events as IllegalStateExceptions.
+ * @author Justin Bonner
+ */
+public class JsonWriter implements Closeable, Flushable {
+    
+    private final JsonOutput output;
+    private final NestingStack stack;
+    /**
+     * True if a value has already been written at the current level, so the next one needs a separator.
+     */
+    private boolean needsSeparator;
+    
+    private JsonWriter(JsonOutput output) {
+        this.output = output;
+        this.stack = new NestingStack(Integer.MAX_VALUE);
+        this.needsSeparator = false;
+    }
+    
+    /**
+     * Create a JsonWriter that writes chars to the given Writer.
+     * @param writer where to write the JSON
+     * @return the JsonWriter
+     */
+    public static JsonWriter getInstance(Writer writer) {
+        if (writer == null) {
+            throw new NullPointerException("Writer cannot be null.");
+        }
+        return new JsonWriter(new WriterOutput(writer));
+    }
+    
+    /**
+     * Create a JsonWriter that writes 'UTF-8' bytes to the given OutputStream.
+     * Chars are encoded directly into the writer's buffer.
+     * @param stream where to write the JSON
+     * @return the JsonWriter
+     */
+    public static JsonWriter getInstance(OutputStream stream) {
+        if (stream == null) {
+            throw new NullPointerException("OutputStream cannot be null.");
+        }
+        return new JsonWriter(ByteOutput.of(stream));
+    }
+    
+    /**
+     * Create a JsonWriter that writes 'UTF-8' bytes to the given channel.
+     * Chars are encoded directly into the writer's buffer.
+     * @param channel where to write the JSON
+     * @return the JsonWriter
+     */
+    public static JsonWriter getInstance(WritableByteChannel channel) {
+        if (channel == null) {
+            throw new NullPointerException("WritableByteChannel cannot be null.");
+        }
+        return new JsonWriter(ByteOutput.of(channel));
+    }
+    
+    /**
+     * Write one parsing event.
+     * @param parsingState the event
+     * @param fieldName the field name for values and the beginnings of objects and arrays inside an object, otherwise null
+     * @param value the value for READ_PRIMITIVE, a null value is written as null
+     * @return this JsonWriter
+     */
+    public JsonWriter write(JsonParsingState parsingState, CharSequence fieldName, JsonPrimitive value) {
+        switch(parsingState) {
+            case BEGIN_OBJECT:
+                return beginObject(fieldName);
+            case END_OBJECT:
+                return endObject();
+            case BEGIN_ARRAY:
+                return beginArray(fieldName);
+            case END_ARRAY:
+                return endArray();
+            default:
+                return writePrimitive(fieldName, value);
+        }
+    }
+    
+    /**
+     * Begin an object that is an array entry or a root value.
+     * @return this JsonWriter
+     */
+    public JsonWriter beginObject() {
+        return beginObject(null);
+    }
+    
+    /**
+     * Begin an object.
+     * @param fieldName the field name if the object is inside an object, otherwise null
+     * @return this JsonWriter
+     */
+    public JsonWriter beginObject(CharSequence fieldName) {
+        startValue(fieldName);
+        output.write('{');
+        stack.pushObject();
+        needsSeparator = false;
+        return this;
+    }
+    
+    /**
+     * End the innermost object.
+     * @return this JsonWriter
+     */
+    public JsonWriter endObject() {
+        end(true);
+        output.write('}');
+        return this;
+    }
+    
+    /**
+     * Begin an array that is an array entry or a root value.
+     * @return this JsonWriter
+     */
+    public JsonWriter beginArray() {
+        return beginArray(null);
+    }
+    
+    /**
+     * Begin an array.
+     * @param fieldName the field name if the array is inside an object, otherwise null
+     * @return this JsonWriter
+     */
+    public JsonWriter beginArray(CharSequence fieldName) {
+        startValue(fieldName);
+        output.write('[');
+        stack.pushArray();
+        needsSeparator = false;
+        return this;
+    }
+    
+    /**
+     * End the innermost array.
+     * @return this JsonWriter
+     */
+    public JsonWriter endArray() {
+        end(false);
+        output.write(']');
+        return this;
+    }
+    
+    /**
+     * Write a parsed value as it appeared, strings are escaped again.
+     * @param fieldName the field name if the value is inside an object, otherwise null
+     * @param value the value, null to write null
+     * @return this JsonWriter
+     */
+    public JsonWriter writePrimitive(CharSequence fieldName, JsonPrimitive value) {
+        if (value == null || value.getType() == JsonPrimitiveType.NULL) {
+            return writeNull(fieldName);
+        }
+        startValue(fieldName);
+        if (value.getType() == JsonPrimitiveType.STRING) {
+            output.writeString(value.getUnderlyingText());
+        } else {
+            output.writeAscii(value.getUnderlyingText());
+        }
+        needsSeparator = true;
+        return this;
+    }
+    
+    /**
+     * Write a string value.
+     * @param fieldName the field name if the value is inside an object, otherwise null
+     * @param value the string, null to write null
+     * @return this JsonWriter
+     */
+    public JsonWriter writeString(CharSequence fieldName, CharSequence value) {
+        if (value == null) {
+            return writeNull(fieldName);
+        }
+        startValue(fieldName);
+        output.writeString(value);
+        needsSeparator = true;
+        return this;
+    }
+    
+    /**
+     * Write an integer value.
+     * @param fieldName the field name if the value is inside an object, otherwise null
+     * @param value the number
+     * @return this JsonWriter
+     */
+    public JsonWriter writeNumber(CharSequence fieldName, long value) {
+        startValue(fieldName);
+        output.writeLong(value);
+        needsSeparator = true;
+        return this;
+    }
+    
+    /**
+     * Write a floating point value.
+     * @param fieldName the field name if the value is inside an object, otherwise null
+     * @param value the number, which must be finite
+     * @return this JsonWriter
+     */
+    public JsonWriter writeNumber(CharSequence fieldName, double value) {
+        if (Double.isNaN(value) || Double.isInfinite(value)) {
+            throw new IllegalArgumentException("JSON numbers can not be NaN or infinite.");
+        }
+        startValue(fieldName);
+        output.writeAscii(Double.toString(value));
+        needsSeparator = true;
+        return this;
+    }
+    
+    /**
+     * Write a boolean value.
+     * @param fieldName the field name if the value is inside an object, otherwise null
+     * @param value the boolean
+     * @return this JsonWriter
+     */
+    public JsonWriter writeBoolean(CharSequence fieldName, boolean value) {
+        startValue(fieldName);
+        output.writeAscii(value ? "true" : "false");
+        needsSeparator = true;
+        return this;
+    }
+    
+    /**
+     * Write null.
+     * @param fieldName the field name if the value is inside an object, otherwise null
+     * @return this JsonWriter
+     */
+    public JsonWriter writeNull(CharSequence fieldName) {
+        startValue(fieldName);
+        output.writeAscii("null");
+        needsSeparator = true;
+        return this;
+    }
+    
+    /**
+     * Get how many objects and arrays are open.
+     * @return the depth, 0 between root values
+     */
+    public int getDepth() {
+        return stack.depth();
+    }
+    
+    /**
+     * Get a JsonHandler that writes every event it is given. It never stops parsing early.
+     * @return the handler
+     */
+    public JsonHandler asHandler() {
+        return (parsingState, fieldName, value) -> {
+            write(parsingState, fieldName, value);
+            return true;
+        };
+    }
+    
+    /**
+     * Get a JsonViewHandler that writes every event it is given without copying the views.
+     * It never stops parsing early.
+     * @return the handler
+     */
+    public JsonViewHandler asViewHandler() {
+        return (parsingState, fieldName, value) -> {
+            write(parsingState, fieldName, value);
+            return true;
+        };
+    }
+    
+    /**
+     * Hand everything written so far to the sink and flush it.
+     * @throws JsonException if writing fails
+     */
+    @Override
+    public void flush() {
+        output.flush();
+    }
+    
+    /**
+     * Flush and close the sink. Objects and arrays that are still open are not closed.
+     * @throws JsonException if writing fails
+     */
+    @Override
+    public void close() {
+        output.close();
+    }
+    
+    /**
+     * Write the separator and field name that come before a value.
+     */
+    private void startValue(CharSequence fieldName) {
+        boolean inObject = !stack.isEmpty() && stack.peekObject();
+        if (inObject && fieldName == null) {
+            throw new IllegalStateException("Values inside an object need a field name.");
+        }
+        if (!inObject && fieldName != null) {
+            throw new IllegalStateException("Only values inside an object have a field name, found '" + fieldName + "'.");
+        }
+        if (needsSeparator) {
+            output.write(stack.isEmpty() ? '\n' : ',');
+        }
+        if (inObject) {
+            output.writeString(fieldName);
+            output.write(':');
+        }
+    }
+    
+    private void end(boolean object) {
+        if (stack.isEmpty() || stack.peekObject() != object) {
+            throw new IllegalStateException("Tried to end an " + (object ? "object" : "array") + " when "
+                + (stack.isEmpty() ? "nothing is open." : "an " + (object ? "array" : "object") + " is open."));
+        }
+        stack.pop();
+        needsSeparator = true;
+    }
+    
+}
@@ -0,0 +1,187 @@
+package atomjson;
+
+import java.nio.ByteBuffer;
+
+/**
+ * A bounded cache of field names so that a key repeated throughout a document is returned as the
+ * same String every time instead of a new one. Keys are looked up by hashing the chars or bytes
+ * still in the tokenizer's buffer, so a hit creates nothing.
+ * <p>
+ * The table is two way set associative. A key that misses is placed first in its set and the
+ * least recently used key of the set is evicted, so the table never grows and a document full
+ * of distinct or colliding keys only costs misses.
+ * @author Justin Bonner
+ */
+final class KeyTable {
+    
+    static final int DEFAULT_SIZE = 1024;
+    /**
+     * Keys longer than this are never cached.
+     */
+    static final int MAX_KEY_LENGTH = 64;
+    
+    private final String[] keys;
+    private final int[] hashes;
+    /**
+     * The index of the first slot of the last set.
+     */
+    private final int setMask;
+    private long hits;
+    private long misses;
+    
+    /**
+     * @param size the number of keys to hold, rounded up to a power of two of at least 2
+     */
+    KeyTable(int size) {
+        int slots = size <= 2 ? 2 : Integer.highestOneBit(size - 1) << 1;
+        this.keys = new String[slots];
+        this.hashes = new int[slots];
+        this.setMask = slots - 2;
+    }
+    
+    int size() {
+        return keys.length;
+    }
+    
+    long getHits() {
+        return hits;
+    }
+    
+    long getMisses() {
+        return misses;
+    }
+    
+    /**
+     * Get the canonical String for the given chars.
+     * @param text the key
+     * @return a String equal to text
+     */
+    String get(CharSequence text) {
+        int length = text.length();
+        if (length > MAX_KEY_LENGTH) {
+            return text.toString();
+        }
+        int hash = 0;
+        for (int i = 0; i < length; i++) {
+            hash = 31 * hash + text.charAt(i);
+        }
+        int set = setOf(hash);
+        for (int slot = set; slot < set + 2; slot++) {
+            String key = keys[slot];
+            if (key != null && hashes[slot] == hash && key.length() == length && matches(key, text)) {
+                return hit(set, slot);
+            }
+        }
+        return miss(set, hash, text.toString());
+    }
+    
+    /**
+     * Get the canonical String for the given chars.
+     * @param chars holds the key
+     * @param length the number of chars in the key
+     * @return a String equal to the key
+     */
+    String get(char[] chars, int length) {
+        if (length > MAX_KEY_LENGTH) {
+            return new String(chars, 0, length);
+        }
+        int hash = 0;
+        for (int i = 0; i < length; i++) {
+            hash = 31 * hash + chars[i];
+        }
+        int set = setOf(hash);
+        for (int slot = set; slot < set + 2; slot++) {
+            String key = keys[slot];
+            if (key != null && hashes[slot] == hash && key.length() == length && matches(key, chars)) {
+                return hit(set, slot);
+            }
+        }
+        return miss(set, hash, new String(chars, 0, length));
+    }
+    
+    /**
+     * Get the canonical String for the given ASCII bytes.
+     * @param source holds the key
+     * @param start the index of the first byte of the key
+     * @param end the index after the last byte of the key
+     * @return a String equal to the key
+     */
+    String get(ByteBuffer source, int start, int end) {
+        int length = end - start;
+        if (length > MAX_KEY_LENGTH) {
+            return ByteTokenizer.asciiString(source, start, end);
+        }
+        int hash = 0;
+        for (int i = start; i < end; i++) {
+            hash = 31 * hash + source.get(i);
+        }
+        int set = setOf(hash);
+        for (int slot = set; slot < set + 2; slot++) {
+            String key = keys[slot];
+            if (key != null && hashes[slot] == hash && key.length() == length && matches(key, source, start)) {
+                return hit(set, slot);
+            }
+        }
+        return miss(set, hash, ByteTokenizer.asciiString(source, start, end));
+    }
+    
+    private int setOf(int hash) {
+        return (hash ^ (hash >>> 16)) << 1 & setMask;
+    }
+    
+    /**
+     * Move the key that was found to the front of its set.
+     */
+    private String hit(int set, int slot) {
+        hits++;
+        String key = keys[slot];
+        if (slot != set) {
+            int hash = hashes[slot];
+            keys[slot] = keys[set];
+            hashes[slot] = hashes[set];
+            keys[set] = key;
+            hashes[set] = hash;
+        }
+        return key;
+    }
+    
+    /**
+     * Place a new key at the front of its set, evicting the older key of the set.
+     */
+    private String miss(int set, int hash, String key) {
+        misses++;
+        keys[set + 1] = keys[set];
+        hashes[set + 1] = hashes[set];
+        keys[set] = key;
+        hashes[set] = hash;
+        return key;
+    }
+    
+    private static boolean matches(String key, CharSequence text) {
+        for (int i = 0; i < key.length(); i++) {
+            if (key.charAt(i) != text.charAt(i)) {
+                return false;
+            }
+        }
+        return true;
+    }
+    
+    private static boolean matches(String key, char[] chars) {
+        for (int i = 0; i < key.length(); i++) {
+            if (key.charAt(i) != chars[i]) {
+                return false;
+            }
+        }
+        return true;
+    }
+    
+    private static boolean matches(String key, ByteBuffer source, int start) {
+        for (int i = 0; i < key.length(); i++) {
+            if (key.charAt(i) != source.get(start + i)) {
+                return false;
+            }
+        }
+        return true;
+    }
+    
+}
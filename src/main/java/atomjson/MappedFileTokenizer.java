@@ -0,0 +1,99 @@
+package atomjson;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+
+/**
+ * A ByteTokenizer that reads a file through memory mapped windows. Files no larger than the
+ * segment size are mapped all at once, larger files are mapped one segment at a time.
+ * @author Justin Bonner
+ */
+class MappedFileTokenizer extends ByteTokenizer {
+    
+    /**
+     * The file to reopen when mapping another window, null if the channel is owned by the caller.
+     */
+    private final Path path;
+    private final FileChannel channel;
+    private final long size;
+    private final int segmentSize;
+    /**
+     * The position in the file of index 0 of the current window.
+     */
+    private long windowOffset;
+    
+    private MappedFileTokenizer(Path path, FileChannel channel, long size, int segmentSize, ByteBuffer firstWindow) {
+        super(firstWindow);
+        this.path = path;
+        this.channel = channel;
+        this.size = size;
+        this.segmentSize = segmentSize;
+        this.windowOffset = 0;
+    }
+    
+    /**
+     * Tokenize a file. The file is only open while a window is being mapped.
+     * @param path the file
+     * @param segmentSize the largest window to map at once
+     * @return the tokenizer
+     * @throws IOException if the file could not be mapped
+     */
+    static MappedFileTokenizer open(Path path, int segmentSize) throws IOException {
+        try (FileChannel fileChannel = FileChannel.open(path, StandardOpenOption.READ)) {
+            long size = fileChannel.size();
+            ByteBuffer firstWindow = fileChannel.map(FileChannel.MapMode.READ_ONLY, 0, firstWindowSize(size, segmentSize));
+            return new MappedFileTokenizer(path, null, size, segmentSize, firstWindow);
+        }
+    }
+    
+    /**
+     * Tokenize the bytes of a channel from position 0 to its current size. The channel is not closed.
+     * @param channel the channel
+     * @param segmentSize the largest window to map at once
+     * @return the tokenizer
+     * @throws IOException if the channel could not be mapped
+     */
+    static MappedFileTokenizer open(FileChannel channel, int segmentSize) throws IOException {
+        long size = channel.size();
+        ByteBuffer firstWindow = channel.map(FileChannel.MapMode.READ_ONLY, 0, firstWindowSize(size, segmentSize));
+        return new MappedFileTokenizer(null, channel, size, segmentSize, firstWindow);
+    }
+    
+    private static long firstWindowSize(long size, int segmentSize) {
+        return Math.min(size, segmentSize);
+    }
+    
+    @Override
+    boolean useStructuralIndex() {
+        return windowOffset + getLimit() >= size && super.useStructuralIndex();
+    }
+    
+    @Override
+    int nextWindow(int keepFrom) throws IOException {
+        long windowEnd = windowOffset + getLimit();
+        if (windowEnd >= size) {
+            return -1;
+        }
+        long keepOffset = windowOffset + keepFrom;
+        //a token longer than a segment gets a window twice its size so far
+        long length = Math.min(size - keepOffset, Math.max(segmentSize, 2 * (windowEnd - keepOffset)));
+        length = Math.min(length, Integer.MAX_VALUE);
+        ByteBuffer window = map(keepOffset, length);
+        windowOffset = keepOffset;
+        setWindow(window, (int)length);
+        return keepFrom;
+    }
+    
+    private ByteBuffer map(long offset, long length) throws IOException {
+        if (path == null) {
+            return channel.map(FileChannel.MapMode.READ_ONLY, offset, length);
+        }
+        try (FileChannel fileChannel = FileChannel.open(path, StandardOpenOption.READ)) {
+            return fileChannel.map(FileChannel.MapMode.READ_ONLY, offset, length);
+        }
+    }
+    
+}
@@ -0,0 +1,115 @@
+package atomjson;
+
+import atomjson.exceptions.JsonException;
+import java.util.Arrays;
+
+/**
+ * A stack of the objects and arrays currently open. Each level is stored as a single bit
+ * so deep nesting costs about one bit per level and pushing and popping never allocate
+ * unless the stack has to grow.
+ * @author Justin Bonner
+ */
+final class NestingStack {
+    
+    /**
+     * Stacks that grew past this many words, 1024 levels, are shrunk back to one word.
+     */
+    private static final int MAX_RETAINED_WORDS = 16;
+    
+    /**
+     * Bit i is set if level i is an object and clear if it is an array.
+     */
+    private long[] bits;
+    private int depth;
+    private int maxDepth;
+    
+    NestingStack(int maxDepth) {
+        this.bits = new long[1];
+        this.depth = 0;
+        this.maxDepth = maxDepth;
+    }
+    
+    void setMaxDepth(int maxDepth) {
+        this.maxDepth = maxDepth;
+    }
+    
+    int getMaxDepth() {
+        return maxDepth;
+    }
+    
+    /**
+     * Push a level.
+     * @param object true for an object, false for an array
+     * @throws JsonException if this would nest deeper than the max depth
+     */
+    void push(boolean object) {
+        if (depth >= maxDepth) {
+            throw new JsonException("Nesting is deeper than the max depth of " + maxDepth + ".");
+        }
+        int word = depth >>> 6;
+        if (word == bits.length) {
+            bits = Arrays.copyOf(bits, bits.length * 2);
+        }
+        if (object) {
+            bits[word] |= 1L << depth;
+        } else {
+            bits[word] &= ~(1L << depth);
+        }
+        depth++;
+    }
+    
+    void pushObject() {
+        push(true);
+    }
+    
+    void pushArray() {
+        push(false);
+    }
+    
+    /**
+     * Remove the top level.
+     * @return true if the removed level was an object
+     */
+    boolean pop() {
+        if (depth == 0) {
+            throw new IllegalStateException("Nesting stack is empty.");
+        }
+        depth--;
+        return (bits[depth >>> 6] & (1L << depth)) != 0;
+    }
+    
+    /**
+     * Determine if the top level is an object.
+     * @return true for an object, false for an array
+     */
+    boolean peekObject() {
+        if (depth == 0) {
+            throw new IllegalStateException("Nesting stack is empty.");
+        }
+        int top = depth - 1;
+        return (bits[top >>> 6] & (1L << top)) != 0;
+    }
+    
+    int depth() {
+        return depth;
+    }
+    
+    boolean isEmpty() {
+        return depth == 0;
+    }
+    
+    void clear() {
+        depth = 0;
+    }
+    
+    /**
+     * Clear the stack and give back the memory a deeply nested document made it grow to.
+     */
+    void shrink() {
+        depth = 0;
+        if (bits.length > MAX_RETAINED_WORDS) {
+            bits = new long[1];
+        }
+    }
+    
+}
@@ -0,0 +1,95 @@
+package atomjson;
+
+/**
+ * The facts about a JSON number that the tokenizers record while scanning it, packed into an int
+ * so a JsonPrimitive never has to scan its number again.
+ * @author Justin Bonner
+ */
+final class NumberInfo {
+    
+    /**
+     * The number has not been scanned yet.
+     */
+    static final int UNKNOWN = -1;
+    static final int NEGATIVE = 1;
+    static final int FRACTION = 1 << 1;
+    static final int EXPONENT = 1 << 2;
+    static final int NEGATIVE_EXPONENT = 1 << 3;
+    /**
+     * The count of digits in the integer and fraction parts is stored above the flags.
+     */
+    static final int DIGIT_COUNT_SHIFT = 8;
+    static final int MAX_DIGIT_COUNT = Integer.MAX_VALUE >>> DIGIT_COUNT_SHIFT;
+    
+    private NumberInfo() {
+        
+    }
+    
+    static int create(int flags, int digitCount) {
+        return flags | (Math.min(digitCount, MAX_DIGIT_COUNT) << DIGIT_COUNT_SHIFT);
+    }
+    
+    static int digitCount(int info) {
+        return info >>> DIGIT_COUNT_SHIFT;
+    }
+    
+    static boolean isDigit(int c) {
+        return c >= '0' && c <= '9';
+    }
+    
+    /**
+     * Scan a number that is already in memory.
+     * @param text the number
+     * @return the number info, or UNKNOWN if the text is not a number
+     */
+    static int scan(CharSequence text) {
+        int end = text.length();
+        int flags = 0;
+        int i = 0;
+        if (i < end && text.charAt(i) == '-') {
+            flags |= NEGATIVE;
+            i++;
+        }
+        int digitsStart = i;
+        while (i < end && isDigit(text.charAt(i))) {
+            i++;
+        }
+        int digits = i - digitsStart;
+        if (digits == 0) {
+            return UNKNOWN;
+        }
+        if (i < end && text.charAt(i) == '.') {
+            int fractionStart = ++i;
+            while (i < end && isDigit(text.charAt(i))) {
+                i++;
+            }
+            if (i == fractionStart) {
+                return UNKNOWN;
+            }
+            digits += i - fractionStart;
+            flags |= FRACTION;
+        }
+        if (i < end && (text.charAt(i) == 'e' || text.charAt(i) == 'E')) {
+            flags |= EXPONENT;
+            i++;
+            if (i < end && (text.charAt(i) == '+' || text.charAt(i) == '-')) {
+                if (text.charAt(i) == '-') {
+                    flags |= NEGATIVE_EXPONENT;
+                }
+                i++;
+            }
+            int exponentStart = i;
+            while (i < end && isDigit(text.charAt(i))) {
+                i++;
+            }
+            if (i == exponentStart) {
+                return UNKNOWN;
+            }
+        }
+        if (i != end) {
+            return UNKNOWN;
+        }
+        return create(flags, digits);
+    }
+    
+}
@@ -0,0 +1,279 @@
+package atomjson;
+
+import atomjson.exceptions.JsonException;
+import java.math.BigInteger;
+
+/**
+ * Turns the text of JSON numbers into longs and doubles without creating any objects.
+ * The text must already have been validated as a JSON number.
+ * Doubles are converted with the Clinger fast path when the value is exactly representable,
+ * then the Eisel-Lemire algorithm, and only fall back to Double.parseDouble for the rare inputs
+ * Eisel-Lemire cannot decide.
+ * @author Justin Bonner
+ */
+final class NumberParser {
+    
+    private static final int MIN_POWER_OF_TEN = -342;
+    private static final int MAX_POWER_OF_TEN = 308;
+    /**
+     * Exponents past this are clamped, they are already far outside the range of a double.
+     */
+    private static final int MAX_EXPONENT_MAGNITUDE = 100000;
+    /**
+     * The most significant digits that always fit in an unsigned long.
+     */
+    private static final int MAX_MANTISSA_DIGITS = 19;
+    private static final long MAX_EXACT_MANTISSA = 1L << 53;
+    private static final int MAX_EXACT_POWER_OF_TEN = 22;
+    
+    private static final double[] EXACT_POWERS_OF_TEN = new double[MAX_EXACT_POWER_OF_TEN + 1];
+    /**
+     * The 128 bit normalized mantissas of 10^q for q in [MIN_POWER_OF_TEN, MAX_POWER_OF_TEN].
+     * Entry 2 * (q - MIN_POWER_OF_TEN) holds the high 64 bits and the next entry the low 64 bits.
+     * Powers below 1 are rounded up, the rest are truncated.
+     */
+    private static final long[] POWERS_OF_TEN = new long[2 * (MAX_POWER_OF_TEN - MIN_POWER_OF_TEN + 1)];
+    
+    static {
+        double power = 1;
+        for (int i = 0; i <= MAX_EXACT_POWER_OF_TEN; i++) {
+            EXACT_POWERS_OF_TEN[i] = power;
+            power *= 10;
+        }
+        BigInteger twoTo128 = BigInteger.ONE.shiftLeft(128);
+        for (int q = MIN_POWER_OF_TEN; q <= MAX_POWER_OF_TEN; q++) {
+            BigInteger mantissa;
+            if (q >= 0) {
+                BigInteger powerOfFive = BigInteger.valueOf(5).pow(q);
+                int shift = powerOfFive.bitLength() - 128;
+                mantissa = shift > 0 ? powerOfFive.shiftRight(shift) : powerOfFive.shiftLeft(-shift);
+            } else {
+                BigInteger powerOfFive = BigInteger.valueOf(5).pow(-q);
+                //enough bits that the quotient has at least 128 significant bits before truncating
+                int bits = powerOfFive.bitLength() + 128;
+                mantissa = BigInteger.ONE.shiftLeft(bits).divide(powerOfFive).add(BigInteger.ONE);
+                mantissa = mantissa.shiftRight(mantissa.bitLength() - 128);
+            }
+            if (mantissa.compareTo(twoTo128) >= 0) {
+                throw new IllegalStateException("Power of ten table overflowed.");
+            }
+            int index = 2 * (q - MIN_POWER_OF_TEN);
+            POWERS_OF_TEN[index] = mantissa.shiftRight(64).longValue();
+            POWERS_OF_TEN[index + 1] = mantissa.longValue();
+        }
+    }
+    
+    private NumberParser() {
+        
+    }
+    
+    /**
+     * Parse an integer number, including ones with a positive exponent like '12e3'.
+     * @param text a JSON number without a fraction or negative exponent
+     * @return the value
+     * @throws JsonException if the value does not fit in a long
+     */
+    static long parseLong(CharSequence text) {
+        int length = text.length();
+        int i = 0;
+        boolean negative = text.charAt(0) == '-';
+        if (negative) {
+            i++;
+        }
+        //accumulate negatively so Long.MIN_VALUE can be parsed
+        long limit = negative ? Long.MIN_VALUE : -Long.MAX_VALUE;
+        long multiplyMin = limit / 10;
+        long value = 0;
+        char c;
+        while (i < length && NumberInfo.isDigit(c = text.charAt(i))) {
+            int digit = c - '0';
+            if (value < multiplyMin) {
+                throw overflow(text, "long");
+            }
+            value *= 10;
+            if (value < limit + digit) {
+                throw overflow(text, "long");
+            }
+            value -= digit;
+            i++;
+        }
+        if (i < length) { //exponent, only positive ones are allowed here
+            int exponent = parseExponent(text, i + 1);
+            if (exponent < 0) {
+                throw new JsonException("Tried to parse an integer out of a number with a negative exponent.");
+            }
+            for (int e = 0; e < exponent && value != 0; e++) {
+                if (value < multiplyMin) {
+                    throw overflow(text, "long");
+                }
+                value *= 10;
+            }
+        }
+        return negative ? value : -value;
+    }
+    
+    /**
+     * Parse any JSON number to the nearest double.
+     * @param text a JSON number
+     * @return the value, correctly rounded
+     */
+    static double parseDouble(CharSequence text) {
+        int length = text.length();
+        int i = 0;
+        boolean negative = text.charAt(0) == '-';
+        if (negative) {
+            i++;
+        }
+        long mantissa = 0;
+        int digits = 0;
+        int exponent = 0;
+        boolean truncated = false;
+        char c;
+        while (i < length && NumberInfo.isDigit(c = text.charAt(i))) {
+            if (digits < MAX_MANTISSA_DIGITS) {
+                mantissa = mantissa * 10 + (c - '0');
+                if (mantissa != 0) {
+                    digits++;
+                }
+            } else {
+                truncated |= c != '0';
+                exponent++;
+            }
+            i++;
+        }
+        if (i < length && text.charAt(i) == '.') {
+            i++;
+            while (i < length && NumberInfo.isDigit(c = text.charAt(i))) {
+                if (digits < MAX_MANTISSA_DIGITS) {
+                    mantissa = mantissa * 10 + (c - '0');
+                    if (mantissa != 0) {
+                        digits++;
+                    }
+                    exponent--;
+                } else {
+                    truncated |= c != '0';
+                }
+                i++;
+            }
+        }
+        if (i < length) {
+            exponent += parseExponent(text, i + 1);
+        }
+        if (!truncated) {
+            //the mantissa is unsigned, 19 digits can pass Long.MAX_VALUE
+            if (Long.compareUnsigned(mantissa, MAX_EXACT_MANTISSA) <= 0 && exponent >= -MAX_EXACT_POWER_OF_TEN && exponent <= MAX_EXACT_POWER_OF_TEN) {
+                double value = mantissa;
+                if (exponent < 0) {
+                    value /= EXACT_POWERS_OF_TEN[-exponent];
+                } else {
+                    value *= EXACT_POWERS_OF_TEN[exponent];
+                }
+                return negative ? -value : value;
+            }
+            long bits = eiselLemire(mantissa, exponent);
+            if (bits != -1) {
+                return Double.longBitsToDouble(negative ? bits | Long.MIN_VALUE : bits);
+            }
+        }
+        return Double.parseDouble(text.toString());
+    }
+    
+    /**
+     * Parse the signed exponent that starts at the given index, clamped to MAX_EXPONENT_MAGNITUDE.
+     */
+    private static int parseExponent(CharSequence text, int start) {
+        int i = start;
+        boolean negative = false;
+        char c = text.charAt(i);
+        if (c == '-' || c == '+') {
+            negative = c == '-';
+            i++;
+        }
+        int exponent = 0;
+        for (; i < text.length(); i++) {
+            if (exponent < MAX_EXPONENT_MAGNITUDE) {
+                exponent = exponent * 10 + (text.charAt(i) - '0');
+            }
+        }
+        exponent = Math.min(exponent, MAX_EXPONENT_MAGNITUDE);
+        return negative ? -exponent : exponent;
+    }
+    
+    /**
+     * Compute the bits of the positive double nearest to mantissa * 10^exponent.
+     * @param mantissa an unsigned mantissa
+     * @param exponent the power of ten
+     * @return the bits of the double, or -1 if the result could not be decided
+     */
+    private static long eiselLemire(long mantissa, int exponent) {
+        if (mantissa == 0 || exponent < MIN_POWER_OF_TEN) {
+            return 0;
+        }
+        if (exponent > MAX_POWER_OF_TEN) {
+            return Double.doubleToRawLongBits(Double.POSITIVE_INFINITY);
+        }
+        int leadingZeros = Long.numberOfLeadingZeros(mantissa);
+        mantissa <<= leadingZeros;
+        //floor(log2(10) * exponent) + 64 + the double exponent bias
+        long resultExponent = ((217706L * exponent) >> 16) + 64 + 1023 - leadingZeros;
+        int index = 2 * (exponent - MIN_POWER_OF_TEN);
+        long powerHigh = POWERS_OF_TEN[index];
+        long powerLow = POWERS_OF_TEN[index + 1];
+        long high = multiplyHigh(mantissa, powerHigh);
+        long low = mantissa * powerHigh;
+        //the truncated product may be off in the low bits, widen it with the rest of the power
+        if ((high & 0x1FF) == 0x1FF && Long.compareUnsigned(low + mantissa, mantissa) < 0) {
+            long wideHigh = multiplyHigh(mantissa, powerLow);
+            long wideLow = mantissa * powerLow;
+            long mergedHigh = high;
+            long mergedLow = low + wideHigh;
+            if (Long.compareUnsigned(mergedLow, low) < 0) {
+                mergedHigh++;
+            }
+            if ((mergedHigh & 0x1FF) == 0x1FF && mergedLow + 1 == 0 && Long.compareUnsigned(wideLow + mantissa, mantissa) < 0) {
+                return -1;
+            }
+            high = mergedHigh;
+            low = mergedLow;
+        }
+        long msb = high >>> 63;
+        long resultMantissa = high >>> (msb + 9);
+        resultExponent -= 1 ^ msb;
+        //exactly halfway between two doubles, let the fallback break the tie
+        if (low == 0 && (high & 0x1FF) == 0 && (resultMantissa & 3) == 1) {
+            return -1;
+        }
+        resultMantissa += resultMantissa & 1;
+        resultMantissa >>>= 1;
+        if ((resultMantissa >>> 53) > 0) {
+            resultMantissa >>>= 1;
+            resultExponent++;
+        }
+        //subnormals and infinity are left to the fallback
+        if (resultExponent <= 0 || resultExponent >= 0x7FF) {
+            return -1;
+        }
+        return (resultExponent << 52) | (resultMantissa & 0x000FFFFFFFFFFFFFL);
+    }
+    
+    /**
+     * Get the high 64 bits of the unsigned 128 bit product of x and y.
+     */
+    private static long multiplyHigh(long x, long y) {
+        long x0 = x & 0xFFFFFFFFL;
+        long x1 = x >>> 32;
+        long y0 = y & 0xFFFFFFFFL;
+        long y1 = y >>> 32;
+        long p00 = x0 * y0;
+        long p01 = x0 * y1;
+        long p10 = x1 * y0;
+        long p11 = x1 * y1;
+        long middle = p10 + (p00 >>> 32) + (p01 & 0xFFFFFFFFL);
+        return p11 + (middle >>> 32) + (p01 >>> 32);
+    }
+    
+    private static JsonException overflow(CharSequence text, String type) {
+        return new JsonException("'" + text + "' does not fit in a " + type + ".");
+    }
+    
+}
@@ -0,0 +1,201 @@
+package atomjson;
+
+import java.io.BufferedInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InterruptedIOException;
+import java.nio.ByteBuffer;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.zip.GZIPInputStream;
+import java.util.zip.InflaterInputStream;
+
+/**
+ * A ByteTokenizer for a stream that is read ahead of the parser by a producer thread. The producer reads
+ * and decompresses the stream into blocks and hands them over through a bounded queue, so reading, decompressing
+ * and parsing run at the same time and the slower of them sets the pace. gzip and zlib streams are detected by their
+ * first bytes and decompressed.
+ * <p>
+ * Every block is a new array and windows are never reused, since strings given to a handler are decoded from
+ * the window they were scanned in when they are read.
+ * @author Justin Bonner
+ */
+final class PipelinedTokenizer extends ByteTokenizer {
+    
+    static final int DEFAULT_BLOCK_SIZE = 1 << 16;
+    /**
+     * How many filled blocks the producer may get ahead of the parser.
+     */
+    private static final int READ_AHEAD = 4;
+    private static final int GZIP_MAGIC = 0x1F8B;
+    
+    private final BlockingQueue<Block> blocks;
+    private final Thread producer;
+    private volatile boolean released;
+    private boolean finished;
+    
+    private PipelinedTokenizer(InputStream stream, int blockSize) {
+        super(ByteBuffer.allocate(0));
+        this.blocks = new ArrayBlockingQueue<>(READ_AHEAD);
+        this.producer = new Thread(() -> produce(stream, blockSize), "atomjson-read-ahead");
+        this.producer.setDaemon(true);
+    }
+    
+    /**
+     * Start reading a stream ahead of the parser.
+     * @param stream the stream, closed once it has been read or the tokenizer is released
+     * @param blockSize the most bytes handed to the parser at once
+     * @return the tokenizer
+     */
+    static PipelinedTokenizer open(InputStream stream, int blockSize) {
+        PipelinedTokenizer tokenizer = new PipelinedTokenizer(stream, blockSize);
+        tokenizer.producer.start();
+        return tokenizer;
+    }
+    
+    /**
+     * Wrap the stream to decompress it if it begins with a gzip header or a zlib header. Neither can begin valid JSON.
+     */
+    private static InputStream decompress(InputStream stream, int blockSize) throws IOException {
+        InputStream buffered = new BufferedInputStream(stream, blockSize);
+        buffered.mark(2);
+        int first = buffered.read();
+        int second = buffered.read();
+        buffered.reset();
+        int header = (first << 8) | second;
+        if (header == GZIP_MAGIC) {
+            return new GZIPInputStream(buffered, blockSize);
+        }
+        if (first == 0x78 && second != -1 && header % 31 == 0) {
+            return new InflaterInputStream(buffered);
+        }
+        return buffered;
+    }
+    
+    /**
+     * Run by the producer thread.
+     */
+    private void produce(InputStream stream, int blockSize) {
+        try (InputStream source = decompress(stream, blockSize)) {
+            while (!released) {
+                byte[] bytes = new byte[blockSize];
+                int length = 0;
+                int read = 0;
+                while (length < blockSize && (read = source.read(bytes, length, blockSize - length)) != -1) {
+                    length += read;
+                }
+                if (length > 0) {
+                    hand(new Block(bytes, length, null));
+                }
+                if (read == -1) {
+                    break;
+                }
+            }
+            hand(Block.END);
+        } catch (IOException e) {
+            try {
+                hand(new Block(null, 0, e));
+            } catch (InterruptedException stopped) {
+                //released while failing
+            }
+        } catch (InterruptedException e) {
+            //released, the stream is closed on the way out
+        }
+    }
+    
+    private void hand(Block block) throws InterruptedException {
+        if (!released) {
+            blocks.put(block);
+        }
+    }
+    
+    /**
+     * Take the next block from the producer.
+     * @return the block, null once the stream is done
+     */
+    private Block take() throws IOException {
+        if (finished) {
+            return null;
+        }
+        Block block;
+        try {
+            block = blocks.take();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new InterruptedIOException("Interrupted while waiting for the stream.");
+        }
+        if (block.failure != null) {
+            finished = true;
+            throw new IOException(block.failure.getMessage(), block.failure);
+        }
+        if (block == Block.END) {
+            finished = true;
+            return null;
+        }
+        return block;
+    }
+    
+    @Override
+    int nextWindow(int keepFrom) throws IOException {
+        int kept = getLimit() - keepFrom;
+        Block block = take();
+        if (block == null) {
+            return -1;
+        }
+        if (kept == 0) {
+            setWindow(ByteBuffer.wrap(block.bytes), block.length);
+            return keepFrom;
+        }
+        //a token that spans blocks gets a window at least twice the part of it seen so far
+        byte[] window = new byte[Math.max(2 * kept, kept + block.length)];
+        ByteBuffer old = getSource().duplicate();
+        old.limit(getLimit()).position(keepFrom);
+        old.get(window, 0, kept);
+        int length = kept;
+        while (block != null) {
+            if (length + block.length > window.length) {
+                byte[] grown = new byte[Math.max(2 * window.length, length + block.length)];
+                System.arraycopy(window, 0, grown, 0, length);
+                window = grown;
+            }
+            System.arraycopy(block.bytes, 0, window, length, block.length);
+            length += block.length;
+            block = length < 2 * kept ? take() : null;
+        }
+        setWindow(ByteBuffer.wrap(window), length);
+        return keepFrom;
+    }
+    
+    @Override
+    boolean useStructuralIndex() {
+        //only one block of the stream is ever in the window
+        return false;
+    }
+    
+    @Override
+    void release() {
+        released = true;
+        producer.interrupt();
+        blocks.clear();
+    }
+    
+    /**
+     * A filled block, the end of the stream, or the failure that ended it.
+     */
+    private static final class Block {
+        
+        private static final Block END = new Block(new byte[0], 0, null);
+        
+        private final byte[] bytes;
+        private final int length;
+        private final IOException failure;
+        
+        private Block(byte[] bytes, int length, IOException failure) {
+            this.bytes = bytes;
+            this.length = length;
+            this.failure = failure;
+        }
+        
+    }
+    
+}
@@ -0,0 +1,553 @@
+package atomjson;
+
+import atomjson.exceptions.JsonException;
+import atomjson.exceptions.JsonSyntaxException;
+import java.io.IOException;
+import java.io.Reader;
+
+/**
+ * A JsonTokenizer that reads chars from a Reader.
+ * @author Justin Bonner
+ */
+class ReaderTokenizer extends JsonTokenizer {
+    
+    /**
+     * Token buffers that grew past this many chars for a huge token are dropped on reset instead of kept.
+     */
+    private static final int MAX_RETAINED_CAPACITY = 1 << 16;
+    
+    private final JsonReader reader;
+    private final StringBuilder buffer;
+    private boolean tokenReady;
+    
+    
+    ReaderTokenizer(Reader source) {
+        this.reader = new JsonReader(source);
+        this.buffer = new StringBuilder();
+        this.tokenReady = false;
+    }
+    
+    /**
+     * Start tokenizing a new source, keeping the buffers.
+     * @param source the new source, null to only let go of the old one
+     */
+    void reset(Reader source) {
+        reader.reset(source);
+        tokenReady = false;
+        buffer.setLength(0);
+        if (buffer.capacity() > MAX_RETAINED_CAPACITY) {
+            buffer.trimToSize();
+        }
+    }
+    
+    public JsonToken calcNextToken() throws IOException {
+        clearBuffer();
+        tokenReady = true;
+        int val = reader.read();
+        if (val == -1) {
+            return JsonToken.END;
+        }
+        char currChar = (char)val;
+        switch(currChar) {
+            case '{':
+                return JsonToken.BEGIN_OBJECT;
+            case '}':
+                return JsonToken.END_OBJECT;
+            case '[':
+                return JsonToken.BEGIN_ARRAY;
+            case ']':
+                return JsonToken.END_ARRAY;
+            case '"':
+                chunked = reader.finishString(buffer, strictSurrogates, chunkSink, chunkThreshold);
+                return JsonToken.STRING;
+            case ',':
+                return JsonToken.COMMA;
+            case ':':
+                return JsonToken.COLON;
+            case 'n':
+                verify('n', "null");
+                return JsonToken.NULL;
+            case 't':
+                verify('t', "true");
+                return JsonToken.BOOLEAN;
+            case 'f':
+                verify('f', "false");
+                return JsonToken.BOOLEAN;
+        }
+        if (currChar == '+' || currChar == '-' || NumberInfo.isDigit(currChar)) { //number
+            numberInfo = reader.readNumber(buffer);
+            return JsonToken.NUMBER;
+        }
+        throw new JsonSyntaxException("Could not tokenize '" + currChar + "'.");
+    }
+    
+    @Override
+    public JsonToken parseNextToken() throws IOException {
+        JsonToken token = calcNextToken();
+        //System.out.println(token.name());
+        return token;
+    }
+    
+    private void verify(char start, String expected) throws IOException {
+        buffer.append(start);
+        for (int i = 1; i < expected.length(); i++) {
+            char exp = expected.charAt(i);
+            char found = reader.rawReqRead();
+            buffer.append(found);
+            if (exp != found) {
+                throw new JsonSyntaxException("Expected to read '" + expected + "' but read '" + buffer.toString() + "'.");
+            }
+        }
+    }
+    
+    @Override
+    public String readToken() {
+        if (!tokenReady) {
+            throw new IllegalStateException("Tried to read a token when not ready.");
+        }
+        String token = buffer.toString();
+        clearBuffer();
+        tokenReady = false;
+        return token;
+    }
+    
+    @Override
+    String readKey() {
+        if (keyTable == null) {
+            return readToken();
+        }
+        if (!tokenReady) {
+            throw new IllegalStateException("Tried to read a token when not ready.");
+        }
+        String key = keyTable.get(buffer);
+        clearBuffer();
+        tokenReady = false;
+        return key;
+    }
+    
+    @Override
+    void readToken(TextView dest) {
+        if (!tokenReady) {
+            throw new IllegalStateException("Tried to read a token when not ready.");
+        }
+        dest.set(buffer);
+        clearBuffer();
+        tokenReady = false;
+    }
+    
+    @Override
+    void skipChildren(boolean object) throws IOException {
+        clearBuffer();
+        tokenReady = false;
+        checkSkippedEnd(object, reader.skipNested());
+    }
+    
+    @Override
+    void skipLine() throws IOException {
+        clearBuffer();
+        tokenReady = false;
+        reader.skipLine();
+    }
+    
+    @Override
+    boolean newlineBeforeToken() {
+        return reader.newlineBefore;
+    }
+    
+    public void skipToken() {
+        if (!tokenReady) {
+            throw new IllegalStateException("Tried to read a token when not ready.");
+        }
+        clearBuffer();
+        tokenReady = false;
+    }
+    
+    private void clearBuffer() {
+        if (buffer.length() != 0) {
+            buffer.setLength(0);
+            //possibly buffer = new StringBuilder() if the capacity has gotten super large
+        }
+    }
+    
+    private static class JsonReader {
+        
+        private static final int BUFFER_SIZE = 8192;
+        
+        private Reader reader;
+        /**
+         * The window of chars read from the source. Chars in [pos, limit) have not been consumed yet.
+         */
+        private final char[] buffer;
+        private int pos;
+        private int limit;
+        /**
+         * The start of the chars in the window that belong to the number being read.
+         */
+        private int runStart;
+        /**
+         * True if the whitespace skipped by the last read held a newline.
+         */
+        private boolean newlineBefore;
+        
+        private JsonReader(Reader source) {
+            this.reader = source;
+            this.buffer = new char[BUFFER_SIZE];
+            this.pos = 0;
+            this.limit = 0;
+        }
+        
+        private void reset(Reader source) {
+            this.reader = source;
+            this.pos = 0;
+            this.limit = 0;
+            this.runStart = 0;
+        }
+        
+        /**
+         * Refill the window from the source. Only called once every char in the window has been consumed.
+         * @return false if the source is exhausted
+         */
+        private boolean fill() throws IOException {
+            int read;
+            do {
+                read = reader.read(buffer, 0, buffer.length);
+            } while (read == 0);
+            pos = 0;
+            if (read == -1) {
+                limit = 0;
+                return false;
+            }
+            limit = read;
+            return true;
+        }
+        
+        /**
+         * Skip whitespace and consume the next char.
+         * @return the next non whitespace char or -1 if the source is done
+         */
+        public int read() throws IOException {
+            newlineBefore = false;
+            while (true) {
+                while (pos < limit) {
+                    char c = buffer[pos++];
+                    if (!isWhitespace(c)) {
+                        return c;
+                    }
+                    if (c == '\n') {
+                        newlineBefore = true;
+                    }
+                }
+                if (!fill()) {
+                    return -1;
+                }
+            }
+        }
+        
+        /**
+         * Read the rest of a string whose opening '"' has already been consumed. Escapes are
+         * processed and the closing '"' is consumed but not appended.
+         * @param dest where to place the string contents
+         * @param strictSurrogates true to reject escaped surrogates that are not part of an escaped pair
+         * @param sink where to send the string in chunks once it reaches the threshold, null to keep it whole
+         * @param threshold the length at which the string is sent to the sink
+         * @return true if the string was long enough to go to the sink, dest then only holds the final chunk
+         */
+        public boolean finishString(StringBuilder dest, boolean strictSurrogates, ChunkSink sink, int threshold) throws IOException {
+            boolean chunked = false;
+            while (true) {
+                int start = pos;
+                //when chunking, stop the run where the chunk would reach the threshold
+                int end = sink == null ? limit : Math.min(limit, pos + Math.max(1, threshold - dest.length()));
+                while (pos < end) {
+                    char c = buffer[pos];
+                    if (c > '\\') { //most text, nothing after the backslash needs a look
+                        pos++;
+                        continue;
+                    }
+                    if (c == '"') {
+                        dest.append(buffer, start, pos - start);
+                        pos++;
+                        return chunked || (sink != null && dest.length() >= threshold);
+                    }
+                    if (c == '\\') {
+                        dest.append(buffer, start, pos - start);
+                        pos++;
+                        readEscape(dest, strictSurrogates);
+                        start = pos;
+                        break; //the escape may have moved the window
+                    }
+                    if (c <= 31) {
+                        //this case would be handled fine by the parser but is not valid json
+                        throw new JsonException("Unescaped control character not allowed in string.");
+                    }
+                    pos++;
+                }
+                dest.append(buffer, start, pos - start);
+                chunked |= flushChunk(dest, sink, threshold);
+                if (pos >= limit && !fill()) {
+                    throw new JsonSyntaxException("EOF in a string.");
+                }
+            }
+        }
+        
+        /**
+         * Send what has been read of a string to the sink once it is long enough, so a long string is never held whole.
+         * A trailing high surrogate is held back for the next chunk so a surrogate pair is never split.
+         * @return true if a chunk was sent
+         */
+        private static boolean flushChunk(StringBuilder dest, ChunkSink sink, int threshold) {
+            int length = dest.length();
+            if (sink == null || length < threshold) {
+                return false;
+            }
+            char last = dest.charAt(length - 1);
+            boolean held = Character.isHighSurrogate(last);
+            if (held) {
+                if (length == 1) {
+                    return false;
+                }
+                dest.setLength(length - 1);
+            }
+            sink.chunk(dest);
+            dest.setLength(0);
+            if (held) {
+                dest.append(last);
+            }
+            return true;
+        }
+        
+        /**
+         * Scan and validate a number in a single pass, appending it to dest. The first char of the number
+         * must have just been consumed by read(). The number must be followed by whitespace, a comma,
+         * a closing bracket or the end of the source, which is not consumed.
+         * @param dest where to place the number
+         * @return the NumberInfo of the number
+         */
+        public int readNumber(StringBuilder dest) throws IOException {
+            pos--; //read() just consumed the first char so it is still in the window
+            runStart = pos;
+            int flags = 0;
+            int c = peekNumberChar(dest);
+            if (c == '-') {
+                flags |= NumberInfo.NEGATIVE;
+                pos++;
+                c = peekNumberChar(dest);
+            }
+            int digits = 0;
+            while (NumberInfo.isDigit(c)) {
+                digits++;
+                pos++;
+                c = peekNumberChar(dest);
+            }
+            if (digits == 0) {
+                throw notANumber(dest, c);
+            }
+            if (c == '.') {
+                pos++;
+                c = peekNumberChar(dest);
+                int fractionDigits = 0;
+                while (NumberInfo.isDigit(c)) {
+                    fractionDigits++;
+                    pos++;
+                    c = peekNumberChar(dest);
+                }
+                if (fractionDigits == 0) {
+                    throw notANumber(dest, c);
+                }
+                digits += fractionDigits;
+                flags |= NumberInfo.FRACTION;
+            }
+            if (c == 'e' || c == 'E') {
+                flags |= NumberInfo.EXPONENT;
+                pos++;
+                c = peekNumberChar(dest);
+                if (c == '+' || c == '-') {
+                    if (c == '-') {
+                        flags |= NumberInfo.NEGATIVE_EXPONENT;
+                    }
+                    pos++;
+                    c = peekNumberChar(dest);
+                }
+                int exponentDigits = 0;
+                while (NumberInfo.isDigit(c)) {
+                    exponentDigits++;
+                    pos++;
+                    c = peekNumberChar(dest);
+                }
+                if (exponentDigits == 0) {
+                    throw notANumber(dest, c);
+                }
+            }
+            if (c != -1 && c != ',' && c != '}' && c != ']' && !isWhitespace((char)c)) {
+                throw notANumber(dest, c);
+            }
+            dest.append(buffer, runStart, pos - runStart);
+            return NumberInfo.create(flags, digits);
+        }
+        
+        /**
+         * Get the char at pos while reading a number. The chars scanned so far are appended to dest
+         * before the window is refilled.
+         * @return the char at pos, -1 if the source is done
+         */
+        private int peekNumberChar(StringBuilder dest) throws IOException {
+            if (pos >= limit) {
+                dest.append(buffer, runStart, pos - runStart);
+                runStart = 0;
+                if (!fill()) {
+                    return -1;
+                }
+            }
+            return buffer[pos];
+        }
+        
+        private JsonSyntaxException notANumber(StringBuilder dest, int c) {
+            dest.append(buffer, runStart, pos - runStart);
+            runStart = pos;
+            if (c != -1) {
+                dest.append((char)c);
+            }
+            return new JsonSyntaxException("'" + dest + "' was not a number as expected.");
+        }
+        
+        /**
+         * Decode the escape whose backslash has just been consumed, appending it to dest.
+         */
+        private void readEscape(StringBuilder dest, boolean strictSurrogates) throws IOException {
+            char currChar = rawReqRead();
+            switch(currChar) {
+                case '\\':
+                case '"':
+                case '/':
+                    dest.append(currChar);
+                    return;
+                case 'b':
+                    dest.append('\b');
+                    return;
+                case 'f':
+                    dest.append('\f');
+                    return;
+                case 'n':
+                    dest.append('\n');
+                    return;
+                case 'r':
+                    dest.append('\r');
+                    return;
+                case 't':
+                    dest.append('\t');
+                    return;
+                case 'u':
+                    char value = readUnicodeEscape();
+                    dest.append(value);
+                    if (strictSurrogates && Character.isSurrogate(value)) {
+                        if (Character.isLowSurrogate(value) || rawReqRead() != '\\' || rawReqRead() != 'u') {
+                            throw unpairedSurrogate(value);
+                        }
+                        char low = readUnicodeEscape();
+                        if (!Character.isLowSurrogate(low)) {
+                            throw unpairedSurrogate(value);
+                        }
+                        dest.append(low);
+                    }
+                    return;
+                default:
+                    throw new JsonSyntaxException("Invalid escape '\\" + currChar + "'.");
+            }
+        }
+        
+        /**
+         * Read and decode the 4 hex digits of a unicode escape.
+         */
+        private char readUnicodeEscape() throws IOException {
+            int value = 0;
+            for (int i = 0; i < 4; i++) {
+                char c = rawReqRead();
+                int digit = hexValue(c);
+                if (digit == -1) {
+                    throw new JsonException("Invalid Unicode escape, '" + c + "' is not a hex digit.");
+                }
+                value = value << 4 | digit;
+            }
+            return (char)value;
+        }
+        
+        private static int hexValue(char c) {
+            if (c >= '0' && c <= '9') {
+                return c - '0';
+            } else if (c >= 'a' && c <= 'f') {
+                return c - 'a' + 10;
+            } else if (c >= 'A' && c <= 'F') {
+                return c - 'A' + 10;
+            }
+            return -1;
+        }
+        
+        private static JsonSyntaxException unpairedSurrogate(char value) {
+            return new JsonSyntaxException("Unpaired surrogate '\\u" + Integer.toHexString(value).toUpperCase() + "' in a string.");
+        }
+        
+        /**
+         * Consume chars until the object or array whose opening bracket was the last char consumed
+         * is closed. Only quotes, escapes and brackets are looked at.
+         * @return the bracket that closed it
+         */
+        public char skipNested() throws IOException {
+            int depth = 1;
+            boolean inString = false;
+            while (true) {
+                while (pos < limit) {
+                    char c = buffer[pos++];
+                    if (inString) {
+                        if (c == '"') {
+                            inString = false;
+                        } else if (c == '\\') {
+                            rawReqRead(); //the escaped char can not end the string
+                        }
+                    } else if (c == '"') {
+                        inString = true;
+                    } else if (c == '{' || c == '[') {
+                        depth++;
+                    } else if ((c == '}' || c == ']') && --depth == 0) {
+                        return c;
+                    }
+                }
+                if (!fill()) {
+                    throw new JsonSyntaxException(inString ? "EOF in a string." : "Early EOF.");
+                }
+            }
+        }
+        
+        /**
+         * Consume chars up to and including the next newline or to the end of the source.
+         */
+        public void skipLine() throws IOException {
+            do {
+                while (pos < limit) {
+                    if (buffer[pos++] == '\n') {
+                        return;
+                    }
+                }
+            } while (fill());
+        }
+        
+        /**
+         * Consume the next char without skipping whitespace or processing escapes.
+         * @return the next char
+         */
+        public char rawReqRead() throws IOException {
+            if (pos == limit && !fill()) {
+                throw new JsonSyntaxException("Early EOF.");
+            }
+            return buffer[pos++];
+        }
+        
+        private static boolean isWhitespace(char c) {
+            if (c <= ' ') {
+                return c == ' ' || (c >= '\t' && c <= '\r') || c >= 0x1C;
+            }
+            return c >= 0x80 && Character.isWhitespace(c);
+        }
+        
+    }
+    
+}
@@ -0,0 +1,207 @@
+package atomjson;
+
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+
+/**
+ * An index of where the tokens of UTF-8 JSON start, found 64 bytes at a time with bitwise operations on
+ * 64 bit words instead of looking at each byte. The index holds the position of every structural character
+ * outside of strings, every opening quote and the first byte of every number and literal, so a tokenizer can
+ * jump straight from one token to the next.
+ * <p>
+ * Each 64 byte block is turned into bitmasks of its quotes, backslashes, structural characters and whitespace,
+ * with one bit per byte. The escaped characters are found from the backslashes, the bytes inside strings are
+ * found with a prefix xor of the unescaped quotes, and the state at the end of each block is carried into the next.
+ * The index is built a batch of blocks at a time as the tokenizer asks for positions, so it never needs more
+ * than a small buffer. The index does not validate anything, the tokenizer still validates every token it reads.
+ * Only ASCII whitespace is masked, whitespace past ASCII is indexed like the start of a literal and the tokenizer skips it.
+ * @author Justin Bonner
+ */
+final class StructuralIndex {
+    
+    private static final int BLOCK_SIZE = 64;
+    private static final int BATCH_SIZE = 256 * BLOCK_SIZE;
+    
+    private static final long ONES = 0x0101010101010101L;
+    private static final long LOW_SEVEN_BITS = 0x7F7F7F7F7F7F7F7FL;
+    private static final long HIGH_BITS = 0x8080808080808080L;
+    /**
+     * Gathers the high bit of each byte into the top byte when multiplied by the high bits shifted down by 7.
+     */
+    private static final long GATHER = 0x0102040810204080L;
+    private static final long LOWERCASE_BIT = 0x2020202020202020L;
+    
+    private final ByteBuffer source;
+    private final int end;
+    /**
+     * The start of the next block to index.
+     */
+    private int blockStart;
+    /**
+     * The indexed positions of the current batch, positions[next] is the first one not yet passed.
+     */
+    private final int[] positions;
+    private int count;
+    private int next;
+    /**
+     * True if the last block ended inside a string.
+     */
+    private boolean inString;
+    /**
+     * True if the last block ended with a backslash that escapes the first byte of the next block.
+     */
+    private boolean escapeCarry;
+    /**
+     * True if the last block ended with a byte of a number or literal.
+     */
+    private boolean scalarCarry;
+    
+    /**
+     * Index the bytes of source from start to end.
+     */
+    StructuralIndex(ByteBuffer source, int start, int end) {
+        this.source = source.duplicate().order(ByteOrder.LITTLE_ENDIAN);
+        this.end = end;
+        this.blockStart = start;
+        this.positions = new int[BATCH_SIZE];
+        this.count = 0;
+        this.next = 0;
+    }
+    
+    /**
+     * Get the first indexed position at or after the given position. Positions must be asked for in increasing order.
+     * @param position where to start looking
+     * @return the first indexed position at or after position, -1 if there are none
+     */
+    int next(int position) {
+        while (true) {
+            while (next < count) {
+                int indexed = positions[next];
+                if (indexed >= position) {
+                    return indexed;
+                }
+                next++;
+            }
+            if (blockStart >= end) {
+                return -1;
+            }
+            indexBatch();
+        }
+    }
+    
+    private void indexBatch() {
+        count = 0;
+        next = 0;
+        int batchEnd = (int)Math.min(end, (long)blockStart + BATCH_SIZE);
+        while (blockStart < batchEnd) {
+            indexBlock(blockStart, Math.min(BLOCK_SIZE, end - blockStart));
+            blockStart += BLOCK_SIZE;
+        }
+    }
+    
+    private void indexBlock(int start, int length) {
+        long quotes = 0;
+        long backslashes = 0;
+        long structurals = 0;
+        long whitespace = 0;
+        for (int w = 0; w < BLOCK_SIZE / 8; w++) {
+            long word = word(start + 8 * w, length - 8 * w);
+            int shift = 8 * w;
+            quotes |= gather(equal(word, '"')) << shift;
+            backslashes |= gather(equal(word, '\\')) << shift;
+            long folded = word | LOWERCASE_BIT; //'[' becomes '{' and ']' becomes '}'
+            structurals |= gather(equal(folded, '{') | equal(folded, '}') | equal(word, ':') | equal(word, ',')) << shift;
+            whitespace |= gather((less(word, 0x0E) & ~less(word, 0x09)) | (less(word, 0x21) & ~less(word, 0x1C))) << shift;
+        }
+        long escaped = escaped(backslashes);
+        long unescapedQuotes = quotes & ~escaped;
+        //every bit from an opening quote up to but not including its closing quote
+        long strings = prefixXor(unescapedQuotes) ^ (inString ? -1L : 0);
+        inString = strings < 0;
+        long outside = ~strings;
+        long scalars = ~(structurals | whitespace | quotes) & outside;
+        long scalarStarts = scalars & ~((scalars << 1) | (scalarCarry ? 1 : 0));
+        scalarCarry = scalars < 0;
+        long bits = (structurals & outside) | (unescapedQuotes & strings) | scalarStarts;
+        if (length < BLOCK_SIZE) {
+            bits &= (1L << length) - 1;
+        }
+        while (bits != 0) {
+            positions[count++] = start + Long.numberOfTrailingZeros(bits);
+            bits &= bits - 1;
+        }
+    }
+    
+    /**
+     * Read 8 bytes as a little endian word, padding past the end of the source with spaces.
+     */
+    private long word(int position, int available) {
+        if (available >= 8) {
+            return source.getLong(position);
+        }
+        long word = ONES * ' ';
+        for (int i = 0; i < Math.max(0, available); i++) {
+            word &= ~(0xFFL << (8 * i));
+            word |= (source.get(position + i) & 0xFFL) << (8 * i);
+        }
+        return word;
+    }
+    
+    /**
+     * Find the bytes escaped by a backslash. Backslashes are rare so they are walked one at a time.
+     */
+    private long escaped(long backslashes) {
+        long escaped = 0;
+        if (escapeCarry) {
+            escapeCarry = false;
+            escaped = 1;
+            backslashes &= ~1L;
+        }
+        while (backslashes != 0) {
+            int i = Long.numberOfTrailingZeros(backslashes);
+            if (i == BLOCK_SIZE - 1) {
+                escapeCarry = true;
+                break;
+            }
+            escaped |= 1L << (i + 1);
+            backslashes &= ~(3L << i); //an escaped backslash does not escape anything
+        }
+        return escaped;
+    }
+    
+    /**
+     * Set the high bit of each byte of word that equals c.
+     */
+    static long equal(long word, int c) {
+        long x = word ^ (ONES * c);
+        return ~(((x & LOW_SEVEN_BITS) + LOW_SEVEN_BITS) | x) & HIGH_BITS;
+    }
+    
+    /**
+     * Set the high bit of each byte of word that is less than n, which must be at most 0x80.
+     */
+    static long less(long word, int n) {
+        return ~(((word & LOW_SEVEN_BITS) + ONES * (0x80 - n)) | word) & HIGH_BITS;
+    }
+    
+    /**
+     * Gather the high bit of each byte into the low 8 bits, the bit of byte i becoming bit i.
+     */
+    static long gather(long highBits) {
+        return ((highBits >>> 7) * GATHER) >>> 56;
+    }
+    
+    /**
+     * Set each bit to the xor of it and every bit below it.
+     */
+    static long prefixXor(long bits) {
+        bits ^= bits << 1;
+        bits ^= bits << 2;
+        bits ^= bits << 4;
+        bits ^= bits << 8;
+        bits ^= bits << 16;
+        bits ^= bits << 32;
+        return bits;
+    }
+    
+}
@@ -0,0 +1,80 @@
+package atomjson;
+
+/**
+ * A reusable, growable sequence of chars. The parser hands these to a JsonViewHandler so that keys
+ * and values can be delivered without creating a String for each one.
+ * @author Justin Bonner
+ */
+final class TextView implements CharSequence {
+    
+    private char[] chars;
+    private int length;
+    
+    TextView() {
+        this.chars = new char[32];
+        this.length = 0;
+    }
+    
+    /**
+     * Get the backing array, growing it to hold at least capacity chars. The contents
+     * are not kept when the array grows.
+     * @param capacity the chars needed
+     * @return the backing array
+     */
+    char[] reserve(int capacity) {
+        if (chars.length < capacity) {
+            chars = new char[Math.max(capacity, chars.length * 2)];
+        }
+        return chars;
+    }
+    
+    void setLength(int length) {
+        this.length = length;
+    }
+    
+    /**
+     * Replace the contents with a copy of the given text.
+     * @param text the text to copy
+     */
+    void set(CharSequence text) {
+        int textLength = text.length();
+        char[] dest = reserve(textLength);
+        if (text instanceof String) {
+            ((String)text).getChars(0, textLength, dest, 0);
+        } else if (text instanceof StringBuilder) {
+            ((StringBuilder)text).getChars(0, textLength, dest, 0);
+        } else {
+            for (int i = 0; i < textLength; i++) {
+                dest[i] = text.charAt(i);
+            }
+        }
+        this.length = textLength;
+    }
+    
+    @Override
+    public int length() {
+        return length;
+    }
+    
+    @Override
+    public char charAt(int index) {
+        if (index < 0 || index >= length) {
+            throw new IndexOutOfBoundsException("index " + index + ", length " + length);
+        }
+        return chars[index];
+    }
+    
+    @Override
+    public CharSequence subSequence(int start, int end) {
+        if (start < 0 || end > length || start > end) {
+            throw new IndexOutOfBoundsException("start " + start + ", end " + end + ", length " + length);
+        }
+        return new String(chars, start, end - start);
+    }
+    
+    @Override
+    public String toString() {
+        return new String(chars, 0, length);
+    }
+    
+}
@@ -0,0 +1,702 @@
+package atomjson;
+
+import atomjson.exceptions.JsonException;
+import java.lang.invoke.MethodHandle;
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.MethodType;
+import java.lang.reflect.Constructor;
+import java.lang.reflect.Field;
+import java.lang.reflect.Modifier;
+import java.lang.reflect.ParameterizedType;
+import java.lang.reflect.Type;
+import java.lang.reflect.WildcardType;
+import java.math.BigDecimal;
+import java.math.BigInteger;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * How values of one Java type are read from parsing events and written to a JsonWriter. Bindings are
+ * computed once per type and cached, so binding a class only costs reflection the first time it is seen.
+ * Objects and collections are filled through a Frame, one for each open object or array.
+ * @author Justin Bonner
+ */
+abstract class TypeBinding {
+    
+    private static final Map<Type, TypeBinding> BINDINGS = new ConcurrentHashMap<>();
+    private static final MethodHandles.Lookup LOOKUP = MethodHandles.lookup();
+    
+    final Type type;
+    
+    TypeBinding(Type type) {
+        this.type = type;
+    }
+    
+    /**
+     * Get the binding of a type.
+     * @param type the type
+     * @return the binding
+     * @throws JsonException if values of the type can not be bound
+     */
+    static TypeBinding of(Type type) {
+        TypeBinding binding = BINDINGS.get(type);
+        if (binding == null) {
+            binding = create(type);
+            TypeBinding existing = BINDINGS.putIfAbsent(type, binding);
+            if (existing != null) {
+                binding = existing;
+            }
+        }
+        return binding;
+    }
+    
+    private static TypeBinding create(Type type) {
+        if (type instanceof WildcardType) {
+            return of(((WildcardType)type).getUpperBounds()[0]);
+        }
+        Class<?> raw = type instanceof ParameterizedType ? (Class<?>)((ParameterizedType)type).getRawType()
+            : type instanceof Class ? (Class<?>)type : null;
+        if (raw == null) {
+            throw new JsonException("Can not bind type " + type.getTypeName() + ".");
+        }
+        ScalarBinding scalar = ScalarBinding.create(raw);
+        if (scalar != null) {
+            return scalar;
+        }
+        if (raw == char.class || raw == Character.class) {
+            throw new JsonException("Can not bind " + raw.getName() + ", use a String for single characters.");
+        }
+        if (Collection.class.isAssignableFrom(raw)) {
+            return new CollectionBinding(type, containerFactory(type, raw), of(typeArgument(type, 0)));
+        }
+        if (Map.class.isAssignableFrom(raw)) {
+            if (typeArgument(type, 0) != String.class) {
+                throw new JsonException("Can not bind " + type.getTypeName() + ", map keys must be Strings.");
+            }
+            return new MapBinding(type, containerFactory(type, raw), of(typeArgument(type, 1)));
+        }
+        if (raw.isPrimitive() || raw.isArray() || raw.isInterface() || Modifier.isAbstract(raw.getModifiers()) || raw.getName().startsWith("java.")) {
+            throw new JsonException("Can not bind type " + type.getTypeName() + ".");
+        }
+        return new ObjectBinding(raw, constructor(raw));
+    }
+    
+    private static Type typeArgument(Type type, int index) {
+        if (!(type instanceof ParameterizedType)) {
+            throw new JsonException("Can not bind raw type " + type.getTypeName() + ".");
+        }
+        return ((ParameterizedType)type).getActualTypeArguments()[index];
+    }
+    
+    /**
+     * Get a constructor for a collection or map, the usual implementation for an interface.
+     */
+    private static MethodHandle containerFactory(Type type, Class<?> raw) {
+        if (raw == List.class || raw == Collection.class) {
+            raw = ArrayList.class;
+        } else if (raw == Set.class) {
+            raw = LinkedHashSet.class;
+        } else if (raw == Map.class) {
+            raw = LinkedHashMap.class;
+        } else if (raw.isInterface() || Modifier.isAbstract(raw.getModifiers())) {
+            throw new JsonException("Can not bind type " + type.getTypeName() + ".");
+        }
+        return constructor(raw);
+    }
+    
+    private static MethodHandle constructor(Class<?> raw) {
+        try {
+            Constructor<?> constructor = raw.getDeclaredConstructor();
+            constructor.setAccessible(true);
+            return LOOKUP.unreflectConstructor(constructor).asType(MethodType.methodType(Object.class));
+        } catch (ReflectiveOperationException | RuntimeException e) {
+            throw new JsonException("Can not bind " + raw.getName() + ", it needs a constructor without parameters.", e);
+        }
+    }
+    
+    static JsonException wrap(Throwable t) {
+        if (t instanceof JsonException) {
+            return (JsonException)t;
+        }
+        if (t instanceof Error) {
+            throw (Error)t;
+        }
+        return new JsonException(t);
+    }
+    
+    /**
+     * Get the event a value of this type begins with.
+     * @return BEGIN_OBJECT or BEGIN_ARRAY, or null if values of this type are primitives
+     */
+    abstract JsonParsingState beginState();
+    
+    /**
+     * Convert a primitive to a value of this type.
+     * @param value the primitive
+     * @return the value
+     */
+    Object read(JsonPrimitive value) {
+        if (value.isNull()) {
+            return null;
+        }
+        throw new JsonException("Can not read " + value.getType().name() + " as " + type.getTypeName() + ".");
+    }
+    
+    /**
+     * Find everything needed to read and write values of this type, so problems with it are found early.
+     */
+    void prepare() {
+    }
+    
+    /**
+     * Write a value of this type.
+     * @param writer the writer
+     * @param fieldName the field name if the value is inside an object, otherwise null
+     * @param value the value, may be null
+     */
+    abstract void write(JsonWriter writer, CharSequence fieldName, Object value);
+    
+    /**
+     * An object or array being filled.
+     */
+    static final class Frame {
+        
+        ContainerBinding binding;
+        Object container;
+        /**
+         * Where the child being read is stored, a Property for objects or the key for maps.
+         */
+        Object slot;
+        
+    }
+    
+    /**
+     * Objects, collections and maps, which are filled from the events between their begin and end events.
+     */
+    abstract static class ContainerBinding extends TypeBinding {
+        
+        private final MethodHandle constructor;
+        
+        ContainerBinding(Type type, MethodHandle constructor) {
+            super(type);
+            this.constructor = constructor;
+        }
+        
+        /**
+         * Create an empty object, collection or map to fill.
+         */
+        Object create() {
+            try {
+                return (Object)constructor.invokeExact();
+            } catch (Throwable t) {
+                throw wrap(t);
+            }
+        }
+        
+        /**
+         * Add a primitive inside an object or array of this type.
+         */
+        abstract void accept(Frame frame, CharSequence fieldName, JsonPrimitive value);
+        
+        /**
+         * Find the binding of an object or array beginning inside an object or array of this type.
+         * @return the binding, or null if the child should be skipped
+         */
+        abstract TypeBinding child(Frame frame, CharSequence fieldName);
+        
+        /**
+         * Add a finished child that began after the last call to child.
+         */
+        abstract void store(Frame frame, Object child);
+        
+    }
+    
+    /**
+     * Strings, numbers, booleans and enums.
+     */
+    private static final class ScalarBinding extends TypeBinding {
+        
+        private static final int STRING = 0;
+        private static final int BOOLEAN = 1;
+        private static final int INT = 2;
+        private static final int LONG = 3;
+        private static final int DOUBLE = 4;
+        private static final int FLOAT = 5;
+        private static final int SHORT = 6;
+        private static final int BYTE = 7;
+        private static final int BIG_INTEGER = 8;
+        private static final int BIG_DECIMAL = 9;
+        private static final int ENUM = 10;
+        
+        private final int kind;
+        private final Map<String, Object> constants;
+        
+        private ScalarBinding(Class<?> type, int kind, Map<String, Object> constants) {
+            super(type);
+            this.kind = kind;
+            this.constants = constants;
+        }
+        
+        private static ScalarBinding create(Class<?> type) {
+            if (type.isEnum()) {
+                Map<String, Object> constants = new HashMap<>();
+                for (Object constant : type.getEnumConstants()) {
+                    constants.put(((Enum<?>)constant).name(), constant);
+                }
+                return new ScalarBinding(type, ENUM, constants);
+            }
+            int kind;
+            if (type == String.class || type == CharSequence.class) {
+                kind = STRING;
+            } else if (type == boolean.class || type == Boolean.class) {
+                kind = BOOLEAN;
+            } else if (type == int.class || type == Integer.class) {
+                kind = INT;
+            } else if (type == long.class || type == Long.class) {
+                kind = LONG;
+            } else if (type == double.class || type == Double.class) {
+                kind = DOUBLE;
+            } else if (type == float.class || type == Float.class) {
+                kind = FLOAT;
+            } else if (type == short.class || type == Short.class) {
+                kind = SHORT;
+            } else if (type == byte.class || type == Byte.class) {
+                kind = BYTE;
+            } else if (type == BigInteger.class) {
+                kind = BIG_INTEGER;
+            } else if (type == BigDecimal.class) {
+                kind = BIG_DECIMAL;
+            } else {
+                return null;
+            }
+            return new ScalarBinding(type, kind, null);
+        }
+        
+        @Override
+        JsonParsingState beginState() {
+            return null;
+        }
+        
+        @Override
+        Object read(JsonPrimitive value) {
+            if (value.isNull()) {
+                return null;
+            }
+            switch (kind) {
+                case STRING:
+                    return value.getAsString();
+                case BOOLEAN:
+                    return value.getAsBoolean();
+                case INT:
+                    return value.getAsInt();
+                case LONG:
+                    return value.getAsLong();
+                case DOUBLE:
+                    return value.getAsDouble();
+                case FLOAT:
+                    return (float)value.getAsDouble();
+                case SHORT:
+                    return (short)narrow(value, Short.MIN_VALUE, Short.MAX_VALUE);
+                case BYTE:
+                    return (byte)narrow(value, Byte.MIN_VALUE, Byte.MAX_VALUE);
+                case BIG_INTEGER:
+                    return value.getAsBigInteger();
+                case BIG_DECIMAL:
+                    return value.getAsBigDecimal();
+                default:
+                    Object constant = constants.get(value.getAsString());
+                    if (constant == null) {
+                        throw new JsonException("'" + value.getAsString() + "' is not a constant of " + type.getTypeName() + ".");
+                    }
+                    return constant;
+            }
+        }
+        
+        private int narrow(JsonPrimitive value, int min, int max) {
+            int i = value.getAsInt();
+            if (i < min || i > max) {
+                throw new JsonException("'" + value.getUnderlyingString() + "' does not fit in a " + type.getTypeName() + ".");
+            }
+            return i;
+        }
+        
+        @Override
+        void write(JsonWriter writer, CharSequence fieldName, Object value) {
+            if (value == null) {
+                writer.writeNull(fieldName);
+                return;
+            }
+            switch (kind) {
+                case STRING:
+                    writer.writeString(fieldName, (CharSequence)value);
+                    break;
+                case BOOLEAN:
+                    writer.writeBoolean(fieldName, (Boolean)value);
+                    break;
+                case INT:
+                case LONG:
+                case SHORT:
+                case BYTE:
+                    writer.writeNumber(fieldName, ((Number)value).longValue());
+                    break;
+                case DOUBLE:
+                case FLOAT:
+                    writer.writeNumber(fieldName, ((Number)value).doubleValue());
+                    break;
+                case BIG_INTEGER:
+                case BIG_DECIMAL:
+                    writer.writePrimitive(fieldName, new JsonPrimitive(JsonPrimitiveType.NUMBER, value.toString()));
+                    break;
+                default:
+                    writer.writeString(fieldName, ((Enum<?>)value).name());
+            }
+        }
+        
+    }
+    
+    /**
+     * A class filled field by field. The fields are found the first time the binding is used, so a class
+     * can have fields of its own type.
+     */
+    private static final class ObjectBinding extends ContainerBinding {
+        
+        private volatile Property[] properties;
+        /**
+         * The properties by the hash of their names, an open addressing table.
+         */
+        private volatile Property[] table;
+        
+        private ObjectBinding(Class<?> type, MethodHandle constructor) {
+            super(type, constructor);
+        }
+        
+        private Property[] properties() {
+            Property[] result = properties;
+            if (result == null) {
+                synchronized (this) {
+                    result = properties;
+                    if (result == null) {
+                        result = findProperties();
+                        Property[] hashed = new Property[Integer.highestOneBit(Math.max(result.length, 1) * 2) * 2];
+                        for (Property property : result) {
+                            int i = property.hash & (hashed.length - 1);
+                            while (hashed[i] != null) {
+                                i = (i + 1) & (hashed.length - 1);
+                            }
+                            hashed[i] = property;
+                        }
+                        table = hashed;
+                        properties = result;
+                    }
+                }
+            }
+            return result;
+        }
+        
+        private Property[] findProperties() {
+            List<Class<?>> hierarchy = new ArrayList<>();
+            for (Class<?> c = (Class<?>)type; c != null && c != Object.class; c = c.getSuperclass()) {
+                hierarchy.add(0, c);
+            }
+            Map<String, Field> fields = new LinkedHashMap<>();
+            for (Class<?> c : hierarchy) {
+                for (Field field : c.getDeclaredFields()) {
+                    int modifiers = field.getModifiers();
+                    if (!Modifier.isStatic(modifiers) && !Modifier.isTransient(modifiers) && !Modifier.isFinal(modifiers) && !field.isSynthetic()) {
+                        fields.put(field.getName(), field);
+                    }
+                }
+            }
+            Property[] result = new Property[fields.size()];
+            int i = 0;
+            for (Field field : fields.values()) {
+                result[i++] = new Property(field);
+            }
+            return result;
+        }
+        
+        private Property find(CharSequence fieldName) {
+            Property[] hashed = table;
+            int i = hash(fieldName) & (hashed.length - 1);
+            Property property;
+            while ((property = hashed[i]) != null) {
+                if (property.name.contentEquals(fieldName)) {
+                    return property;
+                }
+                i = (i + 1) & (hashed.length - 1);
+            }
+            return null;
+        }
+        
+        /**
+         * The same hash as String.hashCode, without creating a String from a view.
+         */
+        private static int hash(CharSequence text) {
+            if (text instanceof String) {
+                return text.hashCode();
+            }
+            int h = 0;
+            int length = text.length();
+            for (int i = 0; i < length; i++) {
+                h = 31 * h + text.charAt(i);
+            }
+            return h;
+        }
+        
+        @Override
+        JsonParsingState beginState() {
+            return JsonParsingState.BEGIN_OBJECT;
+        }
+        
+        @Override
+        void prepare() {
+            properties();
+        }
+        
+        @Override
+        Object create() {
+            properties();
+            return super.create();
+        }
+        
+        @Override
+        void accept(Frame frame, CharSequence fieldName, JsonPrimitive value) {
+            Property property = find(fieldName);
+            if (property != null) {
+                property.read(frame.container, value);
+            }
+        }
+        
+        @Override
+        TypeBinding child(Frame frame, CharSequence fieldName) {
+            Property property = find(fieldName);
+            frame.slot = property;
+            return property == null ? null : property.binding;
+        }
+        
+        @Override
+        void store(Frame frame, Object child) {
+            ((Property)frame.slot).set(frame.container, child);
+        }
+        
+        @Override
+        void write(JsonWriter writer, CharSequence fieldName, Object value) {
+            if (value == null) {
+                writer.writeNull(fieldName);
+                return;
+            }
+            writer.beginObject(fieldName);
+            for (Property property : properties()) {
+                property.write(writer, value);
+            }
+            writer.endObject();
+        }
+        
+    }
+    
+    /**
+     * A field of a bound class. Fields of primitive types are read and written through handles
+     * of their own type so the values are never boxed.
+     */
+    private static final class Property {
+        
+        private static final int REFERENCE = 0;
+        private static final int BOOLEAN = 1;
+        private static final int INT = 2;
+        private static final int LONG = 3;
+        private static final int DOUBLE = 4;
+        private static final int FLOAT = 5;
+        
+        private final String name;
+        private final int hash;
+        private final int kind;
+        private final TypeBinding binding;
+        private final MethodHandle getter;
+        private final MethodHandle setter;
+        
+        private Property(Field field) {
+            this.name = field.getName();
+            this.hash = name.hashCode();
+            this.binding = TypeBinding.of(field.getGenericType());
+            Class<?> type = field.getType();
+            this.kind = type == boolean.class ? BOOLEAN : type == int.class ? INT : type == long.class ? LONG
+                : type == double.class ? DOUBLE : type == float.class ? FLOAT : REFERENCE;
+            Class<?> handleType = kind == REFERENCE ? Object.class : type;
+            try {
+                field.setAccessible(true);
+                this.getter = LOOKUP.unreflectGetter(field).asType(MethodType.methodType(handleType, Object.class));
+                this.setter = LOOKUP.unreflectSetter(field).asType(MethodType.methodType(void.class, Object.class, handleType));
+            } catch (ReflectiveOperationException | RuntimeException e) {
+                throw new JsonException("Can not bind field " + name + " of " + field.getDeclaringClass().getName() + ".", e);
+            }
+        }
+        
+        private void read(Object target, JsonPrimitive value) {
+            try {
+                switch (kind) {
+                    case BOOLEAN:
+                        setter.invokeExact(target, value.getAsBoolean());
+                        break;
+                    case INT:
+                        setter.invokeExact(target, value.getAsInt());
+                        break;
+                    case LONG:
+                        setter.invokeExact(target, value.getAsLong());
+                        break;
+                    case DOUBLE:
+                        setter.invokeExact(target, value.getAsDouble());
+                        break;
+                    case FLOAT:
+                        setter.invokeExact(target, (float)value.getAsDouble());
+                        break;
+                    default:
+                        setter.invokeExact(target, binding.read(value));
+                }
+            } catch (Throwable t) {
+                throw wrap(t);
+            }
+        }
+        
+        private void set(Object target, Object value) {
+            try {
+                setter.invokeExact(target, value);
+            } catch (Throwable t) {
+                throw wrap(t);
+            }
+        }
+        
+        private void write(JsonWriter writer, Object source) {
+            try {
+                switch (kind) {
+                    case BOOLEAN:
+                        writer.writeBoolean(name, (boolean)getter.invokeExact(source));
+                        break;
+                    case INT:
+                        writer.writeNumber(name, (int)getter.invokeExact(source));
+                        break;
+                    case LONG:
+                        writer.writeNumber(name, (long)getter.invokeExact(source));
+                        break;
+                    case DOUBLE:
+                        writer.writeNumber(name, (double)getter.invokeExact(source));
+                        break;
+                    case FLOAT:
+                        writer.writeNumber(name, (float)getter.invokeExact(source));
+                        break;
+                    default:
+                        binding.write(writer, name, (Object)getter.invokeExact(source));
+                }
+            } catch (Throwable t) {
+                throw wrap(t);
+            }
+        }
+        
+    }
+    
+    /**
+     * A Collection filled from an array.
+     */
+    private static final class CollectionBinding extends ContainerBinding {
+        
+        private final TypeBinding element;
+        
+        private CollectionBinding(Type type, MethodHandle constructor, TypeBinding element) {
+            super(type, constructor);
+            this.element = element;
+        }
+        
+        @Override
+        JsonParsingState beginState() {
+            return JsonParsingState.BEGIN_ARRAY;
+        }
+        
+        @Override
+        @SuppressWarnings("unchecked")
+        void accept(Frame frame, CharSequence fieldName, JsonPrimitive value) {
+            ((Collection<Object>)frame.container).add(element.read(value));
+        }
+        
+        @Override
+        TypeBinding child(Frame frame, CharSequence fieldName) {
+            return element;
+        }
+        
+        @Override
+        @SuppressWarnings("unchecked")
+        void store(Frame frame, Object child) {
+            ((Collection<Object>)frame.container).add(child);
+        }
+        
+        @Override
+        void write(JsonWriter writer, CharSequence fieldName, Object value) {
+            if (value == null) {
+                writer.writeNull(fieldName);
+                return;
+            }
+            writer.beginArray(fieldName);
+            for (Object item : (Collection<?>)value) {
+                element.write(writer, null, item);
+            }
+            writer.endArray();
+        }
+        
+    }
+    
+    /**
+     * A Map with String keys filled from an object.
+     */
+    private static final class MapBinding extends ContainerBinding {
+        
+        private final TypeBinding value;
+        
+        private MapBinding(Type type, MethodHandle constructor, TypeBinding value) {
+            super(type, constructor);
+            this.value = value;
+        }
+        
+        @Override
+        JsonParsingState beginState() {
+            return JsonParsingState.BEGIN_OBJECT;
+        }
+        
+        @Override
+        @SuppressWarnings("unchecked")
+        void accept(Frame frame, CharSequence fieldName, JsonPrimitive primitive) {
+            ((Map<String, Object>)frame.container).put(fieldName.toString(), value.read(primitive));
+        }
+        
+        @Override
+        TypeBinding child(Frame frame, CharSequence fieldName) {
+            frame.slot = fieldName.toString();
+            return value;
+        }
+        
+        @Override
+        @SuppressWarnings("unchecked")
+        void store(Frame frame, Object child) {
+            ((Map<String, Object>)frame.container).put((String)frame.slot, child);
+        }
+        
+        @Override
+        void write(JsonWriter writer, CharSequence fieldName, Object map) {
+            if (map == null) {
+                writer.writeNull(fieldName);
+                return;
+            }
+            writer.beginObject(fieldName);
+            for (Map.Entry<?, ?> entry : ((Map<?, ?>)map).entrySet()) {
+                value.write(writer, (String)entry.getKey(), entry.getValue());
+            }
+            writer.endObject();
+        }
+        
+    }
+    
+}
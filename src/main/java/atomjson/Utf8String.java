@@ -0,0 +1,72 @@
+package atomjson;
+
+import java.nio.ByteBuffer;
+
+/**
+ * The contents of a JSON string in a UTF-8 source. The bytes are only decoded the first time
+ * the String is needed.
+ * @author Justin Bonner
+ */
+final class Utf8String implements CharSequence {
+    
+    private final ByteBuffer source;
+    private final int start;
+    private final int end;
+    /**
+     * When the contents are ASCII without escapes each byte is exactly one char and no decoding is needed.
+     */
+    private final boolean direct;
+    private String decoded;
+    
+    /**
+     * @param source the source the string was scanned from
+     * @param start the index after the opening quote
+     * @param end the index of the closing quote
+     * @param escaped whether the contents contain escapes
+     * @param ascii whether the contents are only ASCII
+     */
+    Utf8String(ByteBuffer source, int start, int end, boolean escaped, boolean ascii) {
+        this.source = source;
+        this.start = start;
+        this.end = end;
+        this.direct = ascii && !escaped;
+    }
+    
+    @Override
+    public int length() {
+        if (direct) {
+            return end - start;
+        }
+        return toString().length();
+    }
+    
+    @Override
+    public char charAt(int index) {
+        if (direct && decoded == null) {
+            if (index < 0 || index >= end - start) {
+                throw new IndexOutOfBoundsException("index " + index + ", length " + (end - start));
+            }
+            return (char)source.get(start + index);
+        }
+        return toString().charAt(index);
+    }
+    
+    @Override
+    public CharSequence subSequence(int start, int end) {
+        return toString().subSequence(start, end);
+    }
+    
+    @Override
+    public String toString() {
+        if (decoded == null) {
+            if (direct) {
+                decoded = ByteTokenizer.asciiString(source, start, end);
+            } else {
+                char[] chars = new char[end - start];
+                decoded = new String(chars, 0, ByteTokenizer.decode(source, start, end, chars));
+            }
+        }
+        return decoded;
+    }
+    
+}
@@ -0,0 +1,117 @@
+package atomjson;
+
+import atomjson.exceptions.JsonException;
+import java.io.IOException;
+import java.io.Writer;
+
+/**
+ * A JsonOutput that buffers chars for a Writer. Runs of a string that need no escaping are copied into the buffer in bulk.
+ * @author Justin Bonner
+ */
+final class WriterOutput extends JsonOutput {
+    
+    private final Writer writer;
+    private final char[] buffer;
+    private int count;
+    
+    WriterOutput(Writer writer) {
+        this.writer = writer;
+        this.buffer = new char[BUFFER_SIZE];
+        this.count = 0;
+    }
+    
+    @Override
+    void write(char c) {
+        if (count == buffer.length) {
+            drain();
+        }
+        buffer[count++] = c;
+    }
+    
+    @Override
+    void writeAscii(CharSequence text) {
+        copy(text, 0, text.length());
+    }
+    
+    @Override
+    void writeAscii(char[] chars, int start, int end) {
+        while (start < end) {
+            if (count == buffer.length) {
+                drain();
+            }
+            int length = Math.min(end - start, buffer.length - count);
+            System.arraycopy(chars, start, buffer, count, length);
+            count += length;
+            start += length;
+        }
+    }
+    
+    @Override
+    void writeString(CharSequence text) {
+        write('"');
+        int length = text.length();
+        int runStart = 0;
+        for (int i = 0; i < length; i++) {
+            char c = text.charAt(i);
+            if (c < 0x80 && ESCAPES[c] != null) {
+                copy(text, runStart, i);
+                char[] escape = ESCAPES[c];
+                writeAscii(escape, 0, escape.length);
+                runStart = i + 1;
+            }
+        }
+        copy(text, runStart, length);
+        write('"');
+    }
+    
+    /**
+     * Copy chars of text into the buffer, draining it as it fills.
+     */
+    private void copy(CharSequence text, int start, int end) {
+        while (start < end) {
+            if (count == buffer.length) {
+                drain();
+            }
+            int length = Math.min(end - start, buffer.length - count);
+            if (text instanceof String) {
+                ((String)text).getChars(start, start + length, buffer, count);
+            } else {
+                for (int i = 0; i < length; i++) {
+                    buffer[count + i] = text.charAt(start + i);
+                }
+            }
+            count += length;
+            start += length;
+        }
+    }
+    
+    private void drain() {
+        try {
+            writer.write(buffer, 0, count);
+        } catch (IOException e) {
+            throw new JsonException(e);
+        }
+        count = 0;
+    }
+    
+    @Override
+    void flush() {
+        drain();
+        try {
+            writer.flush();
+        } catch (IOException e) {
+            throw new JsonException(e);
+        }
+    }
+    
+    @Override
+    void close() {
+        drain();
+        try {
+            writer.close();
+        } catch (IOException e) {
+            throw new JsonException(e);
+        }
+    }
+    
+}
@@ -0,0 +1,227 @@
+package atomjson.tests;
+
+import atomjson.JsonBinaryHandler;
+import atomjson.JsonByteSink;
+import atomjson.JsonParser;
+import atomjson.JsonParsingState;
+import atomjson.JsonPrimitive;
+import atomjson.exceptions.JsonException;
+import atomjson.utils.TestingUtil;
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.InputStream;
+import java.nio.ByteBuffer;
+import java.nio.channels.Channels;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Base64;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.atomic.AtomicLong;
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+import org.junit.Test;
+
+/**
+ * Make sure base64 string values decoded into sinks while parsing give back the encoded bytes,
+ * and that values without a sink are given as usual.
+ * @author Justin Bonner
+ */
+public class BinaryValueTest {
+    
+    @Test
+    public void testDecoding() {
+        Random random = new Random(25);
+        List<Base64.Encoder> encoders = Arrays.asList(Base64.getEncoder(), Base64.getEncoder().withoutPadding(),
+            Base64.getUrlEncoder(), Base64.getMimeEncoder());
+        for (int size : new int[] {0, 1, 2, 3, 4, 5, 100, 8191, 8192, 50000}) {
+            byte[] data = new byte[size];
+            random.nextBytes(data);
+            for (Base64.Encoder encoder : encoders) {
+                //the mime encoder's line breaks are escaped in the JSON
+                String encoded = encoder.encodeToString(data).replace("\r\n", "\\r\\n");
+                String json = "{\"name\": \"file\", \"data\": \"" + encoded + "\", \"parts\": [\"" + encoded + "\", 5]}";
+                for (JsonParser parser : parsers(json)) {
+                    Collector collector = new Collector(Integer.MAX_VALUE);
+                    parser.parse(collector);
+                    assertEquals(Arrays.asList("BEGIN_OBJECT null null", "READ_PRIMITIVE name STRING:file",
+                        "BINARY data " + size, "BEGIN_ARRAY parts null", "BINARY null " + size,
+                        "READ_PRIMITIVE null NUMBER:5", "END_ARRAY null null", "END_OBJECT null null"), collector.events);
+                    byte[] twice = new byte[size * 2];
+                    System.arraycopy(data, 0, twice, 0, size);
+                    System.arraycopy(data, 0, twice, size, size);
+                    assertArrayEquals(twice, collector.stream.toByteArray());
+                }
+            }
+        }
+    }
+    
+    @Test
+    public void testSinks() {
+        byte[] data = new byte[20000];
+        new Random(5).nextBytes(data);
+        String json = "[\"" + Base64.getEncoder().encodeToString(data) + "\"]";
+        
+        ByteBuffer buffer = ByteBuffer.allocate(data.length);
+        JsonParser.getInstance(json).parse(new SingleSink(JsonByteSink.of(buffer)));
+        assertArrayEquals(data, buffer.array());
+        
+        ByteArrayOutputStream stream = new ByteArrayOutputStream();
+        JsonParser.getInstance(json.getBytes(StandardCharsets.UTF_8)).parse(new SingleSink(JsonByteSink.of(Channels.newChannel(stream))));
+        assertArrayEquals(data, stream.toByteArray());
+        
+        try {
+            JsonParser.getInstance(json).parse(new SingleSink(JsonByteSink.of(ByteBuffer.allocate(data.length - 1))));
+            fail();
+        } catch (JsonException e) {
+            //expected
+        }
+    }
+    
+    @Test
+    public void testValuesWithoutSinks() {
+        String longText = new String(new char[20000]).replace('\0', 'x');
+        String json = "{\"text\": \"" + longText + "\", \"list\": [\"a\\nb\", \"" + longText + "\"], \"data\": \"AQID\"}";
+        for (JsonParser parser : parsers(json)) {
+            Collector collector = new Collector(Integer.MAX_VALUE);
+            collector.binaryField = "data";
+            parser.parse(collector);
+            List<String> expected = new ArrayList<>(TestingUtil.recordEvents(JsonParser.getInstance(json)));
+            expected.set(6, "BINARY data 3");
+            assertEquals(expected, collector.events);
+            assertArrayEquals(new byte[] {1, 2, 3}, collector.stream.toByteArray());
+        }
+    }
+    
+    @Test
+    public void testInvalidBase64() {
+        for (String value : new String[] {"A", "AQI$", "AQ=D", "A===", "AQ==AQ==", "AQIDé"}) {
+            for (JsonParser parser : parsers("[\"" + value + "\"]")) {
+                try {
+                    parser.parse(new Collector(Integer.MAX_VALUE));
+                    fail(value);
+                } catch (JsonException e) {
+                    //expected
+                }
+            }
+        }
+    }
+    
+    @Test
+    public void testEarlyStop() {
+        byte[] data = new byte[30000];
+        String encoded = Base64.getEncoder().encodeToString(data);
+        String json = "[\"" + encoded + "\", \"AQID\", \"" + encoded + "\"]";
+        for (JsonParser parser : parsers(json)) {
+            Collector collector = new Collector(2);
+            parser.parse(collector);
+            assertEquals(Arrays.asList("BEGIN_ARRAY null null", "BINARY null 30000", "BINARY null 3"), collector.events);
+        }
+    }
+    
+    @Test
+    public void testStreamedValue() {
+        byte[] data = new byte[400000];
+        new Random(7).nextBytes(data);
+        byte[] json = ("{\"data\": \"" + Base64.getEncoder().encodeToString(data) + "\"}").getBytes(StandardCharsets.UTF_8);
+        long[] readAtFirstWrite = {-1};
+        AtomicLong consumed = new AtomicLong();
+        InputStream stream = new ByteArrayInputStream(json) {
+            @Override
+            public synchronized int read(byte[] b, int off, int len) {
+                int read = super.read(b, off, len);
+                consumed.addAndGet(Math.max(read, 0));
+                return read;
+            }
+        };
+        ByteArrayOutputStream decoded = new ByteArrayOutputStream() {
+            @Override
+            public synchronized void write(byte[] b, int off, int len) {
+                if (readAtFirstWrite[0] == -1) {
+                    readAtFirstWrite[0] = consumed.get();
+                }
+                super.write(b, off, len);
+            }
+        };
+        JsonParser.getInstance(stream, 1024).parse(new SingleSink(JsonByteSink.of(decoded)));
+        assertArrayEquals(data, decoded.toByteArray());
+        //the value is decoded while it is still being read, not once all of it has been buffered
+        assertTrue(readAtFirstWrite[0] < json.length / 4);
+    }
+    
+    private static List<JsonParser> parsers(String json) {
+        byte[] bytes = json.getBytes(StandardCharsets.UTF_8);
+        return Arrays.asList(JsonParser.getInstance(json), JsonParser.getInstance(bytes),
+            JsonParser.getInstance(new ByteArrayInputStream(bytes), 1024));
+    }
+    
+    /**
+     * Records events the way TestingUtil.recordEvents does, decoding string values into one stream.
+     */
+    private static class Collector implements JsonBinaryHandler {
+        
+        private final int maxBinaries;
+        private final List<String> events = new ArrayList<>();
+        private final ByteArrayOutputStream stream = new ByteArrayOutputStream();
+        /**
+         * The only field to decode, null to decode every string value except the name field.
+         */
+        private String binaryField;
+        private int binaries;
+        
+        private Collector(int maxBinaries) {
+            this.maxBinaries = maxBinaries;
+        }
+        
+        @Override
+        public boolean handleJson(JsonParsingState parsingState, String fieldName, JsonPrimitive value) {
+            events.add(TestingUtil.describe(parsingState, fieldName, value));
+            return true;
+        }
+        
+        @Override
+        public JsonByteSink getBinarySink(String fieldName) {
+            boolean binary = binaryField == null ? !"name".equals(fieldName) : binaryField.equals(fieldName);
+            return binary ? JsonByteSink.of(stream) : null;
+        }
+        
+        @Override
+        public boolean handleBinary(String fieldName, long length) {
+            events.add("BINARY " + fieldName + " " + length);
+            return ++binaries < maxBinaries;
+        }
+        
+    }
+    
+    /**
+     * Decodes every string value into the same sink.
+     */
+    private static class SingleSink implements JsonBinaryHandler {
+        
+        private final JsonByteSink sink;
+        
+        private SingleSink(JsonByteSink sink) {
+            this.sink = sink;
+        }
+        
+        @Override
+        public boolean handleJson(JsonParsingState parsingState, String fieldName, JsonPrimitive value) {
+            return true;
+        }
+        
+        @Override
+        public JsonByteSink getBinarySink(String fieldName) {
+            return sink;
+        }
+        
+        @Override
+        public boolean handleBinary(String fieldName, long length) {
+            return true;
+        }
+        
+    }
+    
+}
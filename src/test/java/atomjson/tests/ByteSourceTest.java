@@ -0,0 +1,117 @@
+package atomjson.tests;
+
+import atomjson.JsonDocument;
+import atomjson.JsonFeedParser;
+import atomjson.JsonParser;
+import atomjson.JsonParsingState;
+import atomjson.exceptions.JsonException;
+import atomjson.utils.TestingUtil;
+import java.io.ByteArrayInputStream;
+import java.io.File;
+import java.io.IOException;
+import java.io.StringReader;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.util.ArrayList;
+import java.util.List;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.fail;
+import org.junit.Test;
+
+/**
+ * Make sure that parsing UTF-8 bytes directly gives the same results as parsing chars.
+ * @author Justin Bonner
+ */
+public class ByteSourceTest {
+    
+    private static final String CORRECT_JSON_DIR = "/valid_jsons";
+    private static final String INCORRECT_JSON_DIR = "/invalid_jsons";
+    
+    private String result;
+    
+    @Test
+    public void testCorrectJsons() throws IOException {
+        for (File file : TestingUtil.getFiles(CORRECT_JSON_DIR)) {
+            String json = TestingUtil.readFile(file);
+            byte[] bytes = json.getBytes(StandardCharsets.UTF_8);
+            Object expected = TestingUtil.recordEvents(JsonParser.getInstance(new StringReader(json)));
+            assertEquals(file.getName(), expected, TestingUtil.recordEvents(JsonParser.getInstance(bytes)));
+            ByteBuffer direct = ByteBuffer.allocateDirect(bytes.length);
+            direct.put(bytes).flip();
+            assertEquals(file.getName(), expected, TestingUtil.recordEvents(JsonParser.getInstance(direct)));
+        }
+    }
+    
+    @Test
+    public void testIncorrectJsons() throws IOException {
+        for (File file : TestingUtil.getFiles(INCORRECT_JSON_DIR)) {
+            JsonParser parser = JsonParser.getInstance(Files.readAllBytes(file.toPath()));
+            try {
+                parser.parse((state, name, value) -> true);
+                fail("Parsed '" + file.getName() + "' but should have failed.");
+            } catch (JsonException e) {
+                //expected
+            }
+        }
+    }
+    
+    @Test
+    public void testMultiByteStrings() {
+        String text = "café € 😀 \\\" é\\u00e9";
+        String json = "{\"kéy\": \"" + text + "\"}";
+        JsonParser parser = JsonParser.getInstance(json.getBytes(StandardCharsets.UTF_8));
+        parser.parse((state, name, value) -> {
+            if (state == JsonParsingState.READ_PRIMITIVE) {
+                assertEquals("kéy", name);
+                result = value.getAsString();
+            }
+            return true;
+        });
+        assertEquals("café € 😀 \" éé", result);
+    }
+    
+    @Test
+    public void testUnicodeWhitespace() {
+        //whitespace past ASCII is accepted the same way by chars and bytes, and the no-break spaces are not whitespace
+        String json = "\u3000{\"a\"\u2028:\u2029[1\u2028,\u2000\"x\"\u205f, true\u1680]\u2001,\"b\": 2.5\u3000}\u2028";
+        byte[] bytes = json.getBytes(StandardCharsets.UTF_8);
+        Object expected = TestingUtil.recordEvents(JsonParser.getInstance(new StringReader(json)));
+        assertEquals(expected, TestingUtil.recordEvents(JsonParser.getInstance(bytes)));
+        JsonParser indexed = JsonParser.getInstance(bytes);
+        indexed.useStructuralIndex();
+        assertEquals(expected, TestingUtil.recordEvents(indexed));
+        for (int blockSize = 1; blockSize <= 4; blockSize++) {
+            assertEquals(expected, TestingUtil.recordEvents(JsonParser.getInstance(new ByteArrayInputStream(bytes), blockSize)));
+        }
+        List<String> fed = new ArrayList<>();
+        JsonFeedParser feedParser = JsonFeedParser.getInstance((state, name, value) -> fed.add(TestingUtil.describe(state, name, value)));
+        for (byte b : bytes) {
+            feedParser.feed(new byte[] {b});
+        }
+        feedParser.endOfInput();
+        assertEquals(expected, fed);
+        assertEquals(2, JsonDocument.parse(bytes).getRoot().size());
+        
+        for (String invalid : new String[] {"[1,\u00a02]", "[1\u00a0]", "[1,\u20072]"}) {
+            for (JsonParser parser : new JsonParser[] {JsonParser.getInstance(invalid), JsonParser.getInstance(invalid.getBytes(StandardCharsets.UTF_8))}) {
+                try {
+                    parser.parse((state, name, value) -> true);
+                    fail(invalid);
+                } catch (JsonException e) {
+                    //expected
+                }
+            }
+        }
+    }
+    
+    @Test
+    public void testBufferPositionIsUsed() {
+        byte[] bytes = "garbage[\"value\"]".getBytes(StandardCharsets.UTF_8);
+        ByteBuffer buffer = ByteBuffer.wrap(bytes);
+        buffer.position(7);
+        assertEquals(3, TestingUtil.recordEvents(JsonParser.getInstance(buffer)).size());
+        assertEquals(7, buffer.position());
+    }
+    
+}
@@ -0,0 +1,57 @@
+package atomjson.tests;
+
+import atomjson.JsonParser;
+import atomjson.utils.TestingUtil;
+import java.io.File;
+import java.io.IOException;
+import java.io.Reader;
+import java.io.StringReader;
+import static org.junit.Assert.assertEquals;
+import org.junit.Test;
+
+/**
+ * Make sure that tokens split across reads of the source parse the same as when read all at once.
+ * @author Justin Bonner
+ */
+public class ChunkedReaderTest {
+    
+    private static final String CORRECT_JSON_DIR = "/valid_jsons";
+    
+    @Test
+    public void testSmallReads() throws IOException {
+        for (File file : TestingUtil.getFiles(CORRECT_JSON_DIR)) {
+            String json = TestingUtil.readFile(file);
+            Object expected = TestingUtil.recordEvents(JsonParser.getInstance(json));
+            for (int maxRead = 1; maxRead <= 4; maxRead++) {
+                Reader reader = new SmallReadsReader(json, maxRead);
+                assertEquals(file.getName(), expected, TestingUtil.recordEvents(JsonParser.getInstance(reader)));
+            }
+        }
+    }
+    
+    /**
+     * A Reader that returns at most maxRead chars for each read.
+     */
+    private static class SmallReadsReader extends Reader {
+        
+        private final Reader source;
+        private final int maxRead;
+        
+        SmallReadsReader(String json, int maxRead) {
+            this.source = new StringReader(json);
+            this.maxRead = maxRead;
+        }
+        
+        @Override
+        public int read(char[] dest, int offset, int length) throws IOException {
+            return source.read(dest, offset, Math.min(length, maxRead));
+        }
+        
+        @Override
+        public void close() {
+            
+        }
+        
+    }
+    
+}
@@ -1,7 +1,11 @@
 
 package atomjson.tests;
 
+import atomjson.JsonParser;
+import atomjson.exceptions.JsonException;
 import java.io.Reader;
+import static org.junit.Assert.fail;
+import org.junit.Test;
 
 /**
  * Test a deeply nested JSON array.
@@ -20,6 +24,25 @@ public class DeepNestTest extends AbstractJsonFromReaderTest {
         return new TestReader(DEPTH);
     }
     
+    /**
+     * Make sure nesting deeper than the max depth fails and nesting up to it does not.
+     */
+    @Test
+    public void testMaxDepth() {
+        final int MAX_DEPTH = 1000;
+        JsonParser parser = JsonParser.getInstance(new TestReader(MAX_DEPTH));
+        parser.setMaxDepth(MAX_DEPTH);
+        parser.parse((state, name, value) -> true);
+        parser = JsonParser.getInstance(new TestReader(MAX_DEPTH + 1));
+        parser.setMaxDepth(MAX_DEPTH);
+        try {
+            parser.parse((state, name, value) -> true);
+            fail();
+        } catch (JsonException e) {
+            //expected
+        }
+    }
+    
     private class TestReader extends Reader {
         
         private long index;
@@ -44,8 +67,14 @@ public class DeepNestTest extends AbstractJsonFromReaderTest {
         }
         
         @Override
-        public int read(char[] dest, int a, int b) {
-            throw new UnsupportedOperationException();
+        public int read(char[] dest, int offset, int length) {
+            int count = 0;
+            int next;
+            while (count < length && (next = read()) != -1) {
+                dest[offset + count] = (char)next;
+                count++;
+            }
+            return count == 0 && length != 0 ? -1 : count;
         }
         
         @Override
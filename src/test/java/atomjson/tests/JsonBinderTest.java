@@ -0,0 +1,150 @@
+package atomjson.tests;
+
+import atomjson.JsonBinder;
+import atomjson.JsonParser;
+import atomjson.JsonWriter;
+import atomjson.exceptions.JsonException;
+import java.io.StringWriter;
+import java.math.BigDecimal;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+import org.junit.Test;
+
+/**
+ * Make sure classes are filled from JSON and written back to the same JSON.
+ * @author Justin Bonner
+ */
+public class JsonBinderTest {
+    
+    private static final String ORDER = "{\"id\": 9007199254740993, \"customer\": \"Ann \\\"A\\\"\", \"express\": true, "
+        + "\"weight\": 2.5, \"ratio\": 0.25, \"count\": 3, \"status\": \"SHIPPED\", \"total\": 1234.500, "
+        + "\"ignored\": {\"deep\": [1, {\"x\": 2}]}, \"alsoIgnored\": 4, "
+        + "\"lines\": [{\"sku\": \"a\", \"quantity\": 2, \"tags\": [\"x\", \"y\", \"x\"]}, {\"sku\": \"b\", \"quantity\": 1, \"tags\": []}], "
+        + "\"notes\": null, \"attributes\": {\"gift\": \"yes\", \"wrap\": null}, \"parent\": {\"id\": 1, \"lines\": []}}";
+    
+    @Test
+    public void testRead() {
+        Order order = JsonBinder.of(Order.class).read(JsonParser.getInstance(ORDER.getBytes(StandardCharsets.UTF_8)));
+        assertEquals(9007199254740993L, order.id);
+        assertEquals("Ann \"A\"", order.customer);
+        assertTrue(order.express);
+        assertEquals(2.5, order.weight, 0);
+        assertEquals(0.25f, order.ratio, 0);
+        assertEquals(Integer.valueOf(3), order.count);
+        assertEquals(Status.SHIPPED, order.status);
+        assertEquals(new BigDecimal("1234.500"), order.total);
+        assertEquals(2, order.lines.size());
+        assertEquals("a", order.lines.get(0).sku);
+        assertEquals(2, order.lines.get(0).quantity);
+        assertEquals(2, order.lines.get(0).tags.size());
+        assertTrue(order.lines.get(1).tags.isEmpty());
+        assertNull(order.notes);
+        assertEquals("yes", order.attributes.get("gift"));
+        assertTrue(order.attributes.containsKey("wrap"));
+        assertEquals(1, order.parent.id);
+        assertNull(order.parent.parent);
+        assertEquals("default", order.parent.customer);
+    }
+    
+    @Test
+    public void testRoundTrip() {
+        JsonBinder<Order> binder = JsonBinder.of(Order.class);
+        Order order = binder.read(JsonParser.getInstance(ORDER));
+        StringWriter chars = new StringWriter();
+        JsonWriter writer = JsonWriter.getInstance(chars);
+        binder.write(writer, order);
+        writer.flush();
+        String written = chars.toString();
+        assertFalse(written.contains("ignored"));
+        assertFalse(written.contains("cache"));
+        Order again = binder.read(JsonParser.getInstance(written));
+        StringWriter rewritten = new StringWriter();
+        writer = JsonWriter.getInstance(rewritten);
+        binder.write(writer, again);
+        writer.flush();
+        assertEquals(written, rewritten.toString());
+        assertEquals(Arrays.asList("x", "y"), Arrays.asList(again.lines.get(0).tags.toArray()));
+    }
+    
+    @Test
+    public void testMismatches() {
+        JsonBinder<Order> binder = JsonBinder.of(Order.class);
+        expectFailure(binder, "{\"count\": 1.5}");
+        expectFailure(binder, "{\"express\": 1}");
+        expectFailure(binder, "{\"id\": null}");
+        expectFailure(binder, "{\"status\": \"LOST\"}");
+        expectFailure(binder, "{\"lines\": {}}");
+        expectFailure(binder, "{\"parent\": []}");
+        expectFailure(binder, "{\"lines\": [1]}");
+        expectFailure(binder, "[]");
+        try {
+            JsonBinder.of(Unbindable.class);
+            fail();
+        } catch (JsonException e) {
+            //expected
+        }
+        try {
+            JsonBinder.of(WithChar.class);
+            fail();
+        } catch (JsonException e) {
+            assertTrue(e.getMessage(), e.getMessage().contains("use a String"));
+        }
+    }
+    
+    private static void expectFailure(JsonBinder<Order> binder, String json) {
+        try {
+            binder.read(JsonParser.getInstance(json));
+            fail(json);
+        } catch (JsonException e) {
+            //expected
+        }
+    }
+    
+    private enum Status {
+        NEW,
+        SHIPPED
+    }
+    
+    private static class Entity {
+        long id;
+    }
+    
+    private static class Order extends Entity {
+        private String customer = "default";
+        private boolean express;
+        private double weight;
+        private float ratio;
+        private Integer count;
+        private Status status;
+        private BigDecimal total;
+        private List<Line> lines;
+        private String notes;
+        private Map<String, String> attributes;
+        private Order parent;
+        private transient Object cache;
+        private static int instances;
+    }
+    
+    private static class Line {
+        private String sku;
+        private int quantity;
+        private Set<String> tags;
+    }
+    
+    private static class Unbindable {
+        private Object anything;
+    }
+    
+    private static class WithChar {
+        private char initial;
+    }
+    
+}
@@ -0,0 +1,130 @@
+package atomjson.tests;
+
+import atomjson.JsonDocument;
+import atomjson.JsonParser;
+import atomjson.JsonParsingState;
+import atomjson.JsonValue;
+import atomjson.exceptions.JsonException;
+import atomjson.utils.TestingUtil;
+import java.io.File;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+import org.junit.Test;
+
+/**
+ * Make sure walking a JsonDocument finds the same values as parsing, and that
+ * documents are only built from valid JSON.
+ * @author Justin Bonner
+ */
+public class JsonDocumentTest {
+    
+    private static final String CORRECT_JSON_DIR = "/valid_jsons";
+    private static final String INCORRECT_JSON_DIR = "/invalid_jsons";
+    
+    @Test
+    public void testCorrectJsons() throws IOException {
+        for (File file : TestingUtil.getFiles(CORRECT_JSON_DIR)) {
+            String json = TestingUtil.readFile(file);
+            List<String> events = new ArrayList<>();
+            walk(JsonDocument.parse(json).getRoot(), null, events);
+            assertEquals(file.getName(), TestingUtil.recordEvents(JsonParser.getInstance(json)), events);
+        }
+    }
+    
+    @Test
+    public void testIncorrectJsons() throws IOException {
+        for (File file : TestingUtil.getFiles(INCORRECT_JSON_DIR)) {
+            try {
+                JsonDocument.parse(TestingUtil.readFile(file));
+                fail(file.getName() + " should not have been indexed.");
+            } catch (JsonException e) {
+                //expected
+            }
+        }
+    }
+    
+    @Test
+    public void testNavigation() {
+        String json = "{\"skip\": {\"deep\": [[1, 2], {\"a\": 3}]}, \"n\\u0061me\": \"caf\\u00e9\", \"list\": [10, -2.5, true, null, []], \"é\": 1}";
+        JsonDocument document = JsonDocument.parse(json);
+        JsonValue root = document.getRoot();
+        assertEquals(4, root.size());
+        assertEquals(Arrays.asList("skip", "name", "list", "é"), root.getFieldNames());
+        assertEquals("café", root.get("name").getAsString());
+        assertEquals(1, root.get("é").getAsInt());
+        assertTrue(root.get("name").getAsPrimitive() == root.get("name").getAsPrimitive());
+        JsonValue list = root.get("list");
+        assertEquals(10, list.get(0).getAsLong());
+        assertEquals(-2.5, list.get(1).getAsDouble(), 0);
+        assertTrue(list.get(2).getAsBoolean());
+        assertTrue(list.get(3).isNull());
+        assertEquals(0, list.get(4).size());
+        assertEquals(3, root.get("skip").get("deep").get(1).get("a").getAsInt());
+        assertEquals(list.get(1).getAsPrimitive(), list.getValues().get(1).getAsPrimitive());
+        assertNull(root.get("missing"));
+        assertFalse(root.has("nam"));
+        assertEquals(16, document.getValueCount());
+        try {
+            list.get(5);
+            fail();
+        } catch (IndexOutOfBoundsException e) {
+            //expected
+        }
+        try {
+            list.get("a");
+            fail();
+        } catch (JsonException e) {
+            //expected
+        }
+    }
+    
+    @Test
+    public void testIndexedAccess() {
+        StringBuilder json = new StringBuilder("{\"big\": [");
+        for (int i = 0; i < 200000; i++) {
+            json.append(i == 0 ? "" : ", ").append(i % 3 == 0 ? "[" + i + ", {\"x\": [1]}]" : Integer.toString(i));
+        }
+        json.append("], \"other\": [\"a\", \"b\"]}");
+        JsonValue root = JsonDocument.parse(json.toString()).getRoot();
+        JsonValue big = root.get("big");
+        JsonValue other = root.get("other");
+        //stepping through in order stays linear, and lookups in between other containers or going back still find the right value
+        for (int i = 0; i < big.size(); i++) {
+            JsonValue element = big.get(i);
+            assertEquals(i, (i % 3 == 0 ? element.get(0) : element).getAsInt());
+            if (i % 50000 == 0) {
+                assertEquals("b", other.get(1).getAsString());
+                assertEquals(3, big.get(3).get(0).getAsInt());
+                assertEquals("big", root.getFieldNames().get(0));
+            }
+        }
+        assertEquals(0, big.get(0).get(0).getAsInt());
+        assertEquals("a", other.get(0).getAsString());
+    }
+    
+    /**
+     * Visit a value the way a JsonHandler would see it.
+     */
+    private static void walk(JsonValue value, String name, List<String> events) {
+        if (value.isPrimitive()) {
+            events.add(TestingUtil.describe(JsonParsingState.READ_PRIMITIVE, name, value.getAsPrimitive()));
+            return;
+        }
+        boolean object = value.isObject();
+        events.add(TestingUtil.describe(object ? JsonParsingState.BEGIN_OBJECT : JsonParsingState.BEGIN_ARRAY, name, null));
+        List<JsonValue> values = value.getValues();
+        List<String> names = object ? value.getFieldNames() : null;
+        for (int i = 0; i < values.size(); i++) {
+            walk(values.get(i), object ? names.get(i) : null, events);
+        }
+        events.add(TestingUtil.describe(object ? JsonParsingState.END_OBJECT : JsonParsingState.END_ARRAY, null, null));
+    }
+    
+}
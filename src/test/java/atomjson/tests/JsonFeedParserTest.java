@@ -0,0 +1,163 @@
+package atomjson.tests;
+
+import atomjson.JsonFeedParser;
+import atomjson.JsonParser;
+import atomjson.JsonPrimitive;
+import atomjson.exceptions.JsonException;
+import atomjson.utils.TestingUtil;
+import java.io.File;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+import org.junit.Test;
+
+/**
+ * Make sure JSON fed in chunks of any size gives the same events as parsing it whole,
+ * and that events are given as soon as they are complete.
+ * @author Justin Bonner
+ */
+public class JsonFeedParserTest {
+    
+    private static final String CORRECT_JSON_DIR = "/valid_jsons";
+    private static final String INCORRECT_JSON_DIR = "/invalid_jsons";
+    private static final int[] CHUNK_SIZES = {1, 2, 7, 4096};
+    
+    @Test
+    public void testCorrectJsons() throws IOException {
+        for (File file : TestingUtil.getFiles(CORRECT_JSON_DIR)) {
+            String json = TestingUtil.readFile(file);
+            List<String> expected = TestingUtil.recordEvents(JsonParser.getInstance(json));
+            byte[] bytes = json.getBytes(StandardCharsets.UTF_8);
+            for (int chunkSize : CHUNK_SIZES) {
+                assertEquals(file.getName() + " in chunks of " + chunkSize, expected, feedInChunks(bytes, chunkSize));
+            }
+        }
+    }
+    
+    @Test
+    public void testIncorrectJsons() throws IOException {
+        for (File file : TestingUtil.getFiles(INCORRECT_JSON_DIR)) {
+            byte[] bytes = TestingUtil.readFile(file).getBytes(StandardCharsets.UTF_8);
+            for (int chunkSize : CHUNK_SIZES) {
+                try {
+                    feedInChunks(bytes, chunkSize);
+                    fail(file.getName() + " should not have parsed in chunks of " + chunkSize);
+                } catch (JsonException e) {
+                    //expected
+                }
+            }
+        }
+    }
+    
+    @Test
+    public void testEventsAsSoonAsComplete() {
+        List<String> events = new ArrayList<>();
+        JsonFeedParser parser = JsonFeedParser.getInstance((state, name, value) -> {
+            events.add(TestingUtil.describe(state, name, value));
+            return true;
+        });
+        feed(parser, "{\"a\": [12");
+        assertEquals(2, events.size());
+        feed(parser, "34, \"x\\u00");
+        assertEquals(Arrays.asList("READ_PRIMITIVE null NUMBER:1234"), events.subList(2, events.size()));
+        feed(parser, "e9\"");
+        assertEquals(3, events.size());
+        feed(parser, " , tr");
+        assertEquals("READ_PRIMITIVE null STRING:xé", events.get(3));
+        feed(parser, "ue], \"k\"");
+        assertEquals(6, events.size());
+        feed(parser, "  :  \"v\"}  ");
+        assertEquals(8, events.size());
+        assertFalse(parser.isDone());
+        parser.endOfInput();
+        assertTrue(parser.isDone());
+        List<String> expected = TestingUtil.recordEvents(JsonParser.getInstance("{\"a\": [1234, \"x\\u00e9\", true], \"k\": \"v\"}"));
+        assertEquals(expected, events);
+    }
+    
+    @Test
+    public void testLongTokens() {
+        StringBuilder json = new StringBuilder("[");
+        for (int i = 0; i < 2000; i++) {
+            json.append(i).append(", \"").append(i % 10 == 0 ? "é\\n" : "").append(i).append("\", ");
+        }
+        char[] longString = new char[50000];
+        Arrays.fill(longString, 'q');
+        json.append('"').append(longString).append("\"]");
+        byte[] bytes = json.toString().getBytes(StandardCharsets.UTF_8);
+        List<String> expected = TestingUtil.recordEvents(JsonParser.getInstance(bytes));
+        assertEquals(expected, feedInChunks(bytes, 3));
+        assertEquals(expected, feedInChunks(bytes, 10000));
+    }
+    
+    @Test
+    public void testKeptValues() {
+        List<JsonPrimitive> values = new ArrayList<>();
+        JsonFeedParser parser = JsonFeedParser.getInstance((state, name, value) -> {
+            if (value != null) {
+                values.add(value);
+            }
+            return true;
+        });
+        feed(parser, "[");
+        for (int i = 0; i < 5000; i++) {
+            feed(parser, "\"value " + i + "\", ");
+        }
+        feed(parser, "null]");
+        parser.endOfInput();
+        for (int i = 0; i < 5000; i++) {
+            assertEquals("value " + i, values.get(i).getAsString());
+        }
+    }
+    
+    @Test
+    public void testEarlyStop() {
+        int[] seen = new int[1];
+        JsonFeedParser parser = JsonFeedParser.getInstance((state, name, value) -> ++seen[0] < 3);
+        assertTrue(parser.feed("[1, ".getBytes(StandardCharsets.UTF_8)));
+        assertFalse(parser.feed(ByteBuffer.wrap("2, 3, 4]".getBytes(StandardCharsets.UTF_8))));
+        assertTrue(parser.isDone());
+        assertEquals(3, seen[0]);
+        assertFalse(parser.feed(" not json".getBytes(StandardCharsets.UTF_8)));
+        parser.endOfInput();
+    }
+    
+    @Test
+    public void testIncompleteInput() {
+        for (String json : new String[] {"", "[1, 2", "{\"a\": \"b", "[tru", "{\"a\"", "[1] 2"}) {
+            JsonFeedParser parser = JsonFeedParser.getInstance((state, name, value) -> true);
+            try {
+                feed(parser, json);
+                parser.endOfInput();
+                fail(json);
+            } catch (JsonException e) {
+                //expected
+            }
+        }
+    }
+    
+    private static void feed(JsonFeedParser parser, String chunk) {
+        parser.feed(chunk.getBytes(StandardCharsets.UTF_8));
+    }
+    
+    private static List<String> feedInChunks(byte[] bytes, int chunkSize) {
+        List<String> events = new ArrayList<>();
+        JsonFeedParser parser = JsonFeedParser.getInstance((state, name, value) -> {
+            events.add(TestingUtil.describe(state, name, value));
+            return true;
+        });
+        for (int i = 0; i < bytes.length; i += chunkSize) {
+            parser.feed(bytes, i, Math.min(chunkSize, bytes.length - i));
+        }
+        parser.endOfInput();
+        return events;
+    }
+    
+}
@@ -0,0 +1,88 @@
+package atomjson.tests;
+
+import atomjson.JsonParser;
+import atomjson.JsonPathQuery;
+import atomjson.utils.TestingUtil;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.fail;
+import org.junit.Test;
+
+/**
+ * Make sure compiled path queries deliver exactly the values their paths match.
+ * @author Justin Bonner
+ */
+public class JsonPathQueryTest {
+    
+    private static final String JSON = "{\"a\": {\"b\": [{\"c\": 1, \"d\": 2}, {\"c\": \"two\"}, {\"e\": 3}], \"f\": 4},"
+        + " \"items\": [{\"id\": 10}, {\"id\": 11, \"n\": 5}], \"x y\": true, \"obj\": {\"n\": null, \"arr\": [1]}}";
+    
+    @Test
+    public void testPaths() {
+        assertEquals("[0 READ_PRIMITIVE c 1, 0 READ_PRIMITIVE c two]", extract(JSON, "$.a.b[*].c"));
+        assertEquals("[0 READ_PRIMITIVE id 11]", extract(JSON, "$.items[1].id"));
+        assertEquals("[0 READ_PRIMITIVE x y true]", extract(JSON, "$['x y']"));
+        assertEquals("[0 READ_PRIMITIVE f 4]", extract(JSON, "$[\"a\"].f"));
+        assertEquals("[0 READ_PRIMITIVE n null]", extract(JSON, "$.*.n"));
+        assertEquals("[0 READ_PRIMITIVE n 5, 1 READ_PRIMITIVE n null]", extract(JSON, "$.*[*].n", "$.*.n"));
+        assertEquals("[]", extract(JSON, "$.a.b[5]"));
+    }
+    
+    @Test
+    public void testObjectsAndArraysMatch() {
+        assertEquals("[0 BEGIN_OBJECT obj null, 0 READ_PRIMITIVE n null, 0 BEGIN_ARRAY arr null, 1 BEGIN_ARRAY arr null,"
+            + " 0 READ_PRIMITIVE null 1, 1 READ_PRIMITIVE null 1, 0 END_ARRAY null null, 1 END_ARRAY null null, 0 END_OBJECT null null]",
+            extract(JSON, "$.obj", "$.obj.arr"));
+        List<String> matches = new ArrayList<>();
+        JsonPathQuery.compile("$").extract(JsonParser.getInstance(JSON), (path, state, name, value) -> matches.add(state + " " + name));
+        assertEquals(TestingUtil.recordEvents(JsonParser.getInstance(JSON)).size(), matches.size());
+    }
+    
+    @Test
+    public void testNonMatchingSubtreesAreSkipped() {
+        //the skipped object is not valid JSON, it is never tokenized
+        String json = "{\"skip\": {\"a\": 01x, \"b\": [tru]}, \"keep\": [{\"v\": 7}]}";
+        assertEquals("[0 READ_PRIMITIVE v 7]", extract(json, "$.keep[0].v"));
+        JsonParser parser = JsonParser.getInstance(json.getBytes(StandardCharsets.UTF_8));
+        List<String> matches = new ArrayList<>();
+        JsonPathQuery.compile("$.keep[0].v").extract(parser, (path, state, name, value) -> matches.add(value.getUnderlyingString()));
+        assertEquals("[7]", matches.toString());
+    }
+    
+    @Test
+    public void testEarlyStop() {
+        List<String> matches = new ArrayList<>();
+        JsonPathQuery.compile("$.items[*].id").extract(JsonParser.getInstance(JSON + " trailing"), (path, state, name, value) -> {
+            matches.add(value.getUnderlyingString());
+            return false;
+        });
+        assertEquals("[10]", matches.toString());
+    }
+    
+    @Test
+    public void testInvalidPaths() {
+        for (String path : new String[]{"a.b", "$.", "$..a", "$[", "$[x]", "$['a]", "$[-1]", "$a"}) {
+            try {
+                JsonPathQuery.compile(path);
+                fail("Compiled '" + path + "'.");
+            } catch (IllegalArgumentException e) {
+                //expected
+            }
+        }
+        JsonPathQuery query = JsonPathQuery.compile("$.a", "$[0]");
+        assertEquals(2, query.getPathCount());
+        assertEquals("$[0]", query.getPath(1));
+    }
+    
+    private static String extract(String json, String... paths) {
+        List<String> matches = new ArrayList<>();
+        JsonPathQuery.compile(paths).extract(JsonParser.getInstance(json), (path, state, name, value) -> {
+            matches.add(path + " " + state + " " + name + " " + (value == null ? null : value.getUnderlyingString()));
+            return true;
+        });
+        return matches.toString();
+    }
+    
+}
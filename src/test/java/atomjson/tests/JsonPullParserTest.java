@@ -0,0 +1,125 @@
+package atomjson.tests;
+
+import atomjson.JsonParser;
+import atomjson.JsonParsingState;
+import atomjson.JsonPrimitive;
+import atomjson.JsonPullParser;
+import atomjson.exceptions.JsonException;
+import atomjson.utils.TestingUtil;
+import java.io.File;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.fail;
+import org.junit.Test;
+
+/**
+ * Make sure pulling events gives the same events as having them pushed to a handler.
+ * @author Justin Bonner
+ */
+public class JsonPullParserTest {
+    
+    private static final String CORRECT_JSON_DIR = "/valid_jsons";
+    private static final String INCORRECT_JSON_DIR = "/invalid_jsons";
+    
+    @Test
+    public void testSameEvents() throws IOException {
+        for (File file : TestingUtil.getFiles(CORRECT_JSON_DIR)) {
+            String json = TestingUtil.readFile(file);
+            Object expected = TestingUtil.recordEvents(JsonParser.getInstance(json));
+            assertEquals(file.getName(), expected, recordPulledEvents(JsonParser.getInstance(json).pull()));
+            assertEquals(file.getName(), expected, recordPulledEvents(JsonParser.getInstance(json.getBytes(StandardCharsets.UTF_8)).pull()));
+        }
+    }
+    
+    @Test
+    public void testIncorrectJsons() throws IOException {
+        for (File file : TestingUtil.getFiles(INCORRECT_JSON_DIR)) {
+            JsonPullParser parser = JsonParser.getInstance(TestingUtil.readFile(file)).pull();
+            try {
+                while (parser.nextEvent() != null) {
+                    //read everything
+                }
+            } catch (JsonException e) {
+                continue;
+            }
+            fail("Pulled all events from '" + file.getName() + "' but it should have failed.");
+        }
+    }
+    
+    @Test
+    public void testSkipChildren() {
+        JsonPullParser parser = JsonParser.getInstance("{\"skip\": {\"a\": [1, {\"b\": 2}], \"c\": 3}, \"keep\": [4, 5]}").pull();
+        assertEquals(JsonParsingState.BEGIN_OBJECT, parser.nextEvent());
+        assertEquals(JsonParsingState.BEGIN_OBJECT, parser.nextEvent());
+        assertEquals("skip", parser.currentName());
+        parser.skipChildren();
+        assertEquals(JsonParsingState.END_OBJECT, parser.currentEvent());
+        assertEquals(1, parser.getDepth());
+        assertEquals(JsonParsingState.BEGIN_ARRAY, parser.nextEvent());
+        assertEquals("keep", parser.currentName());
+        assertEquals(JsonParsingState.READ_PRIMITIVE, parser.nextEvent());
+        assertEquals(4, parser.currentPrimitive().getAsLong());
+        parser.skipChildren();
+        assertEquals(JsonParsingState.READ_PRIMITIVE, parser.currentEvent());
+        assertEquals(JsonParsingState.READ_PRIMITIVE, parser.nextEvent());
+        assertEquals(JsonParsingState.END_ARRAY, parser.nextEvent());
+        assertEquals(JsonParsingState.END_OBJECT, parser.nextEvent());
+        assertNull(parser.nextEvent());
+        assertNull(parser.nextEvent());
+    }
+    
+    @Test
+    public void testInterleavedDocuments() {
+        JsonPullParser first = JsonParser.getInstance("[1, 2, 3]").pull();
+        JsonPullParser second = JsonParser.getInstance("[10, 20, 30]".getBytes(StandardCharsets.UTF_8)).pull();
+        first.nextEvent();
+        second.nextEvent();
+        long sum = 0;
+        while (first.nextEvent() == JsonParsingState.READ_PRIMITIVE && second.nextEvent() == JsonParsingState.READ_PRIMITIVE) {
+            sum += first.currentPrimitive().getAsLong() * second.currentPrimitive().getAsLong();
+        }
+        assertEquals(140, sum);
+    }
+    
+    @Test
+    public void testEarlyStop() {
+        List<JsonPrimitive> values = new ArrayList<>();
+        JsonParser.getInstance("[1, 2, {\"a\": 3}, 4").parse((state, name, value) -> {
+            if (value != null) {
+                values.add(value);
+            }
+            return values.size() < 2;
+        });
+        assertEquals(2, values.size());
+        assertEquals(2, values.get(1).getAsLong());
+    }
+    
+    @Test
+    public void testClose() {
+        JsonPullParser parser = JsonParser.getInstance("[1, 2]").pull();
+        assertEquals(JsonParsingState.BEGIN_ARRAY, parser.nextEvent());
+        parser.close();
+        parser.close();
+        try {
+            parser.nextEvent();
+            fail();
+        } catch (IllegalStateException e) {
+            //expected
+        }
+    }
+    
+    private static List<String> recordPulledEvents(JsonPullParser parser) {
+        List<String> events = new ArrayList<>();
+        JsonParsingState state;
+        while ((state = parser.nextEvent()) != null) {
+            JsonPrimitive value = parser.currentPrimitive();
+            events.add(state + " " + parser.currentName() + " " + (value == null ? null : value.getType() + ":" + value.getUnderlyingString()));
+        }
+        return events;
+    }
+    
+}
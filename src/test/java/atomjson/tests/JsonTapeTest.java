@@ -0,0 +1,83 @@
+package atomjson.tests;
+
+import atomjson.JsonParser;
+import atomjson.JsonParsingState;
+import atomjson.JsonTape;
+import atomjson.utils.TestingUtil;
+import java.io.File;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+import org.junit.Test;
+
+/**
+ * Make sure replaying a recorded document gives the same events as parsing it.
+ * @author Justin Bonner
+ */
+public class JsonTapeTest {
+    
+    private static final String CORRECT_JSON_DIR = "/valid_jsons";
+    
+    @Test
+    public void testReplay() throws IOException {
+        for (File file : TestingUtil.getFiles(CORRECT_JSON_DIR)) {
+            String json = TestingUtil.readFile(file);
+            List<String> expected = TestingUtil.recordEvents(JsonParser.getInstance(json));
+            JsonTape tape = JsonTape.record(JsonParser.getInstance(json.getBytes(StandardCharsets.UTF_8)));
+            assertEquals(file.getName(), expected.size(), tape.getEventCount());
+            for (int pass = 0; pass < 2; pass++) {
+                List<String> events = new ArrayList<>();
+                tape.replay((state, name, value) -> events.add(TestingUtil.describe(state, name, value)));
+                assertEquals(file.getName(), expected, events);
+                List<String> views = new ArrayList<>();
+                tape.replayViews((state, name, value) -> views.add(TestingUtil.describe(state, name == null ? null : name.toString(), value)));
+                assertEquals(file.getName(), expected, views);
+            }
+        }
+    }
+    
+    @Test
+    public void testNumbers() {
+        String json = "[0, -0, 12, -9223372036854775808, 9223372036854775808, 1e3, 2.5, -1.5e-3]";
+        JsonTape tape = JsonTape.record(JsonParser.getInstance(json));
+        List<String> values = new ArrayList<>();
+        tape.replayViews((state, name, value) -> {
+            if (value != null) {
+                String asLong = value.isInteger() && value.getDigitCount() < 19 ? String.valueOf(value.getAsLong()) : "-";
+                values.add(value.getUnderlyingString() + " " + asLong + " " + value.getAsDouble());
+            }
+            return true;
+        });
+        assertEquals("[0 0 0.0, -0 0 -0.0, 12 12 12.0, -9223372036854775808 - -9.223372036854776E18, "
+            + "9223372036854775808 - 9.223372036854776E18, 1e3 1000 1000.0, 2.5 - 2.5, -1.5e-3 - -0.0015]", values.toString());
+    }
+    
+    @Test
+    public void testFootprintAndEarlyStop() {
+        StringBuilder json = new StringBuilder("[");
+        for (int i = 0; i < 1000; i++) {
+            json.append(i == 0 ? "" : ",").append("{\"id\": ").append(i).append(", \"ok\": true}");
+        }
+        json.append(']');
+        JsonTape tape = JsonTape.record(JsonParser.getInstance(json.toString()));
+        assertEquals(1 + 4 * 1000 + 1, tape.getEventCount());
+        //each object is 2 entries, 2 names, a number entry and value and a boolean, the names are kept once
+        long expected = 8 * (2 + 1000 * 7) + 2 * (4 + 2890);
+        assertEquals(expected, tape.getFootprint());
+        int[] seen = new int[1];
+        tape.replay((state, name, value) -> ++seen[0] < 3);
+        assertEquals(3, seen[0]);
+        List<String> names = new ArrayList<>();
+        tape.replay((state, name, value) -> {
+            if (state == JsonParsingState.READ_PRIMITIVE) {
+                names.add(name);
+            }
+            return names.size() < 4;
+        });
+        assertTrue(names.get(0) == names.get(2));
+    }
+    
+}
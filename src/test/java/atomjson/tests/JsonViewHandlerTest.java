@@ -0,0 +1,69 @@
+package atomjson.tests;
+
+import atomjson.JsonParser;
+import atomjson.JsonPrimitive;
+import atomjson.utils.TestingUtil;
+import java.io.File;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Map;
+import static org.junit.Assert.assertEquals;
+import org.junit.Test;
+
+/**
+ * Make sure parsing with reused views gives the same events as parsing with new objects
+ * and that the views really are reused.
+ * @author Justin Bonner
+ */
+public class JsonViewHandlerTest {
+    
+    private static final String CORRECT_JSON_DIR = "/valid_jsons";
+    
+    @Test
+    public void testSameEvents() throws IOException {
+        for (File file : TestingUtil.getFiles(CORRECT_JSON_DIR)) {
+            String json = TestingUtil.readFile(file);
+            Object expected = TestingUtil.recordEvents(JsonParser.getInstance(json));
+            assertEquals(file.getName(), expected, recordViewEvents(JsonParser.getInstance(json)));
+            assertEquals(file.getName(), expected, recordViewEvents(JsonParser.getInstance(json.getBytes(StandardCharsets.UTF_8))));
+        }
+    }
+    
+    @Test
+    public void testViewsAreReused() {
+        String json = "{\"a\": 1, \"b\": \"two\", \"c\": [true, null], \"d\": {\"e\": 2.5}}";
+        Map<Object, Object> keys = new IdentityHashMap<>();
+        Map<Object, Object> values = new IdentityHashMap<>();
+        List<JsonPrimitive> copies = new ArrayList<>();
+        JsonParser.getInstance(json).parseViews((state, name, value) -> {
+            if (name != null) {
+                keys.put(name, name);
+            }
+            if (value != null) {
+                values.put(value, value);
+                copies.add(value.copy());
+            }
+            return true;
+        });
+        assertEquals(1, keys.size());
+        assertEquals(1, values.size());
+        assertEquals("1", copies.get(0).getUnderlyingString());
+        assertEquals("two", copies.get(1).getAsString());
+        assertEquals(true, copies.get(2).getAsBoolean());
+        assertEquals(true, copies.get(3).isNull());
+        assertEquals(2.5, copies.get(4).getAsDouble(), 0);
+    }
+    
+    private static List<String> recordViewEvents(JsonParser parser) {
+        List<String> events = new ArrayList<>();
+        parser.parseViews((state, name, value) -> {
+            events.add(state + " " + name + " " + (value == null ? null : value.getType() + ":" + value.getUnderlyingText()));
+            return true;
+        });
+        return events;
+    }
+    
+}
@@ -0,0 +1,122 @@
+package atomjson.tests;
+
+import atomjson.JsonParser;
+import atomjson.JsonWriter;
+import atomjson.utils.TestingUtil;
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.IOException;
+import java.io.StringWriter;
+import java.nio.channels.Channels;
+import java.nio.charset.StandardCharsets;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.fail;
+import org.junit.Test;
+
+/**
+ * Make sure JSON written from parsing events parses back to the same events, and
+ * that the writer escapes and checks what it is given.
+ * @author Justin Bonner
+ */
+public class JsonWriterTest {
+    
+    private static final String CORRECT_JSON_DIR = "/valid_jsons";
+    
+    @Test
+    public void testRoundTrip() throws IOException {
+        for (File file : TestingUtil.getFiles(CORRECT_JSON_DIR)) {
+            String json = TestingUtil.readFile(file);
+            Object expected = TestingUtil.recordEvents(JsonParser.getInstance(json));
+            
+            StringWriter chars = new StringWriter();
+            JsonWriter writer = JsonWriter.getInstance(chars);
+            JsonParser.getInstance(json).parse(writer.asHandler());
+            writer.close();
+            assertEquals(file.getName(), expected, TestingUtil.recordEvents(JsonParser.getInstance(chars.toString())));
+            
+            ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+            writer = JsonWriter.getInstance(bytes);
+            JsonParser.getInstance(json.getBytes(StandardCharsets.UTF_8)).parseViews(writer.asViewHandler());
+            writer.close();
+            assertEquals(file.getName(), expected, TestingUtil.recordEvents(JsonParser.getInstance(bytes.toByteArray())));
+        }
+    }
+    
+    @Test
+    public void testWrite() {
+        StringWriter chars = new StringWriter();
+        JsonWriter.getInstance(chars)
+            .beginObject()
+            .writeString("s", "a\"b\\c\n\u0001é😀")
+            .writeNumber("min", Long.MIN_VALUE)
+            .writeNumber("d", 0.5)
+            .beginArray("a")
+            .writeBoolean(null, true)
+            .writeNull(null)
+            .writeString(null, null)
+            .beginObject()
+            .endObject()
+            .endArray()
+            .endObject()
+            .writeNumber(null, 7)
+            .flush();
+        String expected = "{\"s\":\"a\\\"b\\\\c\\n\\u0001é😀\",\"min\":-9223372036854775808,\"d\":0.5,\"a\":[true,null,null,{}]}\n7";
+        assertEquals(expected, chars.toString());
+    }
+    
+    @Test
+    public void testEncoding() {
+        String text = "é中😀\uD800x";
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        JsonWriter writer = JsonWriter.getInstance(Channels.newChannel(bytes));
+        writer.writeString(null, text).flush();
+        assertEquals("\"é中😀\\uD800x\"", new String(bytes.toByteArray(), StandardCharsets.UTF_8));
+        
+        StringBuilder longText = new StringBuilder();
+        for (int i = 0; i < 20000; i++) {
+            longText.append((char)(i % 3 == 0 ? '\n' : 'a' + i % 26)).append('€');
+        }
+        bytes.reset();
+        StringWriter chars = new StringWriter();
+        JsonWriter.getInstance(bytes).writeString(null, longText).flush();
+        JsonWriter.getInstance(chars).writeString(null, longText).flush();
+        assertEquals(chars.toString(), new String(bytes.toByteArray(), StandardCharsets.UTF_8));
+        String[] parsed = new String[1];
+        JsonParser.getInstance("[" + chars + "]").parse((state, name, value) -> {
+            if (value != null) {
+                parsed[0] = value.getAsString();
+            }
+            return true;
+        });
+        assertEquals(longText.toString(), parsed[0]);
+    }
+    
+    @Test
+    public void testMisplacedEvents() {
+        JsonWriter writer = JsonWriter.getInstance(new StringWriter());
+        expectIllegal(() -> writer.endObject());
+        expectIllegal(() -> writer.writeNumber("name", 1));
+        writer.beginObject();
+        expectIllegal(() -> writer.writeNumber(null, 1));
+        expectIllegal(() -> writer.endArray());
+        writer.beginArray("a");
+        expectIllegal(() -> writer.beginObject("b"));
+        try {
+            writer.writeNumber(null, Double.NaN);
+            fail();
+        } catch (IllegalArgumentException e) {
+            //expected
+        }
+        assertEquals(2, writer.getDepth());
+    }
+    
+    private static void expectIllegal(Runnable write) {
+        try {
+            write.run();
+            fail();
+        } catch (IllegalStateException e) {
+            //expected
+        }
+    }
+    
+}
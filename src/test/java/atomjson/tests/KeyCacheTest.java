@@ -0,0 +1,82 @@
+package atomjson.tests;
+
+import atomjson.JsonParser;
+import atomjson.JsonParsingState;
+import atomjson.utils.TestingUtil;
+import java.io.File;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+import org.junit.Test;
+
+/**
+ * Make sure repeated field names are given to handlers as the same String
+ * and that the key cache does not change what is parsed.
+ * @author Justin Bonner
+ */
+public class KeyCacheTest {
+    
+    private static final String CORRECT_JSON_DIR = "/valid_jsons";
+    
+    @Test
+    public void testRepeatedKeysAreSame() {
+        String json = "[{\"id\": 1, \"n\\u0061me\": \"a\", \"café\": 1}, {\"id\": 2, \"name\": \"b\", \"café\": 2}, {\"id\": 3, \"name\": \"c\", \"café\": 3}]";
+        for (JsonParser parser : new JsonParser[]{JsonParser.getInstance(json), JsonParser.getInstance(json.getBytes(StandardCharsets.UTF_8))}) {
+            List<String> keys = recordKeys(parser);
+            assertEquals(9, keys.size());
+            for (int i = 3; i < keys.size(); i++) {
+                assertSame(keys.get(i - 3), keys.get(i));
+            }
+            assertEquals("name", keys.get(1));
+            assertEquals(3, parser.getKeyCacheMisses());
+            assertEquals(6, parser.getKeyCacheHits());
+        }
+    }
+    
+    @Test
+    public void testCacheIsBounded() {
+        StringBuilder json = new StringBuilder("{");
+        for (int i = 0; i < 10000; i++) {
+            json.append(i == 0 ? "" : ",").append("\"key").append(i).append("\": ").append(i);
+        }
+        json.append('}');
+        JsonParser parser = JsonParser.getInstance(json.toString());
+        parser.setKeyCacheSize(16);
+        assertEquals(16, parser.getKeyCacheSize());
+        List<String> keys = recordKeys(parser);
+        assertEquals(10000, keys.size());
+        assertEquals("key9999", keys.get(9999));
+        assertEquals(10000, parser.getKeyCacheMisses());
+    }
+    
+    @Test
+    public void testSameEvents() throws IOException {
+        for (File file : TestingUtil.getFiles(CORRECT_JSON_DIR)) {
+            String json = TestingUtil.readFile(file);
+            JsonParser noCache = JsonParser.getInstance(json);
+            noCache.setKeyCacheSize(0);
+            JsonParser tinyCache = JsonParser.getInstance(json.getBytes(StandardCharsets.UTF_8));
+            tinyCache.setKeyCacheSize(2);
+            Object expected = TestingUtil.recordEvents(noCache);
+            assertEquals(file.getName(), expected, TestingUtil.recordEvents(tinyCache));
+            assertEquals(0, noCache.getKeyCacheHits() + noCache.getKeyCacheMisses());
+        }
+        assertTrue(JsonParser.getInstance("{}").getKeyCacheSize() > 0);
+    }
+    
+    private static List<String> recordKeys(JsonParser parser) {
+        List<String> keys = new ArrayList<>();
+        parser.parse((parsingState, fieldName, value) -> {
+            if (parsingState == JsonParsingState.READ_PRIMITIVE && fieldName != null) {
+                keys.add(fieldName);
+            }
+            return true;
+        });
+        return keys;
+    }
+    
+}
@@ -0,0 +1,73 @@
+package atomjson.tests;
+
+import atomjson.JsonParser;
+import atomjson.exceptions.JsonException;
+import atomjson.utils.TestingUtil;
+import java.io.File;
+import java.io.IOException;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.fail;
+import org.junit.Test;
+
+/**
+ * Make sure that memory mapped files parse the same as Strings, including when
+ * tokens cross the boundaries of the mapped segments.
+ * @author Justin Bonner
+ */
+public class MappedFileTest {
+    
+    private static final String CORRECT_JSON_DIR = "/valid_jsons";
+    private static final String INCORRECT_JSON_DIR = "/invalid_jsons";
+    
+    @Test
+    public void testCorrectJsons() throws IOException {
+        for (File file : TestingUtil.getFiles(CORRECT_JSON_DIR)) {
+            Object expected = TestingUtil.recordEvents(JsonParser.getInstance(TestingUtil.readFile(file)));
+            assertEquals(file.getName(), expected, TestingUtil.recordEvents(JsonParser.getInstance(file.toPath())));
+            for (int segmentSize = 1; segmentSize <= 8; segmentSize++) {
+                JsonParser parser = JsonParser.getInstance(file.toPath(), segmentSize);
+                assertEquals(file.getName(), expected, TestingUtil.recordEvents(parser));
+            }
+            try (FileChannel channel = FileChannel.open(file.toPath(), StandardOpenOption.READ)) {
+                assertEquals(file.getName(), expected, TestingUtil.recordEvents(JsonParser.getInstance(channel)));
+            }
+        }
+    }
+    
+    @Test
+    public void testIncorrectJsons() throws IOException {
+        for (File file : TestingUtil.getFiles(INCORRECT_JSON_DIR)) {
+            for (int segmentSize = 1; segmentSize <= 4; segmentSize++) {
+                JsonParser parser = JsonParser.getInstance(file.toPath(), segmentSize);
+                try {
+                    parser.parse((state, name, value) -> true);
+                    fail("Parsed '" + file.getName() + "' but should have failed.");
+                } catch (JsonException e) {
+                    //expected
+                }
+            }
+        }
+    }
+    
+    @Test
+    public void testTokenLongerThanSegment() throws IOException {
+        StringBuilder json = new StringBuilder("[\"");
+        for (int i = 0; i < 1000; i++) {
+            json.append("é\\u00e9");
+        }
+        json.append("\", 12345678901234567890]");
+        Path file = Files.createTempFile("atomjson", ".json");
+        try {
+            Files.write(file, json.toString().getBytes("UTF-8"));
+            Object expected = TestingUtil.recordEvents(JsonParser.getInstance(json.toString()));
+            assertEquals(expected, TestingUtil.recordEvents(JsonParser.getInstance(file, 16)));
+        } finally {
+            Files.delete(file);
+        }
+    }
+    
+}
@@ -0,0 +1,213 @@
+package atomjson.tests;
+
+import atomjson.JsonDocumentHandler;
+import atomjson.JsonParser;
+import atomjson.JsonParsingState;
+import atomjson.JsonPrimitive;
+import atomjson.exceptions.JsonException;
+import atomjson.utils.TestingUtil;
+import java.io.File;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.fail;
+import org.junit.Test;
+
+/**
+ * Make sure a sequence of documents in one source parses the same as
+ * parsing each document on its own.
+ * @author Justin Bonner
+ */
+public class MultiDocumentTest {
+    
+    private static final String CORRECT_JSON_DIR = "/valid_jsons";
+    
+    @Test
+    public void testNewlineDelimited() throws IOException {
+        StringBuilder source = new StringBuilder();
+        List<String> expected = new ArrayList<>();
+        for (File file : TestingUtil.getFiles(CORRECT_JSON_DIR)) {
+            String json = TestingUtil.readFile(file);
+            source.append(json.trim()).append('\n');
+            expected.add("begin");
+            expected.addAll(TestingUtil.recordEvents(JsonParser.getInstance(json)));
+            expected.add("end");
+        }
+        assertEquals(expected, recordDocuments(JsonParser.getInstance(source.toString())));
+        assertEquals(expected, recordDocuments(JsonParser.getInstance(source.toString().getBytes(StandardCharsets.UTF_8))));
+    }
+    
+    @Test
+    public void testConcatenated() {
+        String source = "{\"a\": 1}[2]{}  \"three\" 4\t\ttrue null\r\n[]";
+        List<String> events = recordDocuments(JsonParser.getInstance(source));
+        assertEquals("[begin, BEGIN_OBJECT null null, READ_PRIMITIVE a NUMBER:1, END_OBJECT null null, end,"
+            + " begin, BEGIN_ARRAY null null, READ_PRIMITIVE null NUMBER:2, END_ARRAY null null, end,"
+            + " begin, BEGIN_OBJECT null null, END_OBJECT null null, end,"
+            + " begin, READ_PRIMITIVE null STRING:three, end, begin, READ_PRIMITIVE null NUMBER:4, end,"
+            + " begin, READ_PRIMITIVE null BOOLEAN:true, end, begin, READ_PRIMITIVE null NULL:null, end,"
+            + " begin, BEGIN_ARRAY null null, END_ARRAY null null, end]", events.toString());
+        assertEquals("[]", recordDocuments(JsonParser.getInstance(" \n ")).toString());
+    }
+    
+    @Test
+    public void testSkipMalformed() {
+        String source = "{\"id\": 1}\n{\"id\": 2,, \"x\": \"]\"}\n[1, 2\n{\"id\": \"unterminated}\n{\"id\": -}\n{\"id\": 5}";
+        for (JsonParser parser : new JsonParser[]{JsonParser.getInstance(source), JsonParser.getInstance(source.getBytes(StandardCharsets.UTF_8))}) {
+            List<String> ids = new ArrayList<>();
+            List<Long> malformed = new ArrayList<>();
+            parser.parseDocuments(new JsonDocumentHandler() {
+                @Override
+                public boolean beginDocument(long documentIndex) {
+                    return true;
+                }
+                
+                @Override
+                public boolean endDocument(long documentIndex) {
+                    return true;
+                }
+                
+                @Override
+                public boolean malformedDocument(long documentIndex, JsonException error) {
+                    malformed.add(documentIndex);
+                    return true;
+                }
+                
+                @Override
+                public boolean handleJson(JsonParsingState parsingState, String fieldName, JsonPrimitive value) {
+                    if ("id".equals(fieldName)) {
+                        ids.add(value.getUnderlyingString());
+                    }
+                    return true;
+                }
+            });
+            assertEquals("[1, 2, 5]", ids.toString());
+            //the unclosed array is only found to be malformed on the next line, which is then read as its own document
+            assertEquals("[1, 2, 3, 4]", malformed.toString());
+        }
+    }
+    
+    @Test
+    public void testTruncatedDocument() {
+        //a document cut short is only found to be malformed on the first token of the next line
+        String source = "{\"a\":1\n{\"b\":2}\n[1, \n:\n{\"c\":3}\n";
+        for (JsonParser parser : new JsonParser[]{JsonParser.getInstance(source), JsonParser.getInstance(source.getBytes(StandardCharsets.UTF_8))}) {
+            List<String> events = new ArrayList<>();
+            parser.parseDocuments(new JsonDocumentHandler() {
+                @Override
+                public boolean beginDocument(long documentIndex) {
+                    events.add("begin " + documentIndex);
+                    return true;
+                }
+                
+                @Override
+                public boolean endDocument(long documentIndex) {
+                    events.add("end " + documentIndex);
+                    return true;
+                }
+                
+                @Override
+                public boolean malformedDocument(long documentIndex, JsonException error) {
+                    events.add("bad " + documentIndex);
+                    return true;
+                }
+                
+                @Override
+                public boolean handleJson(JsonParsingState parsingState, String fieldName, JsonPrimitive value) {
+                    if (fieldName != null) {
+                        events.add(fieldName);
+                    }
+                    return true;
+                }
+            });
+            assertEquals("[begin 0, a, bad 0, begin 1, b, end 1, begin 2, bad 2, bad 3, begin 4, c, end 4]", events.toString());
+        }
+    }
+    
+    @Test
+    public void testHandlerErrorsNotSkipped() {
+        String source = "{\"id\": 1}\n{\"id\": \"two\"}\n{\"id\": 3}";
+        for (JsonParser parser : new JsonParser[]{JsonParser.getInstance(source), JsonParser.getInstance(source.getBytes(StandardCharsets.UTF_8))}) {
+            List<Long> ids = new ArrayList<>();
+            List<Long> malformed = new ArrayList<>();
+            try {
+                parser.parseDocuments(new JsonDocumentHandler() {
+                    @Override
+                    public boolean beginDocument(long documentIndex) {
+                        return true;
+                    }
+                    
+                    @Override
+                    public boolean endDocument(long documentIndex) {
+                        return true;
+                    }
+                    
+                    @Override
+                    public boolean malformedDocument(long documentIndex, JsonException error) {
+                        malformed.add(documentIndex);
+                        return true;
+                    }
+                    
+                    @Override
+                    public boolean handleJson(JsonParsingState parsingState, String fieldName, JsonPrimitive value) {
+                        if ("id".equals(fieldName)) {
+                            ids.add(value.getAsLong());
+                        }
+                        return true;
+                    }
+                });
+                fail();
+            } catch (JsonException e) {
+                assertEquals("Tried to read STRING as a Long.", e.getMessage());
+            }
+            assertEquals("[1]", ids.toString());
+            assertEquals("[]", malformed.toString());
+        }
+    }
+    
+    @Test
+    public void testMalformedFailsByDefault() {
+        try {
+            recordDocuments(JsonParser.getInstance("{}\n{]\n{}"));
+            fail();
+        } catch (JsonException e) {
+            //expected
+        }
+        try {
+            JsonParser.getInstance("{}\n{}").parse((state, name, value) -> true);
+            fail();
+        } catch (JsonException e) {
+            //expected
+        }
+    }
+    
+    private static List<String> recordDocuments(JsonParser parser) {
+        List<String> events = new ArrayList<>();
+        long[] nextIndex = new long[1];
+        parser.parseDocuments(new JsonDocumentHandler() {
+            @Override
+            public boolean beginDocument(long documentIndex) {
+                assertEquals(nextIndex[0], documentIndex);
+                events.add("begin");
+                return true;
+            }
+            
+            @Override
+            public boolean endDocument(long documentIndex) {
+                assertEquals(nextIndex[0]++, documentIndex);
+                events.add("end");
+                return true;
+            }
+            
+            @Override
+            public boolean handleJson(JsonParsingState state, String name, JsonPrimitive value) {
+                events.add(state + " " + name + " " + (value == null ? null : value.getType() + ":" + value.getUnderlyingString()));
+                return true;
+            }
+        });
+        return events;
+    }
+    
+}
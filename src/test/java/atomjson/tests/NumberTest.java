@@ -0,0 +1,177 @@
+package atomjson.tests;
+
+import atomjson.JsonParser;
+import atomjson.JsonParsingState;
+import atomjson.JsonPrimitive;
+import atomjson.exceptions.JsonException;
+import java.io.StringReader;
+import java.math.BigDecimal;
+import java.math.BigInteger;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.fail;
+import org.junit.Test;
+
+/**
+ * Test that numbers are validated and that the facts recorded while scanning them are correct.
+ * @author Justin Bonner
+ */
+public class NumberTest {
+    
+    private static final String[] BAD_NUMBERS = new String[]{
+        "-",
+        "+1",
+        "1.",
+        ".5",
+        "1e",
+        "1e+",
+        "1E-",
+        "1x",
+        "1.5.5",
+        "--1",
+        "1-",
+        "1e5e5",
+        "1:"
+    };
+    
+    @Test
+    public void testBadNumbers() {
+        for (String number : BAD_NUMBERS) {
+            String json = "[" + number + "]";
+            for (JsonParser parser : parsers(json)) {
+                try {
+                    parser.parse((parsingState, fieldName, value) -> true);
+                    fail("Incorrect successful parsing of: " + json);
+                } catch (JsonException e) {
+                    //expected
+                }
+            }
+        }
+    }
+    
+    @Test
+    public void testNumberInfo() {
+        String json = "[0, -12, 3.25, -0.5e-3, 12E+4, 7e0, 1000e-1]";
+        for (JsonParser parser : parsers(json)) {
+            List<JsonPrimitive> values = new ArrayList<>();
+            parser.parse((parsingState, fieldName, value) -> {
+                if (parsingState == JsonParsingState.READ_PRIMITIVE) {
+                    values.add(value);
+                }
+                return true;
+            });
+            assertEquals(7, values.size());
+            assertNumber(values.get(0), true, false, false, false, 1);
+            assertNumber(values.get(1), true, false, false, false, 2);
+            assertNumber(values.get(2), false, true, false, false, 3);
+            assertNumber(values.get(3), false, true, true, true, 2);
+            assertNumber(values.get(4), true, false, true, false, 2);
+            assertNumber(values.get(5), true, false, true, false, 1);
+            assertNumber(values.get(6), false, false, true, true, 4);
+        }
+    }
+    
+    @Test
+    public void testLongs() {
+        String[] numbers = new String[]{"0", "-0", "7", "-12", "9223372036854775807", "-9223372036854775808", "12e3", "-5E+2", "0e999999"};
+        long[] expected = new long[]{0, 0, 7, -12, Long.MAX_VALUE, Long.MIN_VALUE, 12000, -500, 0};
+        for (int i = 0; i < numbers.length; i++) {
+            assertEquals(numbers[i], expected[i], parseNumber(numbers[i]).getAsLong());
+            assertEquals(numbers[i], BigInteger.valueOf(expected[i]), parseNumber(numbers[i]).getAsBigInteger());
+        }
+        for (String tooBig : new String[]{"9223372036854775808", "-9223372036854775809", "1e19", "92233720368547758070", "1e999999999"}) {
+            try {
+                parseNumber(tooBig).getAsLong();
+                fail(tooBig + " should not fit in a long.");
+            } catch (JsonException e) {
+                //expected
+            }
+        }
+        assertEquals(new BigInteger("100000000000000000000"), parseNumber("1e20").getAsBigInteger());
+        assertEquals(BigInteger.TEN.pow(100000), parseNumber("1e100000").getAsBigInteger());
+        for (String hostile : new String[]{"1e100001", "1e999999999", "-7E+99999999999"}) {
+            try {
+                parseNumber(hostile).getAsBigInteger();
+                fail(hostile + " should be rejected as a BigInteger.");
+            } catch (JsonException e) {
+                //expected
+            }
+        }
+        assertEquals(-2147483648, parseNumber("-2147483648").getAsInt());
+        try {
+            parseNumber("2147483648").getAsInt();
+            fail();
+        } catch (JsonException e) {
+            //expected
+        }
+        assertEquals(new BigDecimal("-1.50e-3"), parseNumber("-1.50e-3").getAsBigDecimal());
+    }
+    
+    @Test
+    public void testDoubles() {
+        String[] numbers = new String[]{"0", "-0", "0.1", "1e23", "2.2250738585072011e-308", "4.9e-324", "2e-324",
+            "1.7976931348623157e308", "1.8e308", "9007199254740993", "123456789012345678901234567890", "0.000001234",
+            "1e-400", "1e400", "3.14159265358979323846264338327950288", "-2.5E-3", "7e22", "7e23"};
+        for (String number : numbers) {
+            assertDouble(number);
+        }
+        Random random = new Random(42);
+        for (int i = 0; i < 200000; i++) {
+            StringBuilder number = new StringBuilder();
+            if (random.nextBoolean()) {
+                number.append('-');
+            }
+            number.append(random.nextInt(10));
+            int digits = random.nextInt(20);
+            if (digits > 0) {
+                number.append('.');
+                for (int d = 0; d < digits; d++) {
+                    number.append(random.nextInt(10));
+                }
+            }
+            if (random.nextBoolean()) {
+                number.append('e').append(random.nextInt(700) - 350);
+            }
+            assertDouble(number.toString());
+            assertDouble(Double.toString(Double.longBitsToDouble(random.nextLong() & Long.MAX_VALUE)).replace("Infinity", "1").replace("NaN", "1"));
+        }
+    }
+    
+    private static void assertDouble(String number) {
+        double expected = Double.parseDouble(number);
+        assertEquals(number, Double.doubleToLongBits(expected), Double.doubleToLongBits(parseNumber(number).getAsDouble()));
+    }
+    
+    private static JsonPrimitive parseNumber(String number) {
+        List<JsonPrimitive> values = new ArrayList<>();
+        JsonParser.getInstance("[" + number + "]").parse((parsingState, fieldName, value) -> {
+            if (parsingState == JsonParsingState.READ_PRIMITIVE) {
+                values.add(value);
+            }
+            return true;
+        });
+        return values.get(0);
+    }
+    
+    private static void assertNumber(JsonPrimitive value, boolean integer, boolean fraction, boolean exponent,
+            boolean negativeExponent, int digits) {
+        String number = value.getUnderlyingString();
+        assertEquals(number, integer, value.isInteger());
+        assertEquals(number, fraction, value.hasFraction());
+        assertEquals(number, exponent, value.hasExponent());
+        assertEquals(number, negativeExponent, value.hasNegativeExponent());
+        assertEquals(number, digits, value.getDigitCount());
+        assertEquals(number, integer, value.copy().isInteger());
+    }
+    
+    private static JsonParser[] parsers(String json) {
+        return new JsonParser[]{
+            JsonParser.getInstance(new StringReader(json)),
+            JsonParser.getInstance(json.getBytes(StandardCharsets.UTF_8))
+        };
+    }
+    
+}
@@ -0,0 +1,173 @@
+package atomjson.tests;
+
+import atomjson.JsonDocumentHandler;
+import atomjson.JsonParallelParser;
+import atomjson.JsonParsingState;
+import atomjson.JsonPrimitive;
+import atomjson.exceptions.JsonException;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.ForkJoinPool;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.fail;
+import org.junit.Test;
+
+/**
+ * Make sure parsing in parallel sees every document exactly once and merges in order when asked to.
+ * @author Justin Bonner
+ */
+public class ParallelParserTest {
+    
+    private static final int DOCUMENTS = 5000;
+    private static final int ELEMENTS = 500;
+    
+    @Test
+    public void testOrdered() throws IOException {
+        byte[] ndjson = createNdjson();
+        Path file = Files.createTempFile("parallel", ".ndjson");
+        try {
+            Files.write(file, ndjson);
+            for (JsonParallelParser parser : new JsonParallelParser[]{JsonParallelParser.getInstance(ndjson), JsonParallelParser.getInstance(file)}) {
+                for (int chunkSize : new int[]{1, 100, 4096, 1 << 20}) {
+                    parser.setChunkSize(chunkSize);
+                    parser.setPool(new ForkJoinPool(4));
+                    List<Long> ids = new ArrayList<>();
+                    parser.parseDocuments(IdCollector::new, handler -> ids.addAll(handler.ids), true);
+                    assertEquals(DOCUMENTS, ids.size());
+                    for (int i = 0; i < DOCUMENTS; i++) {
+                        assertEquals((long)i, (long)ids.get(i));
+                    }
+                }
+            }
+        } finally {
+            Files.delete(file);
+        }
+    }
+    
+    @Test
+    public void testUnordered() {
+        JsonParallelParser parser = JsonParallelParser.getInstance(createNdjson());
+        parser.setChunkSize(1000);
+        List<Long> ids = new ArrayList<>();
+        int[] handlers = new int[1];
+        parser.parseDocuments(IdCollector::new, handler -> {
+            ids.addAll(handler.ids);
+            handlers[0]++;
+        }, false);
+        Collections.sort(ids);
+        assertEquals(DOCUMENTS, ids.size());
+        assertEquals(DOCUMENTS - 1, (long)ids.get(DOCUMENTS - 1));
+        assertEquals(true, handlers[0] > 1);
+    }
+    
+    @Test
+    public void testErrorsArePropagated() {
+        byte[] ndjson = (new String(createNdjson(), StandardCharsets.UTF_8) + "{\"id\": }\n").getBytes(StandardCharsets.UTF_8);
+        JsonParallelParser parser = JsonParallelParser.getInstance(ndjson);
+        parser.setChunkSize(1000);
+        try {
+            parser.parseDocuments(IdCollector::new, handler -> { }, true);
+            fail();
+        } catch (JsonException e) {
+            //expected
+        }
+        JsonParallelParser.getInstance(new byte[0]).parseDocuments(IdCollector::new, handler -> fail(), true);
+    }
+    
+    @Test
+    public void testArray() throws IOException {
+        StringBuilder json = new StringBuilder(" [");
+        for (int i = 0; i < ELEMENTS; i++) {
+            json.append(i == 0 ? "\n" : ",\n").append("{\"id\": ").append(i)
+                .append(", \"text\": \"a ] \\\" , [ { \\\\\", \"nested\": [[1, [2]], {\"a\": [3, \"]]]\"]}], \"more\": [4, 5, 6]}");
+        }
+        json.append("\n] \n");
+        byte[] bytes = json.toString().getBytes(StandardCharsets.UTF_8);
+        List<Long> expected = new ArrayList<>();
+        for (long i = 0; i < ELEMENTS; i++) {
+            expected.add(i);
+        }
+        Path file = Files.createTempFile("parallel", ".json");
+        try {
+            Files.write(file, bytes);
+            for (JsonParallelParser parser : new JsonParallelParser[]{JsonParallelParser.getInstance(bytes), JsonParallelParser.getInstance(file)}) {
+                for (int chunkSize : new int[]{1, 7, 100, 4096, 1 << 20}) {
+                    parser.setChunkSize(chunkSize);
+                    List<Long> ids = new ArrayList<>();
+                    List<Long> indices = new ArrayList<>();
+                    parser.parseArray(IdCollector::new, handler -> {
+                        ids.addAll(handler.ids);
+                        indices.addAll(handler.documents);
+                    }, true);
+                    assertEquals("chunk size " + chunkSize, expected, ids);
+                    assertEquals("chunk size " + chunkSize, expected, indices);
+                }
+            }
+        } finally {
+            Files.delete(file);
+        }
+    }
+    
+    @Test
+    public void testArrayOfPrimitives() {
+        String[] arrays = new String[]{"[]", " [ ] ", "[1]", "[\"a,b\", 2, null, true, [], {}]", "\u2028[1,\u3000 2]\u2029"};
+        int[] sizes = new int[]{0, 0, 1, 6, 2};
+        for (int i = 0; i < arrays.length; i++) {
+            JsonParallelParser parser = JsonParallelParser.getInstance(arrays[i].getBytes(StandardCharsets.UTF_8));
+            parser.setChunkSize(2);
+            List<Long> indices = new ArrayList<>();
+            parser.parseArray(IdCollector::new, handler -> indices.addAll(handler.documents), true);
+            assertEquals(arrays[i], sizes[i], indices.size());
+        }
+        for (String json : new String[]{"{}", "[1, 2", "[1, 2]]", "[1, 2] 3", "[1,, 2]", "[1, 2,]", "[\"]\"", "", "[1, 2]\u00a0"}) {
+            JsonParallelParser parser = JsonParallelParser.getInstance(json.getBytes(StandardCharsets.UTF_8));
+            parser.setChunkSize(2);
+            try {
+                parser.parseArray(IdCollector::new, handler -> { }, true);
+                fail("Parsed '" + json + "'.");
+            } catch (JsonException e) {
+                //expected
+            }
+        }
+    }
+    
+    private static byte[] createNdjson() {
+        StringBuilder ndjson = new StringBuilder();
+        for (int i = 0; i < DOCUMENTS; i++) {
+            ndjson.append("{\"id\": ").append(i).append(", \"name\": \"doc ").append(i).append("\", \"tags\": [1, 2, {\"x\": null}]}\n");
+        }
+        return ndjson.toString().getBytes(StandardCharsets.UTF_8);
+    }
+    
+    private static class IdCollector implements JsonDocumentHandler {
+        
+        private final List<Long> ids = new ArrayList<>();
+        private final List<Long> documents = new ArrayList<>();
+        
+        @Override
+        public boolean beginDocument(long documentIndex) {
+            documents.add(documentIndex);
+            return true;
+        }
+        
+        @Override
+        public boolean endDocument(long documentIndex) {
+            return true;
+        }
+        
+        @Override
+        public boolean handleJson(JsonParsingState parsingState, String fieldName, JsonPrimitive value) {
+            if ("id".equals(fieldName)) {
+                ids.add(value.getAsLong());
+            }
+            return true;
+        }
+        
+    }
+    
+}
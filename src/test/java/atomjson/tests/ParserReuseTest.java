@@ -0,0 +1,109 @@
+package atomjson.tests;
+
+import atomjson.JsonParser;
+import atomjson.JsonParserPool;
+import atomjson.JsonPrimitive;
+import atomjson.exceptions.JsonException;
+import atomjson.utils.TestingUtil;
+import java.io.File;
+import java.io.IOException;
+import java.io.StringReader;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+import org.junit.Test;
+
+/**
+ * Make sure a parser reset to a new source parses it the same as a new parser would.
+ * @author Justin Bonner
+ */
+public class ParserReuseTest {
+    
+    private static final String CORRECT_JSON_DIR = "/valid_jsons";
+    private static final String INCORRECT_JSON_DIR = "/invalid_jsons";
+    
+    @Test
+    public void testReset() throws IOException {
+        JsonParser parser = JsonParser.getInstance("[]");
+        List<File> files = new ArrayList<>(Arrays.asList(TestingUtil.getFiles(CORRECT_JSON_DIR)));
+        files.addAll(Arrays.asList(TestingUtil.getFiles(INCORRECT_JSON_DIR)));
+        int i = 0;
+        for (File file : files) {
+            String json = TestingUtil.readFile(file);
+            List<String> expected = parseOrFail(JsonParser.getInstance(json));
+            for (int kind = 0; kind < 4; kind++, i++) {
+                switch ((i + kind) % 4) {
+                    case 0:
+                        parser.reset(json);
+                        break;
+                    case 1:
+                        parser.reset(new StringReader(json));
+                        break;
+                    case 2:
+                        parser.reset(json.getBytes(StandardCharsets.UTF_8));
+                        break;
+                    default:
+                        parser.reset(ByteBuffer.wrap(json.getBytes(StandardCharsets.UTF_8)));
+                }
+                assertEquals(file.getName(), expected, parseOrFail(parser));
+            }
+        }
+    }
+    
+    @Test
+    public void testResetKeepsSettingsAndValues() {
+        JsonParser parser = JsonParser.getInstance("[\"" + new String(new char[100000]).replace('\0', 'é') + "\"]");
+        parser.setMaxDepth(2);
+        List<JsonPrimitive> values = new ArrayList<>();
+        parser.parse((state, name, value) -> values.add(value));
+        parser.reset("[[[1]]]".getBytes(StandardCharsets.UTF_8));
+        assertEquals(2, parser.getMaxDepth());
+        try {
+            parser.parse((state, name, value) -> true);
+            fail();
+        } catch (JsonException e) {
+            //expected
+        }
+        parser.reset("{\"a\": 1}");
+        parser.parse((state, name, value) -> true);
+        assertEquals(100000, values.get(1).getAsString().length());
+    }
+    
+    @Test
+    public void testPool() {
+        JsonParserPool pool = new JsonParserPool(2);
+        JsonParser first = pool.acquire("{\"a\": 1}");
+        first.setMaxDepth(5);
+        first.setStrictSurrogates(true);
+        assertEquals(Arrays.asList("BEGIN_OBJECT null null", "READ_PRIMITIVE a NUMBER:1", "END_OBJECT null null"), TestingUtil.recordEvents(first));
+        pool.release(first);
+        assertEquals(1, pool.getIdleCount());
+        JsonParser again = pool.acquire("[\"\\uD800\"]".getBytes(StandardCharsets.UTF_8));
+        assertSame(first, again);
+        assertEquals(0, pool.getIdleCount());
+        assertEquals(Integer.MAX_VALUE, again.getMaxDepth());
+        assertTrue(!again.isStrictSurrogates());
+        assertEquals(3, TestingUtil.recordEvents(again).size());
+        JsonParser second = pool.acquire(new StringReader("[]"));
+        JsonParser third = pool.acquire(ByteBuffer.wrap("[]".getBytes(StandardCharsets.UTF_8)));
+        pool.release(again);
+        pool.release(second);
+        pool.release(third);
+        assertEquals(2, pool.getIdleCount());
+    }
+    
+    private static List<String> parseOrFail(JsonParser parser) {
+        try {
+            return TestingUtil.recordEvents(parser);
+        } catch (JsonException e) {
+            return Arrays.asList("failed");
+        }
+    }
+    
+}
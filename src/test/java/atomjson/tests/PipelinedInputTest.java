@@ -0,0 +1,163 @@
+package atomjson.tests;
+
+import atomjson.JsonParser;
+import atomjson.JsonPrimitive;
+import atomjson.JsonPullParser;
+import atomjson.exceptions.JsonException;
+import atomjson.utils.TestingUtil;
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.zip.DeflaterOutputStream;
+import java.util.zip.GZIPOutputStream;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+import org.junit.Test;
+
+/**
+ * Make sure streams read ahead on another thread, compressed or not, parse the same as the bytes they hold.
+ * @author Justin Bonner
+ */
+public class PipelinedInputTest {
+    
+    private static final String CORRECT_JSON_DIR = "/valid_jsons";
+    private static final String INCORRECT_JSON_DIR = "/invalid_jsons";
+    
+    @Test
+    public void testCorrectJsons() throws IOException {
+        for (File file : TestingUtil.getFiles(CORRECT_JSON_DIR)) {
+            String json = TestingUtil.readFile(file);
+            List<String> expected = TestingUtil.recordEvents(JsonParser.getInstance(json));
+            byte[] bytes = json.getBytes(StandardCharsets.UTF_8);
+            for (byte[] encoded : new byte[][] {bytes, gzip(bytes), deflate(bytes)}) {
+                assertEquals(file.getName(), expected, TestingUtil.recordEvents(JsonParser.getInstance(new ByteArrayInputStream(encoded), 7)));
+                assertEquals(file.getName(), expected, TestingUtil.recordEvents(JsonParser.getInstance(new ByteArrayInputStream(encoded))));
+            }
+        }
+    }
+    
+    @Test
+    public void testIncorrectJsons() throws IOException {
+        for (File file : TestingUtil.getFiles(INCORRECT_JSON_DIR)) {
+            byte[] bytes = TestingUtil.readFile(file).getBytes(StandardCharsets.UTF_8);
+            for (byte[] encoded : new byte[][] {bytes, gzip(bytes)}) {
+                try {
+                    TestingUtil.recordEvents(JsonParser.getInstance(new ByteArrayInputStream(encoded), 5));
+                    fail(file.getName() + " should not have parsed.");
+                } catch (JsonException e) {
+                    //expected
+                }
+            }
+        }
+    }
+    
+    @Test
+    public void testCorruptStream() throws IOException {
+        byte[] compressed = gzip("[1, 2, 3]".getBytes(StandardCharsets.UTF_8));
+        compressed[compressed.length / 2] ^= 0x55;
+        try {
+            TestingUtil.recordEvents(JsonParser.getInstance(new ByteArrayInputStream(compressed)));
+            fail();
+        } catch (JsonException e) {
+            assertTrue(e.getCause() instanceof IOException);
+        }
+    }
+    
+    @Test
+    public void testLongTokensAndKeptValues() throws IOException {
+        StringBuilder json = new StringBuilder("[");
+        for (int i = 0; i < 3000; i++) {
+            json.append("\"value ").append(i).append("\", ").append(i * 1000003L).append(", ");
+        }
+        char[] longString = new char[300000];
+        Arrays.fill(longString, 'é');
+        json.append('"').append(longString).append("\"]");
+        byte[] bytes = json.toString().getBytes(StandardCharsets.UTF_8);
+        List<JsonPrimitive> values = new ArrayList<>();
+        JsonParser.getInstance(new ByteArrayInputStream(gzip(bytes)), 1000).parse((state, name, value) -> {
+            if (value != null) {
+                values.add(value);
+            }
+            return true;
+        });
+        assertEquals(6001, values.size());
+        for (int i = 0; i < 3000; i++) {
+            assertEquals("value " + i, values.get(2 * i).getAsString());
+            assertEquals(i * 1000003L, values.get(2 * i + 1).getAsLong());
+        }
+        assertEquals(new String(longString), values.get(6000).getAsString());
+    }
+    
+    @Test
+    public void testStreamClosedAfterEarlyStop() throws InterruptedException {
+        EndlessArray stream = new EndlessArray();
+        int[] seen = new int[1];
+        JsonParser.getInstance(stream, 64).parse((state, name, value) -> ++seen[0] < 10);
+        for (int i = 0; i < 500 && !stream.closed; i++) {
+            Thread.sleep(10);
+        }
+        assertTrue(stream.closed);
+    }
+    
+    @Test
+    public void testStreamClosedWithPullParser() throws InterruptedException {
+        EndlessArray stream = new EndlessArray();
+        try (JsonPullParser pullParser = JsonParser.getInstance(stream, 64).pull()) {
+            for (int i = 0; i < 10; i++) {
+                assertNotNull(pullParser.nextEvent());
+            }
+        }
+        for (int i = 0; i < 500 && !stream.closed; i++) {
+            Thread.sleep(10);
+        }
+        assertTrue(stream.closed);
+    }
+    
+    /**
+     * An array that never ends.
+     */
+    private static class EndlessArray extends InputStream {
+        
+        private final byte[] element = "1, ".getBytes(StandardCharsets.US_ASCII);
+        private long position = -1;
+        private volatile boolean closed;
+        
+        @Override
+        public int read() {
+            long index = position++;
+            return index == -1 ? '[' : element[(int)(index % element.length)];
+        }
+        
+        @Override
+        public void close() {
+            closed = true;
+        }
+        
+    }
+    
+    private static byte[] gzip(byte[] bytes) throws IOException {
+        ByteArrayOutputStream compressed = new ByteArrayOutputStream();
+        try (OutputStream out = new GZIPOutputStream(compressed)) {
+            out.write(bytes);
+        }
+        return compressed.toByteArray();
+    }
+    
+    private static byte[] deflate(byte[] bytes) throws IOException {
+        ByteArrayOutputStream compressed = new ByteArrayOutputStream();
+        try (OutputStream out = new DeflaterOutputStream(compressed)) {
+            out.write(bytes);
+        }
+        return compressed.toByteArray();
+    }
+    
+}
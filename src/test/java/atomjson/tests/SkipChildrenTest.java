@@ -0,0 +1,114 @@
+package atomjson.tests;
+
+import atomjson.JsonParser;
+import atomjson.JsonParsingState;
+import atomjson.exceptions.JsonException;
+import atomjson.utils.TestingUtil;
+import java.io.File;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.fail;
+import org.junit.Test;
+
+/**
+ * Make sure skipping objects and arrays from a handler gives the same events as
+ * parsing everything and ignoring the events inside them.
+ * @author Justin Bonner
+ */
+public class SkipChildrenTest {
+    
+    private static final String CORRECT_JSON_DIR = "/valid_jsons";
+    
+    @Test
+    public void testSkipNested() throws IOException {
+        for (File file : TestingUtil.getFiles(CORRECT_JSON_DIR)) {
+            String json = TestingUtil.readFile(file);
+            List<String> expected = withoutNested(TestingUtil.recordEvents(JsonParser.getInstance(json)));
+            assertEquals(file.getName(), expected, recordSkippingEvents(JsonParser.getInstance(json)));
+            assertEquals(file.getName(), expected, recordSkippingEvents(JsonParser.getInstance(json.getBytes(StandardCharsets.UTF_8))));
+            assertEquals(file.getName(), expected, recordSkippingEvents(JsonParser.getInstance(file.toPath(), 3)));
+        }
+    }
+    
+    @Test
+    public void testSkipTrickyStrings() {
+        String json = "{\"skip\": {\"a\": \"}]\\\"{[\", \"b\": [\"\\\\\", {}]}, \"keep\": \"\\\\\"}";
+        List<String> names = new ArrayList<>();
+        JsonParser parser = JsonParser.getInstance(json);
+        parser.parse((state, name, value) -> {
+            names.add(state + " " + name);
+            if (state == JsonParsingState.BEGIN_OBJECT && "skip".equals(name)) {
+                parser.skipChildren();
+            }
+            return true;
+        });
+        assertEquals("[BEGIN_OBJECT null, BEGIN_OBJECT skip, END_OBJECT null, READ_PRIMITIVE keep, END_OBJECT null]", names.toString());
+    }
+    
+    @Test
+    public void testMismatchedEnd() {
+        JsonParser parser = JsonParser.getInstance("[1, [2]}");
+        try {
+            parser.parse((state, name, value) -> {
+                if (state == JsonParsingState.BEGIN_ARRAY) {
+                    parser.skipChildren();
+                }
+                return true;
+            });
+            fail();
+        } catch (JsonException e) {
+            //expected
+        }
+        try {
+            parser.skipChildren();
+            fail();
+        } catch (IllegalStateException e) {
+            //expected
+        }
+    }
+    
+    /**
+     * Parse, skipping every object and array below the root.
+     */
+    private static List<String> recordSkippingEvents(JsonParser parser) {
+        List<String> events = new ArrayList<>();
+        int[] depth = new int[1];
+        parser.parse((state, name, value) -> {
+            events.add(state + " " + name + " " + (value == null ? null : value.getType() + ":" + value.getUnderlyingString()));
+            if (state == JsonParsingState.BEGIN_OBJECT || state == JsonParsingState.BEGIN_ARRAY) {
+                if (++depth[0] > 1) {
+                    parser.skipChildren();
+                }
+            } else if (state == JsonParsingState.END_OBJECT || state == JsonParsingState.END_ARRAY) {
+                depth[0]--;
+            }
+            return true;
+        });
+        return events;
+    }
+    
+    /**
+     * Remove the events inside every object and array below the root.
+     */
+    private static List<String> withoutNested(List<String> events) {
+        List<String> kept = new ArrayList<>();
+        int depth = 0;
+        for (String event : events) {
+            boolean end = event.startsWith("END");
+            if (end) {
+                depth--;
+            }
+            if (depth <= 1) {
+                kept.add(event);
+            }
+            if (event.startsWith("BEGIN")) {
+                depth++;
+            }
+        }
+        return kept;
+    }
+    
+}
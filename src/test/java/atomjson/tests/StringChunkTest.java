@@ -0,0 +1,196 @@
+package atomjson.tests;
+
+import atomjson.JsonParser;
+import atomjson.JsonParsingState;
+import atomjson.JsonPrimitive;
+import atomjson.JsonStringChunkHandler;
+import atomjson.utils.TestingUtil;
+import java.io.ByteArrayInputStream;
+import java.io.File;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+import org.junit.Test;
+
+/**
+ * Make sure long string values given in chunks put back together are the same values
+ * a normal parse gives, and that the chunks stay small.
+ * @author Justin Bonner
+ */
+public class StringChunkTest {
+    
+    private static final String CORRECT_JSON_DIR = "/valid_jsons";
+    
+    @Test
+    public void testCorrectJsons() throws IOException {
+        for (File file : TestingUtil.getFiles(CORRECT_JSON_DIR)) {
+            String json = TestingUtil.readFile(file);
+            List<String> expected = TestingUtil.recordEvents(JsonParser.getInstance(json));
+            for (int threshold : new int[] {1, 5, 1000}) {
+                Recorder chars = new Recorder(Integer.MAX_VALUE);
+                JsonParser.getInstance(json).parse(chars, threshold);
+                assertEquals(file.getName(), expected, chars.events);
+                Recorder bytes = new Recorder(Integer.MAX_VALUE);
+                JsonParser.getInstance(json.getBytes(StandardCharsets.UTF_8)).parse(bytes, threshold);
+                assertEquals(file.getName(), expected, bytes.events);
+            }
+        }
+    }
+    
+    @Test
+    public void testChunkSizes() {
+        StringBuilder text = new StringBuilder();
+        for (int i = 0; i < 200000; i++) {
+            text.append(i % 7 == 0 ? "\\n" : i % 11 == 0 ? "\\u00e9" : i % 13 == 0 ? "€" : "a");
+        }
+        String longKey = new String(new char[5000]).replace('\0', 'k');
+        String json = "{\"" + longKey + "\": \"" + text + "\", \"short\": \"s\", \"list\": [\"" + text + "\"]}";
+        List<String> expected = TestingUtil.recordEvents(JsonParser.getInstance(json));
+        
+        Recorder chars = new Recorder(Integer.MAX_VALUE);
+        JsonParser.getInstance(json).parse(chars, 1000);
+        assertEquals(expected, chars.events);
+        assertEquals(2, chars.chunkedStrings);
+        assertTrue(chars.chunks >= 400);
+        assertTrue(chars.largestChunk <= 1002);
+        
+        Recorder bytes = new Recorder(Integer.MAX_VALUE);
+        JsonParser.getInstance(json.getBytes(StandardCharsets.UTF_8)).parse(bytes, 1000);
+        assertEquals(expected, bytes.events);
+        assertEquals(2, bytes.chunkedStrings);
+        assertTrue(bytes.chunks > 400);
+        assertTrue(bytes.largestChunk <= 1006);
+    }
+    
+    @Test
+    public void testSurrogatePairs() {
+        StringBuilder text = new StringBuilder();
+        for (int i = 0; i < 300; i++) {
+            text.append(i % 3 == 0 ? "\\ud83d\\ude00" : "\ud83d\ude00").append(i % 5 == 0 ? "a" : "");
+        }
+        String json = "[\"" + text + "\"]";
+        List<String> expected = TestingUtil.recordEvents(JsonParser.getInstance(json));
+        for (int threshold = 1; threshold <= 13; threshold++) {
+            for (JsonParser parser : Arrays.asList(JsonParser.getInstance(json), JsonParser.getInstance(json.getBytes(StandardCharsets.UTF_8)))) {
+                Recorder recorder = new Recorder(Integer.MAX_VALUE);
+                parser.parse(recorder, threshold);
+                assertEquals(expected, recorder.events);
+                assertEquals(0, recorder.splitPairs);
+            }
+        }
+    }
+    
+    @Test
+    public void testStreamedString() {
+        String text = new String(new char[500000]).replace('\0', 'é');
+        String json = "[\"" + text + "\", \"short\"]";
+        CountingStream stream = new CountingStream(json.getBytes(StandardCharsets.UTF_8));
+        long[] readAtFirstChunk = {-1};
+        Recorder recorder = new Recorder(Integer.MAX_VALUE) {
+            @Override
+            public boolean handleStringChunk(CharSequence chunk) {
+                if (readAtFirstChunk[0] == -1) {
+                    readAtFirstChunk[0] = stream.consumed;
+                }
+                return super.handleStringChunk(chunk);
+            }
+        };
+        JsonParser.getInstance(stream, 1024).parse(recorder, 1000);
+        assertEquals(TestingUtil.recordEvents(JsonParser.getInstance(json)), recorder.events);
+        assertTrue(recorder.largestChunk <= 1000);
+        //chunks are sent while the string is still being read, not once all of it has been buffered
+        assertTrue(readAtFirstChunk[0] < 100000);
+    }
+    
+    @Test
+    public void testEarlyStop() {
+        String json = "[\"" + new String(new char[10000]).replace('\0', 'x') + "\", 1, 2]";
+        for (JsonParser parser : Arrays.asList(JsonParser.getInstance(json), JsonParser.getInstance(json.getBytes(StandardCharsets.UTF_8)))) {
+            Recorder recorder = new Recorder(3);
+            parser.parse(recorder, 100);
+            assertEquals(3, recorder.chunks);
+            assertEquals(Arrays.asList("BEGIN_ARRAY null null"), recorder.events);
+        }
+    }
+    
+    /**
+     * Counts the bytes read from it, on the thread reading ahead of the parser.
+     */
+    private static class CountingStream extends ByteArrayInputStream {
+        
+        private volatile long consumed;
+        
+        private CountingStream(byte[] bytes) {
+            super(bytes);
+        }
+        
+        @Override
+        public synchronized int read(byte[] b, int off, int len) {
+            int read = super.read(b, off, len);
+            if (read > 0) {
+                consumed += read;
+            }
+            return read;
+        }
+        
+    }
+    
+    /**
+     * Records events the way TestingUtil.recordEvents does, putting chunked strings back together.
+     */
+    private static class Recorder implements JsonStringChunkHandler {
+        
+        private final int maxChunks;
+        private final List<String> events = new ArrayList<>();
+        private StringBuilder current;
+        private String currentName;
+        private int chunks;
+        private int chunkedStrings;
+        private int largestChunk;
+        /**
+         * Chunks that end in the middle of a surrogate pair.
+         */
+        private int splitPairs;
+        
+        private Recorder(int maxChunks) {
+            this.maxChunks = maxChunks;
+        }
+        
+        @Override
+        public boolean handleJson(JsonParsingState parsingState, String fieldName, JsonPrimitive value) {
+            events.add(TestingUtil.describe(parsingState, fieldName, value));
+            return true;
+        }
+        
+        @Override
+        public boolean beginString(String fieldName) {
+            current = new StringBuilder();
+            currentName = fieldName;
+            return true;
+        }
+        
+        @Override
+        public boolean handleStringChunk(CharSequence chunk) {
+            current.append(chunk);
+            chunks++;
+            largestChunk = Math.max(largestChunk, chunk.length());
+            if (chunk.length() > 0 && Character.isHighSurrogate(chunk.charAt(chunk.length() - 1))) {
+                splitPairs++;
+            }
+            return chunks < maxChunks;
+        }
+        
+        @Override
+        public boolean endString() {
+            events.add(JsonParsingState.READ_PRIMITIVE + " " + currentName + " STRING:" + current);
+            chunkedStrings++;
+            return true;
+        }
+        
+    }
+    
+}
@@ -0,0 +1,112 @@
+package atomjson.tests;
+
+import atomjson.JsonParser;
+import atomjson.JsonParsingState;
+import atomjson.exceptions.JsonException;
+import atomjson.utils.TestingUtil;
+import java.io.File;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+import org.junit.Test;
+
+/**
+ * Make sure parsing with a structural index gives the same events and errors as parsing without one,
+ * wherever the tokens fall relative to the 64 byte blocks of the index.
+ * @author Justin Bonner
+ */
+public class StructuralIndexTest {
+    
+    private static final String CORRECT_JSON_DIR = "/valid_jsons";
+    private static final String INCORRECT_JSON_DIR = "/invalid_jsons";
+    private static final int[] PADDINGS = {0, 1, 7, 63};
+    
+    @Test
+    public void testCorrectJsons() throws IOException {
+        for (File file : TestingUtil.getFiles(CORRECT_JSON_DIR)) {
+            String json = TestingUtil.readFile(file);
+            for (int padding : PADDINGS) {
+                String padded = spaces(padding) + json;
+                assertEquals(file.getName(), TestingUtil.recordEvents(JsonParser.getInstance(padded)), TestingUtil.recordEvents(indexed(padded)));
+            }
+        }
+    }
+    
+    @Test
+    public void testIncorrectJsons() throws IOException {
+        for (File file : TestingUtil.getFiles(INCORRECT_JSON_DIR)) {
+            String json = TestingUtil.readFile(file);
+            for (int padding : PADDINGS) {
+                try {
+                    indexed(spaces(padding) + json).parse((state, name, value) -> true);
+                    fail(file.getName() + " should not parse with an index.");
+                } catch (JsonException e) {
+                    //expected
+                }
+            }
+        }
+    }
+    
+    @Test
+    public void testEscapesAcrossBlocks() {
+        for (int padding = 0; padding < 70; padding++) {
+            String json = "[" + spaces(padding) + "\"\\\\\", \"a\\\"]\\\\\\\"\", {\"k\\\\\": [1,true ,null]}, -2.5e3 ]";
+            assertEquals(json, TestingUtil.recordEvents(JsonParser.getInstance(json)), TestingUtil.recordEvents(indexed(json)));
+        }
+    }
+    
+    @Test
+    public void testJunkAfterTokens() {
+        String[] jsons = {"[truex]", "[1 x]", "[\"a\"b]", "[null\u0001]", "{\"a\":1}}", "[1, 2"};
+        for (String json : jsons) {
+            try {
+                indexed(json).parse((state, name, value) -> true);
+                fail(json + " should not parse with an index.");
+            } catch (JsonException e) {
+                //expected
+            }
+        }
+    }
+    
+    @Test
+    public void testSkipWithIndex() {
+        String json = "{\"skip\": {\"a\": \"}]\\\"{[\", \"b\": [\"\\\\\", {}]" + spaces(100) + "}, \"keep\": \"\\\\\"}";
+        List<String> names = new ArrayList<>();
+        JsonParser parser = indexed(json);
+        parser.parse((state, name, value) -> {
+            names.add(state + " " + name);
+            if (state == JsonParsingState.BEGIN_OBJECT && "skip".equals(name)) {
+                parser.skipChildren();
+            }
+            return true;
+        });
+        assertEquals("[BEGIN_OBJECT null, BEGIN_OBJECT skip, END_OBJECT null, READ_PRIMITIVE keep, END_OBJECT null]", names.toString());
+    }
+    
+    @Test
+    public void testSources() {
+        assertTrue(JsonParser.getInstance(ByteBuffer.allocateDirect(2)).useStructuralIndex());
+        assertFalse(JsonParser.getInstance("[]").useStructuralIndex());
+    }
+    
+    private static JsonParser indexed(String json) {
+        JsonParser parser = JsonParser.getInstance(json.getBytes(StandardCharsets.UTF_8));
+        assertTrue(parser.useStructuralIndex());
+        return parser;
+    }
+    
+    private static String spaces(int count) {
+        StringBuilder builder = new StringBuilder();
+        for (int i = 0; i < count; i++) {
+            builder.append(i % 4 == 3 ? '\n' : ' ');
+        }
+        return builder.toString();
+    }
+    
+}
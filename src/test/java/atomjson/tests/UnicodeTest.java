@@ -4,6 +4,8 @@ package atomjson.tests;
 import atomjson.JsonParser;
 import atomjson.JsonParsingState;
 import atomjson.exceptions.JsonException;
+import java.nio.charset.StandardCharsets;
+import static org.junit.Assert.assertEquals;
 import static org.junit.Assert.fail;
 import org.junit.Test;
 
@@ -82,5 +84,69 @@ public class UnicodeTest {
         }
     }
     
+    private static final String[] UNPAIRED_SURROGATES = new String[]{
+        "\\uD83D",
+        "\\uDE00",
+        "\\uDE00\\uD83D",
+        "\\uD83Dx",
+        "\\uD83D\\n",
+        "\\uD83D\\u0041"
+    };
+    
+    /**
+     * Ensure escaped surrogate pairs decode to the pair from both chars and bytes,
+     * and that unpaired ones only fail when asked to.
+     */
+    @Test
+    public void testSurrogates() {
+        String pair = "{\"s\": \"a\\uD83D\\uDE00b\"}";
+        for (boolean strict : new boolean[]{false, true}) {
+            assertEquals("a\uD83D\uDE00b", parseString(JsonParser.getInstance(pair), strict));
+            assertEquals("a\uD83D\uDE00b", parseString(JsonParser.getInstance(pair.getBytes(StandardCharsets.UTF_8)), strict));
+        }
+        for (String escape : UNPAIRED_SURROGATES) {
+            String json = "{\"s\": \"" + escape + "\"}";
+            parseString(JsonParser.getInstance(json), false);
+            parseString(JsonParser.getInstance(json.getBytes(StandardCharsets.UTF_8)), false);
+            for (JsonParser parser : new JsonParser[]{JsonParser.getInstance(json), JsonParser.getInstance(json.getBytes(StandardCharsets.UTF_8))}) {
+                try {
+                    parseString(parser, true);
+                    fail("Unpaired surrogate parsed: " + json);
+                } catch (JsonException e) {
+                    //expected
+                }
+            }
+        }
+    }
+    
+    /**
+     * Ensure long strings with escapes and non ASCII text anywhere in them decode the same from chars and bytes.
+     */
+    @Test
+    public void testLongStrings() {
+        String[] pieces = {"plain text ", "\\\"", "\u00e9", "\u4e2d", "\\u0041", "~~~~~~~", "\\\\"};
+        StringBuilder text = new StringBuilder();
+        for (int i = 0; i < 200; i++) {
+            text.append(pieces[i % pieces.length]);
+            if (i % 3 == 0) {
+                text.append('x');
+            }
+            String json = "{\"s\": \"" + text + "\"}";
+            String expected = parseString(JsonParser.getInstance(json), false);
+            assertEquals(expected, parseString(JsonParser.getInstance(json.getBytes(StandardCharsets.UTF_8)), false));
+        }
+    }
+    
+    private static String parseString(JsonParser parser, boolean strict) {
+        parser.setStrictSurrogates(strict);
+        String[] found = new String[1];
+        parser.parse((parsingState, fieldName, value) -> {
+            if (parsingState == JsonParsingState.READ_PRIMITIVE) {
+                found[0] = value.getAsString();
+            }
+            return true;
+        });
+        return found[0];
+    }
     
 }
@@ -1,7 +1,15 @@
 
 package atomjson.utils;
 
+import atomjson.JsonParser;
+import atomjson.JsonParsingState;
+import atomjson.JsonPrimitive;
 import java.io.File;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.util.ArrayList;
+import java.util.List;
 
 /**
  *
@@ -17,4 +25,29 @@ public class TestingUtil {
         return getFile(dirPath).listFiles();
     }
     
+    public static String readFile(File file) throws IOException {
+        return new String(Files.readAllBytes(file.toPath()), StandardCharsets.UTF_8);
+    }
+    
+    /**
+     * Parse the JSON and record every event as a String so that different parsing paths can be compared.
+     * @param parser the parser to run
+     * @return the events in order
+     */
+    public static List<String> recordEvents(JsonParser parser) {
+        List<String> events = new ArrayList<>();
+        parser.parse((state, name, value) -> {
+            events.add(describe(state, name, value));
+            return true;
+        });
+        return events;
+    }
+    
+    /**
+     * Describe one event the way recordEvents records it.
+     */
+    public static String describe(JsonParsingState state, String name, JsonPrimitive value) {
+        return state + " " + name + " " + (value == null ? null : value.getType() + ":" + value.getUnderlyingString());
+    }
+    
 }